@@ -32,5 +32,11 @@ tasks.test {
 tasks.register<JavaExec>("etcd_setup") {
     mainClass.set(application.mainClass)
     classpath = sourceSets.main.get().runtimeClasspath
-    args()
-}
\ No newline at end of file
+    args(listOfNotNull(project.findProperty("setupFile") as String?))
+}
+
+tasks.register<JavaExec>("etcd_backup") {
+    mainClass.set("chubby.setup.EtcdBackup")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args((project.findProperty("backupArgs") as String? ?: "").split(" ").filter { it.isNotBlank() })
+}
@@ -12,10 +12,12 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ChubbyHandleRequest {
+    private static final int LOCK_WAIT_MAX_SECONDS = 300;
     private final String requestedAbsolutePath;
     private final ChubbyHandleType chubbyHandleType;
     private final ChubbyLockDelay chubbyLockDelay;
     private final List<ChubbyEventType> chubbyEventTypeList;
+    private int lockWaitSeconds;
 
     /**
      * Create a new ChubbyHandleRequest.
@@ -30,6 +32,7 @@ public class ChubbyHandleRequest {
         this.chubbyHandleType = chubbyHandleType;
         this.chubbyLockDelay = Objects.requireNonNullElse(chubbyLockDelay, new ChubbyLockDelay());  //if null a default lock delay is set
         this.chubbyEventTypeList = parseEventType(requestedChubbyEventTypes);
+        this.lockWaitSeconds = 0;
     }
 
     /**
@@ -82,4 +85,18 @@ public class ChubbyHandleRequest {
     public List<ChubbyEventType> getChubbyEventTypeList() {
         return Collections.unmodifiableList(this.chubbyEventTypeList);
     }
+
+    public int getLockWaitSeconds() {
+        return this.lockWaitSeconds;
+    }
+
+    /**
+     * Sets how long a handle waits for the lock when it's held by another client, values < 0 are set at '0'
+     * (no wait), values > 300 are set at '300'.
+     *
+     * @param lockWaitSeconds the maximum wait in seconds
+     */
+    public void setLockWaitSeconds(int lockWaitSeconds) {
+        this.lockWaitSeconds = Math.max(0, Math.min(lockWaitSeconds, LOCK_WAIT_MAX_SECONDS));
+    }
 }
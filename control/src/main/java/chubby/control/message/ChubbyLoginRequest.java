@@ -0,0 +1,48 @@
+package chubby.control.message;
+
+import com.google.gson.annotations.SerializedName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class ChubbyLoginRequest {
+    @SerializedName("login")
+    private final String username;
+    @SerializedName("hashed_password")
+    private final Integer hashedPassword;
+    @SerializedName("token")
+    private final String token;
+
+    /**
+     * Create a new ChubbyLoginRequest, sent to the cell server before the first batch of a session. The session token
+     * issued before is presented first, the credentials are checked only if it's missing or no longer valid.
+     *
+     * @param username       the username of the client logging in
+     * @param hashedPassword the hashed password of the client, null to log in with the token only
+     * @param token          the session token issued by a previous login, null if none
+     */
+    public ChubbyLoginRequest(@NotNull String username, @Nullable Integer hashedPassword, @Nullable String token) {
+        this.username = username;
+        this.hashedPassword = hashedPassword;
+        this.token = token;
+    }
+
+    @Override
+    public String toString() {
+        return "ChubbyLoginRequest{" +
+                "username='" + this.username + '\'' +
+                ", token=" + (this.token != null) +
+                "}\n";
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public Integer getHashedPassword() {
+        return this.hashedPassword;
+    }
+
+    public String getToken() {
+        return this.token;
+    }
+}
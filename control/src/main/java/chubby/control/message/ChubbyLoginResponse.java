@@ -0,0 +1,43 @@
+package chubby.control.message;
+
+import com.google.gson.annotations.SerializedName;
+import org.jetbrains.annotations.Nullable;
+
+public class ChubbyLoginResponse {
+    @SerializedName("token")
+    private final String token;
+    @SerializedName("error")
+    private final String error;
+
+    /**
+     * Create a new ChubbyLoginResponse, carrying either the session token issued by the cell server or the reason the
+     * login was refused.
+     *
+     * @param token the session token, null if the login was refused
+     * @param error why the login was refused, null if it was accepted
+     */
+    public ChubbyLoginResponse(@Nullable String token, @Nullable String error) {
+        this.token = token;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "ChubbyLoginResponse{" +
+                "succeeded=" + this.isSucceeded() +
+                ", error='" + this.error + '\'' +
+                "}\n";
+    }
+
+    public boolean isSucceeded() {
+        return this.token != null;
+    }
+
+    public String getToken() {
+        return this.token;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+}
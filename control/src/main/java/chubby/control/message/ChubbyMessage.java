@@ -18,6 +18,8 @@ public abstract class ChubbyMessage {
     private final LocalDate localDate;
     @SerializedName("local_time")
     private final LocalTime localTime;
+    @SerializedName("sequence_number")
+    protected long sequenceNumber;
 
     /**
      * Create a new ChubbyMessage.
@@ -51,4 +53,12 @@ public abstract class ChubbyMessage {
     public LocalTime getLocalTime() {
         return this.localTime;
     }
+
+    public long getSequenceNumber() {
+        return this.sequenceNumber;
+    }
+
+    public void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
 }
\ No newline at end of file
@@ -1,11 +1,12 @@
 package chubby.control.message;
 
+import chubby.control.handle.ChubbyHandleResponse;
 import chubby.control.handle.ChubbyHandleType;
 import com.google.gson.annotations.SerializedName;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
 
 //chubby req == chubby library
 public class ChubbyRequest extends ChubbyMessage {
@@ -17,10 +18,6 @@ public class ChubbyRequest extends ChubbyMessage {
     private final String lockId;
     @SerializedName("lease_id")
     private final String leaseId;
-    @SerializedName("command")
-    private final String command;
-    @SerializedName("args")
-    private final String[] args;
     @SerializedName("filecontent")
     private String fileContent;
 
@@ -32,33 +29,47 @@ public class ChubbyRequest extends ChubbyMessage {
      * @param messageStr  the message to be sent
      */
     public ChubbyRequest(String username, @NotNull ChubbyResponse chubbyResp, @NotNull String messageStr) {
+        this(username, chubbyResp, messageStr, 0);
+    }
+
+    /**
+     * Create a new ChubbyRequest with a sequence number and no handle, used by remote clients whose handle is kept by
+     * the session on the cell server and bound to the request once it is processed.
+     *
+     * @param username  the username of the client that will receive the response
+     * @param messageStr  the message to be sent
+     * @param sequenceNumber  the sequence number of the request in its session
+     */
+    public ChubbyRequest(String username, @NotNull String messageStr, long sequenceNumber) {
+        this(username, new ChubbyResponse(username, null, new ChubbyHandleResponse(Path.of(""), ChubbyHandleType.NONE, null, null)), messageStr, sequenceNumber);
+    }
+
+    /**
+     * Create a new ChubbyRequest with a sequence number, used to match the request with its response and to process
+     * the requests of a session in the same order they were sent.
+     *
+     * @param username  the username of the client that will receive the response
+     * @param chubbyResp  the response that will be sent
+     * @param messageStr  the message to be sent
+     * @param sequenceNumber  the sequence number of the request in its session
+     */
+    public ChubbyRequest(String username, @NotNull ChubbyResponse chubbyResp, @NotNull String messageStr, long sequenceNumber) {
         super(Paths.get(chubbyResp.getHandleAbsolutePath()), messageStr);
         this.username = username;
         this.chubbyCurrentHandleType = chubbyResp.getChubbyCurrentHandleResponse().getChubbyHandleType();
         this.lockId = chubbyResp.getChubbyCurrentHandleResponse().getLockId();
         this.leaseId = chubbyResp.getChubbyCurrentHandleResponse().getLeaseId();
         this.fileContent = chubbyResp.getChubbyCurrentHandleResponse().getFileContent();
-
-        //splits message by blank spaces or by " pairs
-        String[] words = messageStr.split("\\s+(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-
-        if (words.length == 0) {
-            this.command = "";
-            this.args = new String[]{""};
-        } else {
-            this.command = words[0];
-            this.args = Arrays.copyOfRange(words, 1, words.length);
-        }
-
+        this.sequenceNumber = sequenceNumber;
     }
 
     @Override
     public String toString() {
         return "ChubbyRequest{" +
                 "username='" + this.username + '\'' +
+                ", sequenceNumber=" + this.sequenceNumber +
                 ", absolutePath='" + this.handleAbsolutePath + '\'' +
-                ", command='" + this.command + '\'' +
-                ", args=" + Arrays.toString(this.args) +
+                ", message='" + this.message + '\'' +
                 "}\n";
     }
 
@@ -83,14 +94,6 @@ public class ChubbyRequest extends ChubbyMessage {
         return this.leaseId;
     }
 
-    public String getCommand() {
-        return this.command;
-    }
-
-    public String[] getArgs() {
-        return this.args.clone();
-    }
-
     public String getFileContent() {
         return this.fileContent;
     }
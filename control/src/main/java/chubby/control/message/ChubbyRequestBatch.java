@@ -0,0 +1,74 @@
+package chubby.control.message;
+
+import com.google.gson.annotations.SerializedName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+public class ChubbyRequestBatch {
+    @SerializedName("username")
+    private final String username;
+    @SerializedName("token")
+    private final String token;
+    @SerializedName("requests")
+    private final List<ChubbyRequest> chubbyRequestList;
+
+    /**
+     * Create a new ChubbyRequestBatch, a group of requests of the same session sent in a single message. Requests are
+     * processed in the order of their sequence numbers.
+     *
+     * @param username          the username of the client that sent the requests
+     * @param chubbyRequestList the requests of the batch
+     */
+    public ChubbyRequestBatch(String username, @NotNull List<ChubbyRequest> chubbyRequestList) {
+        this(username, null, chubbyRequestList);
+    }
+
+    /**
+     * Create a new ChubbyRequestBatch, a group of requests of the same session sent in a single message, carrying the
+     * session token the cell server authenticates the client with.
+     *
+     * @param username          the username of the client that sent the requests
+     * @param token             the session token of the client, null if not logged in
+     * @param chubbyRequestList the requests of the batch
+     */
+    public ChubbyRequestBatch(String username, @Nullable String token, @NotNull List<ChubbyRequest> chubbyRequestList) {
+        this.username = username;
+        this.token = token;
+        this.chubbyRequestList = List.copyOf(chubbyRequestList);
+    }
+
+    @Override
+    public String toString() {
+        return "ChubbyRequestBatch{" +
+                "username='" + this.username + '\'' +
+                ", size=" + this.chubbyRequestList.size() +
+                "}\n";
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public String getToken() {
+        return this.token;
+    }
+
+    public List<ChubbyRequest> getChubbyRequestList() {
+        return this.chubbyRequestList;
+    }
+
+    /**
+     * Returns the sequence number of the last request of the batch, the one the batch response is correlated to.
+     *
+     * @return the greatest sequence number of the batch, 0 if the batch is empty
+     */
+    public long getLastSequenceNumber() {
+        return this.chubbyRequestList.stream().mapToLong(ChubbyRequest::getSequenceNumber).max().orElse(0);
+    }
+
+    public int size() {
+        return this.chubbyRequestList.size();
+    }
+}
@@ -154,3 +154,42 @@ tasks.register<JavaExec>("run_client_unauthorized1-cell2") {
     classpath = sourceSets.main.get().runtimeClasspath
     args("client0","notAValidPassword","cell2")
 }
+
+tasks.register<JavaExec>("run_cell_server-local") {
+    mainClass.set("chubby.server.ChubbyCellServer")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args("local")
+}
+
+tasks.register<JavaExec>("run_cell_server-cell1") {
+    mainClass.set("chubby.server.ChubbyCellServer")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args("cell1")
+}
+
+tasks.register<JavaExec>("run_cell_server-cell2") {
+    mainClass.set("chubby.server.ChubbyCellServer")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args("cell2")
+}
+
+tasks.register<JavaExec>("run_remote_client_0-local") {
+    standardInput = System.`in`
+    mainClass.set("chubby.server.ChubbyCellClient")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args("client0","password","local")
+}
+
+tasks.register<JavaExec>("run_remote_client_1-local") {
+    standardInput = System.`in`
+    mainClass.set("chubby.server.ChubbyCellClient")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args("client1","password","local")
+}
+
+tasks.register<JavaExec>("run_remote_client_0-local-socket") {
+    standardInput = System.`in`
+    mainClass.set("chubby.server.ChubbyCellClient")
+    classpath = sourceSets.main.get().runtimeClasspath
+    args("client0","password","local","socket")
+}
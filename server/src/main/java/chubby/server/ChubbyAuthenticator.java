@@ -0,0 +1,211 @@
+package chubby.server;
+
+import chubby.utils.exceptions.ChubbyAuthenticationException;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.CmpTarget;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class ChubbyAuthenticator {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String SIGNING_KEY_PREFIX = "token_key/";
+    private static final int SIGNING_KEY_BYTES = 32;
+    private static final int MAX_VERIFIED_TOKENS = 10_000;
+    public static final long DEFAULT_TOKEN_TTL_MILLIS = TimeUnit.HOURS.toMillis(8);
+    private final KV kvClient;
+    private final ByteSequence signingKeyByteSequence;
+    private final long tokenTtlMillis;
+    private final Map<String, ChubbySessionToken> verifiedTokenMap;
+    private CompletableFuture<byte[]> signingKeyFuture;
+
+    /**
+     * Create a new ChubbyAuthenticator. Users log in once with their credentials and receive a session token signed
+     * with the key of the cell, every following connection is authenticated by verifying the token in memory, without
+     * reading the credentials again. Verified tokens are cached, so that a token presented again is only checked for
+     * expiry.
+     *
+     * @param client         etcd client of the cell
+     * @param cellName       name of the cell
+     * @param tokenTtlMillis how long an issued token is valid
+     */
+    public ChubbyAuthenticator(@NotNull Client client, @NotNull String cellName, long tokenTtlMillis) {
+        this.kvClient = client.getKVClient();
+        this.signingKeyByteSequence = ByteSequence.from((SIGNING_KEY_PREFIX + cellName).getBytes());
+        this.tokenTtlMillis = tokenTtlMillis;
+        this.verifiedTokenMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads the signing key of the cell, creating it if the cell has none yet. The key is read once and kept in memory.
+     *
+     * @return a CompletableFuture containing the signing key
+     */
+    public synchronized CompletableFuture<byte[]> loadSigningKey() {
+        if (this.signingKeyFuture != null && !this.signingKeyFuture.isCompletedExceptionally()) {
+            return this.signingKeyFuture;
+        }
+
+        byte[] candidateSigningKey = new byte[SIGNING_KEY_BYTES];
+        new SecureRandom().nextBytes(candidateSigningKey);
+        ByteSequence candidateSigningKeyByteSequence = ByteSequence.from(Base64.getEncoder().encodeToString(candidateSigningKey).getBytes());
+
+        //the first to load the key of the cell stores it, everyone else reads the stored one
+        logger.trace("about to load signing key '{}'", this.signingKeyByteSequence);
+        this.signingKeyFuture = this.kvClient.txn()
+                .If(new Cmp(this.signingKeyByteSequence, Cmp.Op.EQUAL, CmpTarget.version(0)))
+                .Then(Op.put(this.signingKeyByteSequence, candidateSigningKeyByteSequence, PutOption.DEFAULT), Op.get(this.signingKeyByteSequence, GetOption.DEFAULT))
+                .Else(Op.get(this.signingKeyByteSequence, GetOption.DEFAULT))
+                .commit().thenApply(txnResponse -> {
+                    logger.trace("signing key '{}' loaded, created now: {}", this.signingKeyByteSequence, txnResponse.isSucceeded());
+                    return Base64.getDecoder().decode(txnResponse.getGetResponses().getFirst().getKvs().getFirst().getValue().toString());
+                });
+
+        return this.signingKeyFuture;
+    }
+
+    /**
+     * Checks the credentials of the user against the ones stored in the kv store, without issuing any token.
+     *
+     * @param username       username
+     * @param hashedPassword hashed password
+     * @return a CompletableFuture completed once the credentials are checked, completed exceptionally with a
+     * ChubbyAuthenticationException if they are not valid
+     */
+    public CompletableFuture<Void> checkCredentials(@NotNull String username, int hashedPassword) {
+        logger.trace("requested credentials check of '{}'", username);
+
+        return this.kvClient.get(ByteSequence.from(username.getBytes())).thenAccept(getResponse -> {
+            if (getResponse.getKvs().isEmpty()) {
+                logger.error("login of '{}' refused, no such user", username);
+                throw new RuntimeException(new ChubbyAuthenticationException("Invalid username"));
+            }
+
+            int hashedPasswordResponse = Integer.parseInt(getResponse.getKvs().getFirst().getValue().toString());
+            if (hashedPassword != hashedPasswordResponse) {
+                logger.error("login of '{}' refused, wrong password", username);
+                throw new RuntimeException(new ChubbyAuthenticationException("Invalid password"));
+            }
+        });
+    }
+
+    /**
+     * Checks the credentials of the user against the ones stored in the kv store and issues a session token.
+     *
+     * @param username       username
+     * @param hashedPassword hashed password
+     * @return a CompletableFuture containing the session token, completed exceptionally with a
+     * ChubbyAuthenticationException if the credentials are not valid
+     */
+    public CompletableFuture<String> login(@NotNull String username, int hashedPassword) {
+        logger.trace("requested login of '{}'", username);
+
+        return this.loadSigningKey().thenCompose(signingKey -> this.checkCredentials(username, hashedPassword).thenApply(v -> {
+            logger.trace("login of '{}' accepted, issuing session token", username);
+            return ChubbySessionToken.issue(signingKey, username, System.currentTimeMillis() + this.tokenTtlMillis);
+        }));
+    }
+
+    /**
+     * Logs a user in, presenting the token issued by a previous login first: a valid token is verified in memory and
+     * handed back as it is, the credentials are read only if the token is missing or no longer valid. Clients that
+     * reconnect with their token cost no read from the kv store.
+     *
+     * @param username       username
+     * @param hashedPassword hashed password, null to log in with the token only
+     * @param token          the session token issued by a previous login, null if none
+     * @return a CompletableFuture containing the session token, completed exceptionally with a
+     * ChubbyAuthenticationException if neither the token nor the credentials are valid
+     */
+    public CompletableFuture<String> login(@NotNull String username, @Nullable Integer hashedPassword, @Nullable String token) {
+        if (token != null) {
+            try {
+                this.verify(username, token);
+                logger.trace("login of '{}' accepted with session token", username);
+                return CompletableFuture.completedFuture(token);
+            } catch (ChubbyAuthenticationException e) {
+                logger.debug("session token of '{}' not accepted: {}", username, e.getMessage());
+            }
+        }
+
+        if (hashedPassword == null) {
+            return CompletableFuture.failedFuture(new RuntimeException(new ChubbyAuthenticationException("session token not valid, log in with credentials")));
+        }
+        return this.login(username, hashedPassword);
+    }
+
+    /**
+     * Verifies that a session token is valid and was issued to the specified user, without any read from the kv store.
+     *
+     * @param username username the token is presented by
+     * @param token    the session token
+     * @throws ChubbyAuthenticationException if the token is missing, not valid, expired or issued to another user
+     */
+    public void verify(@NotNull String username, @Nullable String token) throws ChubbyAuthenticationException {
+        if (token == null) {
+            throw new ChubbyAuthenticationException("missing session token, log in first");
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        ChubbySessionToken chubbySessionToken = this.verifiedTokenMap.get(token);
+
+        if (chubbySessionToken == null) {
+            CompletableFuture<byte[]> currentSigningKeyFuture;
+            synchronized (this) {
+                currentSigningKeyFuture = this.signingKeyFuture;
+            }
+            if (currentSigningKeyFuture == null || !currentSigningKeyFuture.isDone() || currentSigningKeyFuture.isCompletedExceptionally()) {
+                throw new ChubbyAuthenticationException("session tokens cannot be verified, signing key not loaded");
+            }
+
+            chubbySessionToken = ChubbySessionToken.verify(currentSigningKeyFuture.join(), token, nowMillis);
+            this.cache(token, chubbySessionToken, nowMillis);
+        } else if (chubbySessionToken.isExpired(nowMillis)) {
+            this.verifiedTokenMap.remove(token);
+            throw new ChubbyAuthenticationException("session token expired, log in again");
+        }
+
+        if (!chubbySessionToken.getUsername().equals(username)) {
+            logger.error("session token of '{}' presented by '{}'", chubbySessionToken.getUsername(), username);
+            throw new ChubbyAuthenticationException("session token issued to another user");
+        }
+    }
+
+    /**
+     * Caches a verified token, making room by dropping the expired ones once the cache is full.
+     *
+     * @param token              the token
+     * @param chubbySessionToken the verified content of the token
+     * @param nowMillis          the current time, in milliseconds since the epoch
+     */
+    private void cache(@NotNull String token, @NotNull ChubbySessionToken chubbySessionToken, long nowMillis) {
+        if (this.verifiedTokenMap.size() >= MAX_VERIFIED_TOKENS) {
+            this.verifiedTokenMap.values().removeIf(cachedChubbySessionToken -> cachedChubbySessionToken.isExpired(nowMillis));
+
+            //every cached token is still valid, they are verified again the next time they are presented
+            if (this.verifiedTokenMap.size() >= MAX_VERIFIED_TOKENS) {
+                this.verifiedTokenMap.clear();
+            }
+        }
+
+        this.verifiedTokenMap.put(token, chubbySessionToken);
+    }
+
+    public int getVerifiedTokenCount() {
+        return this.verifiedTokenMap.size();
+    }
+}
@@ -1,10 +1,10 @@
 package chubby.server;
 
 import chubby.control.handle.ChubbyHandleResponse;
-import chubby.control.message.ChubbyMessage;
 import chubby.control.message.ChubbyNotification;
-import chubby.control.message.ChubbyRequest;
-import chubby.control.message.ChubbyResponse;
+import chubby.control.message.ChubbyRequestBatch;
+import chubby.utils.ChubbyPath;
+import chubby.utils.exceptions.ChubbyAuthenticationException;
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
 import io.etcd.jetcd.KV;
@@ -19,13 +19,16 @@ import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ChubbyCell {
     private static final Logger logger = LogManager.getLogger();
     private static final int BUFFER_SIZE = 1024;
     private static final byte[] buffer = new byte[BUFFER_SIZE];
     private static final String MESSAGE_EXIT = "goodbye!";
-    private static ChubbyResponse latestChubbyResponse; //latest chubby response is stored each time to set client's current handle
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
     private static boolean notifiedInitialLockOnRoot = false;
     private static boolean test = false;
     private static final String[] localCellServers = {
@@ -82,7 +85,7 @@ public class ChubbyCell {
 
         try {
             //generates a chatroom
-            generateChatroom(username, hashedPassword, serverNameToConnectTo + "-" + username, chubbyNamespace, test, servers);
+            generateChatroom(username, hashedPassword, serverNameToConnectTo, serverNameToConnectTo + "-" + username, chubbyNamespace, test, servers);
         } catch (IOException e) {
             System.out.println("Cannot use IO");
             System.exit(1);
@@ -92,29 +95,14 @@ public class ChubbyCell {
         }
     }
 
-    private static void generateChatroom(String username, int hashedPassword, String chatId, ChubbyNamespace chubbyNamespace, boolean isTest, String... servers) throws IOException, InterruptedException {
+    private static void generateChatroom(String username, int hashedPassword, String cellName, String chatId, ChubbyNamespace chubbyNamespace, boolean isTest, String... servers) throws IOException, InterruptedException {
         try {
             System.out.printf("Contacting host(s) %s...\n", Arrays.toString(servers));
             Client client = Client.builder().endpoints(servers).build();
             System.out.println("Connection established");
 
             if (!isTest) {
-                client.getKVClient().get(ByteSequence.from(username.getBytes())).thenCompose(getResponse -> {
-                    if (getResponse.getKvs().isEmpty()) {
-                        System.out.println("Invalid username");
-                        System.exit(1);
-                    } else {
-                        String passwordResponseStr = new String(getResponse.getKvs().getFirst().getValue().getBytes());
-                        int hashedPasswordResponse = Integer.parseInt(passwordResponseStr);
-                        if (hashedPassword == hashedPasswordResponse) {
-                            System.out.println("successfully authenticated");
-                        } else {
-                            System.out.println("Invalid password");
-                            System.exit(1);
-                        }
-                    }
-                    return CompletableFuture.completedFuture(null);
-                });
+                login(client, cellName, username, hashedPassword);
             }
 
             if (isTest) {
@@ -135,12 +123,77 @@ public class ChubbyCell {
         }
     }
 
+    /**
+     * Checks the credentials of the user against the ones stored in the kv store, waiting for the outcome, exits if
+     * they are not valid. No session token is issued, requests are processed in this process.
+     *
+     * @param client         etcd client
+     * @param cellName       name of the cell
+     * @param username       username
+     * @param hashedPassword hashed password
+     * @throws InterruptedException if interrupted while waiting for the check
+     */
+    private static void login(@NotNull Client client, @NotNull String cellName, @NotNull String username, int hashedPassword) throws InterruptedException {
+        ChubbyAuthenticator chubbyAuthenticator = new ChubbyAuthenticator(client, cellName, ChubbyAuthenticator.DEFAULT_TOKEN_TTL_MILLIS);
+
+        try {
+            chubbyAuthenticator.checkCredentials(username, hashedPassword).get();
+            System.out.println("successfully authenticated");
+        } catch (ExecutionException e) {
+            if (e.getCause() != null && e.getCause().getCause() instanceof ChubbyAuthenticationException chubbyAuthenticationException) {
+                System.out.println(chubbyAuthenticationException.getMessage());
+            } else {
+                System.out.println("Cannot authenticate, " + e.getMessage());
+            }
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the servers of the specified cell
+     *
+     * @param cellName name of the cell
+     * @return the servers of the cell, null if no cell has such name
+     */
+    static String[] getCellServers(@NotNull String cellName) {
+        return switch (cellName) {
+            case "local" -> localCellServers;
+            case "cell1" -> cell1Servers;
+            case "cell2" -> cell2Servers;
+            default -> null;
+        };
+    }
+
     private static void chatroomImpl(String username, String chatId, Client client, ChubbyNamespace chubbyNamespace, ChubbyHandleResponse initialChubbyHandleResponse, boolean isTest) throws IOException, ExecutionException, InterruptedException {
-        propagateServerToStdout(chatId, client, chubbyNamespace, isTest);
-        propagateStdinToServer(username, chatId, client, initialChubbyHandleResponse);
+        //client's current handle is kept by the session, that updates it each time a response is received
+        ChubbySession chubbySession = new ChubbySession(username, initialChubbyHandleResponse);
+
+        //a session interrupted before its 'exit' is torn down at once, instead of waiting for its lease to expire
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeSessionOnShutdown(username, client, chubbyNamespace), "chubby_cell_shutdown"));
+
+        propagateServerToStdout(chatId, client, chubbyNamespace, chubbySession, isTest);
+        propagateStdinToServer(chatId, client, chubbySession);
+    }
+
+    /**
+     * Tears down the session of the user when the process shuts down, nothing is left to do if the session already
+     * exited
+     *
+     * @param username        username
+     * @param client          etcd client
+     * @param chubbyNamespace the namespace of the cell
+     */
+    private static void closeSessionOnShutdown(@NotNull String username, @NotNull Client client, @NotNull ChubbyNamespace chubbyNamespace) {
+        try {
+            chubbyNamespace.closeSession(username, client).get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.error("failed to close session of '{}' on shutdown, its lease will expire", username, e);
+        }
     }
 
-    private static void propagateStdinToServer(String username, @NotNull String chatId, @NotNull Client client, ChubbyHandleResponse initialChubbyHandleResponse) throws IOException, ExecutionException, InterruptedException {
+    private static void propagateStdinToServer(@NotNull String chatId, @NotNull Client client, @NotNull ChubbySession chubbySession) throws IOException, ExecutionException, InterruptedException {
         InputStream inputStream = System.in;
 
         KV kv = client.getKVClient();
@@ -148,7 +201,19 @@ public class ChubbyCell {
         //chat between specified client and chubby server will be used as key into the kv store
         ByteSequence chatIdKey = ByteSequence.from(chatId.getBytes());
 
-        latestChubbyResponse = new ChubbyResponse(username, null, initialChubbyHandleResponse);
+        //requests issued within the same window are coalesced into a single put
+        AtomicReference<CompletableFuture<?>> latestPutFuture = new AtomicReference<>(CompletableFuture.completedFuture(null));
+        ChubbyRequestBatcher chubbyRequestBatcher = new ChubbyRequestBatcher(chubbySession.getUsername(), ChubbyRequestBatcher.DEFAULT_WINDOW_MILLIS, ChubbyRequestBatcher.DEFAULT_MAX_BATCH_SIZE, chubbyRequestBatch -> {
+            String chubbyRequestBatchJsonString = ChubbyRequestSerializer.serialize(chubbyRequestBatch);
+            logger.trace("serialized batch '{}'", chubbyRequestBatchJsonString);
+
+            //chat is keyed with key = chatId
+            latestPutFuture.set(kv.put(chatIdKey, ByteSequence.from(chubbyRequestBatchJsonString.getBytes())).whenComplete((putResponse, throwable) -> {
+                if (throwable != null) {
+                    logger.error("failed to send batch ending with sequence number '{}'", chubbyRequestBatch.getLastSequenceNumber(), throwable);
+                }
+            }));
+        });
 
         while (true) {
             int read = inputStream.read(buffer);
@@ -157,54 +222,37 @@ public class ChubbyCell {
                 System.arraycopy(buffer, 0, requestMsgBodyByte, 0, read);
                 String requestMsgString = new String(requestMsgBodyByte);
 
-                logger.trace("latest chubby response filecontent '{}'", latestChubbyResponse.getChubbyCurrentHandleResponse().getFileContent());
-
-                ChubbyRequest chubbyRequest = new ChubbyRequest(username, latestChubbyResponse, requestMsgString);
-
-                String chubbyRequestJsonString = ChubbyRequestSerializer.serialize(chubbyRequest);
-                logger.trace("serialized req '{}'", chubbyRequestJsonString);
-
-                ByteSequence chubbyRequestByteSequence = ByteSequence.from(chubbyRequestJsonString.getBytes());
-
-//                chubbyNamespace.createNode(client, Paths.get("/dir"), "null", ChubbyNodeAttribute.PERMANENT, ChubbyHandleType.WRITE);
-
-                //chat is keyed with key = chatId
-                kv.put(chatIdKey, chubbyRequestByteSequence).get();
-
-//                chubbyNamespace.createNode(client, Paths.get("/dir/tmp"), null, ChubbyNodeAttribute.PERMANENT, ChubbyHandleType.READ);
-
+                //requests are sequenced by the session, so the next one can be sent without waiting for this response
+                for (String command : ChubbyRequestBatcher.splitCommands(requestMsgString)) {
+                    chubbyRequestBatcher.add(chubbySession.newRequest(command));
+                }
             } else {
-                ChubbyRequest chubbyRequest = new ChubbyRequest(username, latestChubbyResponse, "exit");
-
-                String chubbyRequestJsonString = ChubbyRequestSerializer.serialize(chubbyRequest);
-                ByteSequence chubbyRequestByteSequence = ByteSequence.from(chubbyRequestJsonString.getBytes());
+                chubbyRequestBatcher.add(chubbySession.newRequest("exit"));
+                chubbyRequestBatcher.close();
 
-                kv.put(chatIdKey, chubbyRequestByteSequence).get();
+                latestPutFuture.get().get();
                 return;
             }
         }
     }
 
-    private static void propagateServerToStdout(@NotNull String chatId, @NotNull Client client, ChubbyNamespace chubbyNamespace, boolean close) {
+    private static void propagateServerToStdout(@NotNull String chatId, @NotNull Client client, ChubbyNamespace chubbyNamespace, @NotNull ChubbySession chubbySession, boolean close) {
         OutputStream outputStream = System.out;
         ChubbyRequestProcessor chubbyRequestProcessor = new ChubbyRequestProcessor();
-        Watch.Listener listener = Watch.listener(response -> {
-            // offloads the processing to another thread, in order not to block any other operation on the kv store caused by chubbyRequestProcessor
-            new Thread(() -> response.getEvents().forEach(event -> {
-                ChubbyRequest chubbyRequest = ChubbyRequestDeserializer.deserialize(event);
+        Watch.Listener listener = Watch.listener(response -> response.getEvents().forEach(event -> {
+            ChubbyRequestBatch chubbyRequestBatch = ChubbyRequestDeserializer.deserializeBatch(event);
 
+            // requests are processed asynchronously in sequence order, each one bound to the handle left by the previous one,
+            // read-only ones overlap
+            chubbySession.submit(chubbyRequestBatch, boundChubbyRequest -> {
                 try {
-                    outputStream.write(chubbyRequest.getFormattedMessage().getBytes());
+                    outputStream.write(boundChubbyRequest.getFormattedMessage().getBytes());
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
 
-                ChubbyMessage chubbyMessage = chubbyRequestProcessor.process(chubbyNamespace, chubbyRequest, client);
-
-                if (chubbyMessage instanceof ChubbyResponse) {
-                    setLatestChubbyResponse((ChubbyResponse) chubbyMessage);
-                }
-
+                return chubbyRequestProcessor.processAsync(chubbyNamespace, boundChubbyRequest, client);
+            }, chubbyMessage -> {
                 try {
                     outputStream.write(chubbyMessage.getFormattedMessage().getBytes());
                 } catch (IOException e) {
@@ -222,8 +270,8 @@ public class ChubbyCell {
                         System.exit(0);
                     }
                 }
-            }), "chubby_request_processor").start();
-        });
+            }, chubbyRequestProcessor::isReadOnly);
+        }));
 
         ByteSequence chatIdKey = ByteSequence.from(chatId.getBytes());
 
@@ -234,7 +282,7 @@ public class ChubbyCell {
 
         if (!notifiedInitialLockOnRoot) {
             try {
-                outputStream.write(new ChubbyNotification(chubbyNamespace.getRoot(), ByteSequence.from(chubbyNamespace.getRoot().toString().getBytes()), "acquired initial shared lock on root '" + chubbyNamespace.getRoot() + "' node").getFormattedMessage().getBytes());
+                outputStream.write(new ChubbyNotification(chubbyNamespace.getRoot(), ChubbyPath.of(chubbyNamespace.getRoot()).toByteSequence(), "acquired initial shared lock on root '" + chubbyNamespace.getRoot() + "' node").getFormattedMessage().getBytes());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -242,10 +290,6 @@ public class ChubbyCell {
         }
     }
 
-    private static void setLatestChubbyResponse(ChubbyResponse chubbyResponse) {
-        latestChubbyResponse = chubbyResponse;
-    }
-
     protected static void setChubbyCellTestModeTo(boolean testMode) {
         test = testMode;
     }
@@ -0,0 +1,283 @@
+package chubby.server;
+
+import chubby.control.message.ChubbyLoginRequest;
+import chubby.control.message.ChubbyLoginResponse;
+import chubby.control.message.ChubbyRequest;
+import chubby.server.transport.ChubbySocketClient;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class ChubbyCellClient {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int BUFFER_SIZE = 1024;
+    private static final String MESSAGE_SESSION_CLOSED = "session closed";
+    private static final String TRANSPORT_SOCKET = "socket";
+    private static final String CELL_SERVER_HOST = "localhost";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    public static void main(String[] args) {
+        String username = args[0];
+        int hashedPassword = args[1].hashCode();
+        String cellName = args[2];
+        String[] servers = ChubbyCell.getCellServers(cellName);
+
+        if (servers == null) {
+            System.out.println("Invalid server name");
+            System.exit(1);
+        }
+
+        System.out.printf("Contacting host(s) %s...\n", Arrays.toString(servers));
+        Client client = Client.builder().endpoints(servers).build();
+        System.out.println("Connection established");
+
+        try {
+            //the cell server logs the user in and issues the session token, the cached token is presented first so that
+            //reconnecting does not read the credentials again
+            ChubbySessionTokenCache chubbySessionTokenCache = new ChubbySessionTokenCache(cellName, username);
+            ChubbyLoginRequest chubbyLoginRequest = new ChubbyLoginRequest(username, hashedPassword, chubbySessionTokenCache.load());
+
+            //requests are sent directly to the cell server if requested, chat keys are used otherwise
+            if (args.length > 3 && TRANSPORT_SOCKET.equals(args[3])) {
+                ChubbySocketClient chubbySocketClient = new ChubbySocketClient(CELL_SERVER_HOST, ChubbyCellServer.getSocketPort(cellName), ChubbyCellClient::printMessage);
+                chubbySocketClient.start();
+                System.out.println("Connected to cell server on port " + ChubbyCellServer.getSocketPort(cellName));
+                String token = login(chubbySessionTokenCache, chubbySocketClient.send(ChubbyCellServer.LOGIN_SEQUENCE_NUMBER, ChubbyRequestSerializer.serialize(chubbyLoginRequest)));
+                propagateStdinToSocket(chubbySocketClient, username, token);
+            } else {
+                String token = login(chubbySessionTokenCache, loginOverChatKey(client, cellName, chubbyLoginRequest));
+                propagateServerToStdout(client, ChubbyCellServer.getResponseKey(cellName, username));
+                propagateStdinToServer(client, username, token, ChubbyCellServer.getChatKey(cellName, username));
+            }
+        } catch (IOException e) {
+            System.out.println("Cannot use IO");
+            System.exit(1);
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println("ChubbyCellClient interruption");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Waits for the outcome of the login, caching the token issued, exits if the login was refused.
+     *
+     * @param chubbySessionTokenCache caches the session token of the user
+     * @param loginFuture             the serialized login response of the cell server
+     * @return the session token issued to the user
+     * @throws ExecutionException   if the login response cannot be received
+     * @throws InterruptedException if interrupted while waiting for the login response
+     */
+    private static String login(@NotNull ChubbySessionTokenCache chubbySessionTokenCache, @NotNull CompletableFuture<String> loginFuture) throws ExecutionException, InterruptedException {
+        ChubbyLoginResponse chubbyLoginResponse = ChubbyRequestDeserializer.deserializeLoginResponse(loginFuture.get());
+
+        if (!chubbyLoginResponse.isSucceeded()) {
+            chubbySessionTokenCache.clear();
+            System.out.println(chubbyLoginResponse.getError());
+            System.exit(1);
+        }
+
+        chubbySessionTokenCache.store(chubbyLoginResponse.getToken());
+        System.out.println("successfully authenticated");
+        return chubbyLoginResponse.getToken();
+    }
+
+    /**
+     * Sends the login request on the chat key of the user, the cell server answers on the login response key. The
+     * response key is watched from the revision following the request, so that the outcome of a previous login is
+     * never taken for the one of this login.
+     *
+     * @param client             etcd client
+     * @param cellName           name of the cell
+     * @param chubbyLoginRequest the login request
+     * @return a CompletableFuture containing the serialized login response
+     */
+    private static CompletableFuture<String> loginOverChatKey(@NotNull Client client, @NotNull String cellName, @NotNull ChubbyLoginRequest chubbyLoginRequest) {
+        ByteSequence chatKey = ByteSequence.from(ChubbyCellServer.getChatKey(cellName, chubbyLoginRequest.getUsername()).getBytes());
+        ByteSequence loginResponseKey = ByteSequence.from(ChubbyCellServer.getLoginResponseKey(cellName, chubbyLoginRequest.getUsername()).getBytes());
+        CompletableFuture<String> loginFuture = new CompletableFuture<>();
+
+        client.getKVClient().put(chatKey, ByteSequence.from(ChubbyRequestSerializer.serialize(chubbyLoginRequest).getBytes())).whenComplete((putResponse, throwable) -> {
+            if (throwable != null) {
+                loginFuture.completeExceptionally(throwable);
+                return;
+            }
+
+            WatchOption watchOption = WatchOption.builder().withRevision(putResponse.getHeader().getRevision() + 1).build();
+            Watch.Watcher watcher = client.getWatchClient().watch(loginResponseKey, watchOption, Watch.listener(response -> response.getEvents().stream()
+                    .filter(event -> event.getEventType() == WatchEvent.EventType.PUT)
+                    .findFirst()
+                    .ifPresent(event -> loginFuture.complete(event.getKeyValue().getValue().toString())), loginFuture::completeExceptionally));
+            loginFuture.whenComplete((loginResponse, loginThrowable) -> watcher.close());
+        });
+
+        return loginFuture;
+    }
+
+    /**
+     * Sends each line read from the standard input to the cell server as a new request of the session. Requests are
+     * sent without waiting for the previous responses, the cell server processes them in sequence order; requests
+     * issued within the same batching window are sent with a single put.
+     *
+     * @param client   etcd client
+     * @param username username
+     * @param token    session token of the user
+     * @param chatId   chat key of the user
+     * @throws IOException          if the standard input cannot be read
+     * @throws ExecutionException   if the closing request cannot be sent
+     * @throws InterruptedException if interrupted while sending the closing request
+     */
+    private static void propagateStdinToServer(@NotNull Client client, String username, String token, @NotNull String chatId) throws IOException, ExecutionException, InterruptedException {
+        KV kv = client.getKVClient();
+        ByteSequence chatIdKey = ByteSequence.from(chatId.getBytes());
+        AtomicReference<CompletableFuture<?>> latestSendFuture = new AtomicReference<>(CompletableFuture.completedFuture(null));
+
+        ChubbyRequestBatcher chubbyRequestBatcher = new ChubbyRequestBatcher(username, token, ChubbyRequestBatcher.DEFAULT_WINDOW_MILLIS, ChubbyRequestBatcher.DEFAULT_MAX_BATCH_SIZE, chubbyRequestBatch -> latestSendFuture.set(kv.put(chatIdKey, ByteSequence.from(ChubbyRequestSerializer.serialize(chubbyRequestBatch).getBytes())).whenComplete((putResponse, throwable) -> {
+            if (throwable != null) {
+                logger.error("failed to send batch ending with sequence number '{}'", chubbyRequestBatch.getLastSequenceNumber(), throwable);
+            }
+        })));
+
+        readRequests(chubbyRequestBatcher, username, latestSendFuture::get);
+
+        //once the input is over, waits for the closing request to be sent
+        latestSendFuture.get().get();
+    }
+
+    /**
+     * Sends each line read from the standard input to the cell server over a direct connection. Requests are sent
+     * without waiting for the previous responses, the responses of each batch are received in a single frame.
+     *
+     * @param chubbySocketClient connection to the cell server
+     * @param username           username
+     * @param token              session token of the user
+     * @throws IOException if the standard input cannot be read
+     */
+    private static void propagateStdinToSocket(@NotNull ChubbySocketClient chubbySocketClient, String username, String token) throws IOException {
+        AtomicReference<CompletableFuture<String>> latestResponseFuture = new AtomicReference<>(CompletableFuture.completedFuture(null));
+
+        ChubbyRequestBatcher chubbyRequestBatcher = new ChubbyRequestBatcher(username, token, ChubbyRequestBatcher.DEFAULT_WINDOW_MILLIS, ChubbyRequestBatcher.DEFAULT_MAX_BATCH_SIZE, chubbyRequestBatch -> latestResponseFuture.set(chubbySocketClient.send(chubbyRequestBatch.getLastSequenceNumber(), ChubbyRequestSerializer.serialize(chubbyRequestBatch)).whenComplete((message, throwable) -> {
+            if (throwable != null) {
+                logger.error("batch ending with sequence number '{}' failed", chubbyRequestBatch.getLastSequenceNumber(), throwable);
+            } else {
+                printMessage(message);
+            }
+        })));
+
+        readRequests(chubbyRequestBatcher, username, latestResponseFuture::get);
+
+        //once the input is over, waits for the session to be closed
+        latestResponseFuture.get().exceptionally(throwable -> null).join();
+    }
+
+    /**
+     * Reads the standard input until it is over, adding a request for each line to the batcher. The closing request is
+     * added once the input is over, or when the process shuts down before, so that the cell server tears down the
+     * session at once instead of waiting for its lease to expire.
+     *
+     * @param chubbyRequestBatcher batches the requests to be sent
+     * @param username             username
+     * @param latestSendSupplier   returns the sending of the latest batch
+     * @throws IOException if the standard input cannot be read
+     */
+    private static void readRequests(@NotNull ChubbyRequestBatcher chubbyRequestBatcher, String username, @NotNull Supplier<CompletableFuture<?>> latestSendSupplier) throws IOException {
+        InputStream inputStream = System.in;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        AtomicLong sequenceNumberGenerator = new AtomicLong(1);
+        AtomicBoolean exitSent = new AtomicBoolean(false);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (sendExit(chubbyRequestBatcher, username, sequenceNumberGenerator, exitSent)) {
+                try {
+                    latestSendSupplier.get().get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | TimeoutException e) {
+                    logger.error("failed to send the closing request of '{}' on shutdown", username, e);
+                }
+            }
+        }, "chubby_cell_client_shutdown"));
+
+        while (true) {
+            int read = inputStream.read(buffer);
+            if (read <= 0) {
+                sendExit(chubbyRequestBatcher, username, sequenceNumberGenerator, exitSent);
+                return;
+            }
+
+            //lines read at once were written as a group, so they are sent in the same batch
+            for (String command : ChubbyRequestBatcher.splitCommands(new String(buffer, 0, read))) {
+                chubbyRequestBatcher.add(new ChubbyRequest(username, command, sequenceNumberGenerator.getAndIncrement()));
+            }
+        }
+    }
+
+    /**
+     * Sends the closing request of the session, unless it was already sent.
+     *
+     * @param chubbyRequestBatcher    batches the requests to be sent
+     * @param username                username
+     * @param sequenceNumberGenerator generates the sequence numbers of the session
+     * @param exitSent                whether the closing request was already sent
+     * @return true if the closing request was sent by this call
+     */
+    private static boolean sendExit(@NotNull ChubbyRequestBatcher chubbyRequestBatcher, String username, @NotNull AtomicLong sequenceNumberGenerator, @NotNull AtomicBoolean exitSent) {
+        if (!exitSent.compareAndSet(false, true)) {
+            return false;
+        }
+
+        chubbyRequestBatcher.add(new ChubbyRequest(username, "exit", sequenceNumberGenerator.getAndIncrement()));
+        chubbyRequestBatcher.close();
+        return true;
+    }
+
+    /**
+     * Prints a message sent by the cell server, exits once the session is closed.
+     *
+     * @param message message sent by the cell server
+     */
+    private static void printMessage(@NotNull String message) {
+        System.out.print(message);
+
+        if (MESSAGE_SESSION_CLOSED.equals(message)) {
+            System.out.println();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Prints the responses and the notifications sent by the cell server to the standard output.
+     *
+     * @param client      etcd client
+     * @param responseKey response key of the user
+     */
+    private static void propagateServerToStdout(@NotNull Client client, @NotNull String responseKey) {
+        ByteSequence responseKeyByteSequence = ByteSequence.from(responseKey.getBytes());
+
+        client.getWatchClient().watch(responseKeyByteSequence, Watch.listener(response -> response.getEvents().forEach(event -> {
+            if (event.getEventType() != WatchEvent.EventType.PUT) {
+                return;
+            }
+
+            printMessage(event.getKeyValue().getValue().toString());
+        })));
+        System.out.println("Listening to new messages on chat \"" + responseKey + "\"");
+    }
+}
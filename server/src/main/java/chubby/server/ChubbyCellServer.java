@@ -0,0 +1,612 @@
+package chubby.server;
+
+import chubby.control.message.ChubbyError;
+import chubby.control.message.ChubbyLoginRequest;
+import chubby.control.message.ChubbyLoginResponse;
+import chubby.control.message.ChubbyMessage;
+import chubby.control.message.ChubbyNotification;
+import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyRequestBatch;
+import chubby.server.transport.ChubbySocketConnection;
+import chubby.server.transport.ChubbySocketOutputStream;
+import chubby.server.transport.ChubbySocketServer;
+import chubby.utils.ChubbyPath;
+import chubby.utils.exceptions.ChubbyAuthenticationException;
+import com.google.gson.JsonObject;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class ChubbyCellServer {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String MESSAGE_EXIT = "goodbye!";
+    private static final String MESSAGE_SESSION_CLOSED = "session closed";
+    private static final String RESPONSE_KEY_PREFIX = "response/";
+    private static final String LOGIN_RESPONSE_KEY_PREFIX = "login_response/";
+    public static final long LOGIN_SEQUENCE_NUMBER = -1;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long WATCH_RETRY_BASE_MILLIS = 100;
+    private static final long WATCH_RETRY_MAX_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private final String cellName;
+    private final Client client;
+    private final ChubbyNamespace chubbyNamespace;
+    private final ChubbyRequestProcessor chubbyRequestProcessor;
+    private final ChubbyAuthenticator chubbyAuthenticator;
+    private final Map<String, CompletableFuture<ChubbySession>> sessionMap;
+    private final CountDownLatch closedLatch;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final AtomicLong chatKeyRevision;
+    private final AtomicInteger chatKeyWatchFailureCount;
+    private Watch.Watcher watcher;
+    private boolean closed;
+    private ChubbySocketServer chubbySocketServer;
+
+    /**
+     * Create a new ChubbyCellServer, serving every session of the specified cell.
+     *
+     * @param cellName name of the cell
+     * @param client   etcd client of the cell
+     */
+    public ChubbyCellServer(@NotNull String cellName, @NotNull Client client) {
+        this.cellName = cellName;
+        this.client = client;
+        this.chubbyNamespace = new ChubbyNamespace(cellName);
+        this.chubbyRequestProcessor = new ChubbyRequestProcessor();
+        this.chubbyAuthenticator = new ChubbyAuthenticator(client, cellName, ChubbyAuthenticator.DEFAULT_TOKEN_TTL_MILLIS);
+        this.sessionMap = new ConcurrentHashMap<>();
+        this.closedLatch = new CountDownLatch(1);
+        this.chatKeyRevision = new AtomicLong();
+        this.chatKeyWatchFailureCount = new AtomicInteger();
+        this.closed = false;
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chubby_cell_server_scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) {
+        String cellName = args[0];
+        String[] servers = ChubbyCell.getCellServers(cellName);
+
+        if (servers == null) {
+            System.out.println("Invalid server name");
+            System.exit(1);
+        }
+
+        System.out.printf("Contacting host(s) %s...\n", Arrays.toString(servers));
+        Client client = Client.builder().endpoints(servers).build();
+        System.out.println("Connection established");
+
+        ChubbyCellServer chubbyCellServer = new ChubbyCellServer(cellName, client);
+        Runtime.getRuntime().addShutdownHook(new Thread(chubbyCellServer::close, "chubby_cell_server_shutdown"));
+        chubbyCellServer.start();
+
+        //clients may connect directly to the cell server, chat keys remain available as fallback
+        try {
+            chubbyCellServer.startSocketServer(getSocketPort(cellName));
+        } catch (IOException e) {
+            System.out.println("Cannot listen for client connections, only chat keys will be served");
+        }
+
+        try {
+            chubbyCellServer.awaitClose();
+        } catch (InterruptedException e) {
+            System.out.println("ChubbyCellServer interruption");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the port where the cell server of the specified cell accepts client connections.
+     *
+     * @param cellName name of the cell
+     * @return the port of the cell server
+     */
+    public static int getSocketPort(@NotNull String cellName) {
+        return switch (cellName) {
+            case "cell1" -> 11100;
+            case "cell2" -> 12100;
+            default -> 10100;
+        };
+    }
+
+    /**
+     * Returns the key where the requests of the specified user are sent.
+     *
+     * @param cellName name of the cell
+     * @param username username
+     * @return the chat key of the user
+     */
+    public static String getChatKey(@NotNull String cellName, @NotNull String username) {
+        return cellName + "-" + username;
+    }
+
+    /**
+     * Returns the key where the responses and the notifications addressed to the specified user are sent.
+     *
+     * @param cellName name of the cell
+     * @param username username
+     * @return the response key of the user
+     */
+    public static String getResponseKey(@NotNull String cellName, @NotNull String username) {
+        return RESPONSE_KEY_PREFIX + getChatKey(cellName, username);
+    }
+
+    /**
+     * Returns the key where the outcome of the logins of the specified user over its chat key is sent.
+     *
+     * @param cellName name of the cell
+     * @param username username
+     * @return the login response key of the user
+     */
+    public static String getLoginResponseKey(@NotNull String cellName, @NotNull String username) {
+        return LOGIN_RESPONSE_KEY_PREFIX + getChatKey(cellName, username);
+    }
+
+    /**
+     * Starts watching the chat keys of every user of the cell with a single prefix watch. The signing key of the
+     * session tokens is loaded first, so that every batch received is authenticated in memory. Chat keys carry no
+     * connection whose loss can be detected, so the sessions opened on them are closed once idle for
+     * {@link #DEFAULT_IDLE_TIMEOUT_MILLIS}.
+     */
+    public synchronized void start() {
+        if (this.closed || this.watcher != null) {
+            return;
+        }
+
+        this.chubbyAuthenticator.loadSigningKey().join();
+
+        this.watcher = this.watchChatKeys();
+        this.scheduledExecutorService.scheduleAtFixedRate(this::closeIdleSessions, IDLE_CHECK_INTERVAL_MILLIS, IDLE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        System.out.println("Listening to new messages on cell \"" + this.cellName + "\"");
+    }
+
+    /**
+     * Watches the chat keys of the cell from the revision following the last one seen, so that a restarted watch loses
+     * no request; if that revision has been compacted in the meantime, the watch restarts from the oldest revision
+     * still available. A failed watch is restarted with an exponential backoff, reset by the next response received.
+     *
+     * @return the watcher
+     */
+    private Watch.Watcher watchChatKeys() {
+        ByteSequence chatKeyPrefix = ByteSequence.from(getChatKey(this.cellName, "").getBytes());
+        WatchOption.Builder watchOptionBuilder = WatchOption.newBuilder().withPrefix(chatKeyPrefix);
+        if (this.chatKeyRevision.get() > 0) {
+            watchOptionBuilder.withRevision(this.chatKeyRevision.get() + 1);
+        }
+
+        return this.client.getWatchClient().watch(chatKeyPrefix, watchOptionBuilder.build(), Watch.listener(
+                response -> {
+                    this.chatKeyWatchFailureCount.set(0);
+                    response.getEvents().forEach(watchEvent -> {
+                        this.chatKeyRevision.accumulateAndGet(watchEvent.getKeyValue().getModRevision(), Math::max);
+                        this.dispatch(watchEvent);
+                    });
+                },
+                throwable -> {
+                    if (throwable instanceof CompactedException compactedException) {
+                        logger.error("watch on chat keys of cell '{}' missed the requests up to compacted revision {}", this.cellName, compactedException.getCompactedRevision());
+                        this.chatKeyRevision.accumulateAndGet(compactedException.getCompactedRevision() - 1, Math::max);
+                    } else {
+                        logger.error("watch on chat keys of cell '{}' failed, restarting it from revision {}", this.cellName, this.chatKeyRevision.get() + 1, throwable);
+                    }
+                    this.scheduleChatKeyWatchRestart();
+                }));
+    }
+
+    /**
+     * Schedules the restart of the failed watch on the chat keys, unless the server has been closed.
+     */
+    private synchronized void scheduleChatKeyWatchRestart() {
+        if (this.closed) {
+            return;
+        }
+
+        int failureCount = this.chatKeyWatchFailureCount.getAndIncrement();
+        long delayMillis = Math.min(WATCH_RETRY_MAX_MILLIS, WATCH_RETRY_BASE_MILLIS << Math.min(failureCount, 16));
+        this.scheduledExecutorService.schedule(this::restartChatKeyWatch, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replaces the failed watch on the chat keys with a new one, unless the server has been closed.
+     */
+    private synchronized void restartChatKeyWatch() {
+        if (this.closed) {
+            return;
+        }
+
+        if (this.watcher != null) {
+            this.watcher.close();
+        }
+        this.watcher = this.watchChatKeys();
+        logger.trace("watch on chat keys of cell '{}' restarted from revision {}", this.cellName, this.chatKeyRevision.get() + 1);
+    }
+
+    /**
+     * Starts accepting client connections, requests received from them are served by the same sessions of the chat
+     * keys. The session of a client is torn down as soon as its connection is lost.
+     *
+     * @param port port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void startSocketServer(int port) throws IOException {
+        if (this.chubbySocketServer != null) {
+            return;
+        }
+
+        this.chubbyAuthenticator.loadSigningKey().join();
+        this.chubbySocketServer = new ChubbySocketServer(port, this::dispatch, this::closeSessions);
+        this.chubbySocketServer.start();
+        System.out.println("Listening to client connections on port " + port);
+    }
+
+    /**
+     * Dispatches a login or a batch of requests received on a chat key to the session of the user that sent it.
+     *
+     * @param watchEvent the watch event of the user's chat key
+     */
+    private void dispatch(@NotNull WatchEvent watchEvent) {
+        if (watchEvent.getEventType() != WatchEvent.EventType.PUT) {
+            return;
+        }
+
+        String chatKey = watchEvent.getKeyValue().getKey().toString();
+        JsonObject jsonObject = ChubbyRequestDeserializer.parse(watchEvent.getKeyValue().getValue().toString());
+        if (ChubbyRequestDeserializer.isLoginRequest(jsonObject)) {
+            ChubbyLoginRequest chubbyLoginRequest = ChubbyRequestDeserializer.deserializeLoginRequest(jsonObject);
+            if (!chatKey.equals(getChatKey(this.cellName, chubbyLoginRequest.getUsername()))) {
+                logger.error("dropped login of '{}' sent on chat key '{}'", chubbyLoginRequest.getUsername(), chatKey);
+                return;
+            }
+
+            ByteSequence loginResponseKey = ByteSequence.from(getLoginResponseKey(this.cellName, chubbyLoginRequest.getUsername()).getBytes());
+            this.login(chubbyLoginRequest).thenCompose(chubbyLoginResponse -> this.client.getKVClient().put(loginResponseKey, ByteSequence.from(ChubbyRequestSerializer.serialize(chubbyLoginResponse).getBytes()))).exceptionally(throwable -> {
+                logger.error("failed to respond to login of '{}'", chubbyLoginRequest.getUsername(), throwable);
+                return null;
+            });
+            return;
+        }
+
+        ChubbyRequestBatch chubbyRequestBatch = ChubbyRequestDeserializer.deserializeBatch(jsonObject);
+
+        //a chat key carries the batches of its own user only
+        if (!chatKey.equals(getChatKey(this.cellName, chubbyRequestBatch.getUsername()))) {
+            logger.error("dropped batch of '{}' sent on chat key '{}'", chubbyRequestBatch.getUsername(), chatKey);
+            return;
+        }
+
+        this.dispatch(chubbyRequestBatch, () -> new ChubbySessionOutputStream(this.client.getKVClient(), ByteSequence.from(getResponseKey(this.cellName, chubbyRequestBatch.getUsername()).getBytes())));
+    }
+
+    /**
+     * Dispatches a login or a batch of requests received from a socket connection to the session of the user that
+     * sent it.
+     *
+     * @param chubbySocketConnection connection the batch was received from
+     * @param payload                serialized batch
+     */
+    private void dispatch(@NotNull ChubbySocketConnection chubbySocketConnection, @NotNull String payload) {
+        JsonObject jsonObject = ChubbyRequestDeserializer.parse(payload);
+        if (ChubbyRequestDeserializer.isLoginRequest(jsonObject)) {
+            ChubbySocketOutputStream chubbySocketOutputStream = new ChubbySocketOutputStream(chubbySocketConnection);
+            this.login(ChubbyRequestDeserializer.deserializeLoginRequest(jsonObject)).thenAccept(chubbyLoginResponse -> chubbySocketOutputStream.writeResponse(LOGIN_SEQUENCE_NUMBER, ChubbyRequestSerializer.serialize(chubbyLoginResponse)));
+            return;
+        }
+
+        ChubbyRequestBatch chubbyRequestBatch = ChubbyRequestDeserializer.deserializeBatch(jsonObject);
+        this.dispatch(chubbyRequestBatch, () -> new ChubbySocketOutputStream(chubbySocketConnection));
+    }
+
+    /**
+     * Logs a client in. Tokens and credentials are checked here only, the signing key of the cell never leaves the
+     * cell server.
+     *
+     * @param chubbyLoginRequest the login request of the client
+     * @return a CompletableFuture containing the session token issued, or the reason the login was refused
+     */
+    private CompletableFuture<ChubbyLoginResponse> login(@NotNull ChubbyLoginRequest chubbyLoginRequest) {
+        String username = chubbyLoginRequest.getUsername();
+
+        return this.chubbyAuthenticator.login(username, chubbyLoginRequest.getHashedPassword(), chubbyLoginRequest.getToken())
+                .thenApply(token -> new ChubbyLoginResponse(token, null))
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable;
+                    while (cause.getCause() != null && !(cause instanceof ChubbyAuthenticationException)) {
+                        cause = cause.getCause();
+                    }
+                    logger.error("refused login of '{}': {}", username, cause.getMessage());
+                    return new ChubbyLoginResponse(null, cause instanceof ChubbyAuthenticationException ? cause.getMessage() : "cannot authenticate");
+                });
+    }
+
+    /**
+     * Dispatches a batch of requests to the session of the user that sent it, opening the session if the batch starts
+     * it. Requests of the batch are processed in order and their responses are sent back as a single message. A batch
+     * without a valid session token of its user, or with requests of another user, is refused.
+     *
+     * @param chubbyRequestBatch   the received batch
+     * @param outputStreamSupplier supplies the output stream of the session, if a new one has to be opened
+     */
+    private void dispatch(@NotNull ChubbyRequestBatch chubbyRequestBatch, @NotNull Supplier<OutputStream> outputStreamSupplier) {
+        if (chubbyRequestBatch.size() == 0) {
+            return;
+        }
+
+        String username = chubbyRequestBatch.getUsername();
+        ChubbyRequest firstChubbyRequest = chubbyRequestBatch.getChubbyRequestList().getFirst();
+        logger.trace("received batch of {} request(s) up to sequence number '{}' from '{}'", chubbyRequestBatch.size(), chubbyRequestBatch.getLastSequenceNumber(), username);
+
+        try {
+            this.chubbyAuthenticator.verify(username, chubbyRequestBatch.getToken());
+        } catch (ChubbyAuthenticationException e) {
+            logger.error("refused batch up to sequence number '{}' of '{}': {}", chubbyRequestBatch.getLastSequenceNumber(), username, e.getMessage());
+            this.refuse(outputStreamSupplier.get(), chubbyRequestBatch.getLastSequenceNumber(), e.getMessage());
+            return;
+        }
+
+        //the token authenticates the user of the batch, none of its requests may act on behalf of another user
+        if (chubbyRequestBatch.getChubbyRequestList().stream().anyMatch(chubbyRequest -> !username.equals(chubbyRequest.getUsername()))) {
+            logger.error("refused batch up to sequence number '{}' of '{}': requests of another user", chubbyRequestBatch.getLastSequenceNumber(), username);
+            this.refuse(outputStreamSupplier.get(), chubbyRequestBatch.getLastSequenceNumber(), "requests of another user in the batch");
+            return;
+        }
+
+        CompletableFuture<ChubbySession> sessionFuture = this.sessionMap.compute(username, (sessionUsername, currentSessionFuture) -> {
+            if (currentSessionFuture == null) {
+                return this.openSession(sessionUsername, outputStreamSupplier.get());
+            }
+
+            //a client that restarts sends its requests from the beginning of the sequence, the previous session is torn
+            //down before the new one is opened
+            ChubbySession currentSession = currentSessionFuture.getNow(null);
+            if (currentSession != null && currentSession.isRestartedBy(firstChubbyRequest)) {
+                logger.warn("client '{}' started a new session, replacing the previous one", sessionUsername);
+                this.chubbyNamespace.removeSessionOutputStream(sessionUsername);
+                return this.chubbyNamespace.closeSession(sessionUsername, this.client, true).exceptionally(throwable -> {
+                    logger.error("failed to close previous session of '{}', its lease will expire", sessionUsername, throwable);
+                    return null;
+                }).thenCompose(v -> this.openSession(sessionUsername, outputStreamSupplier.get()));
+            }
+            return currentSessionFuture;
+        });
+
+        sessionFuture.whenComplete((chubbySession, throwable) -> {
+            if (throwable != null) {
+                logger.error("failed to open session of '{}'", username, throwable);
+                this.sessionMap.remove(username, sessionFuture);
+                return;
+            }
+
+            //read-only requests of the session overlap, the others are processed alone on the handle left by the previous ones
+            chubbySession.submit(chubbyRequestBatch, boundChubbyRequest -> this.chubbyRequestProcessor.processAsync(this.chubbyNamespace, boundChubbyRequest, this.client), chubbyMessage -> {
+            }, this.chubbyRequestProcessor::isReadOnly).thenAccept(chubbyMessageList -> {
+                this.write(chubbySession.getOutputStream(), chubbyRequestBatch.getLastSequenceNumber(), chubbyMessageList);
+
+                if (chubbyMessageList.stream().anyMatch(chubbyMessage -> chubbyMessage instanceof ChubbyNotification && MESSAGE_EXIT.equals(chubbyMessage.getMessage()))) {
+                    this.closeSession(username, sessionFuture);
+                }
+            }).exceptionally(batchThrowable -> {
+                logger.error("failed to respond to batch up to sequence number '{}' of '{}'", chubbyRequestBatch.getLastSequenceNumber(), username, batchThrowable);
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Tells the client that its batch was refused, then that its session is closed.
+     *
+     * @param outputStream   output stream of the client
+     * @param sequenceNumber sequence number of the last request of the refused batch
+     * @param reason         why the batch was refused
+     */
+    private void refuse(@NotNull OutputStream outputStream, long sequenceNumber, @NotNull String reason) {
+        try {
+            this.write(outputStream, sequenceNumber, List.of(new ChubbyError(this.chubbyNamespace.getRoot(), this.chubbyNamespace.getRoot(), "authentication failed, " + reason)));
+            outputStream.write(MESSAGE_SESSION_CLOSED.getBytes());
+        } catch (IOException | RuntimeException e) {
+            logger.error("failed to notify the refused batch", e);
+        }
+    }
+
+    /**
+     * Opens a new session for the specified user, acquiring the initial shared lock on root node.
+     *
+     * @param username     username
+     * @param outputStream output stream where responses and notifications of the session are sent
+     * @return a CompletableFuture containing the session
+     */
+    private CompletableFuture<ChubbySession> openSession(@NotNull String username, @NotNull OutputStream outputStream) {
+        logger.debug("opening session of '{}' on cell '{}'", username, this.cellName);
+
+        this.chubbyNamespace.registerSessionOutputStream(username, outputStream);
+
+        try {
+            return this.chubbyNamespace.createDefaultHandle(username, this.client).thenApply(initialChubbyHandleResponse -> {
+                this.write(outputStream, new ChubbyNotification(this.chubbyNamespace.getRoot(), ChubbyPath.of(this.chubbyNamespace.getRoot()).toByteSequence(), "acquired initial shared lock on root '" + this.chubbyNamespace.getRoot() + "' node"));
+                return new ChubbySession(username, initialChubbyHandleResponse, outputStream);
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Closes the session of the specified user, once its handle has been released.
+     *
+     * @param username      username
+     * @param sessionFuture the session to be closed
+     */
+    private void closeSession(@NotNull String username, @NotNull CompletableFuture<ChubbySession> sessionFuture) {
+        sessionFuture.thenAccept(chubbySession -> {
+            try {
+                chubbySession.getOutputStream().write(MESSAGE_SESSION_CLOSED.getBytes());
+            } catch (IOException e) {
+                logger.error("failed to notify session closing to '{}'", username, e);
+            }
+        });
+
+        if (this.sessionMap.remove(username, sessionFuture)) {
+            this.chubbyNamespace.removeSessionOutputStream(username);
+            logger.debug("closed session of '{}' on cell '{}'", username, this.cellName);
+        }
+    }
+
+    /**
+     * Tears down the sessions served over a connection that was closed, the client is considered failed.
+     *
+     * @param chubbySocketConnection the closed connection
+     */
+    private void closeSessions(@NotNull ChubbySocketConnection chubbySocketConnection) {
+        logger.debug("connection '{}' closed", chubbySocketConnection);
+
+        this.sessionMap.forEach((username, sessionFuture) -> sessionFuture.thenAccept(chubbySession -> {
+            if (chubbySession.getOutputStream() instanceof ChubbySocketOutputStream chubbySocketOutputStream && chubbySocketOutputStream.getChubbySocketConnection() == chubbySocketConnection) {
+                this.closeFailedSession(username, sessionFuture, "connection lost");
+            }
+        }));
+    }
+
+    /**
+     * Tears down the sessions served over chat keys that received no batch within the idle timeout and have no request
+     * being processed, their clients are considered failed.
+     */
+    private void closeIdleSessions() {
+        long idleSinceMillis = System.currentTimeMillis() - DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+        this.sessionMap.forEach((username, sessionFuture) -> {
+            ChubbySession chubbySession = sessionFuture.getNow(null);
+            if (chubbySession != null && chubbySession.getOutputStream() instanceof ChubbySessionOutputStream && chubbySession.getLastActivityMillis() < idleSinceMillis && chubbySession.getOutstandingRequestCount() == 0) {
+                this.closeFailedSession(username, sessionFuture, "idle timeout");
+            }
+        });
+    }
+
+    /**
+     * Tears down the session of a failed client: its locks and its ephemeral nodes are released at once and its lease
+     * is no longer renewed, the lock-delay of its exclusive locks is recorded.
+     *
+     * @param username      username
+     * @param sessionFuture the session to be torn down
+     * @param reason        why the client is considered failed
+     */
+    private void closeFailedSession(@NotNull String username, @NotNull CompletableFuture<ChubbySession> sessionFuture, @NotNull String reason) {
+        if (!this.sessionMap.remove(username, sessionFuture)) {
+            return;
+        }
+
+        logger.warn("closing session of '{}' on cell '{}', {}", username, this.cellName, reason);
+        this.chubbyNamespace.removeSessionOutputStream(username);
+        this.chubbyNamespace.closeSession(username, this.client, true).exceptionally(throwable -> {
+            logger.error("failed to close session of '{}', its lease will expire", username, throwable);
+            return null;
+        });
+    }
+
+    /**
+     * Writes the formatted message into the output stream of a session.
+     *
+     * @param outputStream  output stream of the session
+     * @param chubbyMessage message to be written
+     */
+    private void write(@NotNull OutputStream outputStream, @NotNull ChubbyMessage chubbyMessage) {
+        this.write(outputStream, chubbyMessage.getSequenceNumber(), List.of(chubbyMessage));
+    }
+
+    /**
+     * Writes the formatted messages of a batch into the output stream of a session, as a single message.
+     *
+     * @param outputStream      output stream of the session
+     * @param sequenceNumber    sequence number of the last request of the batch
+     * @param chubbyMessageList messages to be written, in order
+     */
+    private void write(@NotNull OutputStream outputStream, long sequenceNumber, @NotNull List<ChubbyMessage> chubbyMessageList) {
+        //socket clients print their own requests, only chat-key clients receive them back
+        boolean socketOutputStream = outputStream instanceof ChubbySocketOutputStream;
+        StringBuilder formattedMessageBuilder = new StringBuilder();
+        chubbyMessageList.stream()
+                .filter(chubbyMessage -> !(socketOutputStream && chubbyMessage instanceof ChubbyRequest))
+                .forEach(chubbyMessage -> formattedMessageBuilder.append(chubbyMessage.getFormattedMessage()));
+
+        //responses sent over a socket carry the sequence number of their batch, even if there is nothing to print
+        if (outputStream instanceof ChubbySocketOutputStream chubbySocketOutputStream) {
+            chubbySocketOutputStream.writeResponse(sequenceNumber, formattedMessageBuilder.toString());
+            return;
+        }
+        if (formattedMessageBuilder.isEmpty()) {
+            return;
+        }
+
+        try {
+            outputStream.write(formattedMessageBuilder.toString().getBytes());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stops watching the chat keys of the cell and accepting client connections, then tears down the sessions still
+     * open and stops the background tasks of the namespace.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.scheduledExecutorService.shutdownNow();
+        if (this.watcher != null) {
+            this.watcher.close();
+            this.watcher = null;
+        }
+        if (this.chubbySocketServer != null) {
+            this.chubbySocketServer.close();
+            this.chubbySocketServer = null;
+        }
+
+        //the locks of the open sessions are released now, instead of once their leases expire
+        try {
+            this.chubbyNamespace.closeAllSessions(this.client).get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.error("failed to close the sessions of cell '{}', their leases will expire", this.cellName, e);
+        }
+        this.chubbyNamespace.close();
+        this.closedLatch.countDown();
+    }
+
+    /**
+     * Waits until the server is closed.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        this.closedLatch.await();
+    }
+
+    public int getSessionCount() {
+        return this.sessionMap.size();
+    }
+}
@@ -0,0 +1,133 @@
+package chubby.server;
+
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ChubbyChildCountReconciler implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+    public static final long DEFAULT_INTERVAL_MILLIS = 500;
+    private final ChubbyNamespace chubbyNamespace;
+    private final Client client;
+    private final ByteSequence cellPrefix;
+    private final Set<String> pendingParentKeySet;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private Watch.Watcher watcher;
+
+    /**
+     * Create a new ChubbyChildCountReconciler. Ephemeral nodes are deleted by the kv store when the lease of their
+     * session expires, with no request going through the cell: the reconciler watches the deletions of ephemeral
+     * nodes and fixes the child count of their parents in the background. The parents of the nodes deleted between two
+     * runs are collected in a set, so that each parent is counted once however many of its children were deleted.
+     *
+     * @param chubbyNamespace      the namespace of the cell
+     * @param client               etcd client
+     * @param cellNameAbsolutePath the absolute path of the cell, used as watch prefix
+     * @param intervalMillis       the time between two runs
+     */
+    public ChubbyChildCountReconciler(@NotNull ChubbyNamespace chubbyNamespace, @NotNull Client client, @NotNull Path cellNameAbsolutePath, long intervalMillis) {
+        this.chubbyNamespace = chubbyNamespace;
+        this.client = client;
+        this.cellPrefix = ChubbyPath.of(cellNameAbsolutePath).toByteSequence();
+        this.pendingParentKeySet = ConcurrentHashMap.newKeySet();
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chubby_child_count_reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.watcher = client.getWatchClient().watch(this.cellPrefix, WatchOption.newBuilder().withPrefix(this.cellPrefix).withPrevKV(true).build(), Watch.listener(this::onWatchResponse, throwable -> logger.error("error while watching ephemeral node deletions", throwable)));
+        this.scheduledExecutorService.scheduleWithFixedDelay(this::reconcilePending, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Collects the parents of the deleted ephemeral nodes, recognized by the lease of their previous value.
+     *
+     * @param watchResponse the watch response
+     */
+    private void onWatchResponse(@NotNull WatchResponse watchResponse) {
+        for (WatchEvent watchEvent : watchResponse.getEvents()) {
+            KeyValue prevKeyValue = watchEvent.getPrevKV();
+            if (!watchEvent.getEventType().equals(WatchEvent.EventType.DELETE) || prevKeyValue == null || prevKeyValue.getLease() == 0) {
+                continue;
+            }
+
+            ChubbyPath parentPath = ChubbyPath.of(watchEvent.getKeyValue().getKey()).getParent();
+            if (parentPath != null) {
+                logger.trace("ephemeral node '{}' deleted, scheduling child count of '{}'", watchEvent.getKeyValue().getKey(), parentPath);
+                this.pendingParentKeySet.add(parentPath.toString());
+            }
+        }
+    }
+
+    private void reconcilePending() {
+        if (this.pendingParentKeySet.isEmpty()) {
+            return;
+        }
+
+        List<String> parentKeyList = new ArrayList<>(this.pendingParentKeySet);
+        parentKeyList.forEach(this.pendingParentKeySet::remove);
+
+        logger.trace("reconciling child count of {} node(s)", parentKeyList.size());
+        parentKeyList.forEach(parentKey -> this.reconcile(parentKey).exceptionally(throwable -> {
+            logger.error("cannot reconcile child count of '{}', retrying on next run", parentKey, throwable);
+            this.pendingParentKeySet.add(parentKey);
+            return null;
+        }));
+    }
+
+    /**
+     * Counts the children of a node and updates its child count if it changed, guarded by the revision the node was
+     * read at. If the updates of the node keep conflicting, it's reconciled again on the next run.
+     *
+     * @param parentKey the absolute path of the node
+     * @return a CompletableFuture completed once the child count is up to date
+     */
+    private CompletableFuture<Void> reconcile(@NotNull String parentKey) {
+        //the parent may have been deleted in the meantime, nothing is written then
+        return this.chubbyNamespace.getNodeUpdater().updateNodeAsync(this.client.getKVClient(), ChubbyPath.of(parentKey).toByteSequence(), parentChubbyNodeValue -> this.chubbyNamespace.getLs(this.client, ChubbyPath.of(parentKey), 1).thenApply(list -> {
+            int childNodeNumber = list.size();
+            if (parentChubbyNodeValue.getMetadata().getChildNodeNumber() == childNodeNumber) {
+                return null;
+            }
+
+            logger.debug("setting child count of '{}' from {} to {}", parentKey, parentChubbyNodeValue.getMetadata().getChildNodeNumber(), childNodeNumber);
+            parentChubbyNodeValue.getMetadata().setChildNodeNumber(childNodeNumber);
+            return parentChubbyNodeValue;
+        })).thenAccept(updated -> logger.trace("child count of '{}' reconciled: '{}'", parentKey, updated));
+    }
+
+    /**
+     * Stops watching the deletions of ephemeral nodes.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.watcher != null) {
+            this.watcher.close();
+            this.watcher = null;
+        }
+        this.scheduledExecutorService.shutdown();
+    }
+
+    public int getPendingCount() {
+        return this.pendingParentKeySet.size();
+    }
+}
@@ -0,0 +1,310 @@
+package chubby.server;
+
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.common.exception.ErrorCode;
+import io.etcd.jetcd.common.exception.EtcdException;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChubbyKeepAliveScheduler implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final double RENEWALS_PER_TTL = 3;
+    private static final double JITTER_RATIO = 0.1;
+    private static final double RTT_SMOOTHING_FACTOR = 0.125;
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+    private final Client client;
+    private final ChubbyTimerWheel<ScheduledRenewal> chubbyTimerWheel;
+    private final Map<Long, ScheduledRenewal> scheduledRenewalMap;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final AtomicLong renewalCount;
+    private final AtomicLong failedRenewalCount;
+    private final AtomicLong retriedRenewalCount;
+    private final AtomicLong totalRenewalLagMillis;
+    private final AtomicLong maxRenewalLagMillis;
+    private final AtomicLong minExpiryMarginMillis;
+    private volatile double rttEstimateMillis;
+
+    /**
+     * Create a new ChubbyKeepAliveScheduler, renewing the leases of every session of a cell on a shared timer wheel
+     * instead of keeping a keep-alive stream open for each lease.
+     *
+     * @param client     etcd client
+     * @param tickMillis the resolution of the timer wheel
+     * @param wheelSize  the number of buckets of the timer wheel
+     */
+    public ChubbyKeepAliveScheduler(@NotNull Client client, long tickMillis, int wheelSize) {
+        this.client = client;
+        this.chubbyTimerWheel = new ChubbyTimerWheel<>(tickMillis, wheelSize, nowMillis());
+        this.scheduledRenewalMap = new ConcurrentHashMap<>();
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chubby_keep_alive_scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.renewalCount = new AtomicLong();
+        this.failedRenewalCount = new AtomicLong();
+        this.retriedRenewalCount = new AtomicLong();
+        this.totalRenewalLagMillis = new AtomicLong();
+        this.maxRenewalLagMillis = new AtomicLong();
+        this.minExpiryMarginMillis = new AtomicLong(Long.MAX_VALUE);
+        this.rttEstimateMillis = 0;
+
+        this.scheduledExecutorService.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts renewing the specified lease.
+     *
+     * @param chubbySessionLease the lease to be renewed
+     * @param ttlSeconds         the TTL the lease was granted with
+     */
+    public void register(@NotNull ChubbySessionLease chubbySessionLease, long ttlSeconds) {
+        long nowMillis = nowMillis();
+        ScheduledRenewal scheduledRenewal = new ScheduledRenewal(chubbySessionLease, nowMillis + TimeUnit.SECONDS.toMillis(ttlSeconds));
+        this.scheduledRenewalMap.put(chubbySessionLease.getLeaseId(), scheduledRenewal);
+        this.schedule(scheduledRenewal, ttlSeconds, nowMillis);
+        logger.trace("registered lease 'id={}' with 'ttl={}' seconds for renewal", chubbySessionLease.getLeaseId(), ttlSeconds);
+    }
+
+    /**
+     * Stops renewing the specified lease, its pending renewal is skipped once it expires.
+     *
+     * @param chubbySessionLease the lease not to be renewed anymore
+     */
+    public void unregister(@NotNull ChubbySessionLease chubbySessionLease) {
+        this.scheduledRenewalMap.remove(chubbySessionLease.getLeaseId());
+        logger.trace("unregistered lease 'id={}' from renewal", chubbySessionLease.getLeaseId());
+    }
+
+    /**
+     * Renews the leases whose renewal is due. Each lease is renewed with its own keep-alive request, the requests of the
+     * same tick are sent one after the other over the shared connection of the client, without waiting for each other.
+     */
+    private void tick() {
+        try {
+            long nowMillis = nowMillis();
+            List<ScheduledRenewal> dueRenewalList = this.chubbyTimerWheel.advance(nowMillis);
+
+            if (dueRenewalList.isEmpty()) {
+                return;
+            }
+
+            logger.trace("renewing {} lease(s)", dueRenewalList.size());
+            dueRenewalList.stream()
+                    .filter(scheduledRenewal -> this.scheduledRenewalMap.get(scheduledRenewal.getChubbySessionLease().getLeaseId()) == scheduledRenewal)
+                    .forEach(scheduledRenewal -> this.renew(scheduledRenewal, nowMillis));
+        } catch (RuntimeException e) {
+            logger.error("error while renewing leases", e);
+        }
+    }
+
+    /**
+     * Renews a single lease and schedules its next renewal according to the TTL returned by the cluster.
+     *
+     * @param scheduledRenewal the renewal to be sent
+     * @param sentMillis       the time the renewal is sent
+     */
+    private void renew(@NotNull ScheduledRenewal scheduledRenewal, long sentMillis) {
+        ChubbySessionLease chubbySessionLease = scheduledRenewal.getChubbySessionLease();
+
+        long renewalLagMillis = Math.max(0, sentMillis - scheduledRenewal.getDueMillis());
+        this.totalRenewalLagMillis.addAndGet(renewalLagMillis);
+        this.maxRenewalLagMillis.accumulateAndGet(renewalLagMillis, Math::max);
+        this.minExpiryMarginMillis.accumulateAndGet(scheduledRenewal.getExpiryMillis() - sentMillis, Math::min);
+
+        this.client.getLeaseClient().keepAliveOnce(chubbySessionLease.getLeaseId()).whenComplete((leaseKeepAliveResponse, throwable) -> {
+            long receivedMillis = nowMillis();
+
+            if (this.scheduledRenewalMap.get(chubbySessionLease.getLeaseId()) != scheduledRenewal) {
+                logger.trace("lease 'id={}' unregistered while renewing, skipping...", chubbySessionLease.getLeaseId());
+                return;
+            }
+
+            if (throwable != null) {
+                this.retryOrFail(scheduledRenewal, throwable, receivedMillis);
+                return;
+            }
+
+            this.renewalCount.incrementAndGet();
+            this.updateRttEstimate(receivedMillis - sentMillis);
+            chubbySessionLease.onNext(leaseKeepAliveResponse);
+
+            //a non-positive TTL means the lease expired before being renewed
+            if (leaseKeepAliveResponse.getTTL() <= 0) {
+                this.failedRenewalCount.incrementAndGet();
+                this.scheduledRenewalMap.remove(chubbySessionLease.getLeaseId());
+                chubbySessionLease.onCompleted();
+                return;
+            }
+
+            this.reschedule(scheduledRenewal, leaseKeepAliveResponse, receivedMillis);
+        });
+    }
+
+    /**
+     * Retries a failed renewal as long as the lease has time left before expiring, so that a transient error does not
+     * end the session: the renewal is tried again after a delay that shrinks with the time left, and the lease is
+     * given up only once its expiry is too close, or if the cluster no longer knows the lease.
+     *
+     * @param scheduledRenewal the failed renewal
+     * @param throwable        the cause of the failure
+     * @param nowMillis        the current time
+     */
+    private void retryOrFail(@NotNull ScheduledRenewal scheduledRenewal, @NotNull Throwable throwable, long nowMillis) {
+        ChubbySessionLease chubbySessionLease = scheduledRenewal.getChubbySessionLease();
+        long remainingMillis = scheduledRenewal.getExpiryMillis() - nowMillis - (long) this.rttEstimateMillis;
+        long retryDelayMillis = Math.max(this.chubbyTimerWheel.getTickMillis(), Math.min(MAX_RETRY_DELAY_MILLIS, remainingMillis / 4));
+
+        if (!isLeaseNotFound(throwable) && retryDelayMillis < remainingMillis) {
+            this.retriedRenewalCount.incrementAndGet();
+            logger.warn("renewal of lease 'id={}' failed with '{}', retrying in {} ms, {} ms left before expiry", chubbySessionLease.getLeaseId(), throwable.getMessage(), retryDelayMillis, remainingMillis);
+            scheduledRenewal.setDueMillis(nowMillis + retryDelayMillis);
+            this.chubbyTimerWheel.schedule(scheduledRenewal, retryDelayMillis, nowMillis);
+            return;
+        }
+
+        this.failedRenewalCount.incrementAndGet();
+        this.scheduledRenewalMap.remove(chubbySessionLease.getLeaseId());
+        chubbySessionLease.onError(throwable);
+    }
+
+    /**
+     * Checks whether a renewal failed because the lease no longer exists, retrying it would be pointless.
+     *
+     * @param throwable the cause of the failure
+     * @return true if the lease was not found by the cluster
+     */
+    private static boolean isLeaseNotFound(@NotNull Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof EtcdException etcdException && etcdException.getErrorCode() == ErrorCode.NOT_FOUND;
+    }
+
+    private void reschedule(@NotNull ScheduledRenewal scheduledRenewal, @NotNull LeaseKeepAliveResponse leaseKeepAliveResponse, long receivedMillis) {
+        ScheduledRenewal nextScheduledRenewal = new ScheduledRenewal(scheduledRenewal.getChubbySessionLease(), receivedMillis + TimeUnit.SECONDS.toMillis(leaseKeepAliveResponse.getTTL()));
+
+        if (this.scheduledRenewalMap.replace(scheduledRenewal.getChubbySessionLease().getLeaseId(), scheduledRenewal, nextScheduledRenewal)) {
+            this.schedule(nextScheduledRenewal, leaseKeepAliveResponse.getTTL(), receivedMillis);
+        }
+    }
+
+    /**
+     * Schedules a renewal a fraction of the TTL ahead, spread by a random jitter so that leases granted together are
+     * not renewed together, and anticipated by the round trip time observed so far.
+     *
+     * @param scheduledRenewal the renewal to be scheduled
+     * @param ttlSeconds       the TTL of the lease
+     * @param nowMillis        the current time
+     */
+    private void schedule(@NotNull ScheduledRenewal scheduledRenewal, long ttlSeconds, long nowMillis) {
+        double jitter = 1 + ThreadLocalRandom.current().nextDouble(-JITTER_RATIO, JITTER_RATIO);
+        long delayMillis = (long) (TimeUnit.SECONDS.toMillis(ttlSeconds) / RENEWALS_PER_TTL * jitter - 2 * this.rttEstimateMillis);
+        delayMillis = Math.max(this.chubbyTimerWheel.getTickMillis(), delayMillis);
+
+        scheduledRenewal.setDueMillis(nowMillis + delayMillis);
+        this.chubbyTimerWheel.schedule(scheduledRenewal, delayMillis, nowMillis);
+    }
+
+    private void updateRttEstimate(long rttSampleMillis) {
+        this.rttEstimateMillis = this.rttEstimateMillis == 0 ? rttSampleMillis : (1 - RTT_SMOOTHING_FACTOR) * this.rttEstimateMillis + RTT_SMOOTHING_FACTOR * rttSampleMillis;
+    }
+
+    /**
+     * Stops renewing every lease.
+     */
+    @Override
+    public void close() {
+        this.scheduledRenewalMap.clear();
+        this.scheduledExecutorService.shutdown();
+    }
+
+    public int getRegisteredLeaseCount() {
+        return this.scheduledRenewalMap.size();
+    }
+
+    public long getRenewalCount() {
+        return this.renewalCount.get();
+    }
+
+    public long getFailedRenewalCount() {
+        return this.failedRenewalCount.get();
+    }
+
+    public long getRetriedRenewalCount() {
+        return this.retriedRenewalCount.get();
+    }
+
+    /**
+     * Returns the average delay between the time a renewal was due and the time it was sent.
+     *
+     * @return the average renewal lag in milliseconds
+     */
+    public double getAverageRenewalLagMillis() {
+        long renewals = this.renewalCount.get() + this.failedRenewalCount.get();
+        return renewals == 0 ? 0 : (double) this.totalRenewalLagMillis.get() / renewals;
+    }
+
+    public long getMaxRenewalLagMillis() {
+        return this.maxRenewalLagMillis.get();
+    }
+
+    /**
+     * Returns the shortest time left before expiry observed when a lease was renewed.
+     *
+     * @return the minimum expiry margin in milliseconds, Long.MAX_VALUE if no lease was renewed yet
+     */
+    public long getMinExpiryMarginMillis() {
+        return this.minExpiryMarginMillis.get();
+    }
+
+    public double getRttEstimateMillis() {
+        return this.rttEstimateMillis;
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static class ScheduledRenewal {
+        private final ChubbySessionLease chubbySessionLease;
+        private final long expiryMillis;
+        private long dueMillis;
+
+        private ScheduledRenewal(ChubbySessionLease chubbySessionLease, long expiryMillis) {
+            this.chubbySessionLease = chubbySessionLease;
+            this.expiryMillis = expiryMillis;
+        }
+
+        public ChubbySessionLease getChubbySessionLease() {
+            return this.chubbySessionLease;
+        }
+
+        public long getExpiryMillis() {
+            return this.expiryMillis;
+        }
+
+        public long getDueMillis() {
+            return this.dueMillis;
+        }
+
+        public void setDueMillis(long dueMillis) {
+            this.dueMillis = dueMillis;
+        }
+    }
+}
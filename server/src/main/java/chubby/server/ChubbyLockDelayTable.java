@@ -0,0 +1,69 @@
+package chubby.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class ChubbyLockDelayTable {
+    private final Map<String, Long> lockDelayDeadlineMap;
+
+    /**
+     * Create a new ChubbyLockDelayTable. It keeps the lock-delay windows of the nodes whose exclusive holder failed,
+     * during which no other client may acquire the lock. Windows are only recorded when a lock is lost, so the table
+     * is usually empty and checking it costs a single lookup.
+     */
+    public ChubbyLockDelayTable() {
+        this.lockDelayDeadlineMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records the lock-delay window of a node whose lock was lost. A window already recorded is only extended.
+     *
+     * @param absolutePath     absolute path of the node
+     * @param lockDelaySeconds the lock-delay of the lost lock
+     */
+    public void record(@NotNull String absolutePath, int lockDelaySeconds) {
+        this.record(absolutePath, lockDelaySeconds, nowMillis());
+    }
+
+    protected void record(@NotNull String absolutePath, int lockDelaySeconds, long nowMillis) {
+        if (lockDelaySeconds <= 0) {
+            return;
+        }
+
+        this.lockDelayDeadlineMap.merge(absolutePath, nowMillis + TimeUnit.SECONDS.toMillis(lockDelaySeconds), Math::max);
+    }
+
+    /**
+     * Returns how long the lock of a node is still unavailable, removing the window once it's over.
+     *
+     * @param absolutePath absolute path of the node
+     * @return the time left in milliseconds, 0 if the lock is available
+     */
+    public long getRemainingMillis(@NotNull String absolutePath) {
+        return this.getRemainingMillis(absolutePath, nowMillis());
+    }
+
+    protected long getRemainingMillis(@NotNull String absolutePath, long nowMillis) {
+        Long deadlineMillis = this.lockDelayDeadlineMap.get(absolutePath);
+        if (deadlineMillis == null) {
+            return 0;
+        }
+
+        if (deadlineMillis <= nowMillis) {
+            this.lockDelayDeadlineMap.remove(absolutePath, deadlineMillis);
+            return 0;
+        }
+        return deadlineMillis - nowMillis;
+    }
+
+    public int size() {
+        return this.lockDelayDeadlineMap.size();
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -4,10 +4,7 @@ import chubby.control.handle.ChubbyHandleRequest;
 import chubby.control.handle.ChubbyHandleType;
 import chubby.control.handle.ChubbyEventType;
 import chubby.control.message.ChubbyNotification;
-import chubby.server.node.ChubbyNodeValue;
-import chubby.server.node.ChubbyNodeValueDeserializer;
-import chubby.server.node.ChubbyNodeValueSerializer;
-import io.etcd.jetcd.ByteSequence;
+import chubby.utils.ChubbyPath;
 import io.etcd.jetcd.Client;
 import io.etcd.jetcd.KV;
 import io.grpc.stub.StreamObserver;
@@ -31,16 +28,24 @@ public class ChubbyLockObserver<T> implements StreamObserver<T> {
     private final LocalDate localDate;
     private final LocalTime localTime;
     private final KV kvClient;
+    private final OutputStream outputStream;
+    private final ChubbyLockDelayTable chubbyLockDelayTable;
+    private final ChubbyNodeUpdater chubbyNodeUpdater;
+    private final short lockDelay;
 
-    public ChubbyLockObserver(String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, @NotNull Client client) {
+    public ChubbyLockObserver(String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, @NotNull Client client, @NotNull OutputStream outputStream, @NotNull ChubbyLockDelayTable chubbyLockDelayTable, @NotNull ChubbyNodeUpdater chubbyNodeUpdater) {
         this.username = username;
         this.path = Path.of(chubbyHandleRequest.getRequestedAbsolutePath());
         this.sendHandleInvalid = chubbyHandleRequest.getChubbyEventTypeList().contains(ChubbyEventType.HANDLE_INVALID);
         this.chubbyHandleType = chubbyHandleRequest.getChubbyHandleType();
+        this.chubbyLockDelayTable = chubbyLockDelayTable;
+        this.chubbyNodeUpdater = chubbyNodeUpdater;
+        this.lockDelay = chubbyHandleRequest.getChubbyLockDelay().getValue();
         this.logger.trace("subscription 'handle invalid' on node '{}' set '{}'", this.path, this.sendHandleInvalid);
         this.localDate = LocalDate.now();
         this.localTime = LocalTime.now().truncatedTo(ChronoUnit.SECONDS);
         this.kvClient = client.getKVClient();
+        this.outputStream = outputStream;
     }
 
     @Override
@@ -52,6 +57,8 @@ public class ChubbyLockObserver<T> implements StreamObserver<T> {
     public void onError(@NotNull Throwable t) {
         this.logger.error("error detected '{}', processing handle invalidation event and removing lock from node '{}'", t.getMessage(), this.path);
 
+        this.recordLockDelay();
+
         //if the handle has become invalid, send a notification to the client
         if (this.sendHandleInvalid) {
             this.logger.trace("detected handle invalid subscription, sending notification...");
@@ -68,6 +75,8 @@ public class ChubbyLockObserver<T> implements StreamObserver<T> {
     public void onCompleted() {
         this.logger.debug("observation completed, processing handle invalidation event and removing lock from node '{}'", this.path);
 
+        this.recordLockDelay();
+
         if (this.sendHandleInvalid) {
             this.logger.trace("detected handle invalid subscription, sending notification...");
             this.sendInvalidHandleNotification();
@@ -79,17 +88,27 @@ public class ChubbyLockObserver<T> implements StreamObserver<T> {
         this.deleteLockFromNode();
     }
 
+    /**
+     * Starts the lock-delay window of an exclusive lock lost with the session, so that no other client acquires it
+     * while requests sent by the failed holder may still be in flight. Shared locks are not delayed, since readers
+     * cannot modify the node.
+     */
+    void recordLockDelay() {
+        if (this.chubbyHandleType.equals(ChubbyHandleType.WRITE) || this.chubbyHandleType.equals(ChubbyHandleType.CHANGE_ACL)) {
+            this.logger.debug("exclusive lock on node '{}' lost, starting lock-delay of {} seconds", this.path, this.lockDelay);
+            this.chubbyLockDelayTable.record(ChubbyPath.of(this.path).toString(), this.lockDelay);
+        }
+    }
+
     /**
      * Send a chubby message notification to the client about the handle invalidation.
      */
     private void sendInvalidHandleNotification() {
         this.logger.debug("detected 'handle invalid' subscription, about to send chubby message notification");
 
-        OutputStream outputStream = System.out;
-
-        ChubbyNotification chubbyNotification = new ChubbyNotification(this.path, ByteSequence.from(this.path.toString().getBytes()), "handle over '" + this.path + "' node (obtained at '" + this.localDate + " " + this.localTime + "') has become invalid");
+        ChubbyNotification chubbyNotification = new ChubbyNotification(this.path, ChubbyPath.of(this.path).toByteSequence(), "handle over '" + this.path + "' node (obtained at '" + this.localDate + " " + this.localTime + "') has become invalid");
         try {
-            outputStream.write(chubbyNotification.getFormattedMessage().getBytes());
+            this.outputStream.write(chubbyNotification.getFormattedMessage().getBytes());
             this.logger.debug("successfully sent notification");
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -97,30 +116,40 @@ public class ChubbyLockObserver<T> implements StreamObserver<T> {
     }
 
     /**
-     * Delete the client from the node's lock map.
+     * Delete the client from the node's lock map. Shared locks are held by reader keys, deleted together with the
+     * session lease, so the node is left untouched.
      */
     private void deleteLockFromNode() {
-        //delete lock from node
-        this.kvClient.get(ByteSequence.from(this.path.toString().getBytes())).thenAccept(getResponse -> {
-            this.logger.debug("about to delete lock on node '{}'", this.path);
-
-            //if the node still exists, remove the lock
-            if (getResponse.getCount() > 0) {
-                this.logger.trace("the node still exists");
-
-                ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
-                this.logger.trace("current node value of node '{}' is '{}'", this.path, chubbyNodeValue.toString());
-
-                this.logger.trace("about to remove client lock '{}={}'", this.username, this.chubbyHandleType);
-                chubbyNodeValue.getMetadata().removeClientLock(this.username, this.chubbyHandleType);
-                this.logger.trace("current node value of node '{}' is '{}'", this.path, chubbyNodeValue.toString());
+        if (this.chubbyHandleType.equals(ChubbyHandleType.READ)) {
+            this.logger.trace("shared lock on node '{}' released with the session lease, skipping remove lock operation...", this.path);
+            return;
+        }
 
-                this.kvClient.put(ByteSequence.from(this.path.toString().getBytes()), ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes())).thenAccept(putResponse -> {
-                    this.logger.debug("successfully removed client lock");
-                });
+        //delete lock from node, if the node still exists
+        this.logger.debug("about to delete lock on node '{}'", this.path);
+        this.chubbyNodeUpdater.updateNode(this.kvClient, ChubbyPath.of(this.path).toByteSequence(), chubbyNodeValue -> {
+            this.logger.trace("current node value of node '{}' is '{}'", this.path, chubbyNodeValue.toString());
+
+            this.logger.trace("about to remove client lock '{}={}'", this.username, this.chubbyHandleType);
+            chubbyNodeValue.getMetadata().removeClientLock(this.username, this.chubbyHandleType);
+            this.logger.trace("current node value of node '{}' is '{}'", this.path, chubbyNodeValue.toString());
+            return chubbyNodeValue;
+        }).whenComplete((updated, t) -> {
+            if (t != null) {
+                this.logger.error("could not remove client lock from node '{}': {}", this.path, t.getMessage());
+            } else if (updated) {
+                this.logger.debug("successfully removed client lock");
             } else {
                 this.logger.debug("the node does not exist anymore, skipping remove lock operation...");
             }
         });
     }
-}
\ No newline at end of file
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public ChubbyHandleType getChubbyHandleType() {
+        return this.chubbyHandleType;
+    }
+}
@@ -0,0 +1,694 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleRequest;
+import chubby.server.node.ChubbyNodeValue;
+import chubby.server.node.ChubbyNodeValueDeserializer;
+import chubby.server.node.ChubbyNodeValueSerializer;
+import chubby.utils.ChubbyPath;
+import chubby.utils.exceptions.ChubbyLockException;
+import chubby.utils.exceptions.ChubbyNodeException;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.CmpTarget;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.DeleteOption;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ChubbyLockProcessor {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String HOLDER_KEY_PREFIX = "lock:";
+    private static final String WAITER_KEY_PREFIX = "lock_waiter:";
+    private static final String READER_KEY_PREFIX = "lock_reader:";
+    private static final String READER_GENERATION_KEY_PREFIX = "lock_reader_generation:";
+    //holder key, reader generation key and reader count of each node read by the same transaction
+    public static final int LOCK_STATE_OPS_PER_NODE = 3;
+    private static final int MAX_ATTEMPTS = 3;
+    //etcd accepts 128 operations per transaction by default
+    private static final int MAX_OPS_PER_TXN = 128;
+
+    /**
+     * Returns the key held by the client owning the exclusive lock of a node. Holder keys live outside the node
+     * keyspace, so they never show up among the children of a node.
+     *
+     * @param absolutePath absolute path of the node
+     * @return the holder key
+     */
+    public static String holderKeyOf(@NotNull String absolutePath) {
+        return HOLDER_KEY_PREFIX + absolutePath;
+    }
+
+    /**
+     * Returns the prefix of the keys of the clients waiting for the exclusive lock of a node. The length of the path
+     * is part of the prefix, so that the queue of a node never includes the waiters of another node.
+     *
+     * @param absolutePath absolute path of the node
+     * @return the waiter key prefix
+     */
+    public static String waiterKeyPrefixOf(@NotNull String absolutePath) {
+        return WAITER_KEY_PREFIX + absolutePath.length() + ":" + absolutePath + "/";
+    }
+
+    /**
+     * Returns the prefix of the keys of the clients holding the shared lock of a node, built like the waiter key
+     * prefix.
+     *
+     * @param absolutePath absolute path of the node
+     * @return the reader key prefix
+     */
+    public static String readerKeyPrefixOf(@NotNull String absolutePath) {
+        return READER_KEY_PREFIX + absolutePath.length() + ":" + absolutePath + "/";
+    }
+
+    /**
+     * Returns the key of a session holding the shared lock of a node. Each reader owns its key, so readers never
+     * write the same key and never conflict with each other.
+     *
+     * @param absolutePath absolute path of the node
+     * @param leaseId      ID of the session lease the reader key is bound to
+     * @return the reader key
+     */
+    public static String readerKeyOf(@NotNull String absolutePath, long leaseId) {
+        return readerKeyPrefixOf(absolutePath) + Long.toHexString(leaseId);
+    }
+
+    /**
+     * Returns the key rewritten by every reader acquiring the shared lock of a node. Reader keys are many and cannot be
+     * guarded by a single comparison, a transaction guarded on the revision of this key fails if a reader joined after
+     * the readers were counted.
+     *
+     * @param absolutePath absolute path of the node
+     * @return the reader generation key
+     */
+    public static String readerGenerationKeyOf(@NotNull String absolutePath) {
+        return READER_GENERATION_KEY_PREFIX + absolutePath;
+    }
+
+    /**
+     * Tries to acquire the shared lock on the requested node with a single transaction: if no client holds nor is
+     * acquiring the exclusive lock, the reader key is created with the session lease, the reader generation key is
+     * rewritten and the node is read at the same revision, otherwise nothing is written.
+     *
+     * @param client              etcd client
+     * @param username            username of the client acquiring the lock
+     * @param chubbyHandleRequest handle request from client
+     * @param leaseId             ID of the session lease the lock is bound to
+     * @return a CompletableFuture containing the value of the node, null if the exclusive lock is held by another
+     * client
+     */
+    public static CompletableFuture<ChubbyNodeValue> tryAcquireShared(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId) {
+        return tryAcquireSharedTxn(client, username, chubbyHandleRequest, leaseId).thenApply(txnResponse -> txnResponse.isSucceeded() ? nodeValueOf(txnResponse.getGetResponses().getFirst()) : null);
+    }
+
+    /**
+     * Acquires the shared lock on the requested node, waiting for the exclusive lock to be released if it's held by
+     * another client. Shared locks are not delayed by the lock-delay of a failed exclusive holder, since readers cannot
+     * modify the node.
+     *
+     * @param client              etcd client
+     * @param username            username of the client acquiring the lock
+     * @param chubbyHandleRequest handle request from client
+     * @param leaseId             ID of the session lease the lock is bound to
+     * @param lockWaitSeconds     how long to wait for the lock
+     * @return a CompletableFuture containing the value of the node, or failed with a ChubbyLockException on timeout
+     */
+    public static CompletableFuture<ChubbyNodeValue> acquireShared(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId, int lockWaitSeconds) {
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        AtomicBoolean settled = new AtomicBoolean(false);
+        AtomicReference<Watch.Watcher> watcherReference = new AtomicReference<>();
+
+        return awaitShared(client, username, chubbyHandleRequest, leaseId, settled, watcherReference).orTimeout(lockWaitSeconds, TimeUnit.SECONDS).exceptionallyCompose(throwable -> {
+            if (!(causeOf(throwable) instanceof TimeoutException)) {
+                return CompletableFuture.failedFuture(throwable);
+            }
+
+            //the lock was acquired just before the timeout expired, the node is read again
+            if (!settled.compareAndSet(false, true)) {
+                return client.getKVClient().get(ChubbyPath.of(absolutePath).toByteSequence()).thenApply(ChubbyLockProcessor::nodeValueOf);
+            }
+
+            logger.debug("timed out waiting for shared lock on '{}'", absolutePath);
+            closeWatcher(watcherReference);
+            return CompletableFuture.failedFuture(new RuntimeException(new ChubbyLockException("timed out after " + lockWaitSeconds + " seconds waiting for shared lock on '" + absolutePath + "'")));
+        });
+    }
+
+    /**
+     * Waits until the exclusive lock is released, then acquires the shared lock.
+     */
+    private static CompletableFuture<ChubbyNodeValue> awaitShared(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId, @NotNull AtomicBoolean settled, @NotNull AtomicReference<Watch.Watcher> watcherReference) {
+        if (settled.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+
+        return tryAcquireSharedTxn(client, username, chubbyHandleRequest, leaseId).<ChubbyNodeValue>thenCompose(txnResponse -> {
+            if (!txnResponse.isSucceeded()) {
+                logger.trace("'{}' watching the holder key of '{}' before acquiring shared lock", username, absolutePath);
+                return awaitDeletion(client, toByteSequence(holderKeyOf(absolutePath)), txnResponse.getHeader().getRevision(), watcherReference)
+                        .thenCompose(deleted -> awaitShared(client, username, chubbyHandleRequest, leaseId, settled, watcherReference));
+            }
+
+            //a lock acquired after the timeout is released at once, the client was told it failed
+            if (!settled.compareAndSet(false, true)) {
+                logger.debug("shared lock on '{}' acquired after timeout, releasing it", absolutePath);
+                return releaseShared(client, absolutePath, leaseId).<ChubbyNodeValue>thenApply(v -> null);
+            }
+            return CompletableFuture.completedFuture(nodeValueOf(txnResponse.getGetResponses().getFirst()));
+        });
+    }
+
+    private static CompletableFuture<TxnResponse> tryAcquireSharedTxn(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId) {
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        ByteSequence nodeKeyByteSequence = ChubbyPath.of(absolutePath).toByteSequence();
+        ByteSequence holderKeyByteSequence = toByteSequence(holderKeyOf(absolutePath));
+
+        logger.trace("about to acquire shared lock on '{}' for '{}'", absolutePath, username);
+        return client.getKVClient().txn()
+                .If(new Cmp(holderKeyByteSequence, Cmp.Op.EQUAL, CmpTarget.version(0)),
+                        new Cmp(nodeKeyByteSequence, Cmp.Op.GREATER, CmpTarget.version(0)))
+                .Then(Op.get(nodeKeyByteSequence, GetOption.DEFAULT),
+                        Op.put(toByteSequence(readerKeyOf(absolutePath, leaseId)), toByteSequence(username), PutOption.newBuilder().withLeaseId(leaseId).build()),
+                        //bound to the lease of the last reader, so that the key is gone once no session may still read
+                        Op.put(toByteSequence(readerGenerationKeyOf(absolutePath)), toByteSequence(username), PutOption.newBuilder().withLeaseId(leaseId).build()))
+                .Else(Op.get(nodeKeyByteSequence, GetOption.DEFAULT))
+                .commit()
+                .thenApply(txnResponse -> {
+                    if (!txnResponse.isSucceeded() && txnResponse.getGetResponses().getFirst().getCount() == 0) {
+                        throw new RuntimeException(new ChubbyNodeException("node '" + absolutePath + "' not found"));
+                    }
+
+                    logger.trace("shared lock on '{}' {}", absolutePath, txnResponse.isSucceeded() ? "acquired by '" + username + "'" : "blocked by exclusive lock");
+                    return txnResponse;
+                });
+    }
+
+    /**
+     * Releases a shared lock, deleting the reader key.
+     *
+     * @param client       etcd client
+     * @param absolutePath absolute path of the node
+     * @param leaseId      ID of the session lease the reader key is bound to
+     * @return a CompletableFuture completed once the reader key is deleted
+     */
+    public static CompletableFuture<Void> releaseShared(@NotNull Client client, @NotNull String absolutePath, long leaseId) {
+        return client.getKVClient().delete(toByteSequence(readerKeyOf(absolutePath, leaseId))).thenAccept(deleteResponse -> logger.trace("released shared lock on '{}'", absolutePath));
+    }
+
+    /**
+     * Counts the readers holding the shared lock of a node, without transferring their keys.
+     *
+     * @param client       etcd client
+     * @param absolutePath absolute path of the node
+     * @return a CompletableFuture containing the number of readers
+     */
+    public static CompletableFuture<Long> countReaders(@NotNull Client client, @NotNull String absolutePath) {
+        ByteSequence readerKeyPrefixByteSequence = toByteSequence(readerKeyPrefixOf(absolutePath));
+        return client.getKVClient().get(readerKeyPrefixByteSequence, readerCountGetOption(readerKeyPrefixByteSequence)).thenApply(GetResponse::getCount);
+    }
+
+    /**
+     * Counts the readers holding the shared lock of many nodes, with one transaction for each chunk of nodes.
+     *
+     * @param client           etcd client
+     * @param absolutePathList absolute paths of the nodes
+     * @return a CompletableFuture containing the number of readers of each node, in the same order
+     */
+    public static CompletableFuture<List<Long>> countReaders(@NotNull Client client, @NotNull List<String> absolutePathList) {
+        List<CompletableFuture<List<Long>>> chunkFutureList = new ArrayList<>();
+
+        for (int from = 0; from < absolutePathList.size(); from += MAX_OPS_PER_TXN) {
+            List<Op> countOpList = new ArrayList<>();
+            for (String absolutePath : absolutePathList.subList(from, Math.min(from + MAX_OPS_PER_TXN, absolutePathList.size()))) {
+                ByteSequence readerKeyPrefixByteSequence = toByteSequence(readerKeyPrefixOf(absolutePath));
+                countOpList.add(Op.get(readerKeyPrefixByteSequence, readerCountGetOption(readerKeyPrefixByteSequence)));
+            }
+
+            chunkFutureList.add(client.getKVClient().txn().Then(countOpList.toArray(new Op[0])).commit()
+                    .thenApply(txnResponse -> txnResponse.getGetResponses().stream().map(GetResponse::getCount).toList()));
+        }
+
+        return CompletableFuture.allOf(chunkFutureList.toArray(new CompletableFuture[0]))
+                .thenApply(v -> chunkFutureList.stream().flatMap(chunkFuture -> chunkFuture.join().stream()).toList());
+    }
+
+    /**
+     * Reads the lock state of many nodes: the holder key, the reader generation key and the number of readers of each
+     * node are read by the same transaction, with one transaction for each chunk of nodes.
+     *
+     * @param client           etcd client
+     * @param absolutePathList absolute paths of the nodes
+     * @return a CompletableFuture containing {@link #LOCK_STATE_OPS_PER_NODE} responses for each node, in the same order
+     */
+    public static CompletableFuture<List<GetResponse>> readLockStates(@NotNull Client client, @NotNull List<String> absolutePathList) {
+        List<CompletableFuture<List<GetResponse>>> chunkFutureList = new ArrayList<>();
+        int nodesPerTxn = MAX_OPS_PER_TXN / LOCK_STATE_OPS_PER_NODE;
+
+        for (int from = 0; from < absolutePathList.size(); from += nodesPerTxn) {
+            List<Op> readOpList = new ArrayList<>();
+            for (String absolutePath : absolutePathList.subList(from, Math.min(from + nodesPerTxn, absolutePathList.size()))) {
+                ByteSequence readerKeyPrefixByteSequence = toByteSequence(readerKeyPrefixOf(absolutePath));
+                readOpList.add(Op.get(toByteSequence(holderKeyOf(absolutePath)), GetOption.DEFAULT));
+                readOpList.add(Op.get(toByteSequence(readerGenerationKeyOf(absolutePath)), GetOption.DEFAULT));
+                readOpList.add(Op.get(readerKeyPrefixByteSequence, readerCountGetOption(readerKeyPrefixByteSequence)));
+            }
+
+            chunkFutureList.add(client.getKVClient().txn().Then(readOpList.toArray(new Op[0])).commit().thenApply(TxnResponse::getGetResponses));
+        }
+
+        return CompletableFuture.allOf(chunkFutureList.toArray(new CompletableFuture[0]))
+                .thenApply(v -> chunkFutureList.stream().flatMap(chunkFuture -> chunkFuture.join().stream()).toList());
+    }
+
+    /**
+     * Tries to acquire the exclusive lock on the requested node with a single transaction: if no client holds the
+     * lock, the holder key is created with the session lease and the client is added to the lock map of the node,
+     * otherwise nothing is written. Readers are counted by the same transaction: if any still holds the shared lock,
+     * the exclusive lock is given back at once. A lock held by another client is detected by the first read, with no
+     * further round trip.
+     *
+     * @param client              etcd client
+     * @param username            username of the client acquiring the lock
+     * @param chubbyHandleRequest handle request from client
+     * @param leaseId             ID of the session lease the lock is bound to
+     * @param nodeUpdater         updater removing the client from the lock map of the node if the lock is given back
+     * @return a CompletableFuture containing true if the lock was acquired, false if it's held by another client
+     */
+    public static CompletableFuture<Boolean> tryAcquire(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId, @NotNull ChubbyNodeUpdater nodeUpdater) {
+        return tryAcquire(client, username, chubbyHandleRequest, leaseId, null, 1).<Boolean>thenCompose(holderKeyAcquisition -> {
+            if (!holderKeyAcquisition.isAcquired()) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (holderKeyAcquisition.getReaderCount() == 0) {
+                return CompletableFuture.completedFuture(true);
+            }
+
+            logger.trace("exclusive lock on '{}' blocked by {} reader(s), giving it back", chubbyHandleRequest.getRequestedAbsolutePath(), holderKeyAcquisition.getReaderCount());
+            return release(client, username, chubbyHandleRequest, nodeUpdater).thenApply(v -> false);
+        });
+    }
+
+    private static CompletableFuture<HolderKeyAcquisition> tryAcquire(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId, @Nullable ByteSequence waiterKeyByteSequence, int attempt) {
+        KV kvClient = client.getKVClient();
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        ByteSequence nodeKeyByteSequence = ChubbyPath.of(absolutePath).toByteSequence();
+        ByteSequence holderKeyByteSequence = toByteSequence(holderKeyOf(absolutePath));
+        ByteSequence readerKeyPrefixByteSequence = toByteSequence(readerKeyPrefixOf(absolutePath));
+
+        //node and holder key are read at the same revision
+        return kvClient.txn()
+                .Then(Op.get(nodeKeyByteSequence, GetOption.DEFAULT), Op.get(holderKeyByteSequence, GetOption.DEFAULT))
+                .commit()
+                .<HolderKeyAcquisition>thenCompose(readTxnResponse -> {
+                    GetResponse nodeGetResponse = readTxnResponse.getGetResponses().get(0);
+                    GetResponse holderGetResponse = readTxnResponse.getGetResponses().get(1);
+
+                    if (holderGetResponse.getCount() > 0) {
+                        logger.trace("exclusive lock on '{}' already held by '{}'", absolutePath, holderGetResponse.getKvs().getFirst().getValue());
+                        return CompletableFuture.completedFuture(HolderKeyAcquisition.NOT_ACQUIRED);
+                    }
+                    if (nodeGetResponse.getCount() == 0) {
+                        throw new RuntimeException(new ChubbyNodeException("node '" + absolutePath + "' not found"));
+                    }
+
+                    KeyValue nodeKeyValue = nodeGetResponse.getKvs().getFirst();
+                    ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(nodeKeyValue.getValue().toString());
+                    chubbyNodeValue.getMetadata().addClientLock(username, chubbyHandleRequest.getChubbyHandleType());
+
+                    //once the holder key exists no reader can join, the readers counted here are the last ones
+                    List<Op> opList = new ArrayList<>();
+                    opList.add(Op.put(holderKeyByteSequence, toByteSequence(username), PutOption.newBuilder().withLeaseId(leaseId).build()));
+                    opList.add(Op.put(nodeKeyByteSequence, toByteSequence(ChubbyNodeValueSerializer.serialize(chubbyNodeValue)), ChubbyNamespace.putOptionOf(nodeKeyValue)));
+                    opList.add(Op.get(readerKeyPrefixByteSequence, readerCountGetOption(readerKeyPrefixByteSequence)));
+                    if (waiterKeyByteSequence != null) {
+                        opList.add(Op.delete(waiterKeyByteSequence, DeleteOption.DEFAULT));
+                    }
+
+                    logger.trace("about to acquire exclusive lock on '{}', attempt {}", absolutePath, attempt);
+                    return kvClient.txn()
+                            .If(new Cmp(holderKeyByteSequence, Cmp.Op.EQUAL, CmpTarget.version(0)),
+                                    new Cmp(nodeKeyByteSequence, Cmp.Op.EQUAL, CmpTarget.modRevision(nodeKeyValue.getModRevision())))
+                            .Then(opList.toArray(new Op[0]))
+                            .commit()
+                            .<HolderKeyAcquisition>thenCompose(txnResponse -> {
+                                if (txnResponse.isSucceeded()) {
+                                    long readerCount = txnResponse.getGetResponses().getFirst().getCount();
+                                    logger.trace("holder key of '{}' acquired by '{}' with {} reader(s) left", absolutePath, username, readerCount);
+                                    return CompletableFuture.completedFuture(new HolderKeyAcquisition(true, readerCount, txnResponse.getHeader().getRevision()));
+                                }
+
+                                //either the lock was taken or the node changed since it was read
+                                if (attempt < MAX_ATTEMPTS) {
+                                    return tryAcquire(client, username, chubbyHandleRequest, leaseId, waiterKeyByteSequence, attempt + 1);
+                                }
+                                return CompletableFuture.completedFuture(HolderKeyAcquisition.NOT_ACQUIRED);
+                            });
+                });
+    }
+
+    /**
+     * Acquires the exclusive lock on the requested node, waiting for it if it's held by another client or by readers.
+     * Waiters are queued by the revision of their waiter key and each one only watches its predecessor, the first one
+     * watches the holder key: when the lock is released only the next waiter is woken up, and it acquires the lock
+     * with no polling.
+     * With writer preference the first waiter takes the holder key while readers still hold the shared lock, so that no
+     * new reader can join, and waits for the readers to leave. Otherwise it waits for the readers to leave before
+     * taking the holder key, and new readers may keep it waiting.
+     *
+     * @param client              etcd client
+     * @param username            username of the client acquiring the lock
+     * @param chubbyHandleRequest handle request from client
+     * @param leaseId             ID of the session lease the lock and the waiter key are bound to
+     * @param lockWaitSeconds     how long to wait for the lock
+     * @param writerPreference    true if waiting writers block new readers
+     * @param lockDelayTable      table of the lock-delay windows, honoured before acquiring a lock released by a failed
+     *                            holder
+     * @param nodeUpdater         updater removing the client from the lock map of the node if the lock is given back
+     * @return a CompletableFuture completed once the lock is acquired, or failed with a ChubbyLockException on timeout
+     */
+    public static CompletableFuture<Void> acquire(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId, int lockWaitSeconds, boolean writerPreference, @NotNull ChubbyLockDelayTable lockDelayTable, @NotNull ChubbyNodeUpdater nodeUpdater) {
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        ByteSequence waiterKeyByteSequence = toByteSequence(waiterKeyPrefixOf(absolutePath) + Long.toHexString(leaseId));
+        AtomicBoolean settled = new AtomicBoolean(false);    //set by whichever comes first between acquisition and timeout
+        AtomicBoolean draining = new AtomicBoolean(false);   //set while the holder key is held waiting for the readers to leave
+        AtomicReference<Watch.Watcher> watcherReference = new AtomicReference<>();
+        LockWaitState lockWaitState = new LockWaitState(waiterKeyByteSequence, writerPreference, lockDelayTable, nodeUpdater, settled, draining, watcherReference);
+
+        logger.trace("queueing '{}' for exclusive lock on '{}'", username, absolutePath);
+        CompletableFuture<Void> acquireFuture = client.getKVClient().put(waiterKeyByteSequence, toByteSequence(username), PutOption.newBuilder().withLeaseId(leaseId).build())
+                .thenCompose(putResponse -> awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState));
+
+        return acquireFuture.orTimeout(lockWaitSeconds, TimeUnit.SECONDS).exceptionallyCompose(throwable -> {
+            if (!(causeOf(throwable) instanceof TimeoutException)) {
+                return CompletableFuture.failedFuture(throwable);
+            }
+
+            //the lock was acquired just before the timeout expired
+            if (!settled.compareAndSet(false, true)) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            //the waiter leaves the queue, the next one watches the previous waiter or the holder key from now on
+            logger.debug("timed out waiting for exclusive lock on '{}', leaving the queue", absolutePath);
+            closeWatcher(watcherReference);
+            CompletableFuture<Void> releaseFuture = draining.getAndSet(false) ? release(client, username, chubbyHandleRequest, nodeUpdater) : CompletableFuture.completedFuture(null);
+            return releaseFuture.thenCompose(v -> client.getKVClient().delete(waiterKeyByteSequence)).thenApply(deleteResponse -> {
+                throw new RuntimeException(new ChubbyLockException("timed out after " + lockWaitSeconds + " seconds waiting for exclusive lock on '" + absolutePath + "'"));
+            });
+        });
+    }
+
+    /**
+     * Waits until the waiter is the first of the queue and the lock is free, then acquires the lock.
+     */
+    private static CompletableFuture<Void> awaitTurn(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, long leaseId, @NotNull LockWaitState lockWaitState) {
+        if (lockWaitState.getSettled().get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        ByteSequence waiterKeyByteSequence = lockWaitState.getWaiterKeyByteSequence();
+        ByteSequence holderKeyByteSequence = toByteSequence(holderKeyOf(absolutePath));
+        ByteSequence waiterKeyPrefixByteSequence = toByteSequence(waiterKeyPrefixOf(absolutePath));
+        ByteSequence readerKeyPrefixByteSequence = toByteSequence(readerKeyPrefixOf(absolutePath));
+        GetOption waiterGetOption = GetOption.newBuilder()
+                .withPrefix(waiterKeyPrefixByteSequence)
+                .withSortField(GetOption.SortTarget.CREATE)
+                .withSortOrder(GetOption.SortOrder.ASCEND)
+                .withKeysOnly(true)
+                .build();
+
+        return client.getKVClient().txn()
+                .Then(Op.get(waiterKeyPrefixByteSequence, waiterGetOption),
+                        Op.get(holderKeyByteSequence, GetOption.DEFAULT),
+                        Op.get(readerKeyPrefixByteSequence, readerCountGetOption(readerKeyPrefixByteSequence)))
+                .commit()
+                .thenCompose(readTxnResponse -> {
+                    long revision = readTxnResponse.getHeader().getRevision();
+                    List<KeyValue> waiterList = readTxnResponse.getGetResponses().get(0).getKvs();
+                    boolean held = readTxnResponse.getGetResponses().get(1).getCount() > 0;
+                    long readerCount = readTxnResponse.getGetResponses().get(2).getCount();
+
+                    int position = 0;
+                    while (position < waiterList.size() && !waiterList.get(position).getKey().equals(waiterKeyByteSequence)) {
+                        position++;
+                    }
+
+                    if (position == waiterList.size()) {
+                        throw new RuntimeException(new ChubbyLockException("lost place in the queue of exclusive lock on '" + absolutePath + "', the session may have expired"));
+                    }
+
+                    if (position > 0) {
+                        logger.trace("'{}' is number {} in the queue of '{}', watching its predecessor", username, position, absolutePath);
+                        return awaitDeletion(client, waiterList.get(position - 1).getKey(), revision, lockWaitState.getWatcherReference())
+                                .thenCompose(deleted -> awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState));
+                    }
+
+                    if (held) {
+                        logger.trace("'{}' is first in the queue of '{}', watching the holder key", username, absolutePath);
+                        return awaitDeletion(client, holderKeyByteSequence, revision, lockWaitState.getWatcherReference())
+                                .thenCompose(deleted -> awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState));
+                    }
+
+                    //the holder the waiter watched may have failed
+                    long lockDelayMillis = lockWaitState.getLockDelayTable().getRemainingMillis(absolutePath);
+                    if (lockDelayMillis > 0) {
+                        logger.trace("'{}' is first in the queue of '{}', waiting {} ms for the lock-delay to be over", username, absolutePath, lockDelayMillis);
+                        return delay(lockDelayMillis).thenCompose(v -> awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState));
+                    }
+
+                    if (readerCount > 0 && !lockWaitState.isWriterPreference()) {
+                        logger.trace("'{}' is first in the queue of '{}', waiting for {} reader(s) to leave", username, absolutePath, readerCount);
+                        return awaitReadersDrained(client, readerKeyPrefixByteSequence, readerCount, revision, lockWaitState.getWatcherReference())
+                                .thenCompose(drained -> awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState));
+                    }
+
+                    //without writer preference the waiter key is kept until the readers are known to be gone, the holder key may have to be given back
+                    ByteSequence waiterKeyToDeleteByteSequence = lockWaitState.isWriterPreference() ? waiterKeyByteSequence : null;
+
+                    //a client that does not wait may take the lock first, in that case the holder key is watched again
+                    return tryAcquire(client, username, chubbyHandleRequest, leaseId, waiterKeyToDeleteByteSequence, 1).thenCompose(holderKeyAcquisition -> {
+                        if (!holderKeyAcquisition.isAcquired()) {
+                            return awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState);
+                        }
+
+                        if (holderKeyAcquisition.getReaderCount() == 0) {
+                            CompletableFuture<Void> leaveQueueFuture = waiterKeyToDeleteByteSequence == null ? client.getKVClient().delete(waiterKeyByteSequence).<Void>thenApply(deleteResponse -> null) : CompletableFuture.completedFuture(null);
+                            return leaveQueueFuture.thenCompose(v -> settle(client, username, chubbyHandleRequest, lockWaitState, true));
+                        }
+
+                        //a reader joined between the read and the acquisition
+                        if (!lockWaitState.isWriterPreference()) {
+                            logger.trace("exclusive lock on '{}' blocked by {} reader(s), giving it back", absolutePath, holderKeyAcquisition.getReaderCount());
+                            return release(client, username, chubbyHandleRequest, lockWaitState.getNodeUpdater()).thenCompose(v -> awaitTurn(client, username, chubbyHandleRequest, leaseId, lockWaitState));
+                        }
+
+                        //no new reader can join while the holder key is held, the ones left are waited for
+                        logger.trace("'{}' holds the holder key of '{}', waiting for {} reader(s) to leave", username, absolutePath, holderKeyAcquisition.getReaderCount());
+                        lockWaitState.getDraining().set(true);
+                        if (lockWaitState.getSettled().get()) {
+                            return settle(client, username, chubbyHandleRequest, lockWaitState, lockWaitState.getDraining().getAndSet(false));
+                        }
+                        return awaitReadersDrained(client, readerKeyPrefixByteSequence, holderKeyAcquisition.getReaderCount(), holderKeyAcquisition.getRevision(), lockWaitState.getWatcherReference())
+                                .thenCompose(drained -> settle(client, username, chubbyHandleRequest, lockWaitState, lockWaitState.getDraining().getAndSet(false)));
+                    });
+                });
+    }
+
+    /**
+     * Completes an acquisition, unless the timeout expired first: in that case the lock is released at once, since the
+     * client was told it failed. A lock acquired while draining the readers is released either here or by the timeout,
+     * whichever clears the draining flag first.
+     */
+    private static CompletableFuture<Void> settle(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, @NotNull LockWaitState lockWaitState, boolean releaseOnTimeout) {
+        if (lockWaitState.getSettled().compareAndSet(false, true) || !releaseOnTimeout) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        logger.debug("exclusive lock on '{}' acquired after timeout, releasing it", chubbyHandleRequest.getRequestedAbsolutePath());
+        return release(client, username, chubbyHandleRequest, lockWaitState.getNodeUpdater());
+    }
+
+    /**
+     * Releases an exclusive lock, deleting the holder key and removing the client from the lock map of the node.
+     */
+    private static CompletableFuture<Void> release(@NotNull Client client, String username, @NotNull ChubbyHandleRequest chubbyHandleRequest, @NotNull ChubbyNodeUpdater nodeUpdater) {
+        KV kvClient = client.getKVClient();
+        String absolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        ByteSequence nodeKeyByteSequence = ChubbyPath.of(absolutePath).toByteSequence();
+
+        return kvClient.delete(toByteSequence(holderKeyOf(absolutePath))).thenCompose(deleteResponse -> nodeUpdater.updateNode(kvClient, nodeKeyByteSequence, chubbyNodeValue -> {
+            chubbyNodeValue.getMetadata().removeClientLock(username, chubbyHandleRequest.getChubbyHandleType());
+            return chubbyNodeValue;
+        })).thenAccept(updated -> logger.trace("released exclusive lock on '{}'", absolutePath));
+    }
+
+    /**
+     * Waits for the readers of a node to leave. The readers counted at the specified revision are tracked through the
+     * events of their keys, so that no key has to be read again however many readers there are: a created key adds a
+     * reader, a deleted one removes it.
+     */
+    private static CompletableFuture<Void> awaitReadersDrained(@NotNull Client client, @NotNull ByteSequence readerKeyPrefixByteSequence, long readerCount, long revision, @NotNull AtomicReference<Watch.Watcher> watcherReference) {
+        CompletableFuture<Void> drainedFuture = new CompletableFuture<>();
+        AtomicLong remainingReaderCount = new AtomicLong(readerCount);
+
+        Watch.Listener listener = Watch.listener(watchResponse -> {
+            for (WatchEvent watchEvent : watchResponse.getEvents()) {
+                if (watchEvent.getEventType().equals(WatchEvent.EventType.DELETE)) {
+                    remainingReaderCount.decrementAndGet();
+                } else if (watchEvent.getEventType().equals(WatchEvent.EventType.PUT) && watchEvent.getKeyValue().getVersion() == 1) {
+                    remainingReaderCount.incrementAndGet();
+                }
+            }
+
+            if (remainingReaderCount.get() <= 0) {
+                drainedFuture.complete(null);
+            }
+        }, drainedFuture::completeExceptionally);
+
+        watcherReference.set(client.getWatchClient().watch(readerKeyPrefixByteSequence, WatchOption.newBuilder().withPrefix(readerKeyPrefixByteSequence).withRevision(revision + 1).build(), listener));
+        return drainedFuture.whenComplete((drained, throwable) -> closeWatcher(watcherReference));
+    }
+
+    /**
+     * Waits for the deletion of a key, starting from the revision following the one it was read at, so that a deletion
+     * happened in the meantime is not missed.
+     */
+    private static CompletableFuture<Void> awaitDeletion(@NotNull Client client, @NotNull ByteSequence keyByteSequence, long revision, @NotNull AtomicReference<Watch.Watcher> watcherReference) {
+        CompletableFuture<Void> deletionFuture = new CompletableFuture<>();
+
+        Watch.Listener listener = Watch.listener(watchResponse -> {
+            if (watchResponse.getEvents().stream().anyMatch(watchEvent -> watchEvent.getEventType().equals(WatchEvent.EventType.DELETE))) {
+                deletionFuture.complete(null);
+            }
+        }, deletionFuture::completeExceptionally);
+
+        watcherReference.set(client.getWatchClient().watch(keyByteSequence, WatchOption.newBuilder().withRevision(revision + 1).build(), listener));
+        return deletionFuture.whenComplete((deleted, throwable) -> closeWatcher(watcherReference));
+    }
+
+    private static void closeWatcher(@NotNull AtomicReference<Watch.Watcher> watcherReference) {
+        Watch.Watcher watcher = watcherReference.getAndSet(null);
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    protected static CompletableFuture<Void> delay(long delayMillis) {
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private static GetOption readerCountGetOption(@NotNull ByteSequence readerKeyPrefixByteSequence) {
+        return GetOption.newBuilder().withPrefix(readerKeyPrefixByteSequence).withCountOnly(true).build();
+    }
+
+    private static ChubbyNodeValue nodeValueOf(@NotNull GetResponse getResponse) {
+        return ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
+    }
+
+    private static Throwable causeOf(@NotNull Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    private static ByteSequence toByteSequence(@NotNull String string) {
+        return ByteSequence.from(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class HolderKeyAcquisition {
+        private static final HolderKeyAcquisition NOT_ACQUIRED = new HolderKeyAcquisition(false, 0, 0);
+        private final boolean acquired;
+        private final long readerCount;
+        private final long revision;
+
+        private HolderKeyAcquisition(boolean acquired, long readerCount, long revision) {
+            this.acquired = acquired;
+            this.readerCount = readerCount;
+            this.revision = revision;
+        }
+
+        public boolean isAcquired() {
+            return this.acquired;
+        }
+
+        public long getReaderCount() {
+            return this.readerCount;
+        }
+
+        public long getRevision() {
+            return this.revision;
+        }
+    }
+
+    private static class LockWaitState {
+        private final ByteSequence waiterKeyByteSequence;
+        private final boolean writerPreference;
+        private final ChubbyLockDelayTable lockDelayTable;
+        private final ChubbyNodeUpdater nodeUpdater;
+        private final AtomicBoolean settled;
+        private final AtomicBoolean draining;
+        private final AtomicReference<Watch.Watcher> watcherReference;
+
+        private LockWaitState(ByteSequence waiterKeyByteSequence, boolean writerPreference, ChubbyLockDelayTable lockDelayTable, ChubbyNodeUpdater nodeUpdater, AtomicBoolean settled, AtomicBoolean draining, AtomicReference<Watch.Watcher> watcherReference) {
+            this.waiterKeyByteSequence = waiterKeyByteSequence;
+            this.writerPreference = writerPreference;
+            this.lockDelayTable = lockDelayTable;
+            this.nodeUpdater = nodeUpdater;
+            this.settled = settled;
+            this.draining = draining;
+            this.watcherReference = watcherReference;
+        }
+
+        public ByteSequence getWaiterKeyByteSequence() {
+            return this.waiterKeyByteSequence;
+        }
+
+        public boolean isWriterPreference() {
+            return this.writerPreference;
+        }
+
+        public ChubbyLockDelayTable getLockDelayTable() {
+            return this.lockDelayTable;
+        }
+
+        public ChubbyNodeUpdater getNodeUpdater() {
+            return this.nodeUpdater;
+        }
+
+        public AtomicBoolean getSettled() {
+            return this.settled;
+        }
+
+        public AtomicBoolean getDraining() {
+            return this.draining;
+        }
+
+        public AtomicReference<Watch.Watcher> getWatcherReference() {
+            return this.watcherReference;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleType;
+import chubby.server.command.ChubbyCommandTokenizer;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChubbyMultiOperation {
+    private static final char OPERATION_SEPARATOR = ';';
+    private static final List<String> CHECK_FIELDS = List.of("content", "lock", "acl", "instance");
+    private final ChubbyMultiOperationType chubbyMultiOperationType;
+    private final Path absolutePath;
+    private final String[] arguments;
+
+    /**
+     * Create a new ChubbyMultiOperation.
+     *
+     * @param chubbyMultiOperationType the type of the operation
+     * @param absolutePath             the absolute path of the node the operation is applied to
+     * @param arguments                the arguments of the operation following the path
+     */
+    public ChubbyMultiOperation(@NotNull ChubbyMultiOperationType chubbyMultiOperationType, @NotNull Path absolutePath, @NotNull String... arguments) {
+        this.chubbyMultiOperationType = chubbyMultiOperationType;
+        this.absolutePath = absolutePath;
+        this.arguments = arguments.clone();
+    }
+
+    /**
+     * Parses the operations of a 'multi' command, separated by ';'. For reference:
+     * <ul>
+     *     <li>create absolutePath</li>
+     *     <li>write absolutePath [content]</li>
+     *     <li>remove absolutePath</li>
+     *     <li>acl absolutePath aclType aclName</li>
+     *     <li>check absolutePath content|lock|acl|instance generationNumber</li>
+     * </ul>
+     *
+     * @param requestArgs the arguments of the 'multi' command
+     * @return the operations, in the same order they were written
+     * @throws IllegalArgumentException if an operation is malformed or no operation is given
+     */
+    public static List<ChubbyMultiOperation> parse(@NotNull String[] requestArgs) throws IllegalArgumentException {
+        return parse(String.join(" ", requestArgs));
+    }
+
+    /**
+     * Parses the operations of a 'multi' command, separated by ';', reading them once from start to end.
+     *
+     * @param operations the operations, as written after the 'multi' command
+     * @return the operations, in the same order they were written
+     * @throws IllegalArgumentException if an operation is malformed or no operation is given
+     */
+    public static List<ChubbyMultiOperation> parse(@NotNull String operations) throws IllegalArgumentException {
+        List<ChubbyMultiOperation> chubbyMultiOperationList = new ArrayList<>();
+        int start = 0;
+
+        while (start <= operations.length()) {
+            int end = ChubbyCommandTokenizer.indexOfUnquoted(operations, OPERATION_SEPARATOR, start, operations.length());
+            if (end < 0) {
+                end = operations.length();
+            }
+
+            ChubbyCommandTokenizer tokenizer = new ChubbyCommandTokenizer(operations, start, end);
+            start = end + 1;
+
+            String operationName = tokenizer.next();
+            if (operationName == null) {
+                continue;
+            }
+
+            String path = tokenizer.next();
+            if (path == null) {
+                throw new IllegalArgumentException("expected at least a path after '" + operationName + "' operation");
+            }
+
+            ChubbyMultiOperationType chubbyMultiOperationType;
+            try {
+                chubbyMultiOperationType = ChubbyMultiOperationType.valueOf(operationName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("operation '" + operationName + "' not recognized, possible operations are 'create', 'write', 'remove', 'acl', 'check'");
+            }
+
+            Path absolutePath = Path.of(path);
+            String[] arguments;
+            if (chubbyMultiOperationType == ChubbyMultiOperationType.WRITE) {
+                arguments = new String[]{tokenizer.remainder()};
+            } else {
+                List<String> argumentList = new ArrayList<>();
+                while (tokenizer.hasNext()) {
+                    argumentList.add(tokenizer.next());
+                }
+                arguments = argumentList.toArray(new String[0]);
+            }
+
+            switch (chubbyMultiOperationType) {
+                case CREATE, REMOVE -> {
+                    if (arguments.length != 0) {
+                        throw new IllegalArgumentException("expected only a path after '" + operationName + "' operation");
+                    }
+                }
+                case ACL -> {
+                    if (arguments.length != 2) {
+                        throw new IllegalArgumentException("expected exactly 3 arguments for 'acl' operation, syntax is: 'acl *absolutePath* *aclType* *newAclName*'");
+                    }
+                    aclTypeOf(arguments[0]);
+                }
+                case CHECK -> {
+                    if (arguments.length != 2 || !CHECK_FIELDS.contains(arguments[0])) {
+                        throw new IllegalArgumentException("expected exactly 3 arguments for 'check' operation, syntax is: 'check *absolutePath* content|lock|acl|instance *generationNumber*'");
+                    }
+                    try {
+                        Long.parseLong(arguments[1]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("invalid generation number '" + arguments[1] + "'");
+                    }
+                }
+            }
+
+            chubbyMultiOperationList.add(new ChubbyMultiOperation(chubbyMultiOperationType, absolutePath, arguments));
+        }
+
+        if (chubbyMultiOperationList.isEmpty()) {
+            throw new IllegalArgumentException("expected at least 1 operation after 'multi' command, operations are separated by ';'");
+        }
+
+        return chubbyMultiOperationList;
+    }
+
+    /**
+     * Returns the acl type matching the argument of an 'acl' operation.
+     *
+     * @param argument the argument of the operation
+     * @return the acl type
+     * @throws IllegalArgumentException if the argument is not an acl type
+     */
+    private static ChubbyHandleType aclTypeOf(@NotNull String argument) throws IllegalArgumentException {
+        return switch (argument.toLowerCase()) {
+            case "read" -> ChubbyHandleType.READ;
+            case "write" -> ChubbyHandleType.WRITE;
+            case "change_acl" -> ChubbyHandleType.CHANGE_ACL;
+            default -> throw new IllegalArgumentException("acl type '" + argument + "' not recognized, possible types are 'read','write','change_acl'");
+        };
+    }
+
+    @Override
+    public String toString() {
+        return this.chubbyMultiOperationType.toString().toLowerCase() + " " + this.absolutePath;
+    }
+
+    public ChubbyMultiOperationType getChubbyMultiOperationType() {
+        return this.chubbyMultiOperationType;
+    }
+
+    public Path getAbsolutePath() {
+        return this.absolutePath;
+    }
+
+    /**
+     * Returns the content to be written by a 'write' operation.
+     *
+     * @return the file content
+     */
+    public String getFileContent() {
+        return this.arguments[0];
+    }
+
+    /**
+     * Returns the acl type changed by an 'acl' operation.
+     *
+     * @return the acl type
+     */
+    public ChubbyHandleType getAclType() {
+        return aclTypeOf(this.arguments[0]);
+    }
+
+    /**
+     * Returns the new acl name set by an 'acl' operation.
+     *
+     * @return the acl name
+     */
+    public String getAclName() {
+        return this.arguments[1];
+    }
+
+    /**
+     * Returns the generation number compared by a 'check' operation: 'content', 'lock', 'acl' or 'instance'.
+     *
+     * @return the name of the generation number
+     */
+    public String getCheckedField() {
+        return this.arguments[0];
+    }
+
+    /**
+     * Returns the value expected by a 'check' operation.
+     *
+     * @return the expected generation number
+     */
+    public long getExpectedGenerationNumber() {
+        return Long.parseLong(this.arguments[1]);
+    }
+}
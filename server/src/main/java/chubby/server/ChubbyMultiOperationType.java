@@ -0,0 +1,9 @@
+package chubby.server;
+
+public enum ChubbyMultiOperationType {
+    CREATE,
+    WRITE,
+    REMOVE,
+    ACL,
+    CHECK
+}
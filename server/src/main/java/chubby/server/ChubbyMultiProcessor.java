@@ -0,0 +1,148 @@
+package chubby.server;
+
+import chubby.utils.exceptions.ChubbyACLException;
+import chubby.utils.exceptions.ChubbyLockException;
+import chubby.utils.exceptions.ChubbyNodeException;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.GetOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyMultiProcessor {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Applies all the given operations atomically. The involved nodes are read together with their lock state (the
+     * holder key of the exclusive lock, the reader generation key and the number of readers), the operations are
+     * applied in order to the read values and the resulting changes are written by a single etcd transaction, guarded
+     * by the revisions of every read key and of the holder and reader generation keys of the changed nodes: either all
+     * the operations are applied or none. If a concurrent update changes one of the read keys, or a client acquires the
+     * exclusive or the shared lock of a changed node, the operations are applied again to the new values.
+     *
+     * @param chubbyNamespace          the namespace where the operations are applied
+     * @param client                   etcd client
+     * @param username                 the username of the client applying the operations
+     * @param chubbyMultiOperationList the operations to be applied
+     * @return a CompletableFuture containing the result of each operation
+     */
+    public static CompletableFuture<ChubbyMultiResponse> process(@NotNull ChubbyNamespace chubbyNamespace, @NotNull Client client, String username, @NotNull List<ChubbyMultiOperation> chubbyMultiOperationList) {
+        return process(chubbyNamespace, client, username, chubbyMultiOperationList, 1);
+    }
+
+    private static CompletableFuture<ChubbyMultiResponse> process(@NotNull ChubbyNamespace chubbyNamespace, @NotNull Client client, String username, @NotNull List<ChubbyMultiOperation> chubbyMultiOperationList, int attempt) {
+        KV kvClient = client.getKVClient();
+        ChubbyMultiTransaction chubbyMultiTransaction = new ChubbyMultiTransaction(chubbyNamespace, username);
+        List<String> nodeKeyList = new ArrayList<>(ChubbyMultiTransaction.getNodeKeys(chubbyMultiOperationList));
+
+        logger.trace("about to read nodes '{}' for multi operation, attempt {}", nodeKeyList, attempt);
+        return read(kvClient, nodeKeyList).thenCompose(nodeGetResponseList -> {
+            for (int i = 0; i < nodeKeyList.size(); i++) {
+                GetResponse getResponse = nodeGetResponseList.get(i);
+                if (getResponse.getCount() > 0) {
+                    chubbyMultiTransaction.loadNode(nodeKeyList.get(i), getResponse.getKvs().getFirst().getValue().toString(), getResponse.getKvs().getFirst().getModRevision(), getResponse.getKvs().getFirst().getLease());
+                } else {
+                    chubbyMultiTransaction.loadNode(nodeKeyList.get(i), null, 0);
+                }
+            }
+
+            //shared locks are not in the lock map of the nodes, readers are counted at the revision of the reader generation key
+            logger.trace("about to read lock state of nodes '{}' for multi operation", nodeKeyList);
+            return ChubbyLockProcessor.readLockStates(client, nodeKeyList).thenApply(lockStateGetResponseList -> {
+                for (int i = 0; i < nodeKeyList.size(); i++) {
+                    int offset = i * ChubbyLockProcessor.LOCK_STATE_OPS_PER_NODE;
+                    GetResponse holderGetResponse = lockStateGetResponseList.get(offset);
+                    GetResponse readerGenerationGetResponse = lockStateGetResponseList.get(offset + 1);
+                    long readerCount = lockStateGetResponseList.get(offset + 2).getCount();
+
+                    String holder = holderGetResponse.getCount() > 0 ? holderGetResponse.getKvs().getFirst().getValue().toString() : null;
+                    long holderModRevision = holderGetResponse.getCount() > 0 ? holderGetResponse.getKvs().getFirst().getModRevision() : 0;
+                    long readerGenerationModRevision = readerGenerationGetResponse.getCount() > 0 ? readerGenerationGetResponse.getKvs().getFirst().getModRevision() : 0;
+                    chubbyMultiTransaction.loadLockState(nodeKeyList.get(i), holder, holderModRevision, readerCount, readerGenerationModRevision);
+                }
+                return (Void) null;
+            });
+        }).thenCompose(v -> {
+            List<String> aclFileKeyList = new ArrayList<>(chubbyMultiTransaction.getACLFileKeys(chubbyMultiOperationList));
+            logger.trace("about to read acl name files '{}' for multi operation", aclFileKeyList);
+            return read(kvClient, aclFileKeyList).thenCompose(aclFileGetResponseList -> {
+                for (int i = 0; i < aclFileKeyList.size(); i++) {
+                    GetResponse getResponse = aclFileGetResponseList.get(i);
+                    if (getResponse.getCount() > 0) {
+                        chubbyMultiTransaction.loadACLFile(aclFileKeyList.get(i), getResponse.getKvs().getFirst().getValue().toString(), getResponse.getKvs().getFirst().getModRevision());
+                    } else {
+                        chubbyMultiTransaction.loadACLFile(aclFileKeyList.get(i), null, 0);
+                    }
+                }
+
+                //operations are applied in order, the first failure aborts the whole transaction
+                List<String> resultList = new ArrayList<>();
+                for (ChubbyMultiOperation chubbyMultiOperation : chubbyMultiOperationList) {
+                    try {
+                        resultList.add(chubbyMultiOperation + ": " + chubbyMultiTransaction.apply(chubbyMultiOperation));
+                    } catch (ChubbyNodeException | ChubbyLockException | ChubbyACLException e) {
+                        logger.debug("multi operation '{}' failed: {}", chubbyMultiOperation, e.getMessage());
+                        resultList.add(chubbyMultiOperation + ": failed, " + e.getMessage());
+                        return CompletableFuture.completedFuture(new ChubbyMultiResponse(false, resultList));
+                    }
+                }
+
+                List<Cmp> cmpList = chubbyMultiTransaction.getCompares();
+                List<Op> opList = chubbyMultiTransaction.getOperations();
+                if (opList.isEmpty()) {
+                    return CompletableFuture.completedFuture(new ChubbyMultiResponse(true, resultList));
+                }
+
+                logger.trace("about to commit {} change(s) guarded by {} comparison(s)", opList.size(), cmpList.size());
+                return kvClient.txn()
+                        .If(cmpList.toArray(new Cmp[0]))
+                        .Then(opList.toArray(new Op[0]))
+                        .commit()
+                        .thenCompose(txnResponse -> {
+                            if (txnResponse.isSucceeded()) {
+                                return CompletableFuture.completedFuture(new ChubbyMultiResponse(true, resultList));
+                            }
+
+                            //one of the read keys changed in the meantime, nothing was written
+                            if (attempt < MAX_ATTEMPTS) {
+                                logger.debug("multi operation conflicted with a concurrent update, retrying...");
+                                return process(chubbyNamespace, client, username, chubbyMultiOperationList, attempt + 1);
+                            }
+                            return CompletableFuture.completedFuture(new ChubbyMultiResponse(false, List.of("conflicting concurrent updates, no operation applied after " + MAX_ATTEMPTS + " attempts")));
+                        });
+            });
+        });
+    }
+
+    /**
+     * Reads the given keys with a single transaction, so that all of them are read in the same round trip and at the
+     * same revision.
+     *
+     * @param kvClient etcd kv client
+     * @param keyList  the keys to be read
+     * @return a CompletableFuture containing a response for each key, in the same order
+     */
+    private static CompletableFuture<List<GetResponse>> read(@NotNull KV kvClient, @NotNull List<String> keyList) {
+        if (keyList.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        Op[] getOpArray = keyList.stream()
+                .map(key -> Op.get(ByteSequence.from(key.getBytes(StandardCharsets.UTF_8)), GetOption.DEFAULT))
+                .toArray(Op[]::new);
+
+        return kvClient.txn().Then(getOpArray).commit().thenApply(txnResponse -> txnResponse.getGetResponses());
+    }
+}
@@ -0,0 +1,27 @@
+package chubby.server;
+
+import java.util.List;
+
+public class ChubbyMultiResponse {
+    private final boolean committed;
+    private final List<String> resultList;
+
+    /**
+     * Create a new ChubbyMultiResponse.
+     *
+     * @param committed  true if all the operations were applied, false if none was
+     * @param resultList the result of each operation that was evaluated, in order
+     */
+    public ChubbyMultiResponse(boolean committed, List<String> resultList) {
+        this.committed = committed;
+        this.resultList = List.copyOf(resultList);
+    }
+
+    public boolean isCommitted() {
+        return this.committed;
+    }
+
+    public List<String> getResultList() {
+        return this.resultList;
+    }
+}
@@ -0,0 +1,425 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleType;
+import chubby.server.node.ChubbyNode;
+import chubby.server.node.ChubbyNodeAttribute;
+import chubby.server.node.ChubbyNodeMetadata;
+import chubby.server.node.ChubbyNodeValue;
+import chubby.server.node.ChubbyNodeValueDeserializer;
+import chubby.server.node.ChubbyNodeValueSerializer;
+import chubby.utils.ChubbyPath;
+import chubby.utils.ChubbyUtils;
+import chubby.utils.exceptions.ChubbyACLException;
+import chubby.utils.exceptions.ChubbyLockException;
+import chubby.utils.exceptions.ChubbyNodeException;
+import com.google.gson.reflect.TypeToken;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.CmpTarget;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.DeleteOption;
+import io.etcd.jetcd.options.PutOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ChubbyMultiTransaction {
+    private static final Logger logger = LogManager.getLogger();
+    private final ChubbyNamespace chubbyNamespace;
+    private final String username;
+    private final Map<String, Long> readModRevisionMap;         //revision of each key read, 0 if the key was absent
+    private final Map<String, Long> readLeaseIdMap;              //lease of each node read, ephemeral nodes keep it when rewritten
+    private final Map<String, ChubbyNodeValue> nodeValueMap;     //current value of each node, null if absent
+    private final Map<String, List<String>> aclFileMap;          //current usernames of each acl name file, null if absent
+    private final Map<String, String> holderMap;                 //holder of the exclusive lock of each node read, null if none
+    private final Map<String, Long> holderModRevisionMap;        //revision of the holder key of each node read, 0 if absent
+    private final Map<String, Long> readerCountMap;              //number of clients holding the shared lock of each node read
+    private final Map<String, Long> readerGenerationModRevisionMap; //revision of the reader generation key of each node read, 0 if absent
+    private final Set<String> accessedNodeKeySet;
+    private final Set<String> createdNodeKeySet;
+    private final Set<String> changedKeySet;
+
+    /**
+     * Create a new ChubbyMultiTransaction. Operations are applied to the values read from the kv store, then all the
+     * resulting changes are written by a single transaction, that succeeds only if none of the read keys changed in
+     * the meantime.
+     *
+     * @param chubbyNamespace the namespace where the operations are applied
+     * @param username        the username of the client applying the operations
+     */
+    public ChubbyMultiTransaction(@NotNull ChubbyNamespace chubbyNamespace, String username) {
+        this.chubbyNamespace = chubbyNamespace;
+        this.username = username;
+        this.readModRevisionMap = new LinkedHashMap<>();
+        this.readLeaseIdMap = new HashMap<>();
+        this.nodeValueMap = new HashMap<>();
+        this.aclFileMap = new HashMap<>();
+        this.holderMap = new HashMap<>();
+        this.holderModRevisionMap = new HashMap<>();
+        this.readerCountMap = new HashMap<>();
+        this.readerGenerationModRevisionMap = new HashMap<>();
+        this.accessedNodeKeySet = new LinkedHashSet<>();
+        this.createdNodeKeySet = new HashSet<>();
+        this.changedKeySet = new LinkedHashSet<>();
+    }
+
+    /**
+     * Returns the keys of the nodes read by the given operations: their own nodes and the parents whose child count
+     * they change.
+     *
+     * @param chubbyMultiOperationList the operations to be applied
+     * @return the node keys, in order of first use
+     */
+    public static Set<String> getNodeKeys(@NotNull List<ChubbyMultiOperation> chubbyMultiOperationList) {
+        Set<String> nodeKeySet = new LinkedHashSet<>();
+
+        for (ChubbyMultiOperation chubbyMultiOperation : chubbyMultiOperationList) {
+            ChubbyPath chubbyPath = ChubbyPath.of(chubbyMultiOperation.getAbsolutePath());
+            nodeKeySet.add(chubbyPath.toString());
+
+            boolean changesParent = chubbyMultiOperation.getChubbyMultiOperationType() == ChubbyMultiOperationType.CREATE || chubbyMultiOperation.getChubbyMultiOperationType() == ChubbyMultiOperationType.REMOVE;
+            if (changesParent && chubbyPath.getParent() != null) {
+                nodeKeySet.add(chubbyPath.getParent().toString());
+            }
+        }
+
+        return nodeKeySet;
+    }
+
+    /**
+     * Returns the keys of the acl name files read by the given operations, once their nodes have been loaded: the files
+     * granting permissions on the loaded nodes and the files assigned by 'acl' operations.
+     *
+     * @param chubbyMultiOperationList the operations to be applied
+     * @return the acl name file keys
+     */
+    public Set<String> getACLFileKeys(@NotNull List<ChubbyMultiOperation> chubbyMultiOperationList) {
+        Set<String> aclFileKeySet = new LinkedHashSet<>();
+
+        //nodes created by the operations inherit the acl names of their parents, that are loaded too
+        this.nodeValueMap.values().stream()
+                .filter(chubbyNodeValue -> chubbyNodeValue != null && chubbyNodeValue.getMetadata().getAclNamesMap() != null)
+                .flatMap(chubbyNodeValue -> chubbyNodeValue.getMetadata().getAclNamesMap().values().stream())
+                .map(this.chubbyNamespace::aclNameToAbsolutePath)
+                .forEach(aclFileKeySet::add);
+
+        chubbyMultiOperationList.stream()
+                .filter(chubbyMultiOperation -> chubbyMultiOperation.getChubbyMultiOperationType() == ChubbyMultiOperationType.ACL)
+                .map(chubbyMultiOperation -> this.chubbyNamespace.aclNameToAbsolutePath(chubbyMultiOperation.getAclName()))
+                .forEach(aclFileKeySet::add);
+
+        aclFileKeySet.removeIf(aclFileKey -> this.chubbyNamespace.isDefaultNode(ChubbyPath.of(aclFileKey)));
+        return aclFileKeySet;
+    }
+
+    /**
+     * Loads the value of a node read from the kv store.
+     *
+     * @param key         the absolute path of the node
+     * @param value       the serialized value of the node, null if the node does not exist
+     * @param modRevision the revision of the last modification of the node, 0 if the node does not exist
+     */
+    public void loadNode(@NotNull String key, @Nullable String value, long modRevision) {
+        this.loadNode(key, value, modRevision, 0);
+    }
+
+    /**
+     * Loads the value of a node read from the kv store.
+     *
+     * @param key         the absolute path of the node
+     * @param value       the serialized value of the node, null if the node does not exist
+     * @param modRevision the revision of the last modification of the node, 0 if the node does not exist
+     * @param leaseId     the ID of the lease the node is bound to, 0 if it's not bound to any
+     */
+    public void loadNode(@NotNull String key, @Nullable String value, long modRevision, long leaseId) {
+        this.readModRevisionMap.put(key, modRevision);
+        this.readLeaseIdMap.put(key, leaseId);
+        this.nodeValueMap.put(key, value == null ? null : ChubbyNodeValueDeserializer.deserialize(value));
+    }
+
+    /**
+     * Loads the lock state of a node read from the kv store.
+     *
+     * @param key                         the absolute path of the node
+     * @param holder                      the username of the client holding the exclusive lock, null if none holds it
+     * @param holderModRevision           the revision of the last modification of the holder key, 0 if the key does
+     *                                    not exist
+     * @param readerCount                 the number of clients holding the shared lock
+     * @param readerGenerationModRevision the revision of the last modification of the reader generation key, read
+     *                                    together with the readers, 0 if the key does not exist
+     */
+    public void loadLockState(@NotNull String key, @Nullable String holder, long holderModRevision, long readerCount, long readerGenerationModRevision) {
+        this.holderMap.put(key, holder);
+        this.holderModRevisionMap.put(key, holderModRevision);
+        this.readerCountMap.put(key, readerCount);
+        this.readerGenerationModRevisionMap.put(key, readerGenerationModRevision);
+    }
+
+    /**
+     * Loads the value of an acl name file read from the kv store.
+     *
+     * @param key         the absolute path of the acl name file
+     * @param value       the serialized usernames of the file, null if the file does not exist
+     * @param modRevision the revision of the last modification of the file, 0 if the file does not exist
+     */
+    public void loadACLFile(@NotNull String key, @Nullable String value, long modRevision) {
+        this.readModRevisionMap.put(key, modRevision);
+        this.aclFileMap.put(key, value == null ? null : ChubbyUtils.gsonBuild().fromJson(value, new TypeToken<List<String>>() {
+        }.getType()));
+    }
+
+    /**
+     * Applies an operation to the loaded values.
+     *
+     * @param chubbyMultiOperation the operation to be applied
+     * @return the result of the operation
+     * @throws ChubbyNodeException if the node cannot be created, accessed or does not match the checked generation
+     * @throws ChubbyLockException if the node is locked by another client
+     * @throws ChubbyACLException  if the client is not permitted access to the node or the acl name is already used
+     */
+    public String apply(@NotNull ChubbyMultiOperation chubbyMultiOperation) throws ChubbyNodeException, ChubbyLockException, ChubbyACLException {
+        Path absolutePath = chubbyMultiOperation.getAbsolutePath();
+        ChubbyPath chubbyPath = ChubbyPath.of(absolutePath);
+        String key = chubbyPath.toString();
+        logger.trace("applying multi operation '{}'", chubbyMultiOperation);
+
+        if (this.chubbyNamespace.isACLNode(absolutePath)) {
+            throw new ChubbyNodeException("cannot operate on acl node '" + absolutePath + "'");
+        }
+
+        if (chubbyMultiOperation.getChubbyMultiOperationType() == ChubbyMultiOperationType.CREATE) {
+            this.chubbyNamespace.checkCreateNodeOnIllegalPath(absolutePath, false);
+
+            if (this.nodeValueMap.get(key) != null) {
+                throw new ChubbyNodeException("node '" + absolutePath + "' already exists");
+            }
+
+            String parentKey = chubbyPath.getParent().toString();
+            ChubbyNodeValue parentChubbyNodeValue = this.nodeValueMap.get(parentKey);
+            if (parentChubbyNodeValue == null) {
+                throw new ChubbyNodeException("parent node '" + parentKey + "' does not exist");
+            }
+            if (parentChubbyNodeValue.getMetadata().getChubbyNodeAttribute() == ChubbyNodeAttribute.EPHEMERAL) {
+                throw new ChubbyNodeException("cannot create node inside ephemeral node '" + parentKey + "'");
+            }
+
+            //nodes created by 'multi' are permanent, and inherit the acl names of their parent
+            ChubbyNode chubbyNode = new ChubbyNode(absolutePath, null, ChubbyNodeAttribute.PERMANENT);
+            chubbyNode.getNodeValue().getMetadata().setAclNamesMap(new HashMap<>(parentChubbyNodeValue.getMetadata().getAclNamesMap()));
+            parentChubbyNodeValue.getMetadata().increaseChildNodeNumberOnce();
+
+            this.setNode(key, chubbyNode.getNodeValue());
+            this.setNode(parentKey, parentChubbyNodeValue);
+            this.createdNodeKeySet.add(key);
+            return "created";
+        }
+
+        ChubbyNodeValue chubbyNodeValue = this.nodeValueMap.get(key);
+        if (chubbyNodeValue == null) {
+            throw new ChubbyNodeException("node '" + absolutePath + "' does not exist");
+        }
+        ChubbyNodeMetadata chubbyNodeMetadata = chubbyNodeValue.getMetadata();
+
+        return switch (chubbyMultiOperation.getChubbyMultiOperationType()) {
+            case WRITE -> {
+                if (!ChubbyUtils.isFile(absolutePath)) {
+                    throw new ChubbyNodeException("cannot do write operation into directory nodes");
+                }
+                this.checkAccess(key, chubbyNodeMetadata, ChubbyHandleType.WRITE);
+
+                chubbyNodeValue.setFilecontent(chubbyMultiOperation.getFileContent());
+                this.setNode(key, chubbyNodeValue);
+                yield "content generation number " + chubbyNodeMetadata.getContentGenerationNumber();
+            }
+            case REMOVE -> {
+                if (this.chubbyNamespace.isDefaultNode(absolutePath)) {
+                    throw new ChubbyNodeException("cannot remove default node '" + absolutePath + "'");
+                }
+                this.checkAccess(key, chubbyNodeMetadata, ChubbyHandleType.WRITE);
+                if (chubbyNodeMetadata.getChildNodeNumber() > 0) {
+                    throw new ChubbyNodeException("cannot remove node '" + absolutePath + "' with child nodes");
+                }
+
+                String parentKey = chubbyPath.getParent().toString();
+                ChubbyNodeValue parentChubbyNodeValue = this.nodeValueMap.get(parentKey);
+                if (parentChubbyNodeValue != null) {
+                    parentChubbyNodeValue.getMetadata().decreaseChildNodeNumberOf(1);
+                    this.setNode(parentKey, parentChubbyNodeValue);
+                }
+
+                this.setNode(key, null);
+                this.createdNodeKeySet.remove(key);
+                yield "removed";
+            }
+            case ACL -> {
+                this.checkAccess(key, chubbyNodeMetadata, ChubbyHandleType.CHANGE_ACL);
+
+                String newACLFileKey = this.chubbyNamespace.aclNameToAbsolutePath(chubbyMultiOperation.getAclName());
+                if (this.chubbyNamespace.isDefaultNode(ChubbyPath.of(newACLFileKey)) || this.aclFileMap.get(newACLFileKey) != null) {
+                    throw new ChubbyACLException("specified new ACL name '" + newACLFileKey + "' is already assigned to another node, consider using another name");
+                }
+
+                //the previous acl name file is removed, unless it's a default one
+                String oldACLFileKey = this.chubbyNamespace.aclNameToAbsolutePath(chubbyNodeMetadata.getAclNamesMap().get(chubbyMultiOperation.getAclType()));
+                if (this.aclFileMap.get(oldACLFileKey) != null) {
+                    this.setACLFile(oldACLFileKey, null);
+                }
+                this.setACLFile(newACLFileKey, new ArrayList<>(List.of(this.username)));
+
+                chubbyNodeMetadata.getAclNamesMap().put(chubbyMultiOperation.getAclType(), chubbyMultiOperation.getAclName());
+                chubbyNodeMetadata.increaseAclGenerationNumberOnce();
+                this.setNode(key, chubbyNodeValue);
+                yield "acl generation number " + chubbyNodeMetadata.getAclGenerationNumber();
+            }
+            case CHECK -> {
+                long generationNumber = switch (chubbyMultiOperation.getCheckedField()) {
+                    case "content" -> chubbyNodeMetadata.getContentGenerationNumber();
+                    case "lock" -> chubbyNodeMetadata.getLockGenerationNumber();
+                    case "acl" -> chubbyNodeMetadata.getAclGenerationNumber();
+                    default -> chubbyNodeMetadata.getInstanceNumber();
+                };
+
+                if (generationNumber != chubbyMultiOperation.getExpectedGenerationNumber()) {
+                    throw new ChubbyNodeException("'" + chubbyMultiOperation.getCheckedField() + "' generation number is " + generationNumber + ", expected " + chubbyMultiOperation.getExpectedGenerationNumber());
+                }
+                yield "'" + chubbyMultiOperation.getCheckedField() + "' generation number is " + generationNumber;
+            }
+            case CREATE -> throw new IllegalStateException();
+        };
+    }
+
+    /**
+     * Checks whether this client may apply an operation to a node. Nodes created by this transaction are always
+     * accessible by the client that created them, like nodes created by 'open'. A node is locked if another client
+     * holds its exclusive lock, or if any client holds its shared lock, as for the exclusive lock acquisition.
+     *
+     * @param key                the absolute path of the node
+     * @param chubbyNodeMetadata the metadata of the node
+     * @param chubbyHandleType   the permission required by the operation
+     * @throws ChubbyLockException if the node is locked by another client
+     * @throws ChubbyACLException  if the client is not permitted access to the node
+     */
+    private void checkAccess(@NotNull String key, @NotNull ChubbyNodeMetadata chubbyNodeMetadata, @NotNull ChubbyHandleType chubbyHandleType) throws ChubbyLockException, ChubbyACLException {
+        if (this.createdNodeKeySet.contains(key)) {
+            return;
+        }
+
+        String holder = this.holderMap.get(key);
+        if (chubbyNodeMetadata.isLockedByOtherClient(this.username) || (holder != null && !holder.equals(this.username))) {
+            throw new ChubbyLockException("node '" + key + "' is locked by another client");
+        }
+
+        long readerCount = this.readerCountMap.getOrDefault(key, 0L);
+        if (readerCount > 0) {
+            throw new ChubbyLockException("node '" + key + "' is read by " + readerCount + " client(s)");
+        }
+
+        //holder and reader generation keys are guarded too, so that no client acquires a lock before the changes are written
+        this.accessedNodeKeySet.add(key);
+
+        String aclName = chubbyNodeMetadata.getAclNamesMap().get(chubbyHandleType);
+        String aclFileKey = this.chubbyNamespace.aclNameToAbsolutePath(String.valueOf(aclName));
+
+        //default acl name files grant access to everyone
+        if (aclName != null && this.chubbyNamespace.isDefaultNode(ChubbyPath.of(aclFileKey))) {
+            return;
+        }
+
+        List<String> aclUsernameList = this.aclFileMap.get(aclFileKey);
+        if (aclUsernameList == null || !aclUsernameList.contains(this.username)) {
+            throw new ChubbyACLException("user '" + this.username + "' not permitted to '" + chubbyHandleType.toString().toLowerCase() + "' on node '" + key + "'");
+        }
+    }
+
+    private void setNode(@NotNull String key, @Nullable ChubbyNodeValue chubbyNodeValue) {
+        this.nodeValueMap.put(key, chubbyNodeValue);
+        this.changedKeySet.add(key);
+    }
+
+    private void setACLFile(@NotNull String key, @Nullable List<String> aclUsernameList) {
+        this.aclFileMap.put(key, aclUsernameList);
+        this.changedKeySet.add(key);
+    }
+
+    /**
+     * Returns the comparisons guarding the transaction: each read key must be unchanged since it was read, keys that
+     * were absent must still be absent. The holder keys of the accessed nodes are guarded the same way. Readers cannot
+     * be guarded by a comparison, since a comparison targets a single key: every reader rewrites the reader generation
+     * key of the node, which is guarded instead, so that a reader joining after the readers were counted fails the
+     * transaction.
+     *
+     * @return the comparisons of the transaction
+     */
+    public List<Cmp> getCompares() {
+        List<Cmp> cmpList = new ArrayList<>();
+
+        this.readModRevisionMap.forEach((key, modRevision) -> cmpList.add(compareOf(key, modRevision)));
+        this.accessedNodeKeySet.forEach(key -> {
+            cmpList.add(compareOf(ChubbyLockProcessor.holderKeyOf(key), this.holderModRevisionMap.getOrDefault(key, 0L)));
+            cmpList.add(compareOf(ChubbyLockProcessor.readerGenerationKeyOf(key), this.readerGenerationModRevisionMap.getOrDefault(key, 0L)));
+        });
+
+        return cmpList;
+    }
+
+    /**
+     * Returns the comparison guarding a key read from the kv store.
+     *
+     * @param key         the key
+     * @param modRevision the revision of the last modification of the key, 0 if the key was absent
+     * @return the comparison of the key
+     */
+    private static Cmp compareOf(@NotNull String key, long modRevision) {
+        ByteSequence keyByteSequence = ByteSequence.from(key.getBytes(StandardCharsets.UTF_8));
+        if (modRevision == 0) {
+            return new Cmp(keyByteSequence, Cmp.Op.EQUAL, CmpTarget.version(0));
+        }
+        return new Cmp(keyByteSequence, Cmp.Op.EQUAL, CmpTarget.modRevision(modRevision));
+    }
+
+    /**
+     * Returns the writes resulting from the applied operations, one for each changed key.
+     *
+     * @return the operations of the transaction
+     */
+    public List<Op> getOperations() {
+        List<Op> opList = new ArrayList<>();
+
+        for (String key : this.changedKeySet) {
+            ByteSequence keyByteSequence = ByteSequence.from(key.getBytes(StandardCharsets.UTF_8));
+            String value;
+            if (this.aclFileMap.containsKey(key)) {
+                List<String> aclUsernameList = this.aclFileMap.get(key);
+                value = aclUsernameList == null ? null : ChubbyUtils.gsonBuild().toJson(aclUsernameList);
+            } else {
+                ChubbyNodeValue chubbyNodeValue = this.nodeValueMap.get(key);
+                value = chubbyNodeValue == null ? null : ChubbyNodeValueSerializer.serialize(chubbyNodeValue);
+            }
+
+            if (value == null) {
+                opList.add(Op.delete(keyByteSequence, DeleteOption.DEFAULT));
+            } else {
+                long leaseId = this.readLeaseIdMap.getOrDefault(key, 0L);
+                opList.add(Op.put(keyByteSequence, ByteSequence.from(value.getBytes(StandardCharsets.UTF_8)), leaseId == 0 ? PutOption.DEFAULT : PutOption.newBuilder().withLeaseId(leaseId).build()));
+            }
+        }
+
+        return opList;
+    }
+
+    public int getChangedKeyCount() {
+        return this.changedKeySet.size();
+    }
+}
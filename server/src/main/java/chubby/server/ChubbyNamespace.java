@@ -6,33 +6,46 @@ import chubby.control.handle.ChubbyHandleType;
 import chubby.control.handle.ChubbyLockDelay;
 import chubby.control.message.ChubbyRequest;
 import chubby.server.node.*;
+import chubby.utils.ChubbyPath;
 import chubby.utils.ChubbyUtils;
 import chubby.utils.exceptions.*;
 import com.google.gson.reflect.TypeToken;
 import io.etcd.jetcd.*;
-import io.etcd.jetcd.kv.DeleteResponse;
 import io.etcd.jetcd.kv.GetResponse;
-import io.etcd.jetcd.kv.PutResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.CmpTarget;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.DeleteOption;
 import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class ChubbyNamespace {
     private static final Charset charset = StandardCharsets.UTF_8;
     private static final Logger logger = LogManager.getLogger();
+    //each removed subtree takes up to four operations, etcd accepts 128 operations and 128 comparisons per transaction by default
+    private static final int MAX_GUARDED_NODES_PER_TXN = 64;
+    private static final int MAX_REMOVED_SUBTREES_PER_TXN = 32;
+    private static final int MAX_PROVISION_ATTEMPTS = 3;
     private static final int MAX_LOCKDELAY_SECONDS = 60;
+    private static final int SESSION_LEASE_TTL_SECONDS = MAX_LOCKDELAY_SECONDS;
     private final Path rootPath;
     private final Path aclNodeAbsolutePath;
     private final Path aclWriteFileAbsolutePath;
@@ -40,8 +53,17 @@ public class ChubbyNamespace {
     private final Path aclChangeACLFileAbsolutePath;
     private final Path cellNameAbsolutePath;
     private final List<Path> defaultNodesCompleteList;
-    private final List<Path> defaultNodesToCreate;
-    private List<Watch.Watcher> watcherResponse;
+    private final Set<ChubbyPath> defaultNodeSet;
+    private final ChubbyPath aclNodeChubbyPath;
+    private final ChubbySubscriptionRegistry subscriptionRegistry;
+    private final Map<String, ChubbySubscription> activeSubscriptionMap;
+    private final Map<String, OutputStream> sessionOutputStreamMap;
+    private final Map<String, CompletableFuture<ChubbySessionLease>> sessionLeaseMap;
+    private ChubbyKeepAliveScheduler keepAliveScheduler;
+    private ChubbyChildCountReconciler childCountReconciler;
+    private final ChubbyLockDelayTable lockDelayTable;
+    private final ChubbyNodeUpdater nodeUpdater;
+    private volatile boolean writerPreference;
 
     /**
      * constructor
@@ -55,13 +77,6 @@ public class ChubbyNamespace {
 
         this.cellNameAbsolutePath = this.rootPath.resolve("ls/" + cellName);
 
-        //root has to be the last element of the list to correctly create each node due to the recursive method 'parentCreateNode'
-        this.defaultNodesToCreate = List.of(
-                this.aclWriteFileAbsolutePath,
-                this.aclReadFileAbsolutePath,
-                this.aclChangeACLFileAbsolutePath,
-                this.rootPath);
-
         this.defaultNodesCompleteList = List.of(
                 this.rootPath,
                 this.rootPath.resolve("ls"),
@@ -70,6 +85,16 @@ public class ChubbyNamespace {
                 this.aclWriteFileAbsolutePath,
                 this.aclReadFileAbsolutePath,
                 this.aclChangeACLFileAbsolutePath);
+        this.defaultNodeSet = this.defaultNodesCompleteList.stream().map(ChubbyPath::of).collect(Collectors.toUnmodifiableSet());
+        this.aclNodeChubbyPath = ChubbyPath.of(this.aclNodeAbsolutePath);
+
+        this.subscriptionRegistry = new ChubbySubscriptionRegistry(this.cellNameAbsolutePath);
+        this.activeSubscriptionMap = new ConcurrentHashMap<>();
+        this.sessionOutputStreamMap = new ConcurrentHashMap<>();
+        this.sessionLeaseMap = new ConcurrentHashMap<>();
+        this.lockDelayTable = new ChubbyLockDelayTable();
+        this.nodeUpdater = new ChubbyNodeUpdater();
+        this.writerPreference = true;
     }
 
     /**
@@ -86,6 +111,25 @@ public class ChubbyNamespace {
      * @throws ChubbyNodeException if the node cannot be created nor accessed
      */
     public CompletableFuture<ChubbyCreateNodeResponse> createNode(@NotNull Client client, @NotNull Path absolutePath, ChubbyNodeAttribute chubbyNodeAttribute, boolean isSetup) throws ChubbyLockException, ChubbyNodeException {
+        return this.createNode(null, client, absolutePath, chubbyNodeAttribute, isSetup);
+    }
+
+    /**
+     * Create a node in the namespace and its parent nodes if they don't exist.
+     * Nodes are stored into etcd's key-value store as key-value pairs. The key is the absolute path of the node and the
+     * value is a json serialized ChubbyNodeValue. An ephemeral node is bound to the lease of the session creating it, so
+     * that the kv store deletes it as soon as the session expires.
+     *
+     * @param username            username of the session creating the node, the owner of an ephemeral node
+     * @param client              etcd client
+     * @param absolutePath        absolute path of the node to be created
+     * @param chubbyNodeAttribute attribute of the node to be created (PERMANENT or EPHEMERAL)
+     * @param isSetup             true if it's a setup operation, false otherwise
+     * @return a CompletableFuture containing the response
+     * @throws ChubbyLockException if a lock cannot be acquired
+     * @throws ChubbyNodeException if the node cannot be created nor accessed
+     */
+    public CompletableFuture<ChubbyCreateNodeResponse> createNode(@Nullable String username, @NotNull Client client, @NotNull Path absolutePath, ChubbyNodeAttribute chubbyNodeAttribute, boolean isSetup) throws ChubbyLockException, ChubbyNodeException {
         logger.trace("requested node creation: 'path:{}'", absolutePath);
 
         this.checkCreateNodeOnIllegalPath(absolutePath, isSetup);
@@ -93,22 +137,53 @@ public class ChubbyNamespace {
         ChubbyNode retChubbyNode = new ChubbyNode(absolutePath, null, chubbyNodeAttribute);
 
         KV kvClient = client.getKVClient();
-        ByteSequence absolutePathByteSequence = ByteSequence.from(retChubbyNode.getAbsolutePath().toString().getBytes());
+        ByteSequence absolutePathByteSequence = ChubbyPath.of(retChubbyNode.getAbsolutePath()).toByteSequence();
+        Path parentPath = retChubbyNode.getAbsolutePath().getParent();
+
+        //the node and its parent are read in the same round trip, root has no parent
+        List<Op> readOpList = new ArrayList<>();
+        readOpList.add(Op.get(absolutePathByteSequence, GetOption.DEFAULT));
+        if (parentPath != null) {
+            readOpList.add(Op.get(ChubbyPath.of(parentPath).toByteSequence(), GetOption.DEFAULT));
+        }
 
         logger.trace("about to retrieve key from kv store '{}'", absolutePathByteSequence);
-        return kvClient.get(absolutePathByteSequence).thenCompose(getResponse -> {
+        return kvClient.txn().Then(readOpList.toArray(new Op[0])).commit().thenCompose(readTxnResponse -> {
+            GetResponse getResponse = readTxnResponse.getGetResponses().get(0);
+            GetResponse parentGetResponse = parentPath != null ? readTxnResponse.getGetResponses().get(1) : null;
+
             //if node is already present into kv store, skip put operation
             if (getResponse.getCount() > 0) {
                 logger.trace("node '{}' already present into kv store, skipping put operation...", getResponse.getKvs().getFirst().getKey());
                 return CompletableFuture.completedFuture(new ChubbyCreateNodeResponse(retChubbyNode, false));
 
             } else {
+                //an ephemeral node is deleted together with its session, its children would be left without a parent
+                if (parentGetResponse != null && parentGetResponse.getCount() > 0 && ChubbyNodeValueDeserializer.deserialize(parentGetResponse.getKvs().getFirst().getValue().toString()).getMetadata().getChubbyNodeAttribute().equals(ChubbyNodeAttribute.EPHEMERAL)) {
+                    logger.error("cannot create node '{}' inside ephemeral node '{}'", absolutePath, parentPath);
+                    throw new RuntimeException(new ChubbyNodeException("cannot create node inside ephemeral node '" + parentPath + "'"));
+                }
+
                 logger.trace("node '{}' not already present into kv store, adding it...", absolutePathByteSequence);
 
                 ByteSequence chubbyNodeValueByteSequence = ByteSequence.from(ChubbyNodeValueSerializer.serialize(retChubbyNode.getNodeValue()).getBytes());
 
+                CompletableFuture<PutOption> putOptionFuture = CompletableFuture.completedFuture(PutOption.DEFAULT);
+                if (chubbyNodeAttribute.equals(ChubbyNodeAttribute.EPHEMERAL) && username != null) {
+                    putOptionFuture = this.getSessionLease(username, client).thenApply(chubbySessionLease -> PutOption.newBuilder().withLeaseId(chubbySessionLease.getLeaseId()).build());
+                }
+
+                //the put is guarded on the node being still absent, a session creating it in the meantime wins
                 logger.trace("key-value about to be put: 'k:{}','v:{}'", absolutePathByteSequence, chubbyNodeValueByteSequence);
-                return kvClient.put(absolutePathByteSequence, chubbyNodeValueByteSequence).thenCompose(putResponse -> {
+                return putOptionFuture.thenCompose(putOption -> kvClient.txn()
+                        .If(new Cmp(absolutePathByteSequence, Cmp.Op.EQUAL, CmpTarget.version(0)))
+                        .Then(Op.put(absolutePathByteSequence, chubbyNodeValueByteSequence, putOption))
+                        .commit()).thenCompose(putTxnResponse -> {
+                    if (!putTxnResponse.isSucceeded()) {
+                        logger.trace("node '{}' created by another session in the meantime, skipping put operation...", absolutePathByteSequence);
+                        return CompletableFuture.completedFuture(new ChubbyCreateNodeResponse(retChubbyNode, false));
+                    }
+
                     logger.trace("added node '{}' to kv store", absolutePathByteSequence.toString());
 
                     //parent nodes are always permanent
@@ -132,39 +207,22 @@ public class ChubbyNamespace {
         }
 
         KV kvClient = client.getKVClient();
-        ByteSequence parentPathByteSequence = ByteSequence.from(parentPath.toString().getBytes());
-
-        return kvClient.get(parentPathByteSequence).thenCompose(getResponse -> {
-            CompletableFuture<PutResponse> future;
-            if (getResponse.getCount() > 0) {
-                ChubbyNodeValue parentChubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
-                future = this.getLs(client, Path.of(getResponse.getKvs().getFirst().getKey().toString()), 1).thenCompose(list -> {
+        ByteSequence parentPathByteSequence = ChubbyPath.of(parentPath).toByteSequence();
 
-                    //ignores locks
-                    List<String> listWithOnlyNodes = list.stream().filter(e -> !e.startsWith("/")).toList();
-
-                    parentChubbyNodeValue.getMetadata().setChildNodeNumber(listWithOnlyNodes.size());
-                    String parentChubbyNodeValueJsonStr = ChubbyNodeValueSerializer.serialize(parentChubbyNodeValue);
-                    return kvClient.put(parentPathByteSequence, ByteSequence.from(parentChubbyNodeValueJsonStr.getBytes()));
-                });
-            } else {
-                ChubbyNode parentChubbyNode = new ChubbyNode(Path.of(ByteSequence.from(parentPath.toString().getBytes()).toString()), null, chubbyNodeAttribute);
-                future = this.getLs(client, parentChubbyNode.getAbsolutePath(), 1).thenCompose(list -> {
+        //the parent is created if it's missing, either way its child count is set guarded by the revision it was read at
+        return this.nodeUpdater.update(kvClient, parentPathByteSequence, keyValue -> {
+            ChubbyNodeValue parentChubbyNodeValue = keyValue != null ? ChubbyNodeValueDeserializer.deserialize(keyValue.getValue().toString()) : new ChubbyNode(parentPath, null, chubbyNodeAttribute).getNodeValue();
+            return this.getLs(client, ChubbyPath.of(parentPath), 1).thenApply(list -> {
 
-                    //ignores locks
-                    List<String> listWithOnlyNodes = list.stream().filter(e -> !e.startsWith("/")).toList();
-
-                    parentChubbyNode.getNodeValue().getMetadata().setChildNodeNumber(listWithOnlyNodes.size());
-                    String parentChubbyNodeValueJsonStr = ChubbyNodeValueSerializer.serialize(parentChubbyNode.getNodeValue());
-                    return kvClient.put(parentPathByteSequence, ByteSequence.from(parentChubbyNodeValueJsonStr.getBytes()));
-                });
-            }
-            return future.thenCompose(putResponse -> {
-                if (parentPath.equals(this.rootPath)) {
-                    return CompletableFuture.completedFuture(null);
-                }
-                return this.createParentNodes(client, parentPath.getParent(), chubbyNodeAttribute);
+                parentChubbyNodeValue.getMetadata().setChildNodeNumber(list.size());
+                String parentChubbyNodeValueJsonStr = ChubbyNodeValueSerializer.serialize(parentChubbyNodeValue);
+                return ByteSequence.from(parentChubbyNodeValueJsonStr.getBytes());
             });
+        }).thenCompose(updated -> {
+            if (parentPath.equals(this.rootPath)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return this.createParentNodes(client, parentPath.getParent(), chubbyNodeAttribute);
         });
     }
 
@@ -175,7 +233,7 @@ public class ChubbyNamespace {
      * @param isSetup     true if it's a setup operation, false otherwise
      * @throws ChubbyNodeException if the node cannot be created nor accessed because it's on an illegal path
      */
-    private void checkCreateNodeOnIllegalPath(Path absolutePath, boolean isSetup) throws ChubbyNodeException {
+    protected void checkCreateNodeOnIllegalPath(Path absolutePath, boolean isSetup) throws ChubbyNodeException {
         if (!isSetup && this.isDefaultNode(absolutePath)) {
             logger.error("cannot re-create, nor access, default node '{}'", absolutePath);
             throw new ChubbyNodeException("cannot re-create, nor access, default node " + absolutePath);
@@ -207,8 +265,6 @@ public class ChubbyNamespace {
     public CompletableFuture<ChubbyHandleResponse> createHandle(String username, Client client, @NotNull ChubbyHandleRequest chubbyHandleRequest) throws ChubbyLockException, ChubbyHandleException {
         logger.trace("requested handle creation on: 'handleAbsolutePath:{}', 'chubbyHandleType:{}', 'chubbyEventTypeArrayList:{}', 'lockdelay:{}'", chubbyHandleRequest.getRequestedAbsolutePath(), chubbyHandleRequest.getChubbyHandleType(), chubbyHandleRequest.getChubbyEventTypeList(), chubbyHandleRequest.getChubbyLockDelay().getValue());
 
-        ByteSequence handleAbsolutePathByteSequence = ByteSequence.from(chubbyHandleRequest.getRequestedAbsolutePath().getBytes(charset));
-
         /* --- exclusive (write or change_acl) lock --- */
         if (chubbyHandleRequest.getChubbyHandleType().equals(ChubbyHandleType.WRITE) || chubbyHandleRequest.getChubbyHandleType().equals(ChubbyHandleType.CHANGE_ACL)) {
 
@@ -217,117 +273,168 @@ public class ChubbyNamespace {
                 throw new ChubbyLockException("cannot get exclusive lock on '" + chubbyHandleRequest.getRequestedAbsolutePath() + "' since it's a default node");
             }
 
-            Lease leaseClient = client.getLeaseClient();
-            Lock lockClient = client.getLockClient();
-            KV kvClient = client.getKVClient();
-
-            return this.getLs(client, handleAbsolutePathByteSequence, 1).thenCompose(lsResponse -> {
-                logger.trace(lsResponse);
-                //checks if node is already exclusively locked (only lock IDs start with a '/', paths use backslash '\')
-                boolean locked = lsResponse.stream().anyMatch(s -> s.startsWith("/"));
-                if (locked) {
-                    logger.trace("cannot obtain lock on '{}' because it's already exclusively locked", handleAbsolutePathByteSequence);
-
-                    logger.trace("about to retrieve node from kv store '{}'", handleAbsolutePathByteSequence);
-                    return kvClient.get(handleAbsolutePathByteSequence).thenCompose(getResponse -> {
-                        logger.trace("increasing number of lock requests by 1...");
-                        ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
-
-                        logger.trace("before lock request increase '{}'", chubbyNodeValue.getMetadata().getLockRequestNumber());
-                        chubbyNodeValue.getMetadata().increaseLockRequestNumber();
-                        logger.trace("after lock request increase '{}'", chubbyNodeValue.getMetadata().getLockRequestNumber());
-
-                        ByteSequence updatedChubbyNodeValueByteSequence = ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes());
-
-                        logger.trace("about to put 'k={}, v={}' into kv store", handleAbsolutePathByteSequence, updatedChubbyNodeValueByteSequence);
-                        return kvClient.put(handleAbsolutePathByteSequence, updatedChubbyNodeValueByteSequence).thenCompose(putResponse -> {
-//                            throw new RuntimeException(new ChubbyLockException("specified node is already exclusively locked"));
-                            logger.error("specified node is already exclusively locked");
-                            return CompletableFuture.completedFuture(null);
-                        });
-                    });
-                } else {
-                    // if not already locked, get the lock
-                    // grant a lease with TTL of lockdelay seconds
-                    logger.trace("node '{}' not already exclusively locked, granting lock...", handleAbsolutePathByteSequence);
-                    logger.trace("about to grant lease of 'lockDelay={}' seconds...", chubbyHandleRequest.getChubbyLockDelay().getValue());
-                    return leaseClient.grant(chubbyHandleRequest.getChubbyLockDelay().getValue()).thenCompose(leaseGrantResponse -> {
-                        logger.trace("activating keep alive with 'id={}'", leaseGrantResponse.getID());
-                        leaseClient.keepAlive(leaseGrantResponse.getID(), new ChubbyLockObserver<>(username, chubbyHandleRequest, client));
-
-                        logger.trace("granting lock on '{}' node", handleAbsolutePathByteSequence);
-                        return lockClient.lock(handleAbsolutePathByteSequence, leaseGrantResponse.getID()).thenCompose(lockResponse -> {
-
-                            //process subscriptions
-                            this.watcherResponse = ChubbySubscribeProcessor.process(client, Path.of(chubbyHandleRequest.getRequestedAbsolutePath()), chubbyHandleRequest.getChubbyHandleType(), chubbyHandleRequest.getChubbyEventTypeList());
-
-                            //update lock generation number and client lock map
-                            AtomicLong nodeLockGenerationNumber = new AtomicLong();
-                            return kvClient.get(handleAbsolutePathByteSequence).thenCompose(getResponse -> {
-                                String chubbyNodeValueJsonString = getResponse.getKvs().getFirst().getValue().toString();
-
-                                ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(chubbyNodeValueJsonString);
-
-                                logger.trace("updating lock client map with 'k={}, v={}'", username, chubbyHandleRequest.getChubbyHandleType());
-                                chubbyNodeValue.getMetadata().addClientLock(username, chubbyHandleRequest.getChubbyHandleType());
-                                nodeLockGenerationNumber.set(chubbyNodeValue.getMetadata().getLockGenerationNumber());
-                                logger.trace("updated map '{}'", chubbyNodeValue.getMetadata().getLockClientMapSize());
-
-                                String chubbyUpdatedNodeValueJsonString = ChubbyNodeValueSerializer.serialize(chubbyNodeValue);
-                                logger.trace("serialized node value: '{}'", chubbyUpdatedNodeValueJsonString);
-
-                                return kvClient.put(handleAbsolutePathByteSequence, ByteSequence.from(chubbyUpdatedNodeValueJsonString.getBytes())).thenCompose(putResponse -> {
-                                    ChubbyHandleResponse chubbyHandleResponse = new ChubbyHandleResponse(Path.of(chubbyHandleRequest.getRequestedAbsolutePath()), chubbyHandleRequest.getChubbyHandleType(), lockResponse.getKey().toString(), String.valueOf(leaseGrantResponse.getID()));
-                                    logger.trace("exclusive lock successfully acquired");
-                                    return CompletableFuture.completedFuture(chubbyHandleResponse);
-                                });
-                            });
-                        });
-                    });
-                }
-            });
+            return this.lockExclusively(username, client, chubbyHandleRequest);
 
-            /* --- shared (read) lock (it's not a real lock, it's simply access to the resource with a lease) --- */
+            /* --- shared (read) lock --- */
         } else if (chubbyHandleRequest.getChubbyHandleType().equals(ChubbyHandleType.READ)) {
-            KV kvClient = client.getKVClient();
-
-            return kvClient.get(handleAbsolutePathByteSequence).thenCompose((getResponse) -> {
-                Lease leaseClient = client.getLeaseClient();
+            return this.lockShared(username, client, chubbyHandleRequest);
+        } else {
+            logger.trace("no matching handle type detected");
+            throw new ChubbyHandleException("no matching handle type detected");
+        }
+    }
 
-                logger.trace("about to grant lease of 'lockDelay={}' seconds...", chubbyHandleRequest.getChubbyLockDelay().getValue());
-                return leaseClient.grant(chubbyHandleRequest.getChubbyLockDelay().getValue()).thenCompose(leaseGrantResponse -> {
-                    logger.trace("activating keep alive with 'id={}'", leaseGrantResponse.getID());
-                    leaseClient.keepAlive(leaseGrantResponse.getID(), new ChubbyLockObserver<>(username, chubbyHandleRequest, client));
+    /**
+     * Acquires the exclusive lock on the requested node, bound to the session lease. The lock is acquired with a single
+     * compare-and-swap transaction, if it's held by another client the request is counted as a conflicting lock
+     * request, then the client either waits for the lock or fails at once.
+     *
+     * @param username            username
+     * @param client              etcd client
+     * @param chubbyHandleRequest handle request from client
+     * @return a CompletableFuture containing the handle response, null if the lock is held by another client
+     */
+    private CompletableFuture<ChubbyHandleResponse> lockExclusively(String username, @NotNull Client client, @NotNull ChubbyHandleRequest chubbyHandleRequest) {
+        String handleAbsolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
 
-                    String chubbyNodeValueJsonString = getResponse.getKvs().getFirst().getValue().toString();
+        return this.awaitLockDelay(chubbyHandleRequest).thenCompose(v -> this.getSessionLease(username, client)).thenCompose(chubbySessionLease -> {
+            logger.trace("acquiring exclusive lock on '{}' node with session lease 'id={}'", handleAbsolutePath, chubbySessionLease.getLeaseId());
+            return ChubbyLockProcessor.tryAcquire(client, username, chubbyHandleRequest, chubbySessionLease.getLeaseId(), this.nodeUpdater).<Boolean>thenCompose(acquired -> {
+                if (acquired) {
+                    return CompletableFuture.completedFuture(true);
+                }
 
-                    logger.trace("chubbyNodeValue to deserialize: '{}'\nnode path:'{}'", chubbyNodeValueJsonString, getResponse.getKvs().getFirst().getKey());
-                    ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(chubbyNodeValueJsonString);
+                logger.trace("cannot obtain lock on '{}' because it's already exclusively locked", handleAbsolutePath);
+                return this.increaseLockRequestNumber(client, handleAbsolutePath).<Boolean>thenCompose(increased -> {
+                    //the client may wait for the lock to be handed over instead of retrying
+                    if (chubbyHandleRequest.getLockWaitSeconds() > 0) {
+                        logger.trace("waiting up to {} seconds for exclusive lock on '{}'", chubbyHandleRequest.getLockWaitSeconds(), handleAbsolutePath);
+                        return ChubbyLockProcessor.acquire(client, username, chubbyHandleRequest, chubbySessionLease.getLeaseId(), chubbyHandleRequest.getLockWaitSeconds(), this.writerPreference, this.lockDelayTable, this.nodeUpdater).thenApply(v -> true);
+                    }
 
-                    chubbyNodeValue.getMetadata().addClientLock(username, chubbyHandleRequest.getChubbyHandleType());
+                    logger.error("specified node is already exclusively locked");
+                    return CompletableFuture.completedFuture(false);
+                });
+            }).thenApply(acquired -> {
+                if (!acquired) {
+                    return null;
+                }
 
-                    String chubbyUpdatedNodeValueJsonString = ChubbyNodeValueSerializer.serialize(chubbyNodeValue);
+                chubbySessionLease.register(chubbyHandleRequest);
 
-                    kvClient.put(handleAbsolutePathByteSequence, ByteSequence.from(chubbyUpdatedNodeValueJsonString.getBytes()));
+                //process subscriptions
+                this.subscribe(username, client, chubbyHandleRequest);
 
-                    logger.trace("acquired shared lock on {}", chubbyHandleRequest.getRequestedAbsolutePath());
+                logger.trace("exclusive lock successfully acquired");
+                return new ChubbyHandleResponse(Path.of(handleAbsolutePath), chubbyHandleRequest.getChubbyHandleType(), ChubbyLockProcessor.holderKeyOf(handleAbsolutePath), String.valueOf(chubbySessionLease.getLeaseId()));
+            });
+        });
+    }
 
-                    //add subscriptions
-                    this.watcherResponse = ChubbySubscribeProcessor.process(client, Path.of(chubbyHandleRequest.getRequestedAbsolutePath()), chubbyHandleRequest.getChubbyHandleType(), chubbyHandleRequest.getChubbyEventTypeList());
+    /**
+     * Acquires the shared lock on the requested node, bound to the session lease. Each reader holds its own key, so
+     * any number of readers can hold the lock together without contending on the node value, while no reader can
+     * acquire it as long as a client holds or is acquiring the exclusive lock. Shared locks are not delayed by the
+     * lock-delay of a failed exclusive holder.
+     *
+     * @param username            username
+     * @param client              etcd client
+     * @param chubbyHandleRequest handle request from client
+     * @return a CompletableFuture containing the handle response, null if the exclusive lock is held by another client
+     */
+    private CompletableFuture<ChubbyHandleResponse> lockShared(String username, @NotNull Client client, @NotNull ChubbyHandleRequest chubbyHandleRequest) {
+        String handleAbsolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+
+        return this.getSessionLease(username, client).thenCompose(chubbySessionLease -> {
+            logger.trace("acquiring shared lock on '{}' node with session lease 'id={}'", handleAbsolutePath, chubbySessionLease.getLeaseId());
+            return ChubbyLockProcessor.tryAcquireShared(client, username, chubbyHandleRequest, chubbySessionLease.getLeaseId()).<ChubbyNodeValue>thenCompose(chubbyNodeValue -> {
+                if (chubbyNodeValue != null) {
+                    return CompletableFuture.completedFuture(chubbyNodeValue);
+                }
 
-                    ChubbyHandleResponse chubbyHandleResponse = new ChubbyHandleResponse(Path.of(chubbyHandleRequest.getRequestedAbsolutePath()), chubbyHandleRequest.getChubbyHandleType(), null, String.valueOf(leaseGrantResponse.getID()));
-                    chubbyHandleResponse.setFileContent(chubbyNodeValue.getFilecontent());
+                logger.trace("cannot obtain shared lock on '{}' because it's exclusively locked", handleAbsolutePath);
+                return this.increaseLockRequestNumber(client, handleAbsolutePath).<ChubbyNodeValue>thenCompose(increased -> {
+                    if (chubbyHandleRequest.getLockWaitSeconds() > 0) {
+                        logger.trace("waiting up to {} seconds for shared lock on '{}'", chubbyHandleRequest.getLockWaitSeconds(), handleAbsolutePath);
+                        return ChubbyLockProcessor.acquireShared(client, username, chubbyHandleRequest, chubbySessionLease.getLeaseId(), chubbyHandleRequest.getLockWaitSeconds());
+                    }
 
-                    return CompletableFuture.completedFuture(chubbyHandleResponse);
+                    logger.error("specified node is already exclusively locked");
+                    return CompletableFuture.completedFuture(null);
                 });
-            }).exceptionally(throwable -> {
-                logger.error("failed to get lock", throwable);
-                throw new RuntimeException(new ChubbyLockException("failed to get shared lock"));
+            }).thenApply(chubbyNodeValue -> {
+                if (chubbyNodeValue == null) {
+                    return null;
+                }
+
+                chubbySessionLease.register(chubbyHandleRequest);
+
+                //add subscriptions
+                this.subscribe(username, client, chubbyHandleRequest);
+
+                logger.trace("acquired shared lock on {}", handleAbsolutePath);
+                ChubbyHandleResponse chubbyHandleResponse = new ChubbyHandleResponse(Path.of(handleAbsolutePath), chubbyHandleRequest.getChubbyHandleType(), null, String.valueOf(chubbySessionLease.getLeaseId()));
+                chubbyHandleResponse.setFileContent(chubbyNodeValue.getFilecontent());
+                return chubbyHandleResponse;
             });
-        } else {
-            logger.trace("no matching handle type detected");
-            throw new ChubbyHandleException("no matching handle type detected");
+        }).exceptionally(throwable -> {
+            logger.error("failed to get lock", throwable);
+
+            //a timeout is reported as it is
+            if (throwable.getCause() instanceof RuntimeException runtimeException && runtimeException.getCause() instanceof ChubbyLockException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(new ChubbyLockException("failed to get shared lock"));
+        });
+    }
+
+    /**
+     * Waits for the lock-delay of the requested node to be over, if its last exclusive holder failed. The delay is
+     * checked in memory, with no request to the kv store: a lock released cleanly has no delay, so the handoff is
+     * immediate.
+     *
+     * @param chubbyHandleRequest handle request from client
+     * @return a CompletableFuture completed once the lock may be acquired, or failed with a ChubbyLockException if the
+     * client does not wait long enough for the delay to be over
+     */
+    private CompletableFuture<Void> awaitLockDelay(@NotNull ChubbyHandleRequest chubbyHandleRequest) {
+        String handleAbsolutePath = ChubbyPath.of(chubbyHandleRequest.getRequestedAbsolutePath()).toString();
+        long lockDelayMillis = this.lockDelayTable.getRemainingMillis(handleAbsolutePath);
+
+        if (lockDelayMillis == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long lockWaitMillis = TimeUnit.SECONDS.toMillis(chubbyHandleRequest.getLockWaitSeconds());
+        if (lockWaitMillis < lockDelayMillis) {
+            logger.error("lock on '{}' is in its lock-delay for {} more ms", handleAbsolutePath, lockDelayMillis);
+            return CompletableFuture.failedFuture(new RuntimeException(new ChubbyLockException("lock on '" + handleAbsolutePath + "' is unavailable for " + (lockDelayMillis + 999) / 1000 + " more second(s), its last holder failed")));
         }
+
+        //the time spent waiting for the delay is taken from the time the client waits for the lock, rounded up so that
+        //a delay shorter than the wait never leaves the client no time to wait
+        logger.trace("waiting {} ms for the lock-delay of '{}' to be over", lockDelayMillis, handleAbsolutePath);
+        chubbyHandleRequest.setLockWaitSeconds((int) ((lockWaitMillis - lockDelayMillis + 999) / 1000));
+        return ChubbyLockProcessor.delay(lockDelayMillis);
+    }
+
+    /**
+     * Increases by one the number of lock requests of the specified node, used to notify conflicting lock requests
+     *
+     * @param client       etcd client
+     * @param absolutePath absolute path of the node
+     * @return a CompletableFuture containing true if the number was increased, false if the node does not exist
+     */
+    private CompletableFuture<Boolean> increaseLockRequestNumber(@NotNull Client client, @NotNull String absolutePath) {
+        ByteSequence absolutePathByteSequence = ChubbyPath.of(absolutePath).toByteSequence();
+
+        logger.trace("about to increase number of lock requests of '{}' by 1", absolutePathByteSequence);
+        return this.nodeUpdater.updateNode(client.getKVClient(), absolutePathByteSequence, chubbyNodeValue -> {
+            logger.trace("before lock request increase '{}'", chubbyNodeValue.getMetadata().getLockRequestNumber());
+            chubbyNodeValue.getMetadata().increaseLockRequestNumber();
+            logger.trace("after lock request increase '{}'", chubbyNodeValue.getMetadata().getLockRequestNumber());
+            return chubbyNodeValue;
+        });
     }
 
     /**
@@ -342,7 +449,7 @@ public class ChubbyNamespace {
      */
     public CompletableFuture<Boolean> isClientPermittedAccess(@NotNull String username, @NotNull Client client, @NotNull ChubbyHandleType requestedHandleType, @NotNull Path absolutePath) throws ChubbyNodeException {
         logger.trace("requested isClientPermittedAccess with 'username:{}', 'requestedHandleType:{}', 'absolutePath:{}'", username, requestedHandleType, absolutePath);
-        ByteSequence nodePathKey = ByteSequence.from(absolutePath.toString().getBytes());
+        ByteSequence nodePathKey = ChubbyPath.of(absolutePath).toByteSequence();
         KV kvClient = client.getKVClient();
 
         logger.trace("about to retrieve node from kv store '{}'", nodePathKey);
@@ -361,7 +468,7 @@ public class ChubbyNamespace {
 
                 logger.trace("node '{}' is not a default node, checking if user '{}' is present into acl file", aclNameAbsolutePathString, username);
                 logger.trace("about to retrieve acl file from kv store '{}'", aclNameAbsolutePathString);
-                return kvClient.get(ByteSequence.from(aclNameAbsolutePathString.getBytes())).thenCompose(getResponseAclFile -> {
+                return kvClient.get(ChubbyPath.of(aclNameAbsolutePathString).toByteSequence()).thenCompose(getResponseAclFile -> {
                     if (getResponseAclFile.getCount() > 0) {
                         logger.trace("acl file '{}' retrieved from kv store", getResponseAclFile.getKvs().getFirst().getKey());
                         List<String> fileValueList = ChubbyUtils.gsonBuild().fromJson(getResponseAclFile.getKvs().getFirst().getValue().toString(), new TypeToken<List<String>>() {
@@ -380,105 +487,6 @@ public class ChubbyNamespace {
         });
     }
 
-    /**
-     * Initializes the namespace with default nodes' ACLs
-     *
-     * @param client etcd client
-     * @return a CompletableFuture containing a boolean 'true' if the namespace is successfully initialized
-     */
-    private @NotNull CompletableFuture<Void> initializeACLs(Client client) throws ChubbyACLException {
-        logger.trace("requested initializeACLs");
-
-        //this method assumes that root node exists in kv store
-        logger.trace("about to initialize root and ls ACLs");
-//        return this.initializeLsNodeACLs(client).thenCompose(v -> {
-        //assign to default nodes the initial acl names, they inherit them from root acl names
-        logger.trace("about to assign to default nodes the initial acl names inherited from root acl names");
-        CompletableFuture<Void> futureChain = CompletableFuture.completedFuture(null);
-        for (Path path : this.defaultNodesToCreate) {
-            futureChain = futureChain.thenCompose(vv -> {
-                try {
-
-                    return this.inheritACLNames(path, client).thenCompose(aBoolean -> null);
-                } catch (ChubbyACLException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-        }
-
-        return futureChain;
-//        });
-    }
-
-
-    /**
-     * Initializes ls node ACLs
-     *
-     * @param client etcd client
-     * @return a CompletableFuture containing a boolean 'true' if the namespace is successfully initialized
-     */
-    private @NotNull CompletableFuture<Boolean> initializeLsNodeACLs(@NotNull Client client) {
-        logger.trace("requested initializeLsNodeACLs");
-        Map<ChubbyHandleType, String> aclNamesMap = new HashMap<>();
-
-        aclNamesMap.put(ChubbyHandleType.READ, "read");
-        aclNamesMap.put(ChubbyHandleType.WRITE, "write");
-        aclNamesMap.put(ChubbyHandleType.CHANGE_ACL, "change_acl");
-        logger.trace("default aclNamesMap:{}", aclNamesMap);
-
-        ByteSequence rootKey = ByteSequence.from(this.getRoot().toString().getBytes());
-
-        return client.getKVClient().get(rootKey).thenCompose(getResponse -> {
-            ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
-            logger.trace("root node value deserialized '{}'", chubbyNodeValue.toString());
-
-            chubbyNodeValue.getMetadata().setAclNamesMap(aclNamesMap);
-            logger.trace("root node value updated '{}'", chubbyNodeValue.toString());
-
-            return client.getKVClient().put(rootKey, ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes())).thenCompose(putResponse -> {
-                ByteSequence lsKey = ByteSequence.from(this.getRoot().resolve("/ls").toString().getBytes());
-
-                return client.getKVClient().get(lsKey).thenCompose(lsResponse -> {
-                    ChubbyNodeValue lsNodeValue = ChubbyNodeValueDeserializer.deserialize(lsResponse.getKvs().getFirst().getValue().toString());
-                    logger.trace("ls node value deserialized '{}'", lsNodeValue.toString());
-
-                    lsNodeValue.getMetadata().setAclNamesMap(aclNamesMap);
-                    logger.trace("ls node value updated '{}'", lsNodeValue.toString());
-
-                    return client.getKVClient().put(lsKey, ByteSequence.from(ChubbyNodeValueSerializer.serialize(lsNodeValue).getBytes())).thenCompose(putResponse2 -> CompletableFuture.completedFuture(true));
-                });
-            });
-        });
-    }
-
-    /**
-     * Initializes ls node ACLs
-     *
-     * @param client etcd client
-     * @return a CompletableFuture containing a boolean 'true' if the namespace is successfully initialized
-     */
-    private @NotNull CompletableFuture<Boolean> initializeRootNodeACLs(@NotNull Client client) {
-        logger.trace("requested initializeRootNodeACLs");
-        Map<ChubbyHandleType, String> aclNamesMap = new HashMap<>();
-
-        aclNamesMap.put(ChubbyHandleType.READ, "read");
-        aclNamesMap.put(ChubbyHandleType.WRITE, "write");
-        aclNamesMap.put(ChubbyHandleType.CHANGE_ACL, "change_acl");
-        logger.trace("default aclNamesMap:{}", aclNamesMap);
-
-        ByteSequence rootKey = ByteSequence.from(this.getRoot().toString().getBytes());
-
-        return client.getKVClient().get(rootKey).thenCompose(getResponse -> {
-            ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
-            logger.trace("root node value deserialized '{}'", chubbyNodeValue.toString());
-
-            chubbyNodeValue.getMetadata().setAclNamesMap(aclNamesMap);
-            logger.trace("root node value updated '{}'", chubbyNodeValue.toString());
-
-            return client.getKVClient().put(rootKey, ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes())).thenCompose(putResponse -> CompletableFuture.completedFuture(true));
-        });
-    }
-
     /**
      * Inherit ACL names from parent nodes to child nodes
      *
@@ -503,7 +511,7 @@ public class ChubbyNamespace {
 
             logger.trace("starting iteration on current path '{}'", finalCurrentPath);
             logger.trace("about to retrieve node from kv store '{}'", finalCurrentPath);
-            futureChain = futureChain.thenCompose(previousResult -> kvClient.get(ByteSequence.from(finalCurrentPath.toString().getBytes())).thenCompose(getResponse -> {
+            futureChain = futureChain.thenCompose(previousResult -> kvClient.get(ChubbyPath.of(finalCurrentPath).toByteSequence()).thenCompose(getResponse -> {
                 if (getResponse.getCount() > 0) {
                     logger.trace("node '{}' retrieved from kv store", finalCurrentPath);
 
@@ -517,22 +525,17 @@ public class ChubbyNamespace {
                     logger.trace("parentAclNamesMap updated '{}'", parentAclNamesMap);
                     String nextKey = finalCurrentPath.resolveSibling(path.getFileName().toString()).toString();
 
-                    logger.trace("about to retrieve next node from kv store '{}'", nextKey);
-                    return kvClient.get(ByteSequence.from(nextKey.getBytes())).thenCompose(nextResponse -> {
-                        if (nextResponse.getCount() > 0) {
-                            logger.trace("next node '{}' retrieved from kv store", nextKey);
-                            ChubbyNodeValue nextNodeValue = ChubbyNodeValueDeserializer.deserialize(nextResponse.getKvs().getFirst().getValue().toString());
-
-                            logger.trace("next node '{}' acl names map '{}'", nextKey, nextNodeValue.getMetadata().getAclNamesMap());
-                            nextNodeValue.getMetadata().setAclNamesMap(parentAclNamesMap);
-                            logger.trace("next node '{}' acl names map updated '{}'", nextKey, nextNodeValue.getMetadata().getAclNamesMap());
-
-                            logger.trace("about to put updated next node '{}' back into kv store", nextKey);
-                            return kvClient.put(ByteSequence.from(nextKey.getBytes()), ByteSequence.from(ChubbyNodeValueSerializer.serialize(nextNodeValue).getBytes())).thenCompose(putResponse -> CompletableFuture.completedFuture(null));
-                        } else {
-
+                    logger.trace("about to update next node '{}' in kv store", nextKey);
+                    return this.nodeUpdater.updateNode(kvClient, ChubbyPath.of(nextKey).toByteSequence(), nextNodeValue -> {
+                        logger.trace("next node '{}' acl names map '{}'", nextKey, nextNodeValue.getMetadata().getAclNamesMap());
+                        nextNodeValue.getMetadata().setAclNamesMap(new HashMap<>(parentAclNamesMap));
+                        logger.trace("next node '{}' acl names map updated '{}'", nextKey, nextNodeValue.getMetadata().getAclNamesMap());
+                        return nextNodeValue;
+                    }).thenCompose(updated -> {
+                        if (!updated) {
                             throw new RuntimeException(new ChubbyACLException("node '" + nextKey + "' does not exist in the kv store"));
                         }
+                        return CompletableFuture.completedFuture(null);
                     });
                 } else {
 
@@ -565,7 +568,7 @@ public class ChubbyNamespace {
             throw new ChubbyHandleException("it's not possible to change acl names of current node with '" + heldHandleType + "' handle type, acquire '" + ChubbyHandleType.CHANGE_ACL + "' handle type before proceeding");
         }
 
-        ByteSequence nodePathKey = ByteSequence.from(absolutePath.toString().getBytes());
+        ByteSequence nodePathKey = ChubbyPath.of(absolutePath).toByteSequence();
         String newACLNameAbsolutePath = this.aclNameToAbsolutePath(newACLName);
 
         logger.trace("about to check if specified new ACL name is already assigned to another node's ACL name '{}'", newACLNameAbsolutePath);
@@ -573,41 +576,49 @@ public class ChubbyNamespace {
             if (!created) {
                 throw new RuntimeException(new ChubbyACLException("specified new ACL name '" + newACLNameAbsolutePath + "' is already assigned to another node, consider using another name"));
             } else {
-                logger.trace("about to retrieve kv pair from store with 'key:{}'", nodePathKey);
-                return kvClient.get(nodePathKey).thenCompose(getResponse -> {
+                //the old acl file is only checked while the node is updated, it's removed once the new name is committed,
+                //so that retrying a conflicting update never removes it twice
+                AtomicReference<String> oldACLNodeAbsolutePathReference = new AtomicReference<>();
+
+                logger.trace("about to update kv pair with 'key:{}'", nodePathKey);
+                return this.nodeUpdater.updateNodeAsync(kvClient, nodePathKey, chubbyNodeValue -> {
+                    logger.trace("old acl names map: '{}'", chubbyNodeValue.getMetadata().getAclNamesMap());
+
+                    String oldACLNodeFileName = chubbyNodeValue.getMetadata().getAclNamesMap().get(ACLTypeToChange);
+                    String oldACLNodeAbsolutePath = this.aclNameToAbsolutePath(oldACLNodeFileName);
+                    oldACLNodeAbsolutePathReference.set(oldACLNodeAbsolutePath);
+
+                    logger.trace("about to check if old ACL node file is present: '{}'", oldACLNodeAbsolutePath);
+                    return this.isACLNodeFilePresent(oldACLNodeAbsolutePath, client).thenApply(present -> {
+                        if (!present) {
+                            return null;
+                        }
+
+                        //replaces old name with new one
+                        chubbyNodeValue.getMetadata().getAclNamesMap().put(ACLTypeToChange, newACLName);
+                        logger.trace("new acl names map: '{}'", chubbyNodeValue.getMetadata().getAclNamesMap());
+
+                        //update acl generation number
+                        chubbyNodeValue.getMetadata().increaseAclGenerationNumberOnce();
+                        return chubbyNodeValue;
+                    });
+                }).thenCompose(updated -> {
+                    String oldACLNodeAbsolutePath = oldACLNodeAbsolutePathReference.get();
+                    if (updated) {
+                        logger.trace("about to remove old ACL node file: '{}'", oldACLNodeAbsolutePath);
+                        return this.removeACLNodeFileIfPresent(oldACLNodeAbsolutePath, client).thenApply(removed -> ByteSequence.from("node content updated successfully".getBytes()));
+                    }
+
                     //if node exists (it should always exist, since in order to call this method or remove this node a user needs a write (exclusive) lock)
-                    if (getResponse.getCount() > 0) {
-                        ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
-                        logger.trace("old acl names map: '{}'", chubbyNodeValue.getMetadata().getAclNamesMap());
-
-                        //remove old acl permission file
-                        String oldACLNodeFileName = chubbyNodeValue.getMetadata().getAclNamesMap().get(ACLTypeToChange);
-                        String oldACLNodeAbsolutePath = this.aclNameToAbsolutePath(oldACLNodeFileName);
-
-                        logger.trace("about to remove ACL node file if present: '{}'", oldACLNodeAbsolutePath);
-                        return this.removeACLNodeFileIfPresent(oldACLNodeAbsolutePath, client).thenCompose(removed -> {
-                            if (removed) {
-                                //replaces old name with new one
-                                chubbyNodeValue.getMetadata().getAclNamesMap().put(ACLTypeToChange, newACLName);
-                                logger.trace("new acl names map: '{}'", chubbyNodeValue.getMetadata().getAclNamesMap());
-
-                                //update acl generation number
-                                chubbyNodeValue.getMetadata().increaseAclGenerationNumberOnce();
-
-                                logger.trace("about to put node: '{}'", absolutePath.toString());
-                                return kvClient.put(nodePathKey, ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes())).thenCompose(putResponse -> CompletableFuture.completedFuture(ByteSequence.from("node content updated successfully".getBytes())));
-                            } else {
-                                logger.trace("about to remove ACL node file if present: '{}'", newACLNameAbsolutePath);
-                                //whether the new file is present, remove it, then throw an exception.
-                                this.removeACLNodeFileIfPresent(newACLNameAbsolutePath, client).thenCompose(removed1 -> {
-                                    throw new RuntimeException(new ChubbyACLException("old ACL name '" + oldACLNodeAbsolutePath + "' is not present into kv store"));
-                                });
-                            }
-                            return CompletableFuture.completedFuture(null);
-                        });
-                    } else {
+                    if (oldACLNodeAbsolutePath == null) {
                         throw new RuntimeException(new ChubbyNodeException("specified node '" + absolutePath + "' does not exist"));
                     }
+
+                    logger.trace("about to remove ACL node file if present: '{}'", newACLNameAbsolutePath);
+                    //whether the new file is present, remove it, then throw an exception.
+                    return this.removeACLNodeFileIfPresent(newACLNameAbsolutePath, client).<ByteSequence>thenApply(removed -> {
+                        throw new RuntimeException(new ChubbyACLException("old ACL name '" + oldACLNodeAbsolutePath + "' is not present into kv store"));
+                    });
                 });
             }
         });
@@ -624,7 +635,7 @@ public class ChubbyNamespace {
      */
     private CompletableFuture<Boolean> createACLNodeFileIfAbsent(@NotNull String newACLNameAbsolutePathString, @NotNull Client client, @NotNull String username) {
         KV kvClient = client.getKVClient();
-        ByteSequence newACLNameAbsolutePathByteSequence = ByteSequence.from(newACLNameAbsolutePathString.getBytes());
+        ByteSequence newACLNameAbsolutePathByteSequence = ChubbyPath.of(newACLNameAbsolutePathString).toByteSequence();
 
         return kvClient.get(newACLNameAbsolutePathByteSequence).thenCompose(getResponse -> {
             if (getResponse.getCount() > 0) {
@@ -639,6 +650,21 @@ public class ChubbyNamespace {
         });
     }
 
+    /**
+     * Checks if an ACL node file is present, default nodes always are
+     *
+     * @param aclNameAbsolutePathString absolute path of the ACL name
+     * @param client                    etcd client
+     * @return a CompletableFuture containing a boolean 'true' if the ACL node file is present, 'false' otherwise
+     */
+    private CompletableFuture<Boolean> isACLNodeFilePresent(@NotNull String aclNameAbsolutePathString, @NotNull Client client) {
+        if (this.isDefaultNode(Path.of(aclNameAbsolutePathString))) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return client.getKVClient().get(ChubbyPath.of(aclNameAbsolutePathString).toByteSequence(), GetOption.newBuilder().withCountOnly(true).build()).thenApply(getResponse -> getResponse.getCount() > 0);
+    }
+
     /**
      * Removes an ACL node file if it's present
      *
@@ -657,7 +683,7 @@ public class ChubbyNamespace {
         }
 
         KV kvClient = client.getKVClient();
-        ByteSequence aclNameAbsolutePathByteSequence = ByteSequence.from(aclNameAbsolutePathString.getBytes());
+        ByteSequence aclNameAbsolutePathByteSequence = ChubbyPath.of(aclNameAbsolutePathString).toByteSequence();
 
         logger.trace("about to retrieve node: '{}'", aclNameAbsolutePathString);
         return kvClient.get(aclNameAbsolutePathByteSequence).thenCompose(getResponse -> {
@@ -692,7 +718,7 @@ public class ChubbyNamespace {
             throw new ChubbyHandleException("it's not possible to change acl names of current node with '" + heldChubbyHandleType + "' handle type, acquire '" + ChubbyHandleType.CHANGE_ACL + "' handle type before proceeding");
         }
 
-        ByteSequence nodePathKey = ByteSequence.from(absolutePath.toString().getBytes());
+        ByteSequence nodePathKey = ChubbyPath.of(absolutePath).toByteSequence();
         KV kvClient = client.getKVClient();
 
         logger.trace("about to retrieve key '{}'", absolutePath.toString());
@@ -738,15 +764,15 @@ public class ChubbyNamespace {
         }
 
         KV kvClient = client.getKVClient();
-        ByteSequence existingACLNameAbsolutePathByteSequence = ByteSequence.from(existingACLNameFileAbsolutePathString.getBytes());
+        ByteSequence existingACLNameAbsolutePathByteSequence = ChubbyPath.of(existingACLNameFileAbsolutePathString).toByteSequence();
 
-        logger.trace("about to retrieve acl name file '{}' from kv store", existingACLNameAbsolutePathByteSequence);
-        return kvClient.get(existingACLNameAbsolutePathByteSequence).thenCompose(getResponse -> {
-            if (getResponse.getCount() > 0) {
-                logger.trace("about to unmarshal acl names of given acl file '{}'", getResponse.getKvs().getFirst().getKey().toString());
+        logger.trace("about to update acl name file '{}' in kv store", existingACLNameAbsolutePathByteSequence);
+        return this.nodeUpdater.update(kvClient, existingACLNameAbsolutePathByteSequence, keyValue -> {
+            if (keyValue != null) {
+                logger.trace("about to unmarshal acl names of given acl file '{}'", keyValue.getKey().toString());
                 Type listStringType = new TypeToken<List<String>>() {
                 }.getType();
-                List<String> fileValueList = ChubbyUtils.gsonBuild().fromJson(getResponse.getKvs().getFirst().getValue().toString(), listStringType);
+                List<String> fileValueList = ChubbyUtils.gsonBuild().fromJson(keyValue.getValue().toString(), listStringType);
 
                 logger.trace("unmarshalled fileValueList: '{}'", fileValueList);
                 Arrays.stream(usernames).forEach(e -> {
@@ -760,7 +786,7 @@ public class ChubbyNamespace {
                 logger.trace("marshalled fileValueList: '{}'", fileValueListString);
 
                 logger.trace("about to put updated kv pair: k='{}', v='{}'", existingACLNameAbsolutePathByteSequence, fileValueListString);
-                return kvClient.put(existingACLNameAbsolutePathByteSequence, ByteSequence.from(fileValueListString.getBytes())).thenCompose(putResponse -> CompletableFuture.completedFuture(true));
+                return CompletableFuture.completedFuture(ByteSequence.from(fileValueListString.getBytes()));
             } else {
                 throw new RuntimeException(new ChubbyNodeException("node '" + existingACLNameAbsolutePathByteSequence + "' not found"));
             }
@@ -773,48 +799,106 @@ public class ChubbyNamespace {
      * @param aclName ACL name file
      * @return the absolute path of the ACL name file
      */
-    private @NotNull String aclNameToAbsolutePath(@NotNull String aclName) {
-        return this.aclNodeAbsolutePath.resolve(aclName + ".txt").toString();
+    protected @NotNull String aclNameToAbsolutePath(@NotNull String aclName) {
+        return this.aclNodeChubbyPath.resolve(aclName + ".txt").toString();
     }
 
     /**
      * Creates default nodes and initializes ACLs
      *
      * @param client   etcd client
-     * @return a CompletableFuture containing a ChubbyHandleResponse with the handle of the root node
+     * @return a CompletableFuture completed once the default nodes are created
      * @throws ExecutionException   if the computation threw an exception
      * @throws InterruptedException if the current thread was interrupted while waiting
      */
     public CompletableFuture<Void> createDefaultNodes(Client client) throws ExecutionException, InterruptedException {
         logger.trace("requested default nodes creation");
+        this.provisionDefaultNodes(client).get();
+        logger.trace("default nodes created");
 
-        //create default directories without any event subscription
-        for (Path path : this.defaultNodesToCreate) {
-            logger.trace("about to create default node '{}'", path.toString());
+        return CompletableFuture.completedFuture(null);
+    }
 
-            try {
-                this.createNode(client, path, ChubbyNodeAttribute.PERMANENT, true).get();
+    /**
+     * Creates the default nodes that are missing and assigns the default ACL names to every default node, with a single
+     * read and a single write transaction. Default nodes inherit their ACL names from root, so their values are built up
+     * front instead of being created and then updated one at a time. The write is guarded on the revisions read, if a
+     * default node changes in between the whole provisioning is retried.
+     *
+     * @param client etcd client
+     * @return a CompletableFuture completed once the default nodes are written
+     */
+    public CompletableFuture<Void> provisionDefaultNodes(@NotNull Client client) {
+        return this.provisionDefaultNodes(client, MAX_PROVISION_ATTEMPTS);
+    }
 
-            } catch (InterruptedException | ExecutionException | ChubbyLockException | ChubbyNodeException e) {
-                throw new RuntimeException(e);
-            }
+    private CompletableFuture<Void> provisionDefaultNodes(@NotNull Client client, int remainingAttempts) {
+        logger.trace("requested default nodes provisioning, {} attempt(s) left", remainingAttempts);
+        KV kvClient = client.getKVClient();
+
+        Map<ChubbyHandleType, String> aclNamesMap = new HashMap<>();
+        aclNamesMap.put(ChubbyHandleType.READ, "read");
+        aclNamesMap.put(ChubbyHandleType.WRITE, "write");
+        aclNamesMap.put(ChubbyHandleType.CHANGE_ACL, "change_acl");
+        logger.trace("default aclNamesMap:{}", aclNamesMap);
+
+        List<Op> readOpList = new ArrayList<>();
+        for (Path path : this.defaultNodesCompleteList) {
+            readOpList.add(Op.get(ChubbyPath.of(path).toByteSequence(), GetOption.DEFAULT));
         }
-        logger.trace("default nodes created");
 
-        logger.trace("about to initialize ACLs");
-        this.initializeRootNodeACLs(client).get();
+        return kvClient.txn().Then(readOpList.toArray(new Op[0])).commit().thenCompose(readTxnResponse -> {
+            Map<Path, ChubbyNodeValue> nodeValueMap = new LinkedHashMap<>();
+            List<Cmp> cmpList = new ArrayList<>();
+            List<Path> createdPathList = new ArrayList<>();
 
-        logger.trace("RootACLs initialized, about to initialize ls node");
-        this.initializeLsNodeACLs(client).get();
+            for (int i = 0; i < this.defaultNodesCompleteList.size(); i++) {
+                Path path = this.defaultNodesCompleteList.get(i);
+                ByteSequence key = ChubbyPath.of(path).toByteSequence();
+                GetResponse getResponse = readTxnResponse.getGetResponses().get(i);
 
-        try {
-            this.initializeACLs(client);
+                if (getResponse.getCount() > 0) {
+                    KeyValue keyValue = getResponse.getKvs().getFirst();
+                    logger.trace("default node '{}' already present into kv store", path);
+                    nodeValueMap.put(path, ChubbyNodeValueDeserializer.deserialize(keyValue.getValue().toString()));
+                    cmpList.add(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.modRevision(keyValue.getModRevision())));
+                } else {
+                    logger.trace("default node '{}' not present into kv store, adding it...", path);
+                    nodeValueMap.put(path, new ChubbyNode(path, null, ChubbyNodeAttribute.PERMANENT).getNodeValue());
+                    cmpList.add(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.version(0)));
+                    createdPathList.add(path);
+                }
+            }
 
-        } catch (ChubbyACLException e) {
-            throw new RuntimeException(e);
-        }
+            //every parent of a default node is a default node too
+            for (Path createdPath : createdPathList) {
+                if (createdPath.getParent() != null) {
+                    nodeValueMap.get(createdPath.getParent()).getMetadata().increaseChildNodeNumberOnce();
+                }
+            }
 
-        return CompletableFuture.completedFuture(null);
+            List<Op> putOpList = new ArrayList<>();
+            for (Map.Entry<Path, ChubbyNodeValue> nodeValueEntry : nodeValueMap.entrySet()) {
+                nodeValueEntry.getValue().getMetadata().setAclNamesMap(new HashMap<>(aclNamesMap));
+                putOpList.add(Op.put(ChubbyPath.of(nodeValueEntry.getKey()).toByteSequence(), ByteSequence.from(ChubbyNodeValueSerializer.serialize(nodeValueEntry.getValue()).getBytes()), PutOption.DEFAULT));
+            }
+
+            logger.trace("about to write {} default node(s), {} of them new", putOpList.size(), createdPathList.size());
+            return kvClient.txn().If(cmpList.toArray(new Cmp[0])).Then(putOpList.toArray(new Op[0])).commit().thenCompose(writeTxnResponse -> {
+                if (writeTxnResponse.isSucceeded()) {
+                    logger.trace("default nodes provisioned");
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+
+                if (remainingAttempts <= 1) {
+                    logger.error("default nodes changed while being provisioned, giving up");
+                    throw new RuntimeException(new ChubbyNodeException("default nodes changed while being provisioned"));
+                }
+
+                logger.trace("default nodes changed while being provisioned, retrying");
+                return this.provisionDefaultNodes(client, remainingAttempts - 1);
+            });
+        });
     }
 
     public CompletableFuture<ChubbyHandleResponse> createDefaultHandle(String username, Client client) throws ExecutionException, InterruptedException {
@@ -862,7 +946,7 @@ public class ChubbyNamespace {
     protected CompletableFuture<Boolean> tryRemoveIfEphemeral(@Nullable String username, @NotNull Client client, @NotNull Path absolutePath, ChubbyHandleType chubbyHandleType, String lockID, String leaseId) throws ChubbyNodeException, ChubbyCannotRemoveHeldNodeException, ChubbyLockException, ChubbyObserverException, ChubbyHandleException {
         logger.trace("requested tryRemoveIfEphemeral");
 
-        return client.getKVClient().get(ByteSequence.from(absolutePath.toString().getBytes())).thenCompose(getResponse -> {
+        return client.getKVClient().get(ChubbyPath.of(absolutePath).toByteSequence()).thenCompose(getResponse -> {
             logger.trace(getResponse);
 
             //if it exists
@@ -954,7 +1038,7 @@ public class ChubbyNamespace {
         }
 
         logger.trace("about to check if specified node is stored inside kv store");
-        return client.getKVClient().get(ByteSequence.from(absolutePath.toString().getBytes())).thenCompose(getResponse -> {
+        return ChubbyLockProcessor.countReaders(client, ChubbyPath.of(absolutePath).toString()).thenCompose(readerCount -> client.getKVClient().get(ChubbyPath.of(absolutePath).toByteSequence()).thenCompose(getResponse -> {
             logger.trace("kv client getResponse: '{}'", getResponse);
 
             String currentNodeValueJsonString = getResponse.getKvs().getFirst().getValue().toString();
@@ -965,10 +1049,13 @@ public class ChubbyNamespace {
             ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(currentNodeValueJsonString);
             logger.trace("deserialized chubby node value: '{}'", chubbyNodeValue);
 
+            //the exclusive holder is in the lock map of the node, readers hold their own keys
+            long holderCount = chubbyNodeValue.getMetadata().getLockClientMapSize() + readerCount;
+
             //if the node is held by only this client, and it has no child nodes, unlock it and then delete it
-            logger.trace("about to check if specified node can be removed: '{}', '{}'", chubbyNodeValue.getMetadata().getLockClientMapSize() == 1, chubbyNodeValue.getMetadata().getChildNodeNumber() == 0);
-            if (chubbyNodeValue.getMetadata().getLockClientMapSize() == 1 && chubbyNodeValue.getMetadata().getChildNodeNumber() == 0) {
-                logger.trace("can be deleted: '{}', '{}'", chubbyNodeValue.getMetadata().getLockClientMapSize() == 1, chubbyNodeValue.getMetadata().getChildNodeNumber() == 0);
+            logger.trace("about to check if specified node can be removed: '{}', '{}'", holderCount == 1, chubbyNodeValue.getMetadata().getChildNodeNumber() == 0);
+            if (holderCount == 1 && chubbyNodeValue.getMetadata().getChildNodeNumber() == 0) {
+                logger.trace("can be deleted: '{}', '{}'", holderCount == 1, chubbyNodeValue.getMetadata().getChildNodeNumber() == 0);
 
                 //unlock
                 logger.trace("about to unlock node");
@@ -977,43 +1064,28 @@ public class ChubbyNamespace {
 
                         //delete
                         logger.trace("about to delete node from kv store");
-                        return client.getKVClient().delete(ByteSequence.from(currentNodePathString.getBytes())).thenCompose(deleteResponse -> {
+                        return client.getKVClient().delete(ChubbyPath.of(currentNodePathString).toByteSequence()).thenCompose(deleteResponse -> {
 
                             //update parent's node child number
-                            String parentPathString = Path.of(currentNodePathString).getParent().toString();
+                            String parentPathString = ChubbyPath.of(currentNodePathString).getParent().toString();
                             logger.trace("about to update parent's node '{}' child number", parentPathString);
-                            return client.getKVClient().get(ByteSequence.from(parentPathString.getBytes())).thenCompose(getResponse1 -> {
-
-                                //if exists
-                                if (getResponse1.getCount() > 0) {
-                                    logger.trace("parent node's kv pair exists in the kv store");
-                                    //looks for children node, update its value
-                                    return this.getLs(client, Path.of(parentPathString), 1).thenCompose(list -> {
-
-                                        List<String> listWithOnlyNodes = list.stream().filter(e -> !e.startsWith("/")).toList();
-
-                                        logger.trace("setting child node of '{}' to '{}'", parentPathString, listWithOnlyNodes.size());
-
-                                        ChubbyNodeValue parentChubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse1.getKvs().getFirst().getValue().toString());
-                                        logger.trace("parent chubby node value metadata before the update '{}'", parentChubbyNodeValue.getMetadata());
-
-                                        parentChubbyNodeValue.getMetadata().setChildNodeNumber(listWithOnlyNodes.size());
-                                        logger.trace("parent chubby node value metadata after child number update '{}'", parentChubbyNodeValue.getMetadata());
-
-                                        parentChubbyNodeValue.getMetadata().removeClientLock(username, chubbyHandleType);
-                                        logger.trace("parent chubby node value metadata after client lock map update '{}'", parentChubbyNodeValue.getMetadata());
-
-                                        ByteSequence parentChubbyNodeValueByteSequence = ByteSequence.from(ChubbyNodeValueSerializer.serialize(parentChubbyNodeValue).getBytes());
-                                        logger.trace("about to put updated value of the node to kv store");
-                                        return client.getKVClient().put(ByteSequence.from(parentPathString.getBytes()), parentChubbyNodeValueByteSequence).thenCompose(putResponse -> {
-                                            logger.trace("parent node's kv pair updated in the kv store");
-                                            return CompletableFuture.completedFuture(null);
-                                        });
-                                    });
-                                } else {
-                                    logger.trace("parent node's kv pair does not exist in the kv store, returning 'CompletableFuture.completedFuture(null)'...");
-                                    return CompletableFuture.completedFuture(null);
-                                }
+                            return this.nodeUpdater.updateNodeAsync(client.getKVClient(), ChubbyPath.of(parentPathString).toByteSequence(), parentChubbyNodeValue -> {
+                                //looks for children node, update its value
+                                return this.getLs(client, ChubbyPath.of(parentPathString), 1).thenApply(list -> {
+                                    logger.trace("setting child node of '{}' to '{}'", parentPathString, list.size());
+                                    logger.trace("parent chubby node value metadata before the update '{}'", parentChubbyNodeValue.getMetadata());
+
+                                    parentChubbyNodeValue.getMetadata().setChildNodeNumber(list.size());
+                                    logger.trace("parent chubby node value metadata after child number update '{}'", parentChubbyNodeValue.getMetadata());
+
+                                    parentChubbyNodeValue.getMetadata().removeClientLock(username, chubbyHandleType);
+                                    logger.trace("parent chubby node value metadata after client lock map update '{}'", parentChubbyNodeValue.getMetadata());
+                                    return parentChubbyNodeValue;
+                                });
+                            }).thenCompose(updated -> {
+                                //the parent may not exist in the kv store, nothing to update then
+                                logger.trace("parent node's kv pair updated in the kv store: '{}'", updated);
+                                return CompletableFuture.completedFuture(null);
                             });
                         });
                     });
@@ -1023,7 +1095,7 @@ public class ChubbyNamespace {
                 }
 
             } else {
-                if (chubbyNodeValue.getMetadata().getLockClientMapSize() == 1) {
+                if (holderCount == 1) {
                     logger.error("specified node cannot be deleted because it has at least 1 child node");
                     throw new RuntimeException(new ChubbyNodeException("specified node cannot be deleted because it has at least 1 child node"));
                 } else {
@@ -1031,9 +1103,167 @@ public class ChubbyNamespace {
                     throw new RuntimeException(new ChubbyCannotRemoveHeldNodeException("specified node is currently held by another client"));
                 }
             }
+        }));
+    }
+
+    /**
+     * Removes the node of the current handle together with every node under it
+     *
+     * @param chubbyRequest request
+     * @param client        etcd client
+     * @return a CompletableFuture completed once the subtree is removed
+     * @throws ChubbyNodeException   if the subtree contains a default node
+     * @throws ChubbyHandleException if the handle type is not WRITE
+     */
+    public CompletableFuture<Void> removeSubtree(@NotNull ChubbyRequest chubbyRequest, Client client) throws ChubbyNodeException, ChubbyHandleException {
+        return this.removeSubtree(chubbyRequest.getUsername(), client, Path.of(chubbyRequest.getHandleAbsolutePath()), chubbyRequest.getChubbyCurrentHandleType());
+    }
+
+    /**
+     * Removes the specified node together with every node under it. The whole subtree is read with a single
+     * transaction and the readers of its nodes are counted in chunks: if no other client holds a lock anywhere in the
+     * subtree, it is removed with range deletes, in transactions guarded by the revision of every node they remove
+     * (see {@link ChubbySubtreeRemoval}). A subtree that changes while being removed makes the removal fail, the nodes
+     * already removed are never left without their parent.
+     *
+     * @param username         username
+     * @param client           etcd client
+     * @param absolutePath     absolute path of the root of the subtree
+     * @param chubbyHandleType handle type of the client
+     * @return a CompletableFuture completed once the subtree is removed
+     * @throws ChubbyNodeException   if the subtree contains a default node
+     * @throws ChubbyHandleException if the handle type is not WRITE
+     */
+    protected CompletableFuture<Void> removeSubtree(String username, @NotNull Client client, @NotNull Path absolutePath, ChubbyHandleType chubbyHandleType) throws ChubbyNodeException, ChubbyHandleException {
+        logger.trace("requested recursive remove on 'path:{}'", absolutePath);
+
+        if (!chubbyHandleType.equals(ChubbyHandleType.WRITE)) {
+            logger.error("cannot remove subtree with handle type '{}'", chubbyHandleType);
+            throw new ChubbyHandleException("cannot remove subtree with handle type " + chubbyHandleType);
+        }
+
+        if (this.defaultNodeSet.stream().anyMatch(defaultNodePath -> defaultNodePath.startsWith(ChubbyPath.of(absolutePath)))) {
+            logger.error("cannot remove subtree of {}, it contains a default node", absolutePath);
+            throw new ChubbyNodeException("cannot remove subtree of " + absolutePath + ", it contains a default node");
+        }
+
+        KV kvClient = client.getKVClient();
+        ChubbyPath rootChubbyPath = ChubbyPath.of(absolutePath);
+        String rootPathString = rootChubbyPath.toString();
+        ByteSequence descendantPrefixByteSequence = rootChubbyPath.getChildKeyPrefix();
+
+        return kvClient.txn().Then(
+                Op.get(rootChubbyPath.toByteSequence(), GetOption.DEFAULT),
+                Op.get(descendantPrefixByteSequence, GetOption.newBuilder().withPrefix(descendantPrefixByteSequence).build())
+        ).commit().<Integer>thenCompose(txnResponse -> {
+            GetResponse rootGetResponse = txnResponse.getGetResponses().get(0);
+            if (rootGetResponse.getCount() == 0) {
+                throw new RuntimeException(new ChubbyNodeException("node not found"));
+            }
+
+            //every node of the subtree, with the revision it was read at
+            Map<String, KeyValue> subtreeKeyValueMap = new LinkedHashMap<>();
+            subtreeKeyValueMap.put(rootPathString, rootGetResponse.getKvs().getFirst());
+            txnResponse.getGetResponses().get(1).getKvs().forEach(keyValue -> subtreeKeyValueMap.put(keyValue.getKey().toString(), keyValue));
+            logger.trace("read {} node(s) under '{}'", subtreeKeyValueMap.size(), rootPathString);
+
+            for (KeyValue keyValue : subtreeKeyValueMap.values()) {
+                if (ChubbyNodeValueDeserializer.deserialize(keyValue.getValue().toString()).getMetadata().isLockedByOtherClient(username)) {
+                    logger.error("node '{}' is currently held by another client", keyValue.getKey());
+                    throw new RuntimeException(new ChubbyCannotRemoveHeldNodeException("node '" + keyValue.getKey() + "' is currently held by another client"));
+                }
+            }
+
+            List<String> subtreePathList = new ArrayList<>(subtreeKeyValueMap.keySet());
+            return ChubbyLockProcessor.countReaders(client, subtreePathList).<Integer>thenCompose(readerCountList -> {
+                for (int i = 0; i < subtreePathList.size(); i++) {
+                    if (readerCountList.get(i) > 0) {
+                        logger.error("node '{}' is currently read by {} client(s)", subtreePathList.get(i), readerCountList.get(i));
+                        throw new RuntimeException(new ChubbyCannotRemoveHeldNodeException("node '" + subtreePathList.get(i) + "' is currently held by another client"));
+                    }
+                }
+
+                List<ChubbySubtreeRemoval.Batch> batchList = new ChubbySubtreeRemoval(rootPathString, subtreePathList.subList(1, subtreePathList.size()), MAX_GUARDED_NODES_PER_TXN, MAX_REMOVED_SUBTREES_PER_TXN).getBatchList();
+                logger.debug("removing {} node(s) under '{}' with {} transaction(s)", subtreePathList.size(), rootPathString, batchList.size());
+
+                //batches are committed in order, each one only once the previous one succeeded
+                CompletableFuture<Integer> removedFuture = CompletableFuture.completedFuture(0);
+                for (ChubbySubtreeRemoval.Batch batch : batchList) {
+                    removedFuture = removedFuture.thenCompose(removedCount -> this.commitRemovalBatch(kvClient, batch, subtreeKeyValueMap).thenApply(succeeded -> {
+                        if (!succeeded) {
+                            logger.error("subtree of '{}' changed while being removed, {} node(s) removed", rootPathString, removedCount);
+                            throw new RuntimeException(new ChubbyNodeException("subtree of '" + rootPathString + "' changed while being removed, " + removedCount + " node(s) removed"));
+                        }
+                        return removedCount + batch.getGuardedPathList().size();
+                    }));
+                }
+
+                return removedFuture;
+            });
+        }).thenCompose(removedCount -> {
+            logger.trace("removed {} node(s) under '{}'", removedCount, rootPathString);
+
+            //the holder key went with the subtree, the handle must not be invalidated when the session lease expires
+            CompletableFuture<ChubbySessionLease> sessionLeaseFuture = username == null ? null : this.sessionLeaseMap.get(username);
+            if (sessionLeaseFuture != null) {
+                sessionLeaseFuture.thenAccept(chubbySessionLease -> chubbySessionLease.unregister(absolutePath, chubbyHandleType));
+            }
+            this.unsubscribeFromAllActiveSubscriptions(username);
+
+            return this.updateChildNodeNumber(client, absolutePath.getParent());
         });
     }
 
+    /**
+     * Commits a transaction of a subtree removal, deleting its nodes and their holder keys.
+     *
+     * @param kvClient           etcd kv client
+     * @param batch              the subtrees removed by the transaction
+     * @param subtreeKeyValueMap the nodes of the subtree, with the revision they were read at
+     * @return a CompletableFuture containing true if the transaction succeeded, false if a node changed
+     */
+    private CompletableFuture<Boolean> commitRemovalBatch(@NotNull KV kvClient, @NotNull ChubbySubtreeRemoval.Batch batch, @NotNull Map<String, KeyValue> subtreeKeyValueMap) {
+        List<Cmp> cmpList = new ArrayList<>();
+        for (String guardedPath : batch.getGuardedPathList()) {
+            KeyValue keyValue = subtreeKeyValueMap.get(guardedPath);
+            cmpList.add(new Cmp(keyValue.getKey(), Cmp.Op.EQUAL, CmpTarget.modRevision(keyValue.getModRevision())));
+        }
+
+        List<Op> deleteOpList = new ArrayList<>();
+        for (ChubbySubtreeRemoval.Entry entry : batch.getEntryList()) {
+            deleteOpList.add(Op.delete(ChubbyPath.of(entry.getPath()).toByteSequence(), DeleteOption.DEFAULT));
+            deleteOpList.add(Op.delete(ByteSequence.from(ChubbyLockProcessor.holderKeyOf(entry.getPath()).getBytes()), DeleteOption.DEFAULT));
+
+            if (entry.isRecursive()) {
+                ByteSequence descendantPrefixByteSequence = ChubbyPath.of(entry.getPath()).getChildKeyPrefix();
+                ByteSequence holderPrefixByteSequence = ByteSequence.from(ChubbyLockProcessor.holderKeyOf(entry.getPath() + "/").getBytes());
+                deleteOpList.add(Op.delete(descendantPrefixByteSequence, DeleteOption.newBuilder().withPrefix(descendantPrefixByteSequence).build()));
+                deleteOpList.add(Op.delete(holderPrefixByteSequence, DeleteOption.newBuilder().withPrefix(holderPrefixByteSequence).build()));
+            }
+        }
+
+        logger.trace("removing {} with {} guard(s)", batch.getEntryList(), cmpList.size());
+        return kvClient.txn().If(cmpList.toArray(new Cmp[0])).Then(deleteOpList.toArray(new Op[0])).commit().thenApply(TxnResponse::isSucceeded);
+    }
+
+    /**
+     * Sets the child count of the specified node to the number of its children
+     *
+     * @param client   etcd client
+     * @param nodePath absolute path of the node
+     * @return a CompletableFuture completed once the child count is updated, or right away if the node does not exist
+     */
+    private CompletableFuture<Void> updateChildNodeNumber(@NotNull Client client, @NotNull Path nodePath) {
+        ByteSequence nodePathByteSequence = ChubbyPath.of(nodePath).toByteSequence();
+
+        return this.nodeUpdater.updateNodeAsync(client.getKVClient(), nodePathByteSequence, chubbyNodeValue -> this.getLs(client, nodePath, 1).thenApply(list -> {
+            logger.trace("setting child node of '{}' to '{}'", nodePath, list.size());
+
+            chubbyNodeValue.getMetadata().setChildNodeNumber(list.size());
+            return chubbyNodeValue;
+        })).thenAccept(updated -> logger.trace("updated child count of '{}': '{}'", nodePath, updated));
+    }
+
     /**
      * Unlocks the lock from the specified node
      *
@@ -1069,7 +1299,7 @@ public class ChubbyNamespace {
     protected CompletableFuture<ByteSequence> unlock(String username, @NotNull Client client, @NotNull Path handleAbsolutePath, ChubbyHandleType chubbyHandleType, @NotNull String lockID, @NotNull String leaseId, boolean canUnlockRoot) throws ChubbyNodeException, ChubbyLockException, ChubbyObserverException, ChubbyHandleException {
         logger.trace("requested 'unlock' operation on 'path:{}' with handle type: '{}'", handleAbsolutePath, chubbyHandleType);
 
-        CompletableFuture<ByteSequence> result = new CompletableFuture<>();
+        CompletableFuture<ByteSequence> result;
 
         if (chubbyHandleType.equals(ChubbyHandleType.WRITE) || chubbyHandleType.equals(ChubbyHandleType.CHANGE_ACL)) {
             // create a byte sequence for the lock key
@@ -1080,84 +1310,79 @@ public class ChubbyNamespace {
                 throw new ChubbyNodeException("provided key is empty");
             }
 
-            // check if a lock exists on the resource
-            CompletableFuture<GetResponse> getFuture = client.getKVClient().get(lockKeyByteSequence);
-            getFuture.whenComplete((getResponse, throwable) -> {
-                if (throwable != null) {
-                    logger.error("failed to retrieve key", throwable);
-                    throw new RuntimeException(new ChubbyNodeException("failed to retrieve key"));
-                }
+            long sessionLeaseId;
+            try {
+                sessionLeaseId = Long.parseLong(leaseId);
+            } catch (NumberFormatException e) {
+                throw new ChubbyLockException("invalid lease id '" + leaseId + "' of exclusive lock");
+            }
 
+            // check if a lock exists on the resource
+            result = client.getKVClient().get(lockKeyByteSequence).thenCompose(getResponse -> {
                 // if a lock exists (i.e., the count of keys is greater than 0), delete the lock key
-                else if (getResponse.getCount() > 0) {
+                if (getResponse.getCount() > 0) {
+                    KeyValue holderKeyValue = getResponse.getKvs().getFirst();
                     logger.trace("found lock 'path:{}'", lockKeyByteSequence.toString());
 
-                    CompletableFuture<DeleteResponse> deleteFuture = client.getKVClient().delete(lockKeyByteSequence);
-                    deleteFuture.whenComplete((deleteResponse, throwable1) -> {
-                        if (throwable1 != null) {
-                            logger.error("Failed to delete lock key", throwable1);
-                            throw new RuntimeException(new ChubbyNodeException("failed to delete key"));
-                        }
-
-                        // if the key was deleted successfully, remove the lease and remove the client from node's value
-                        else {
-                            client.getLeaseClient().revoke(Long.parseLong(leaseId)).thenCompose(leaseRevokeResponse -> client.getKVClient().get(ByteSequence.from(handleAbsolutePath.toString().getBytes())).thenCompose(getResponse1 -> {
-                                //check if node exists
-                                if (getResponse1.getCount() > 0) {
-                                    ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse1.getKvs().getFirst().getValue().toString());
-
-                                    chubbyNodeValue.getMetadata().removeClientLock(username, chubbyHandleType);
-
-                                    ByteSequence chubbyNodeValueByteSequence = ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes());
+                    //a holder key bound to another lease belongs to the client that acquired the lock after this session lost it
+                    if (holderKeyValue.getLease() != sessionLeaseId) {
+                        logger.trace("exclusive lock on {} is held by lease {}, not by {}", handleAbsolutePath, holderKeyValue.getLease(), sessionLeaseId);
+                        throw new RuntimeException(new ChubbyLockException("exclusive lock on given path is not held by this session"));
+                    }
 
-                                    return client.getKVClient().put(getResponse1.getKvs().getFirst().getKey(), chubbyNodeValueByteSequence).thenCompose(putResponse -> {
-                                        logger.trace("released lock on {}", handleAbsolutePath);
-                                        return CompletableFuture.completedFuture(result.complete(ByteSequence.from(("lock released").getBytes(charset))));
-                                    });
-                                } else {
-                                    throw new RuntimeException(new ChubbyNodeException("node not found"));
+                    // delete the holder key only if it did not change since it was read, then remove the client from node's value, the session lease is kept
+                    return client.getKVClient().txn()
+                            .If(new Cmp(lockKeyByteSequence, Cmp.Op.EQUAL, CmpTarget.modRevision(holderKeyValue.getModRevision())))
+                            .Then(Op.delete(lockKeyByteSequence, DeleteOption.DEFAULT))
+                            .commit()
+                            .thenCompose(txnResponse -> {
+                                if (!txnResponse.isSucceeded()) {
+                                    logger.trace("exclusive lock on {} changed while being released", handleAbsolutePath);
+                                    throw new RuntimeException(new ChubbyLockException("exclusive lock on given path changed while being released"));
                                 }
-                            }));
-                        }
-                    });
+                                return this.removeClientLockFromNode(username, client, handleAbsolutePath, chubbyHandleType);
+                            });
                 }
 
-                // if no lock exists, log a trace message and complete the result
+                // if no lock exists, the operation fails
                 else {
                     logger.trace("No exclusive lock exists on {}, nothing to release (getResponse value:{})", handleAbsolutePath, getResponse);
                     throw new RuntimeException(new ChubbyLockException("no exclusive lock is currently held on given path, nothing to release"));
                 }
             });
 
-            //since the read handle is not a real lock but a lease on the resource, a simple revoke is sufficient
+            //the shared lock is held by the reader key of the session, deleting it is sufficient
         } else if (chubbyHandleType.equals(ChubbyHandleType.READ)) {
 
             if (!canUnlockRoot && handleAbsolutePath.equals(this.rootPath)) {
                 throw new ChubbyHandleException("cannot release shared lock from root node");
             }
-            client.getLeaseClient().revoke(Long.parseLong(leaseId)).thenCompose(leaseRevokeResponse -> client.getKVClient().get(ByteSequence.from(handleAbsolutePath.toString().getBytes())).thenCompose(getResponse1 -> {
-                //check if node exists
-                if (getResponse1.getCount() > 0) {
-                    ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse1.getKvs().getFirst().getValue().toString());
 
-                    chubbyNodeValue.getMetadata().removeClientLock(username, chubbyHandleType);
+            long sessionLeaseId;
+            try {
+                sessionLeaseId = Long.parseLong(leaseId);
+            } catch (NumberFormatException e) {
+                throw new ChubbyLockException("invalid lease id '" + leaseId + "' of shared lock");
+            }
 
-                    ByteSequence chubbyNodeValueByteSequence = ByteSequence.from(ChubbyNodeValueSerializer.serialize(chubbyNodeValue).getBytes());
+            result = ChubbyLockProcessor.releaseShared(client, ChubbyPath.of(handleAbsolutePath).toString(), sessionLeaseId).thenApply(v -> {
+                logger.trace("released lock on {}", handleAbsolutePath);
+                return ByteSequence.from(("lock released").getBytes(charset));
+            });
+        } else {
+            result = CompletableFuture.completedFuture(null);
+        }
 
-                    return client.getKVClient().put(getResponse1.getKvs().getFirst().getKey(), chubbyNodeValueByteSequence).thenCompose(putResponse -> {
-                        logger.trace("released lock on {}", handleAbsolutePath);
-                        return CompletableFuture.completedFuture(result.complete(ByteSequence.from(("lock released").getBytes(charset))));
-                    });
-                } else {
-                    throw new RuntimeException(new ChubbyNodeException("node not found"));
-                }
-            }));
+        //the released handle must not be invalidated when the session lease expires
+        CompletableFuture<ChubbySessionLease> sessionLeaseFuture = username == null ? null : this.sessionLeaseMap.get(username);
+        if (sessionLeaseFuture != null) {
+            sessionLeaseFuture.thenAccept(chubbySessionLease -> chubbySessionLease.unregister(handleAbsolutePath, chubbyHandleType));
         }
 
         //root does not have any event subscriptions, so it can be skipped
         if (!handleAbsolutePath.equals(this.rootPath)) {
             logger.trace("about to unsubscribe from all active subscriptions");
-            this.unsubscribeFromAllActiveSubscriptions();
+            this.unsubscribeFromAllActiveSubscriptions(username);
         }
 
         logger.trace("returning");
@@ -1166,8 +1391,229 @@ public class ChubbyNamespace {
         return result;
     }
 
-    protected void unsubscribeFromAllActiveSubscriptions() {
-        ChubbyUnsubscribeProcessor.process(this.watcherResponse);
+    /**
+     * Removes the client from the lock map of the specified node
+     *
+     * @param username           username
+     * @param client             etcd client
+     * @param handleAbsolutePath absolute path of the node
+     * @param chubbyHandleType   handle type of the lock to be removed
+     * @return a CompletableFuture containing a byte sequence with the result of the operation
+     */
+    private CompletableFuture<ByteSequence> removeClientLockFromNode(String username, @NotNull Client client, @NotNull Path handleAbsolutePath, ChubbyHandleType chubbyHandleType) {
+        return this.nodeUpdater.updateNode(client.getKVClient(), ChubbyPath.of(handleAbsolutePath).toByteSequence(), chubbyNodeValue -> {
+            chubbyNodeValue.getMetadata().removeClientLock(username, chubbyHandleType);
+            return chubbyNodeValue;
+        }).thenApply(updated -> {
+            //check if node exists
+            if (!updated) {
+                throw new RuntimeException(new ChubbyNodeException("node not found"));
+            }
+
+            logger.trace("released lock on {}", handleAbsolutePath);
+            return ByteSequence.from(("lock released").getBytes(charset));
+        });
+    }
+
+    /**
+     * Registers the event subscriptions requested with the handle into the cell's subscription registry
+     *
+     * @param username            username
+     * @param client              etcd client
+     * @param chubbyHandleRequest handle request from client
+     */
+    private void subscribe(String username, Client client, @NotNull ChubbyHandleRequest chubbyHandleRequest) {
+        ChubbySubscription chubbySubscription = ChubbySubscribeProcessor.process(this.subscriptionRegistry, client, this.getSessionOutputStream(username), username, Path.of(chubbyHandleRequest.getRequestedAbsolutePath()), chubbyHandleRequest.getChubbyHandleType(), chubbyHandleRequest.getChubbyEventTypeList());
+
+        if (chubbySubscription != null) {
+            //a client holds at most one handle with subscriptions, the previous one (if any) is replaced
+            ChubbyUnsubscribeProcessor.process(this.subscriptionRegistry, this.activeSubscriptionMap.put(username, chubbySubscription));
+        }
+    }
+
+    protected void unsubscribeFromAllActiveSubscriptions(String username) {
+        ChubbyUnsubscribeProcessor.process(this.subscriptionRegistry, this.activeSubscriptionMap.remove(username));
+    }
+
+    /**
+     * Returns the lease of the specified user's session, granting it and registering it with the keep-alive scheduler
+     * on first use, or once the previous lease expired. Every handle, lock and ephemeral node of the session is bound
+     * to the same lease.
+     *
+     * @param username username
+     * @param client   etcd client
+     * @return a CompletableFuture containing the session lease
+     */
+    protected CompletableFuture<ChubbySessionLease> getSessionLease(@NotNull String username, @NotNull Client client) {
+        CompletableFuture<ChubbySessionLease> sessionLeaseFuture = this.sessionLeaseMap.compute(username, (sessionUsername, currentSessionLeaseFuture) -> {
+            //the handles bound to an expired lease have already been invalidated, new ones are bound to a new lease
+            if (currentSessionLeaseFuture != null && !isExpired(currentSessionLeaseFuture)) {
+                return currentSessionLeaseFuture;
+            }
+
+            logger.trace("about to grant lease of session '{}' with 'ttl={}' seconds...", sessionUsername, SESSION_LEASE_TTL_SECONDS);
+            return client.getLeaseClient().grant(SESSION_LEASE_TTL_SECONDS).thenApply(leaseGrantResponse -> {
+                ChubbySessionLease chubbySessionLease = new ChubbySessionLease(sessionUsername, leaseGrantResponse.getID(), client, this.getSessionOutputStream(sessionUsername), this.lockDelayTable, this.nodeUpdater);
+                this.getKeepAliveScheduler(client).register(chubbySessionLease, leaseGrantResponse.getTTL());
+                //ephemeral nodes bound to the lease may be deleted by the kv store from now on
+                this.getChildCountReconciler(client);
+                return chubbySessionLease;
+            });
+        });
+
+        //a failed grant is not cached, the next handle of the session tries again
+        sessionLeaseFuture.exceptionally(throwable -> {
+            logger.error("failed to grant lease of session '{}'", username, throwable);
+            this.sessionLeaseMap.remove(username, sessionLeaseFuture);
+            return null;
+        });
+
+        return sessionLeaseFuture;
+    }
+
+    /**
+     * Checks whether the specified session lease has been granted and then expired
+     *
+     * @param sessionLeaseFuture the session lease
+     * @return true if the lease expired, false if it's still valid or being granted
+     */
+    private static boolean isExpired(@NotNull CompletableFuture<ChubbySessionLease> sessionLeaseFuture) {
+        return sessionLeaseFuture.isDone() && !sessionLeaseFuture.isCompletedExceptionally() && sessionLeaseFuture.join().isExpired();
+    }
+
+    /**
+     * Tears down the session of the specified user in one pass: its subscriptions are dropped, the session is removed
+     * from the lock map of every node it holds an exclusive lock on and its holder keys are deleted with batched
+     * transactions, then its lease is revoked, taking the reader keys, the waiter keys and the ephemeral nodes of the
+     * session with it.
+     *
+     * @param username username
+     * @param client   etcd client
+     * @return a CompletableFuture completed once the session is torn down
+     */
+    public CompletableFuture<Void> closeSession(@NotNull String username, @NotNull Client client) {
+        return this.closeSession(username, client, false);
+    }
+
+    /**
+     * Tears down the session of the specified user as {@link #closeSession(String, Client)} does. The session of a
+     * client that failed (its connection was lost, it stayed idle for too long or it restarted) is torn down the same
+     * way, but the lock-delay of its exclusive locks is recorded first, since requests sent by the failed client may
+     * still be in flight.
+     *
+     * @param username username
+     * @param client   etcd client
+     * @param failed   whether the client failed, instead of closing the session itself
+     * @return a CompletableFuture completed once the session is torn down
+     */
+    public CompletableFuture<Void> closeSession(@NotNull String username, @NotNull Client client, boolean failed) {
+        this.unsubscribeFromAllActiveSubscriptions(username);
+
+        CompletableFuture<ChubbySessionLease> sessionLeaseFuture = this.sessionLeaseMap.remove(username);
+        if (sessionLeaseFuture == null) {
+            logger.trace("no lease held by session '{}', nothing to release", username);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return sessionLeaseFuture.thenCompose(chubbySessionLease -> {
+            this.getKeepAliveScheduler(client).unregister(chubbySessionLease);
+
+            if (failed) {
+                chubbySessionLease.recordLockDelay();
+            }
+
+            //the handles are detached first, so that none of them is invalidated while the session is torn down
+            Map<Path, ChubbyHandleType> exclusiveHandleMap = chubbySessionLease.detachExclusiveHandles();
+            return ChubbySessionTeardown.releaseExclusiveLocks(client, username, chubbySessionLease.getLeaseId(), exclusiveHandleMap)
+                    .thenCompose(v -> chubbySessionLease.release());
+        });
+    }
+
+    /**
+     * Tears down every session still open on the cell, used when the cell server shuts down
+     *
+     * @param client etcd client
+     * @return a CompletableFuture completed once every session is torn down
+     */
+    public CompletableFuture<Void> closeAllSessions(@NotNull Client client) {
+        List<String> usernameList = new ArrayList<>(this.sessionLeaseMap.keySet());
+        logger.debug("closing {} session(s)", usernameList.size());
+
+        return CompletableFuture.allOf(usernameList.stream()
+                .map(username -> this.closeSession(username, client).exceptionally(throwable -> {
+                    logger.error("failed to close session of '{}'", username, throwable);
+                    return null;
+                }))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Returns the scheduler renewing the session leases of the cell, starting it on first use
+     *
+     * @param client etcd client
+     * @return the keep-alive scheduler
+     */
+    protected synchronized ChubbyKeepAliveScheduler getKeepAliveScheduler(@NotNull Client client) {
+        if (this.keepAliveScheduler == null) {
+            this.keepAliveScheduler = new ChubbyKeepAliveScheduler(client, ChubbyKeepAliveScheduler.DEFAULT_TICK_MILLIS, ChubbyKeepAliveScheduler.DEFAULT_WHEEL_SIZE);
+        }
+        return this.keepAliveScheduler;
+    }
+
+    /**
+     * Returns the reconciler fixing the child count of the parents of expired ephemeral nodes, starting it on first use
+     *
+     * @param client etcd client
+     * @return the child count reconciler
+     */
+    protected synchronized ChubbyChildCountReconciler getChildCountReconciler(@NotNull Client client) {
+        if (this.childCountReconciler == null) {
+            this.childCountReconciler = new ChubbyChildCountReconciler(this, client, this.cellNameAbsolutePath, ChubbyChildCountReconciler.DEFAULT_INTERVAL_MILLIS);
+        }
+        return this.childCountReconciler;
+    }
+
+    /**
+     * Stops the background tasks of the namespace
+     */
+    public synchronized void close() {
+        if (this.childCountReconciler != null) {
+            this.childCountReconciler.close();
+            this.childCountReconciler = null;
+        }
+    }
+
+    /**
+     * Routes the notifications addressed to the specified user to the given output stream, used when many sessions
+     * are served by the same process
+     *
+     * @param username     username
+     * @param outputStream output stream of the user's session
+     */
+    public void registerSessionOutputStream(String username, @NotNull OutputStream outputStream) {
+        this.sessionOutputStreamMap.put(username, outputStream);
+    }
+
+    /**
+     * Stops routing the notifications addressed to the specified user to its session output stream
+     *
+     * @param username username
+     */
+    public void removeSessionOutputStream(String username) {
+        this.sessionOutputStreamMap.remove(username);
+    }
+
+    /**
+     * Returns the output stream where the notifications addressed to the specified user are sent
+     *
+     * @param username username
+     * @return the output stream of the user's session, the standard output if no session output stream is registered
+     */
+    protected OutputStream getSessionOutputStream(String username) {
+        if (username == null) {
+            return System.out;
+        }
+        return this.sessionOutputStreamMap.getOrDefault(username, System.out);
     }
 
     /**
@@ -1198,8 +1644,6 @@ public class ChubbyNamespace {
     protected CompletableFuture<ByteSequence> write(@NotNull Client client, @NotNull Path
             handleAbsolutePath, ChubbyHandleType chubbyHandleType, String filecontent) throws
             ChubbyNodeException, ChubbyHandleException {
-        CompletableFuture<ByteSequence> resultMessage = new CompletableFuture<>();
-
         if (!ChubbyUtils.isFile(handleAbsolutePath)) {
             logger.error("cannot do write operation into directory nodes");
             throw new ChubbyNodeException("cannot do write operation into directory nodes");
@@ -1210,43 +1654,20 @@ public class ChubbyNamespace {
             throw new ChubbyHandleException("cannot do write operation with current handle");
         }
 
-        CompletableFuture<GetResponse> getFuture = client.getKVClient().get(ByteSequence.from(handleAbsolutePath.toString().getBytes(charset)));
-        getFuture.whenComplete((getResponse, throwable) -> {
-            if (throwable != null) {
-                logger.error("failed to retrieve node", throwable);
+        // if the resource exists, modify its 'file_content' field, the rest of the node is kept as it's read at commit time
+        return this.nodeUpdater.updateNode(client.getKVClient(), ChubbyPath.of(handleAbsolutePath).toByteSequence(), chubbyNodeValue -> {
+            logger.trace("acquired node {}", handleAbsolutePath);
+            chubbyNodeValue.setFilecontent(filecontent);
+            return chubbyNodeValue;
+        }).thenApply(updated -> {
+            if (!updated) {
+                logger.error("failed to retrieve node '{}'", handleAbsolutePath);
                 throw new RuntimeException(new ChubbyNodeException("failed to retrieve node"));
             }
-            // if the resource exists (count of keys is greater than 0), modify its 'file_content' field
-            else if (getResponse.getCount() > 0) {
-                logger.trace("acquired node {}", handleAbsolutePath);
-
-                ByteSequence nodeValueByteSequence = getResponse.getKvs().getFirst().getValue();
-
-                ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(nodeValueByteSequence.toString());
-                chubbyNodeValue.setFilecontent(filecontent);
-
-                String chubbyNodeValueJsonString = ChubbyNodeValueSerializer.serialize(chubbyNodeValue);
-
-                // put the key-value pair into the KV store
-                CompletableFuture<PutResponse> putFuture = client.getKVClient().put(
-                        ByteSequence.from(handleAbsolutePath.toString().getBytes(charset)),
-                        ByteSequence.from(chubbyNodeValueJsonString.getBytes(charset))
-                );
 
-                putFuture.whenComplete((putResponse, putThrowable) -> {
-                    if (putThrowable != null) {
-                        logger.error("failed to update node's 'file content'", putThrowable);
-                        throw new RuntimeException(new ChubbyNodeException("failed to update node's 'file content'"));
-
-                    } else {
-                        logger.trace("updated node {}", handleAbsolutePath);
-                        resultMessage.complete(ByteSequence.from("node content updated successfully".getBytes()));
-                    }
-                });
-            }
+            logger.trace("updated node {}", handleAbsolutePath);
+            return ByteSequence.from("node content updated successfully".getBytes());
         });
-
-        return resultMessage;
     }
 
     /**
@@ -1260,7 +1681,7 @@ public class ChubbyNamespace {
         logger.trace("requested 'node data' operation on 'path:{}'", nodeAbsolutePath);
 
         KV kvClient = client.getKVClient();
-        return kvClient.get(ByteSequence.from(nodeAbsolutePath.toString().getBytes())).thenCompose(getResponse -> {
+        return kvClient.get(ChubbyPath.of(nodeAbsolutePath).toByteSequence()).thenCompose(getResponse -> {
             Path responseAbsolutePath = Path.of(getResponse.getKvs().getFirst().getKey().toString());
 
             ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(getResponse.getKvs().getFirst().getValue().toString());
@@ -1278,49 +1699,38 @@ public class ChubbyNamespace {
      * @return a CompletableFuture containing a list of child nodes
      */
     public CompletableFuture<List<String>> getLs(@NotNull Client client, @NotNull Path startingNodePath, int depth) {
+        return this.getLs(client, ChubbyPath.of(startingNodePath), depth);
+    }
+
+    /**
+     * returns a list of child nodes of argument node, every entry is the path of the child relative to the node
+     *
+     * @param client           etcd client
+     * @param startingNodePath absolute path of the node
+     * @param depth            depth of the search
+     * @return a CompletableFuture containing a list of child nodes
+     */
+    public CompletableFuture<List<String>> getLs(@NotNull Client client, @NotNull ChubbyPath startingNodePath, int depth) {
         logger.trace("requested 'ls' operation on 'path:{}' with 'depth:{}'", startingNodePath, depth);
 
-        KV kvClient = client.getKVClient();
-        ByteSequence prefix = ByteSequence.from(startingNodePath.toString().getBytes());
-        logger.trace("prefix: '{}'", prefix.toString());
+        //only the descendants share the prefix, the node itself and its siblings with a longer name are excluded
+        ByteSequence prefix = startingNodePath.getChildKeyPrefix();
+        int startingPathLength = startingNodePath.isRoot() ? 0 : startingNodePath.toString().length();
+        logger.trace("prefix: '{}'", prefix);
 
         GetOption getOption = GetOption.newBuilder()
                 .withPrefix(prefix)
+                .withKeysOnly(true)
                 .build();
 
-        int startingPathDepth;
-        if (startingNodePath.toString().equals("\\")) {
-            startingPathDepth = startingNodePath.toString().split("\\\\", -1).length;
-        } else {
-            startingPathDepth = startingNodePath.toString().split("\\\\", -1).length + 1;
-        }
-        int finalDepth = depth + startingPathDepth;
-
-        logger.trace("starting path depth set at '{}'", startingPathDepth);
-        logger.trace("final path depth set at '{}'", finalDepth);
-
-        return kvClient.get(prefix, getOption).thenCompose(response -> CompletableFuture.completedFuture(response.getKvs().stream()
-                .map(kv -> {
-                    logger.trace("mapping to string: '{}'", kv.getKey().toString());
-                    return kv.getKey().toString();
-                })
-                .filter(key -> {
-                    int keyDepth = key.split("\\\\").length + 1;
-                    logger.trace("filtering out key if keyDepth is not between starting and final depth: '{}<={}<={}'", startingPathDepth, keyDepth, finalDepth);
-                    return keyDepth >= startingPathDepth && keyDepth <= finalDepth;
+        return client.getKVClient().get(prefix, getOption).thenApply(response -> response.getKvs().stream()
+                .map(kv -> kv.getKey().toString(StandardCharsets.UTF_8).substring(startingPathLength))
+                .filter(entry -> {
+                    int entryDepth = ChubbyPath.depthOf(entry);
+                    logger.trace("filtering out entry if its depth is not between 1 and {}: '{}'", depth, entry);
+                    return entryDepth >= 1 && entryDepth <= depth;
                 })
-                .filter(key -> {
-                    Path path = Path.of(key);
-                    logger.trace("filtering out key if it's the same one passed as argument: '({})==({})?'", path, startingNodePath);
-                    return !path.equals(startingNodePath);
-                })
-                .map(key -> {
-                    String ret = key.substring(startingNodePath.toString().length());
-                    logger.trace("removed starting node path from key string, adding to results: '{}'", ret);
-                    return ret;
-                })
-                .filter(key -> !key.isEmpty())
-                .collect(Collectors.toList())));
+                .collect(Collectors.toList()));
     }
 
     /**
@@ -1332,7 +1742,7 @@ public class ChubbyNamespace {
      * @return a CompletableFuture containing a list of child nodes
      */
     protected CompletableFuture<List<String>> getLs(@NotNull Client client, @NotNull ByteSequence startingNodePath, int depth) {
-        return this.getLs(client, Path.of(startingNodePath.toString()), depth);
+        return this.getLs(client, ChubbyPath.of(startingNodePath), depth);
     }
 
     /**
@@ -1344,7 +1754,18 @@ public class ChubbyNamespace {
      * @return a CompletableFuture containing a list of child nodes
      */
     protected CompletableFuture<List<String>> getLs(@NotNull Client client, @NotNull String startingNodePath, int depth) {
-        return this.getLs(client, Path.of(startingNodePath), depth);
+        return this.getLs(client, ChubbyPath.of(startingNodePath), depth);
+    }
+
+    /**
+     * Returns the put option preserving the lease of a node, so that rewriting the value of an ephemeral node does not
+     * unbind it from the session owning it.
+     *
+     * @param nodeKeyValue the key-value pair of the node, as read from the kv store
+     * @return the put option
+     */
+    protected static PutOption putOptionOf(@NotNull KeyValue nodeKeyValue) {
+        return nodeKeyValue.getLease() == 0 ? PutOption.DEFAULT : PutOption.newBuilder().withLeaseId(nodeKeyValue.getLease()).build();
     }
 
     /**
@@ -1354,7 +1775,27 @@ public class ChubbyNamespace {
      * @return a boolean indicating if the specified node is a default node
      */
     protected boolean isDefaultNode(Path absolutePath) {
-        return this.defaultNodesCompleteList.contains(absolutePath);
+        return absolutePath != null && this.isDefaultNode(ChubbyPath.of(absolutePath));
+    }
+
+    /**
+     * checks if the specified node is a default node
+     *
+     * @param chubbyPath absolute path of the node
+     * @return a boolean indicating if the specified node is a default node
+     */
+    protected boolean isDefaultNode(@NotNull ChubbyPath chubbyPath) {
+        return this.defaultNodeSet.contains(chubbyPath);
+    }
+
+    /**
+     * checks if the specified node is an ACL name file, or the directory containing them
+     *
+     * @param absolutePath absolute path of the node
+     * @return a boolean indicating if the specified node belongs to the ACL names directory
+     */
+    protected boolean isACLNode(@NotNull Path absolutePath) {
+        return ChubbyPath.of(absolutePath).startsWith(this.aclNodeChubbyPath);
     }
 
     public List<Path> getDefaultNodeList() {
@@ -1364,4 +1805,23 @@ public class ChubbyNamespace {
     public Path getRoot() {
         return this.rootPath;
     }
+
+    public boolean isWriterPreference() {
+        return this.writerPreference;
+    }
+
+    public ChubbyNodeUpdater getNodeUpdater() {
+        return this.nodeUpdater;
+    }
+
+    /**
+     * Sets the policy of the clients waiting for an exclusive lock held by readers. With writer preference the first
+     * waiting writer blocks new readers until the current ones leave, otherwise new readers may keep acquiring the
+     * shared lock while writers wait.
+     *
+     * @param writerPreference true if waiting writers block new readers
+     */
+    public void setWriterPreference(boolean writerPreference) {
+        this.writerPreference = writerPreference;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package chubby.server;
+
+import chubby.server.node.ChubbyNodeValue;
+import chubby.server.node.ChubbyNodeValueDeserializer;
+import chubby.server.node.ChubbyNodeValueSerializer;
+import chubby.utils.exceptions.ChubbyNodeException;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.CmpTarget;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.PutOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+public class ChubbyNodeUpdater {
+    private static final Logger logger = LogManager.getLogger();
+    public static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 200;
+    private final AtomicLong updateCount;
+    private final AtomicLong retriedUpdateCount;
+    private final AtomicLong conflictCount;
+    private final AtomicLong exhaustedCount;
+    private final AtomicLong maxAttempt;
+
+    /**
+     * Create a new ChubbyNodeUpdater. Every read-modify-write cycle on a key goes through it: the key is read, the new
+     * value is computed from the read one and written only if the key was not changed in the meantime, guarded by its
+     * mod revision. If it was, the cycle starts over after a jittered backoff, up to a fixed number of attempts, so
+     * that concurrent sessions never overwrite each other's updates.
+     */
+    public ChubbyNodeUpdater() {
+        this.updateCount = new AtomicLong();
+        this.retriedUpdateCount = new AtomicLong();
+        this.conflictCount = new AtomicLong();
+        this.exhaustedCount = new AtomicLong();
+        this.maxAttempt = new AtomicLong();
+    }
+
+    /**
+     * Updates the value of a node.
+     *
+     * @param kvClient       etcd kv client
+     * @param key            key of the node
+     * @param updateFunction changes the read value and returns it, or returns null to leave the node as it is; it may
+     *                       be applied more than once, to a fresh copy of the node each time
+     * @return a CompletableFuture containing true if the node was written, false if it does not exist or was left as
+     * it is
+     */
+    public CompletableFuture<Boolean> updateNode(@NotNull KV kvClient, @NotNull ByteSequence key, @NotNull UnaryOperator<ChubbyNodeValue> updateFunction) {
+        return this.updateNodeAsync(kvClient, key, chubbyNodeValue -> CompletableFuture.completedFuture(updateFunction.apply(chubbyNodeValue)));
+    }
+
+    /**
+     * Updates the value of a node, computing the new value asynchronously.
+     *
+     * @param kvClient       etcd kv client
+     * @param key            key of the node
+     * @param updateFunction changes the read value and returns it, or returns null to leave the node as it is; it may
+     *                       be applied more than once, to a fresh copy of the node each time
+     * @return a CompletableFuture containing true if the node was written, false if it does not exist or was left as
+     * it is
+     */
+    public CompletableFuture<Boolean> updateNodeAsync(@NotNull KV kvClient, @NotNull ByteSequence key, @NotNull Function<ChubbyNodeValue, CompletableFuture<ChubbyNodeValue>> updateFunction) {
+        return this.update(kvClient, key, keyValue -> {
+            if (keyValue == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(keyValue.getValue().toString());
+            return updateFunction.apply(chubbyNodeValue).thenApply(updatedChubbyNodeValue -> updatedChubbyNodeValue == null ? null : toByteSequence(ChubbyNodeValueSerializer.serialize(updatedChubbyNodeValue)));
+        });
+    }
+
+    /**
+     * Updates the value of a key. The write is guarded by the mod revision the key was read at, or by its absence if
+     * it was not found, and keeps the lease the key is bound to.
+     *
+     * @param kvClient       etcd kv client
+     * @param key            the key
+     * @param updateFunction computes the new value from the read key value, null if the key does not exist; it
+     *                       returns null to leave the key as it is, and may be applied more than once
+     * @return a CompletableFuture containing true if the key was written, false if it was left as it is
+     */
+    public CompletableFuture<Boolean> update(@NotNull KV kvClient, @NotNull ByteSequence key, @NotNull Function<@Nullable KeyValue, CompletableFuture<@Nullable ByteSequence>> updateFunction) {
+        return this.update(kvClient, key, updateFunction, 1);
+    }
+
+    private CompletableFuture<Boolean> update(@NotNull KV kvClient, @NotNull ByteSequence key, @NotNull Function<@Nullable KeyValue, CompletableFuture<@Nullable ByteSequence>> updateFunction, int attempt) {
+        return kvClient.get(key).thenCompose(getResponse -> {
+            KeyValue keyValue = getResponse.getCount() > 0 ? getResponse.getKvs().getFirst() : null;
+
+            return updateFunction.apply(keyValue).thenCompose(updatedValue -> {
+                if (updatedValue == null) {
+                    return CompletableFuture.completedFuture(false);
+                }
+
+                Cmp cmp = keyValue == null ? new Cmp(key, Cmp.Op.EQUAL, CmpTarget.version(0)) : new Cmp(key, Cmp.Op.EQUAL, CmpTarget.modRevision(keyValue.getModRevision()));
+                PutOption putOption = keyValue == null ? PutOption.DEFAULT : ChubbyNamespace.putOptionOf(keyValue);
+
+                logger.trace("about to update '{}', attempt {}", key, attempt);
+                return kvClient.txn().If(cmp).Then(Op.put(key, updatedValue, putOption)).commit().thenCompose(txnResponse -> {
+                    if (txnResponse.isSucceeded()) {
+                        this.updateCount.incrementAndGet();
+                        if (attempt > 1) {
+                            this.retriedUpdateCount.incrementAndGet();
+                        }
+                        this.maxAttempt.accumulateAndGet(attempt, Math::max);
+                        return CompletableFuture.completedFuture(true);
+                    }
+
+                    //the key changed since it was read, nothing was written
+                    this.conflictCount.incrementAndGet();
+                    if (attempt >= MAX_ATTEMPTS) {
+                        this.exhaustedCount.incrementAndGet();
+                        logger.warn("giving up the update of '{}' after {} conflicting attempts", key, attempt);
+                        return CompletableFuture.failedFuture(new RuntimeException(new ChubbyNodeException("conflicting concurrent updates of '" + key + "', nothing written after " + attempt + " attempts")));
+                    }
+
+                    long backoffMillis = backoffMillis(attempt);
+                    logger.debug("update of '{}' conflicted with a concurrent update, retrying in {} ms", key, backoffMillis);
+                    return ChubbyLockProcessor.delay(backoffMillis).thenCompose(v -> this.update(kvClient, key, updateFunction, attempt + 1));
+                });
+            });
+        });
+    }
+
+    /**
+     * Returns how long to wait before the next attempt: the ceiling doubles at each conflict, up to a maximum, and the
+     * wait is drawn at random from its upper half, so that the clients that conflicted do not retry in lockstep.
+     *
+     * @param attempt the number of the attempt that conflicted
+     * @return the backoff in milliseconds
+     */
+    protected static long backoffMillis(int attempt) {
+        long ceilingMillis = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceilingMillis / 2, ceilingMillis + 1);
+    }
+
+    private static ByteSequence toByteSequence(@NotNull String value) {
+        return ByteSequence.from(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getUpdateCount() {
+        return this.updateCount.get();
+    }
+
+    public long getRetriedUpdateCount() {
+        return this.retriedUpdateCount.get();
+    }
+
+    public long getConflictCount() {
+        return this.conflictCount.get();
+    }
+
+    public long getExhaustedCount() {
+        return this.exhaustedCount.get();
+    }
+
+    public long getMaxAttempt() {
+        return this.maxAttempt.get();
+    }
+}
@@ -0,0 +1,133 @@
+package chubby.server;
+
+import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyRequestBatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class ChubbyRequestBatcher implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+    public static final long DEFAULT_WINDOW_MILLIS = 5;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+    private final String username;
+    private final String token;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Consumer<ChubbyRequestBatch> batchConsumer;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final List<ChubbyRequest> pendingRequestList;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Create a new ChubbyRequestBatcher, coalescing the requests added within a time window into a single batch.
+     *
+     * @param username      the username of the client sending the requests
+     * @param windowMillis  how long a request may wait for other requests before its batch is sent
+     * @param maxBatchSize  the number of requests after which a batch is sent without waiting for the window to expire
+     * @param batchConsumer sends a batch to the server
+     */
+    public ChubbyRequestBatcher(String username, long windowMillis, int maxBatchSize, @NotNull Consumer<ChubbyRequestBatch> batchConsumer) {
+        this(username, null, windowMillis, maxBatchSize, batchConsumer);
+    }
+
+    /**
+     * Create a new ChubbyRequestBatcher, coalescing the requests added within a time window into a single batch. Every
+     * batch carries the session token of the client.
+     *
+     * @param username      the username of the client sending the requests
+     * @param token         the session token of the client, null if not logged in
+     * @param windowMillis  how long a request may wait for other requests before its batch is sent
+     * @param maxBatchSize  the number of requests after which a batch is sent without waiting for the window to expire
+     * @param batchConsumer sends a batch to the server
+     */
+    public ChubbyRequestBatcher(String username, @Nullable String token, long windowMillis, int maxBatchSize, @NotNull Consumer<ChubbyRequestBatch> batchConsumer) {
+        this.username = username;
+        this.token = token;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchConsumer = batchConsumer;
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chubby_request_batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingRequestList = new ArrayList<>();
+    }
+
+    /**
+     * Splits a message read from the input into one request per line, so that a group of commands written at once is
+     * sent in the same batch.
+     *
+     * @param messageStr the message read from the input
+     * @return the lines of the message, each one with its line terminator
+     */
+    public static List<String> splitCommands(@NotNull String messageStr) {
+        List<String> commandList = new ArrayList<>();
+
+        for (String command : messageStr.split("(?<=\n)")) {
+            if (!command.isBlank()) {
+                commandList.add(command);
+            }
+        }
+
+        return commandList;
+    }
+
+    /**
+     * Adds a request to the current batch. The batch is sent once the window of its first request expires, or as soon
+     * as it is full.
+     *
+     * @param chubbyRequest the request to be sent
+     */
+    public synchronized void add(@NotNull ChubbyRequest chubbyRequest) {
+        this.pendingRequestList.add(chubbyRequest);
+
+        if (this.pendingRequestList.size() >= this.maxBatchSize) {
+            this.flush();
+        } else if (this.scheduledFlush == null) {
+            this.scheduledFlush = this.scheduledExecutorService.schedule(this::flush, this.windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the current batch without waiting for its window to expire.
+     */
+    public synchronized void flush() {
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        if (this.pendingRequestList.isEmpty()) {
+            return;
+        }
+
+        ChubbyRequestBatch chubbyRequestBatch = new ChubbyRequestBatch(this.username, this.token, this.pendingRequestList);
+        this.pendingRequestList.clear();
+
+        logger.trace("sending batch of {} request(s) of '{}'", chubbyRequestBatch.size(), this.username);
+        this.batchConsumer.accept(chubbyRequestBatch);
+    }
+
+    /**
+     * Sends the current batch and stops the timer of the windows.
+     */
+    @Override
+    public void close() {
+        this.flush();
+        this.scheduledExecutorService.shutdown();
+    }
+
+    public synchronized int getPendingRequestCount() {
+        return this.pendingRequestList.size();
+    }
+}
@@ -1,10 +1,17 @@
 package chubby.server;
 
+import chubby.control.message.ChubbyLoginRequest;
+import chubby.control.message.ChubbyLoginResponse;
 import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyRequestBatch;
 import chubby.utils.ChubbyUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import io.etcd.jetcd.watch.WatchEvent;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 
 public class ChubbyRequestDeserializer {
     public static ChubbyRequest deserialize(String jsonRequest) {
@@ -14,4 +21,64 @@ public class ChubbyRequestDeserializer {
     public static ChubbyRequest deserialize(@NotNull WatchEvent watchEvent) {
         return ChubbyUtils.gsonBuild().fromJson(watchEvent.getKeyValue().getValue().toString(), ChubbyRequest.class);
     }
+
+    /**
+     * Parses a message sent by a client, so that it's read once whatever it turns out to be.
+     *
+     * @param jsonMessage serialized batch, request or login request
+     * @return the parsed message
+     */
+    public static JsonObject parse(String jsonMessage) {
+        return ChubbyUtils.gsonBuild().fromJson(jsonMessage, JsonObject.class);
+    }
+
+    /**
+     * Checks if a parsed message is a login request.
+     *
+     * @param jsonObject the parsed message
+     * @return true if the message is a login request
+     */
+    public static boolean isLoginRequest(@NotNull JsonObject jsonObject) {
+        return jsonObject.has("login");
+    }
+
+    public static ChubbyLoginRequest deserializeLoginRequest(@NotNull JsonObject jsonObject) {
+        return ChubbyUtils.gsonBuild().fromJson(jsonObject, ChubbyLoginRequest.class);
+    }
+
+    public static ChubbyLoginResponse deserializeLoginResponse(String jsonResponse) {
+        return ChubbyUtils.gsonBuild().fromJson(jsonResponse, ChubbyLoginResponse.class);
+    }
+
+    /**
+     * Deserializes a batch of requests, a single request is deserialized as a batch containing only that request.
+     *
+     * @param jsonRequest serialized batch or request
+     * @return the batch of requests
+     */
+    public static ChubbyRequestBatch deserializeBatch(String jsonRequest) {
+        return deserializeBatch(parse(jsonRequest));
+    }
+
+    /**
+     * Deserializes a parsed batch of requests, a single request is deserialized as a batch containing only that
+     * request.
+     *
+     * @param jsonObject the parsed batch or request
+     * @return the batch of requests
+     */
+    public static ChubbyRequestBatch deserializeBatch(@NotNull JsonObject jsonObject) {
+        Gson gson = ChubbyUtils.gsonBuild();
+
+        if (jsonObject.has("requests")) {
+            return gson.fromJson(jsonObject, ChubbyRequestBatch.class);
+        }
+
+        ChubbyRequest chubbyRequest = gson.fromJson(jsonObject, ChubbyRequest.class);
+        return new ChubbyRequestBatch(chubbyRequest.getUsername(), List.of(chubbyRequest));
+    }
+
+    public static ChubbyRequestBatch deserializeBatch(@NotNull WatchEvent watchEvent) {
+        return deserializeBatch(watchEvent.getKeyValue().getValue().toString());
+    }
 }
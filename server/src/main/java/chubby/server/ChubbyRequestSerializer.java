@@ -1,10 +1,25 @@
 package chubby.server;
 
+import chubby.control.message.ChubbyLoginRequest;
+import chubby.control.message.ChubbyLoginResponse;
 import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyRequestBatch;
 import chubby.utils.ChubbyUtils;
 
 public class ChubbyRequestSerializer {
     public static String serialize(ChubbyRequest chubbyRequest) {
         return ChubbyUtils.gsonBuild().toJson(chubbyRequest, ChubbyRequest.class);
     }
+
+    public static String serialize(ChubbyRequestBatch chubbyRequestBatch) {
+        return ChubbyUtils.gsonBuild().toJson(chubbyRequestBatch, ChubbyRequestBatch.class);
+    }
+
+    public static String serialize(ChubbyLoginRequest chubbyLoginRequest) {
+        return ChubbyUtils.gsonBuild().toJson(chubbyLoginRequest, ChubbyLoginRequest.class);
+    }
+
+    public static String serialize(ChubbyLoginResponse chubbyLoginResponse) {
+        return ChubbyUtils.gsonBuild().toJson(chubbyLoginResponse, ChubbyLoginResponse.class);
+    }
 }
@@ -0,0 +1,353 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleResponse;
+import chubby.control.message.ChubbyMessage;
+import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyRequestBatch;
+import chubby.control.message.ChubbyResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class ChubbySession {
+    private static final Logger logger = LogManager.getLogger();
+    private final String username;
+    private final AtomicLong sequenceNumberGenerator;
+    private final Map<Long, CompletableFuture<ChubbyMessage>> outstandingRequestMap;
+    private final TreeMap<Long, PendingRequest> pendingRequestMap;
+    private final TreeMap<Long, CompletedRequest> completedRequestMap;
+    private long expectedSequenceNumber;
+    private long nextDeliveredSequenceNumber;
+    private int inFlightCount;
+    private boolean exclusiveInFlight;
+    private boolean delivering;
+    private final OutputStream outputStream;
+    private volatile long lastActivityMillis;
+    private ChubbyResponse latestChubbyResponse;    //handle state of the session, updated by each response in sequence order
+
+    /**
+     * Create a new ChubbySession, whose responses are sent to the standard output.
+     *
+     * @param username                    the username of the client owning the session
+     * @param initialChubbyHandleResponse the handle held by the client when the session starts
+     */
+    public ChubbySession(String username, @NotNull ChubbyHandleResponse initialChubbyHandleResponse) {
+        this(username, initialChubbyHandleResponse, System.out);
+    }
+
+    /**
+     * Create a new ChubbySession.
+     *
+     * @param username                    the username of the client owning the session
+     * @param initialChubbyHandleResponse the handle held by the client when the session starts
+     * @param outputStream                the output stream where responses and notifications of the session are sent
+     */
+    public ChubbySession(String username, @NotNull ChubbyHandleResponse initialChubbyHandleResponse, @NotNull OutputStream outputStream) {
+        this.username = username;
+        this.outputStream = outputStream;
+        this.sequenceNumberGenerator = new AtomicLong(1);
+        this.outstandingRequestMap = new ConcurrentHashMap<>();
+        this.pendingRequestMap = new TreeMap<>();
+        this.completedRequestMap = new TreeMap<>();
+        this.expectedSequenceNumber = 1;
+        this.nextDeliveredSequenceNumber = 1;
+        this.inFlightCount = 0;
+        this.exclusiveInFlight = false;
+        this.delivering = false;
+        this.lastActivityMillis = System.currentTimeMillis();
+        this.latestChubbyResponse = new ChubbyResponse(username, null, initialChubbyHandleResponse);
+    }
+
+    /**
+     * Creates a new request of this session, assigning it the next sequence number. The request can be sent without
+     * waiting for the responses of the previous ones, its response is matched by sequence number.
+     *
+     * @param messageStr the message of the request
+     * @return the request to be sent
+     */
+    public ChubbyRequest newRequest(@NotNull String messageStr) {
+        long sequenceNumber = this.sequenceNumberGenerator.getAndIncrement();
+        this.outstandingRequestMap.put(sequenceNumber, new CompletableFuture<>());
+
+        //handle state is bound again once the request is processed, since responses of previous requests may change it
+        synchronized (this) {
+            return new ChubbyRequest(this.username, this.latestChubbyResponse, messageStr, sequenceNumber);
+        }
+    }
+
+    /**
+     * Returns the response to the specified outstanding request.
+     *
+     * @param sequenceNumber the sequence number of the request
+     * @return a CompletableFuture containing the response, null if no outstanding request has such sequence number
+     */
+    public CompletableFuture<ChubbyMessage> getResponse(long sequenceNumber) {
+        return this.outstandingRequestMap.get(sequenceNumber);
+    }
+
+    /**
+     * Checks whether the given request was sent by a client that started a new session with the same username, that
+     * is the sequence of its requests starts over.
+     *
+     * @param chubbyRequest the received request
+     * @return true if the request starts a new sequence, false otherwise
+     */
+    public synchronized boolean isRestartedBy(@NotNull ChubbyRequest chubbyRequest) {
+        return chubbyRequest.getSequenceNumber() == 1 && this.expectedSequenceNumber > 1;
+    }
+
+    /**
+     * Submits a received request. Requests are processed one at a time in sequence order, each one on the handle state
+     * left by the previous one, so that pipelined requests update the handle state deterministically; requests
+     * received out of order are buffered until the missing ones are received.
+     *
+     * @param chubbyRequest          the received request
+     * @param chubbyRequestProcessor processes a request bound to the current handle state
+     * @param chubbyMessageConsumer  consumes the response, in sequence order
+     * @return a CompletableFuture containing the response, or null if the request is a duplicate
+     */
+    public CompletableFuture<ChubbyMessage> submit(@NotNull ChubbyRequest chubbyRequest, @NotNull Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor, @NotNull Consumer<ChubbyMessage> chubbyMessageConsumer) {
+        return this.submit(chubbyRequest, chubbyRequestProcessor, chubbyMessageConsumer, false);
+    }
+
+    /**
+     * Submits a received request. Requests are started in sequence order, each one on the handle state left by the
+     * previous one, and their responses are consumed in sequence order too. A concurrent request, one that leaves the
+     * handle state as it is, is started while the concurrent requests before it are still being processed; any other
+     * request waits for every previous one and is processed alone.
+     *
+     * @param chubbyRequest          the received request
+     * @param chubbyRequestProcessor processes a request bound to the current handle state
+     * @param chubbyMessageConsumer  consumes the response, in sequence order
+     * @param concurrent             whether the request leaves the handle state as it is
+     * @return a CompletableFuture containing the response, or null if the request is a duplicate
+     */
+    public CompletableFuture<ChubbyMessage> submit(@NotNull ChubbyRequest chubbyRequest, @NotNull Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor, @NotNull Consumer<ChubbyMessage> chubbyMessageConsumer, boolean concurrent) {
+        CompletableFuture<ChubbyMessage> responseFuture;
+        synchronized (this) {
+            if (chubbyRequest.getSequenceNumber() < this.expectedSequenceNumber || this.pendingRequestMap.containsKey(chubbyRequest.getSequenceNumber())) {
+                logger.warn("ignoring duplicate request with sequence number '{}' of session '{}'", chubbyRequest.getSequenceNumber(), this.username);
+                return CompletableFuture.completedFuture(null);
+            }
+            this.pendingRequestMap.put(chubbyRequest.getSequenceNumber(), new PendingRequest(chubbyRequest, chubbyRequestProcessor, chubbyMessageConsumer, concurrent));
+            responseFuture = this.outstandingRequestMap.computeIfAbsent(chubbyRequest.getSequenceNumber(), sequenceNumber -> new CompletableFuture<>());
+        }
+
+        this.processNext();
+        return responseFuture;
+    }
+
+    /**
+     * Submits a received batch of requests, each one is processed as if it was submitted alone.
+     *
+     * @param chubbyRequestBatch     the received batch
+     * @param chubbyRequestProcessor processes a request bound to the current handle state
+     * @param chubbyMessageConsumer  consumes each response, in sequence order
+     * @return a CompletableFuture containing the messages exchanged by the batch, in sequence order: each processed
+     * request (bound to the handle state it was processed on) followed by its response
+     */
+    public CompletableFuture<List<ChubbyMessage>> submit(@NotNull ChubbyRequestBatch chubbyRequestBatch, @NotNull Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor, @NotNull Consumer<ChubbyMessage> chubbyMessageConsumer) {
+        return this.submit(chubbyRequestBatch, chubbyRequestProcessor, chubbyMessageConsumer, chubbyRequest -> false);
+    }
+
+    /**
+     * Submits a received batch of requests, each one is processed as if it was submitted alone.
+     *
+     * @param chubbyRequestBatch     the received batch
+     * @param chubbyRequestProcessor processes a request bound to the current handle state
+     * @param chubbyMessageConsumer  consumes each response, in sequence order
+     * @param concurrentPredicate    tells whether a request leaves the handle state as it is
+     * @return a CompletableFuture containing the messages exchanged by the batch, in sequence order: each processed
+     * request (bound to the handle state it was processed on) followed by its response
+     */
+    public CompletableFuture<List<ChubbyMessage>> submit(@NotNull ChubbyRequestBatch chubbyRequestBatch, @NotNull Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor, @NotNull Consumer<ChubbyMessage> chubbyMessageConsumer, @NotNull Predicate<ChubbyRequest> concurrentPredicate) {
+        Map<Long, ChubbyRequest> boundChubbyRequestMap = new ConcurrentHashMap<>();
+        Map<Long, CompletableFuture<ChubbyMessage>> responseFutureMap = new TreeMap<>();
+        this.lastActivityMillis = System.currentTimeMillis();
+
+        chubbyRequestBatch.getChubbyRequestList().forEach(chubbyRequest -> responseFutureMap.put(chubbyRequest.getSequenceNumber(), this.submit(chubbyRequest, boundChubbyRequest -> {
+            boundChubbyRequestMap.put(boundChubbyRequest.getSequenceNumber(), boundChubbyRequest);
+            return chubbyRequestProcessor.apply(boundChubbyRequest);
+        }, chubbyMessageConsumer, concurrentPredicate.test(chubbyRequest)).exceptionally(throwable -> null)));
+
+        return CompletableFuture.allOf(responseFutureMap.values().toArray(new CompletableFuture[0])).thenApply(completed -> {
+            List<ChubbyMessage> chubbyMessageList = new ArrayList<>();
+            responseFutureMap.forEach((sequenceNumber, responseFuture) -> {
+                ChubbyMessage chubbyMessage = responseFuture.join();
+                if (chubbyMessage != null) {
+                    chubbyMessageList.add(boundChubbyRequestMap.get(sequenceNumber));
+                    chubbyMessageList.add(chubbyMessage);
+                }
+            });
+            return chubbyMessageList;
+        });
+    }
+
+    /**
+     * Starts the next requests in sequence order, as long as they were received and they can run alongside the ones
+     * being processed.
+     */
+    private void processNext() {
+        List<PendingRequest> startedPendingRequestList = new ArrayList<>();
+        List<ChubbyRequest> boundChubbyRequestList = new ArrayList<>();
+
+        synchronized (this) {
+            while (!this.pendingRequestMap.isEmpty() && this.pendingRequestMap.firstKey() == this.expectedSequenceNumber) {
+                PendingRequest pendingRequest = this.pendingRequestMap.firstEntry().getValue();
+                if (this.inFlightCount > 0 && (this.exclusiveInFlight || !pendingRequest.concurrent)) {
+                    break;
+                }
+
+                this.pendingRequestMap.pollFirstEntry();
+                this.inFlightCount++;
+                this.exclusiveInFlight = !pendingRequest.concurrent;
+                this.expectedSequenceNumber++;
+
+                ChubbyRequest chubbyRequest = pendingRequest.chubbyRequest;
+                startedPendingRequestList.add(pendingRequest);
+                //requests act on behalf of the session owner, whatever username they carry
+                boundChubbyRequestList.add(new ChubbyRequest(this.username, this.latestChubbyResponse, chubbyRequest.getMessage(), chubbyRequest.getSequenceNumber()));
+            }
+        }
+
+        for (int i = 0; i < startedPendingRequestList.size(); i++) {
+            PendingRequest pendingRequest = startedPendingRequestList.get(i);
+            ChubbyRequest boundChubbyRequest = boundChubbyRequestList.get(i);
+
+            logger.trace("processing request with sequence number '{}' of session '{}'", boundChubbyRequest.getSequenceNumber(), this.username);
+            CompletableFuture<ChubbyMessage> processFuture;
+            try {
+                processFuture = pendingRequest.chubbyRequestProcessor.apply(boundChubbyRequest);
+            } catch (RuntimeException e) {
+                processFuture = CompletableFuture.failedFuture(e);
+            }
+
+            processFuture.whenComplete((chubbyMessage, throwable) -> {
+                synchronized (this) {
+                    this.completedRequestMap.put(boundChubbyRequest.getSequenceNumber(), new CompletedRequest(pendingRequest, boundChubbyRequest, chubbyMessage, throwable));
+                }
+                this.deliverCompleted();
+            });
+        }
+    }
+
+    /**
+     * Consumes the responses of the processed requests in sequence order, one at a time, then starts the requests that
+     * were waiting for them.
+     */
+    private void deliverCompleted() {
+        while (true) {
+            CompletedRequest completedRequest;
+            synchronized (this) {
+                if (this.delivering || this.completedRequestMap.isEmpty() || this.completedRequestMap.firstKey() != this.nextDeliveredSequenceNumber) {
+                    return;
+                }
+                this.delivering = true;
+                completedRequest = this.completedRequestMap.pollFirstEntry().getValue();
+            }
+
+            ChubbyRequest boundChubbyRequest = completedRequest.boundChubbyRequest;
+            ChubbyMessage chubbyMessage = completedRequest.chubbyMessage;
+            CompletableFuture<ChubbyMessage> responseFuture = this.outstandingRequestMap.remove(boundChubbyRequest.getSequenceNumber());
+
+            try {
+                if (completedRequest.throwable != null) {
+                    logger.error("failed to process request with sequence number '{}'", boundChubbyRequest.getSequenceNumber(), completedRequest.throwable);
+                    if (responseFuture != null) {
+                        responseFuture.completeExceptionally(completedRequest.throwable);
+                    }
+                } else {
+                    chubbyMessage.setSequenceNumber(boundChubbyRequest.getSequenceNumber());
+
+                    synchronized (this) {
+                        if (chubbyMessage instanceof ChubbyResponse chubbyResponse) {
+                            this.latestChubbyResponse = chubbyResponse;
+                        }
+                    }
+
+                    try {
+                        completedRequest.pendingRequest.chubbyMessageConsumer.accept(chubbyMessage);
+                    } finally {
+                        if (responseFuture != null) {
+                            responseFuture.complete(chubbyMessage);
+                        }
+                    }
+                }
+            } finally {
+                //the next request is processed even if the response of this one could not be consumed
+                synchronized (this) {
+                    this.nextDeliveredSequenceNumber++;
+                    this.inFlightCount--;
+                    this.delivering = false;
+                }
+                this.processNext();
+            }
+        }
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public long getLastActivityMillis() {
+        return this.lastActivityMillis;
+    }
+
+    public OutputStream getOutputStream() {
+        return this.outputStream;
+    }
+
+    public synchronized ChubbyResponse getLatestChubbyResponse() {
+        return this.latestChubbyResponse;
+    }
+
+    public int getOutstandingRequestCount() {
+        return this.outstandingRequestMap.size();
+    }
+
+    /**
+     * A received request waiting for the previous ones to be processed, along with how it has to be processed.
+     */
+    private static class PendingRequest {
+        private final ChubbyRequest chubbyRequest;
+        private final Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor;
+        private final Consumer<ChubbyMessage> chubbyMessageConsumer;
+        private final boolean concurrent;
+
+        private PendingRequest(ChubbyRequest chubbyRequest, Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor, Consumer<ChubbyMessage> chubbyMessageConsumer, boolean concurrent) {
+            this.chubbyRequest = chubbyRequest;
+            this.chubbyRequestProcessor = chubbyRequestProcessor;
+            this.chubbyMessageConsumer = chubbyMessageConsumer;
+            this.concurrent = concurrent;
+        }
+    }
+
+    /**
+     * A processed request waiting for the responses of the previous ones to be consumed.
+     */
+    private static class CompletedRequest {
+        private final PendingRequest pendingRequest;
+        private final ChubbyRequest boundChubbyRequest;
+        private final ChubbyMessage chubbyMessage;
+        private final Throwable throwable;
+
+        private CompletedRequest(PendingRequest pendingRequest, ChubbyRequest boundChubbyRequest, ChubbyMessage chubbyMessage, Throwable throwable) {
+            this.pendingRequest = pendingRequest;
+            this.boundChubbyRequest = boundChubbyRequest;
+            this.chubbyMessage = chubbyMessage;
+            this.throwable = throwable;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleRequest;
+import chubby.control.handle.ChubbyHandleType;
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
+import io.grpc.stub.StreamObserver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ChubbySessionLease implements StreamObserver<LeaseKeepAliveResponse> {
+    private static final Logger logger = LogManager.getLogger();
+    private final String username;
+    private final long leaseId;
+    private final Client client;
+    private final OutputStream outputStream;
+    private final ChubbyLockDelayTable chubbyLockDelayTable;
+    private final ChubbyNodeUpdater chubbyNodeUpdater;
+    private final Map<String, ChubbyLockObserver<LeaseKeepAliveResponse>> handleObserverMap;
+    private volatile boolean released;
+    private volatile boolean expired;
+
+    /**
+     * Create a new ChubbySessionLease. A single lease is granted for each client session, every handle, lock and
+     * ephemeral node of the session is bound to it. The lease is renewed by the keep-alive scheduler of the cell, that
+     * reports each renewal to this observer.
+     *
+     * @param username             the username of the session owner
+     * @param leaseId              the ID of the lease granted to the session
+     * @param client               etcd client
+     * @param outputStream         output stream where the notifications of the session are sent
+     * @param chubbyLockDelayTable table where the lock-delay of the locks lost with the session is recorded
+     * @param chubbyNodeUpdater    updater removing the locks lost with the session from their nodes
+     */
+    public ChubbySessionLease(String username, long leaseId, @NotNull Client client, @NotNull OutputStream outputStream, @NotNull ChubbyLockDelayTable chubbyLockDelayTable, @NotNull ChubbyNodeUpdater chubbyNodeUpdater) {
+        this.username = username;
+        this.leaseId = leaseId;
+        this.client = client;
+        this.outputStream = outputStream;
+        this.chubbyLockDelayTable = chubbyLockDelayTable;
+        this.chubbyNodeUpdater = chubbyNodeUpdater;
+        this.handleObserverMap = new ConcurrentHashMap<>();
+        this.released = false;
+        this.expired = false;
+    }
+
+    /**
+     * Binds a handle to the session lease, the handle is invalidated when the lease expires.
+     *
+     * @param chubbyHandleRequest the request of the handle
+     */
+    public void register(@NotNull ChubbyHandleRequest chubbyHandleRequest) {
+        String handleKey = handleKeyOf(Path.of(chubbyHandleRequest.getRequestedAbsolutePath()), chubbyHandleRequest.getChubbyHandleType());
+        this.handleObserverMap.put(handleKey, new ChubbyLockObserver<>(this.username, chubbyHandleRequest, this.client, this.outputStream, this.chubbyLockDelayTable, this.chubbyNodeUpdater));
+        logger.trace("bound handle '{}' to lease of session '{}'", handleKey, this.username);
+    }
+
+    /**
+     * Unbinds a released handle from the session lease.
+     *
+     * @param handleAbsolutePath absolute path of the node of the handle
+     * @param chubbyHandleType   type of the handle
+     */
+    public void unregister(@NotNull Path handleAbsolutePath, ChubbyHandleType chubbyHandleType) {
+        String handleKey = handleKeyOf(handleAbsolutePath, chubbyHandleType);
+        this.handleObserverMap.remove(handleKey);
+        logger.trace("unbound handle '{}' from lease of session '{}'", handleKey, this.username);
+    }
+
+    /**
+     * Revokes the lease, releasing every lock bound to it. The handles still bound are not invalidated, since they are
+     * released together with the session.
+     *
+     * @return a CompletableFuture completed once the lease is revoked
+     */
+    public CompletableFuture<Void> release() {
+        logger.debug("releasing lease of session '{}' with 'id={}'", this.username, this.leaseId);
+        this.released = true;
+        this.handleObserverMap.clear();
+
+        return this.client.getLeaseClient().revoke(this.leaseId).thenAccept(leaseRevokeResponse -> logger.trace("revoked lease of session '{}'", this.username));
+    }
+
+    /**
+     * Starts the lock-delay window of every exclusive lock still bound to the lease, used when the session owner
+     * failed and the session is torn down before its lease expires.
+     */
+    public void recordLockDelay() {
+        logger.debug("client of session '{}' failed, recording lock-delay of its locks", this.username);
+        this.handleObserverMap.values().forEach(ChubbyLockObserver::recordLockDelay);
+    }
+
+    /**
+     * Unbinds every handle from the lease before the session is torn down, so that none of them is invalidated when
+     * the lease is revoked.
+     *
+     * @return the handles still bound to the lease holding an exclusive lock, mapped to their handle type
+     */
+    public Map<Path, ChubbyHandleType> detachExclusiveHandles() {
+        this.released = true;
+
+        Map<Path, ChubbyHandleType> exclusiveHandleMap = new HashMap<>();
+        this.handleObserverMap.values().stream()
+                .filter(chubbyLockObserver -> !chubbyLockObserver.getChubbyHandleType().equals(ChubbyHandleType.READ))
+                .forEach(chubbyLockObserver -> exclusiveHandleMap.put(chubbyLockObserver.getPath(), chubbyLockObserver.getChubbyHandleType()));
+        this.handleObserverMap.clear();
+
+        logger.trace("detached {} exclusive handle(s) from lease of session '{}'", exclusiveHandleMap.size(), this.username);
+        return exclusiveHandleMap;
+    }
+
+    @Override
+    public void onNext(LeaseKeepAliveResponse value) {
+        logger.trace("renewed lease of session '{}' with 'ttl={}'", this.username, value.getTTL());
+    }
+
+    @Override
+    public void onError(@NotNull Throwable t) {
+        this.expired = true;
+        if (this.released) {
+            return;
+        }
+
+        logger.error("error detected '{}' on lease of session '{}', invalidating {} handle(s)", t.getMessage(), this.username, this.handleObserverMap.size());
+        this.handleObserverMap.values().forEach(chubbyLockObserver -> chubbyLockObserver.onError(t));
+        this.handleObserverMap.clear();
+    }
+
+    @Override
+    public void onCompleted() {
+        this.expired = true;
+        if (this.released) {
+            return;
+        }
+
+        logger.debug("lease of session '{}' expired, invalidating {} handle(s)", this.username, this.handleObserverMap.size());
+        this.handleObserverMap.values().forEach(ChubbyLockObserver::onCompleted);
+        this.handleObserverMap.clear();
+    }
+
+    public long getLeaseId() {
+        return this.leaseId;
+    }
+
+    public boolean isExpired() {
+        return this.expired;
+    }
+
+    /**
+     * Returns the key used to bind a handle to the lease.
+     *
+     * @param handleAbsolutePath absolute path of the node of the handle
+     * @param chubbyHandleType   type of the handle
+     * @return the key of the handle
+     */
+    private static String handleKeyOf(@NotNull Path handleAbsolutePath, ChubbyHandleType chubbyHandleType) {
+        return ChubbyPath.of(handleAbsolutePath) + " " + chubbyHandleType;
+    }
+}
@@ -0,0 +1,56 @@
+package chubby.server;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.KV;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbySessionOutputStream extends OutputStream {
+    private static final Logger logger = LogManager.getLogger();
+    private final KV kvClient;
+    private final ByteSequence responseKey;
+    private CompletableFuture<?> latestPutFuture;
+
+    /**
+     * Create a new ChubbySessionOutputStream, each write is sent to the client as a new value of its response key.
+     *
+     * @param kvClient    the kv client of the cell
+     * @param responseKey the key watched by the client to receive responses and notifications
+     */
+    public ChubbySessionOutputStream(@NotNull KV kvClient, @NotNull ByteSequence responseKey) {
+        this.kvClient = kvClient;
+        this.responseKey = responseKey;
+        this.latestPutFuture = CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void write(int b) {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) {
+        ByteSequence messageByteSequence = ByteSequence.from(Arrays.copyOfRange(b, off, off + len));
+
+        //each put is chained to the previous one, so that the client receives messages in the same order they were written
+        synchronized (this) {
+            this.latestPutFuture = this.latestPutFuture
+                    .exceptionally(throwable -> null)
+                    .thenCompose(previousPutResponse -> this.kvClient.put(this.responseKey, messageByteSequence))
+                    .whenComplete((putResponse, throwable) -> {
+                        if (throwable != null) {
+                            logger.error("failed to send message to '{}'", this.responseKey, throwable);
+                        }
+                    });
+        }
+    }
+
+    public ByteSequence getResponseKey() {
+        return this.responseKey;
+    }
+}
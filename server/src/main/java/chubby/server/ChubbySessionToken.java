@@ -0,0 +1,116 @@
+package chubby.server;
+
+import chubby.utils.exceptions.ChubbyAuthenticationException;
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+public class ChubbySessionToken {
+    private static final Charset charset = StandardCharsets.UTF_8;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String FIELD_SEPARATOR = ".";
+    private final String username;
+    private final long expiryMillis;
+
+    /**
+     * Create a new ChubbySessionToken, the verified content of a token.
+     *
+     * @param username     the user the token was issued to
+     * @param expiryMillis when the token expires, in milliseconds since the epoch
+     */
+    private ChubbySessionToken(@NotNull String username, long expiryMillis) {
+        this.username = username;
+        this.expiryMillis = expiryMillis;
+    }
+
+    /**
+     * Issues a token for the specified user. A token is 'username.expiry.signature', the username and the signature
+     * encoded in base64 and the signature being the HMAC of the first two fields, so that whoever holds the signing key
+     * verifies it without reading the credentials of the user.
+     *
+     * @param signingKey   the signing key of the cell
+     * @param username     the user the token is issued to
+     * @param expiryMillis when the token expires, in milliseconds since the epoch
+     * @return the token
+     */
+    public static @NotNull String issue(byte @NotNull [] signingKey, @NotNull String username, long expiryMillis) {
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(username.getBytes(charset)) + FIELD_SEPARATOR + expiryMillis;
+        return payload + FIELD_SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(signingKey, payload));
+    }
+
+    /**
+     * Verifies the signature and the expiry of a token.
+     *
+     * @param signingKey the signing key of the cell
+     * @param token      the token
+     * @param nowMillis  the current time, in milliseconds since the epoch
+     * @return the verified content of the token
+     * @throws ChubbyAuthenticationException if the token is malformed, forged or expired
+     */
+    public static @NotNull ChubbySessionToken verify(byte @NotNull [] signingKey, @NotNull String token, long nowMillis) throws ChubbyAuthenticationException {
+        int signatureSeparatorIndex = token.lastIndexOf(FIELD_SEPARATOR);
+        int expirySeparatorIndex = signatureSeparatorIndex > 0 ? token.lastIndexOf(FIELD_SEPARATOR, signatureSeparatorIndex - 1) : -1;
+        if (expirySeparatorIndex <= 0) {
+            throw new ChubbyAuthenticationException("malformed session token");
+        }
+
+        String payload = token.substring(0, signatureSeparatorIndex);
+        String username;
+        long expiryMillis;
+        byte[] signature;
+        try {
+            username = new String(Base64.getUrlDecoder().decode(token.substring(0, expirySeparatorIndex)), charset);
+            expiryMillis = Long.parseLong(token.substring(expirySeparatorIndex + 1, signatureSeparatorIndex));
+            signature = Base64.getUrlDecoder().decode(token.substring(signatureSeparatorIndex + 1));
+        } catch (IllegalArgumentException e) {
+            throw new ChubbyAuthenticationException("malformed session token");
+        }
+
+        //constant time comparison, not to reveal how much of a forged signature is right
+        if (!MessageDigest.isEqual(sign(signingKey, payload), signature)) {
+            throw new ChubbyAuthenticationException("invalid session token");
+        }
+        if (expiryMillis <= nowMillis) {
+            throw new ChubbyAuthenticationException("session token expired, log in again");
+        }
+
+        return new ChubbySessionToken(username, expiryMillis);
+    }
+
+    private static byte[] sign(byte @NotNull [] signingKey, @NotNull String payload) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(signingKey, MAC_ALGORITHM));
+            return mac.doFinal(payload.getBytes(charset));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChubbySessionToken{" +
+                "username='" + this.username + '\'' +
+                ", expiryMillis=" + this.expiryMillis +
+                '}';
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public long getExpiryMillis() {
+        return this.expiryMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return this.expiryMillis <= nowMillis;
+    }
+}
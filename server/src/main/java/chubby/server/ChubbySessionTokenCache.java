@@ -0,0 +1,81 @@
+package chubby.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+public class ChubbySessionTokenCache {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String CACHE_DIRECTORY = ".chubby";
+    private static final String TOKEN_FILE_EXTENSION = ".token";
+    private static final String OWNER_ONLY_PERMISSIONS = "rw-------";
+    private final Path tokenPath;
+
+    /**
+     * Create a new ChubbySessionTokenCache, keeping the session token of a user of a cell between two runs of the
+     * client, so that reconnecting presents the token instead of the credentials.
+     *
+     * @param cellName name of the cell
+     * @param username username
+     */
+    public ChubbySessionTokenCache(@NotNull String cellName, @NotNull String username) {
+        this.tokenPath = Path.of(System.getProperty("user.home"), CACHE_DIRECTORY, cellName + "-" + username + TOKEN_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the cached token
+     *
+     * @return the cached token, null if none is cached or it cannot be read
+     */
+    public @Nullable String load() {
+        if (!Files.isRegularFile(this.tokenPath)) {
+            return null;
+        }
+
+        try {
+            String token = Files.readString(this.tokenPath, StandardCharsets.UTF_8).trim();
+            return token.isEmpty() ? null : token;
+        } catch (IOException e) {
+            logger.error("cannot read cached session token '{}'", this.tokenPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the token, readable by the owner only where the file system supports it. A token that cannot be cached
+     * only costs a login with the credentials on the next run.
+     *
+     * @param token the session token
+     */
+    public void store(@NotNull String token) {
+        try {
+            Files.createDirectories(this.tokenPath.getParent());
+            Files.writeString(this.tokenPath, token, StandardCharsets.UTF_8);
+            try {
+                Files.setPosixFilePermissions(this.tokenPath, PosixFilePermissions.fromString(OWNER_ONLY_PERMISSIONS));
+            } catch (UnsupportedOperationException e) {
+                logger.trace("owner only permissions not supported for '{}'", this.tokenPath);
+            }
+        } catch (IOException e) {
+            logger.error("cannot cache session token '{}'", this.tokenPath, e);
+        }
+    }
+
+    /**
+     * Removes the cached token, if any
+     */
+    public void clear() {
+        try {
+            Files.deleteIfExists(this.tokenPath);
+        } catch (IOException e) {
+            logger.error("cannot remove cached session token '{}'", this.tokenPath, e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyEventType;
+import chubby.control.handle.ChubbyHandleType;
+import chubby.control.message.ChubbyNotification;
+import chubby.server.node.ChubbyNodeValue;
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.ByteSequence;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ChubbySubscription {
+    private static final Logger logger = LogManager.getLogger();
+    private final String username;
+    private final Path handleAbsolutePath;
+    private final String nodeKey;
+    private final ChubbyHandleType chubbyHandleType;
+    private final List<ChubbyEventType> chubbyEventTypeList;
+    private final Map<ChubbyEventType, AtomicBoolean> eventProcessedMap;
+    private final OutputStream outputStream;
+
+    /**
+     * Create a new ChubbySubscription.
+     *
+     * @param username            the username of the client holding the handle
+     * @param handleAbsolutePath  the absolute path of the subscribed node
+     * @param chubbyHandleType    the type of the handle held on the node
+     * @param chubbyEventTypeList the event types that will be evaluated over the node's events
+     * @param outputStream        the output stream where notifications are sent
+     */
+    public ChubbySubscription(String username, @NotNull Path handleAbsolutePath, ChubbyHandleType chubbyHandleType, @NotNull List<ChubbyEventType> chubbyEventTypeList, @NotNull OutputStream outputStream) {
+        this.username = username;
+        this.handleAbsolutePath = handleAbsolutePath;
+        this.nodeKey = ChubbyPath.of(handleAbsolutePath).toString();
+        this.chubbyHandleType = chubbyHandleType;
+        this.chubbyEventTypeList = List.copyOf(chubbyEventTypeList);
+        this.outputStream = outputStream;
+
+        //notify only the first change for each event type (except for 'CONFLICTING_LOCK'), if multiple changes occur while the subscription is active, they will be ignored
+        this.eventProcessedMap = new EnumMap<>(ChubbyEventType.class);
+        this.chubbyEventTypeList.forEach(chubbyEventType -> this.eventProcessedMap.put(chubbyEventType, new AtomicBoolean(false)));
+    }
+
+    /**
+     * Evaluates each subscribed event type against an update of the subscribed node and sends the resulting
+     * notifications. The values are deserialized once for every subscription of the node.
+     *
+     * @param oldChubbyNodeValue the value of the node before the update
+     * @param newChubbyNodeValue the value of the node after the update
+     */
+    public void onEvent(@NotNull ChubbyNodeValue oldChubbyNodeValue, @NotNull ChubbyNodeValue newChubbyNodeValue) {
+        logger.trace("about to evaluate subscriptions '{}' against update of '{}'", this.chubbyEventTypeList, this.handleAbsolutePath);
+
+        this.chubbyEventTypeList.forEach(chubbyEventType -> {
+            AtomicBoolean eventProcessed = this.eventProcessedMap.get(chubbyEventType);
+            if (eventProcessed.get()) {
+                return;
+            }
+
+            String eventMessage = evaluateEvent(chubbyEventType, oldChubbyNodeValue, newChubbyNodeValue);
+            if (eventMessage != null && (chubbyEventType == ChubbyEventType.CONFLICTING_LOCK || eventProcessed.compareAndSet(false, true))) {
+                this.sendNotification(eventMessage);
+            }
+        });
+    }
+
+    /**
+     * Evaluates a subscription against the previous and current value of the subscribed node.
+     *
+     * @param chubbyEventType    the subscribed event type
+     * @param oldChubbyNodeValue the value of the node before the event
+     * @param newChubbyNodeValue the value of the node after the event
+     * @return the notification message to be sent, or null if the event does not match the subscription
+     */
+    private static @Nullable String evaluateEvent(@NotNull ChubbyEventType chubbyEventType, @NotNull ChubbyNodeValue oldChubbyNodeValue, @NotNull ChubbyNodeValue newChubbyNodeValue) {
+        int childNodeNumberDifference = newChubbyNodeValue.getMetadata().getChildNodeNumber() - oldChubbyNodeValue.getMetadata().getChildNodeNumber();
+
+        return switch (chubbyEventType) {
+            case FILE_CONTENTS_MODIFIED -> {
+                logger.trace("evaluating if oldValue and currentValue have same checksum - oldValue: '{}', currentValue: '{}'", oldChubbyNodeValue.getMetadata().getChecksum(), newChubbyNodeValue.getMetadata().getChecksum());
+                yield oldChubbyNodeValue.getMetadata().getChecksum() != newChubbyNodeValue.getMetadata().getChecksum() ? "file content just changed, consider reloading it" : null;
+            }
+            case CHILD_NODE_ADDED -> childNodeNumberDifference > 0 ? "number of children from currently held node has increased" : null;
+            case CHILD_NODE_REMOVED -> childNodeNumberDifference < 0 ? "number of children from currently held node has decreased" : null;
+            case CHILD_NODE_MODIFIED -> childNodeNumberDifference != 0 ? "number of children from currently held node has changed" : null;
+            case CONFLICTING_LOCK -> {
+                logger.trace("evaluating if oldValue and currentValue have same value - oldValue: '{}', currentValue: '{}'", oldChubbyNodeValue.getMetadata().getLockRequestNumber(), newChubbyNodeValue.getMetadata().getLockRequestNumber());
+                yield oldChubbyNodeValue.getMetadata().getLockRequestNumber() != newChubbyNodeValue.getMetadata().getLockRequestNumber() ? "another client just tried to exclusively lock this node" : null;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Send a notification to the subscription's output stream
+     *
+     * @param message the message to be sent
+     */
+    private void sendNotification(String message) {
+        ChubbyNotification chubbyNotification = new ChubbyNotification(this.handleAbsolutePath, ByteSequence.from(this.nodeKey.getBytes()), message);
+        try {
+            this.outputStream.write(chubbyNotification.getFormattedMessage().getBytes());
+        } catch (IOException e) {
+            logger.error("error while writing to output stream", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChubbySubscription{" +
+                "username='" + this.username + '\'' +
+                ", handleAbsolutePath=" + this.handleAbsolutePath +
+                ", chubbyHandleType=" + this.chubbyHandleType +
+                ", chubbyEventTypeList=" + this.chubbyEventTypeList +
+                '}';
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public Path getHandleAbsolutePath() {
+        return this.handleAbsolutePath;
+    }
+
+    public String getNodeKey() {
+        return this.nodeKey;
+    }
+
+    public ChubbyHandleType getChubbyHandleType() {
+        return this.chubbyHandleType;
+    }
+
+    public List<ChubbyEventType> getChubbyEventTypeList() {
+        return Collections.unmodifiableList(this.chubbyEventTypeList);
+    }
+}
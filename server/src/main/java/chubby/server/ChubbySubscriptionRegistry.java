@@ -0,0 +1,213 @@
+package chubby.server;
+
+import chubby.server.node.ChubbyNodeValue;
+import chubby.server.node.ChubbyNodeValueDeserializer;
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChubbySubscriptionRegistry {
+    private static final Logger logger = LogManager.getLogger();
+    private final ByteSequence cellKey;
+    private final ByteSequence cellPrefix;
+    private final ConcurrentHashMap<String, Set<ChubbySubscription>> subscriptionIndex;
+    private final AtomicLong cellKeyRevision;
+    private final AtomicLong cellPrefixRevision;
+    private Client client;
+    private Watch.Watcher cellKeyWatcher;
+    private Watch.Watcher cellPrefixWatcher;
+    private boolean closed;
+
+    /**
+     * Create a new ChubbySubscriptionRegistry. A single prefix watch is held over the whole cell namespace, together
+     * with a watch on the cell node itself, each event is routed to the subscriptions registered on the node it refers
+     * to.
+     *
+     * @param cellNameAbsolutePath the absolute path of the cell ('/ls/cellName'), its descendants are watched with the
+     *                             '/ls/cellName/' prefix, so that the nodes of a cell named alike are left out
+     */
+    public ChubbySubscriptionRegistry(@NotNull Path cellNameAbsolutePath) {
+        this.cellKey = ChubbyPath.of(cellNameAbsolutePath).toByteSequence();
+        this.cellPrefix = ChubbyPath.of(cellNameAbsolutePath).getChildKeyPrefix();
+        this.subscriptionIndex = new ConcurrentHashMap<>();
+        this.cellKeyRevision = new AtomicLong();
+        this.cellPrefixRevision = new AtomicLong();
+        this.closed = false;
+    }
+
+    /**
+     * Registers a subscription, starting the cell-wide watch if it's not active yet.
+     *
+     * @param client             etcd client used to start the cell-wide watch
+     * @param chubbySubscription the subscription to be registered
+     */
+    public void register(@NotNull Client client, @NotNull ChubbySubscription chubbySubscription) {
+        this.startCellWatchIfAbsent(client);
+
+        this.subscriptionIndex.computeIfAbsent(chubbySubscription.getNodeKey(), k -> ConcurrentHashMap.newKeySet()).add(chubbySubscription);
+        logger.trace("registered subscription '{}'", chubbySubscription);
+    }
+
+    /**
+     * Removes a subscription from the registry, the cell-wide watch is kept active.
+     *
+     * @param chubbySubscription the subscription to be removed
+     */
+    public void unregister(@NotNull ChubbySubscription chubbySubscription) {
+        this.subscriptionIndex.computeIfPresent(chubbySubscription.getNodeKey(), (k, subscriptionSet) -> {
+            subscriptionSet.remove(chubbySubscription);
+            return subscriptionSet.isEmpty() ? null : subscriptionSet;
+        });
+        logger.trace("unregistered subscription '{}'", chubbySubscription);
+    }
+
+    /**
+     * Routes a watch event to the subscriptions registered on the node it refers to. The previous and current values
+     * carried by the event are deserialized once, however many subscriptions the node has.
+     *
+     * @param watchEvent the watch event received from the cell-wide watch
+     */
+    private void dispatch(@NotNull WatchEvent watchEvent) {
+        Set<ChubbySubscription> subscriptionSet = this.subscriptionIndex.get(watchEvent.getKeyValue().getKey().toString());
+
+        if (subscriptionSet == null || subscriptionSet.isEmpty()) {
+            return;
+        }
+
+        //a deleted node has no current value to compare, its handle is invalidated by the lock observer
+        if (watchEvent.getEventType() != WatchEvent.EventType.PUT) {
+            return;
+        }
+
+        if (watchEvent.getPrevKV() == null || watchEvent.getPrevKV().getValue().isEmpty()) {
+            logger.trace("event carries no previous value for '{}', skipping evaluation...", watchEvent.getKeyValue().getKey());
+            return;
+        }
+
+        ChubbyNodeValue oldChubbyNodeValue;
+        ChubbyNodeValue newChubbyNodeValue;
+        try {
+            oldChubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(watchEvent.getPrevKV().getValue().toString());
+            newChubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(watchEvent.getKeyValue().getValue().toString());
+        } catch (RuntimeException e) {
+            logger.error("cannot deserialize values of event on '{}'", watchEvent.getKeyValue().getKey(), e);
+            return;
+        }
+
+        subscriptionSet.forEach(chubbySubscription -> {
+            try {
+                chubbySubscription.onEvent(oldChubbyNodeValue, newChubbyNodeValue);
+            } catch (RuntimeException e) {
+                logger.error("error while evaluating subscription '{}'", chubbySubscription, e);
+            }
+        });
+    }
+
+    /**
+     * Starts the watches over the cell namespace, if they're not already active.
+     *
+     * @param client etcd client
+     */
+    private synchronized void startCellWatchIfAbsent(@NotNull Client client) {
+        if (this.closed || this.cellPrefixWatcher != null) {
+            return;
+        }
+
+        this.client = client;
+        this.cellKeyWatcher = this.watch(this.cellKey, false, this.cellKeyRevision);
+        this.cellPrefixWatcher = this.watch(this.cellPrefix, true, this.cellPrefixRevision);
+        logger.trace("cell watch activated on '{}' and prefix '{}'", this.cellKey, this.cellPrefix);
+    }
+
+    /**
+     * Watches a key, or the keys with a prefix, from the revision following the last one seen. A watch that fails is
+     * restarted at once from the same revision, so that no event is lost in between; if that revision has been
+     * compacted in the meantime, the watch restarts from the oldest revision still available.
+     *
+     * @param key          the watched key, or prefix
+     * @param prefix       whether the key is a prefix
+     * @param lastRevision the revision of the last event seen by the watch, 0 if none
+     * @return the watcher
+     */
+    private Watch.Watcher watch(@NotNull ByteSequence key, boolean prefix, @NotNull AtomicLong lastRevision) {
+        //previous key-value is requested to evaluate each event without reading the node again
+        WatchOption.Builder watchOptionBuilder = WatchOption.newBuilder().withPrevKV(true);
+        if (prefix) {
+            watchOptionBuilder.withPrefix(key);
+        }
+        if (lastRevision.get() > 0) {
+            watchOptionBuilder.withRevision(lastRevision.get() + 1);
+        }
+
+        Watch.Listener listener = Watch.listener(
+                watchResponse -> watchResponse.getEvents().forEach(watchEvent -> {
+                    lastRevision.accumulateAndGet(watchEvent.getKeyValue().getModRevision(), Math::max);
+                    this.dispatch(watchEvent);
+                }),
+                throwable -> {
+                    if (throwable instanceof CompactedException compactedException) {
+                        logger.error("cell watch on '{}' missed the events up to compacted revision {}", key, compactedException.getCompactedRevision());
+                        lastRevision.accumulateAndGet(compactedException.getCompactedRevision() - 1, Math::max);
+                    } else {
+                        logger.error("cell watch on '{}' failed, restarting it from revision {}", key, lastRevision.get() + 1, throwable);
+                    }
+                    this.restartCellWatch(key);
+                });
+
+        return this.client.getWatchClient().watch(key, watchOptionBuilder.build(), listener);
+    }
+
+    /**
+     * Restarts the failed watch, unless the registry has been closed.
+     *
+     * @param key the key, or prefix, of the failed watch
+     */
+    private synchronized void restartCellWatch(@NotNull ByteSequence key) {
+        if (this.closed) {
+            return;
+        }
+
+        if (key.equals(this.cellPrefix)) {
+            closeWatcher(this.cellPrefixWatcher);
+            this.cellPrefixWatcher = this.watch(this.cellPrefix, true, this.cellPrefixRevision);
+        } else {
+            closeWatcher(this.cellKeyWatcher);
+            this.cellKeyWatcher = this.watch(this.cellKey, false, this.cellKeyRevision);
+        }
+    }
+
+    private static void closeWatcher(@Nullable Watch.Watcher watcher) {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Closes the cell-wide watch and drops every registered subscription.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        closeWatcher(this.cellKeyWatcher);
+        closeWatcher(this.cellPrefixWatcher);
+        this.cellKeyWatcher = null;
+        this.cellPrefixWatcher = null;
+        this.subscriptionIndex.clear();
+    }
+
+    public int getSubscriptionCount() {
+        return this.subscriptionIndex.values().stream().mapToInt(Set::size).sum();
+    }
+}
@@ -0,0 +1,164 @@
+package chubby.server;
+
+import chubby.utils.ChubbyPath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ChubbySubtreeRemoval {
+    private final Map<String, List<String>> childPathMap;
+    private final Map<String, Integer> subtreeSizeMap;
+    private final int maxNodesPerBatch;
+    private final int maxEntriesPerBatch;
+    private final List<Batch> batchList;
+    private Batch currentBatch;
+
+    /**
+     * Create a new ChubbySubtreeRemoval, planning the transactions that remove a subtree. Each transaction removes
+     * whole subtrees with range deletes, guarded by the revision of every node it removes: a subtree too large for a
+     * single transaction is split into the subtrees of its children, removed before their parent, so that a removal
+     * interrupted halfway never leaves an orphan node behind.
+     *
+     * @param rootPath           absolute path of the root of the subtree
+     * @param descendantPathList absolute paths of the descendants of the root
+     * @param maxNodesPerBatch   the number of nodes a transaction may guard
+     * @param maxEntriesPerBatch the number of subtrees a transaction may remove
+     */
+    public ChubbySubtreeRemoval(@NotNull String rootPath, @NotNull List<String> descendantPathList, int maxNodesPerBatch, int maxEntriesPerBatch) {
+        this.childPathMap = new HashMap<>();
+        this.subtreeSizeMap = new HashMap<>();
+        this.maxNodesPerBatch = maxNodesPerBatch;
+        this.maxEntriesPerBatch = maxEntriesPerBatch;
+        this.batchList = new ArrayList<>();
+        this.currentBatch = new Batch();
+
+        //a node whose parent is missing is attached to its closest ancestor
+        Set<String> knownPathSet = new HashSet<>(descendantPathList);
+        knownPathSet.add(rootPath);
+        for (String descendantPath : descendantPathList) {
+            ChubbyPath ancestorPath = ChubbyPath.of(descendantPath).getParent();
+            while (!knownPathSet.contains(ancestorPath.toString())) {
+                ancestorPath = ancestorPath.getParent();
+            }
+            this.childPathMap.computeIfAbsent(ancestorPath.toString(), k -> new ArrayList<>()).add(descendantPath);
+        }
+
+        this.computeSubtreeSize(rootPath);
+        this.plan(rootPath);
+        this.flush();
+    }
+
+    private int computeSubtreeSize(@NotNull String path) {
+        int subtreeSize = 1;
+        for (String childPath : this.childPathMap.getOrDefault(path, List.of())) {
+            subtreeSize += this.computeSubtreeSize(childPath);
+        }
+
+        this.subtreeSizeMap.put(path, subtreeSize);
+        return subtreeSize;
+    }
+
+    private void plan(@NotNull String path) {
+        int subtreeSize = this.subtreeSizeMap.get(path);
+
+        if (subtreeSize <= this.maxNodesPerBatch) {
+            this.reserve(subtreeSize);
+            this.currentBatch.add(new Entry(path, true), this.collectSubtree(path, new ArrayList<>()));
+            return;
+        }
+
+        //the children are removed first, the node itself is left alone with nothing under it
+        for (String childPath : this.childPathMap.get(path)) {
+            this.plan(childPath);
+        }
+        this.reserve(1);
+        this.currentBatch.add(new Entry(path, false), List.of(path));
+    }
+
+    private void reserve(int nodeNumber) {
+        if (this.currentBatch.getGuardedPathList().size() + nodeNumber > this.maxNodesPerBatch || this.currentBatch.getEntryList().size() + 1 > this.maxEntriesPerBatch) {
+            this.flush();
+        }
+    }
+
+    private void flush() {
+        if (!this.currentBatch.getEntryList().isEmpty()) {
+            this.batchList.add(this.currentBatch);
+            this.currentBatch = new Batch();
+        }
+    }
+
+    private List<String> collectSubtree(@NotNull String path, @NotNull List<String> pathList) {
+        pathList.add(path);
+        for (String childPath : this.childPathMap.getOrDefault(path, List.of())) {
+            this.collectSubtree(childPath, pathList);
+        }
+        return pathList;
+    }
+
+    /**
+     * Returns the transactions removing the subtree, in the order they have to be committed.
+     *
+     * @return the list of batches
+     */
+    public List<Batch> getBatchList() {
+        return this.batchList;
+    }
+
+    /**
+     * The subtrees removed by a single transaction, together with the nodes whose revision guards it.
+     */
+    public static class Batch {
+        private final List<Entry> entryList;
+        private final List<String> guardedPathList;
+
+        private Batch() {
+            this.entryList = new ArrayList<>();
+            this.guardedPathList = new ArrayList<>();
+        }
+
+        private void add(@NotNull Entry entry, @NotNull List<String> guardedPathList) {
+            this.entryList.add(entry);
+            this.guardedPathList.addAll(guardedPathList);
+        }
+
+        public List<Entry> getEntryList() {
+            return this.entryList;
+        }
+
+        public List<String> getGuardedPathList() {
+            return this.guardedPathList;
+        }
+    }
+
+    /**
+     * A node removed by a transaction, with everything under it if recursive.
+     */
+    public static class Entry {
+        private final String path;
+        private final boolean recursive;
+
+        private Entry(@NotNull String path, boolean recursive) {
+            this.path = path;
+            this.recursive = recursive;
+        }
+
+        public String getPath() {
+            return this.path;
+        }
+
+        public boolean isRecursive() {
+            return this.recursive;
+        }
+
+        @Override
+        public String toString() {
+            return this.recursive ? this.path + "/**" : this.path;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package chubby.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+public class ChubbyTimerWheel<T> {
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<Deque<TimerWheelEntry<T>>> bucketList;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Create a new ChubbyTimerWheel. Items are hashed into a fixed number of buckets by the tick of their deadline,
+     * so scheduling an item and collecting the expired ones cost the same regardless of how many items are scheduled.
+     *
+     * @param tickMillis  the resolution of the wheel, deadlines are rounded up to the next tick
+     * @param wheelSize   the number of buckets, deadlines farther than a whole turn share a bucket with nearer ones
+     * @param startMillis the time of the first tick
+     */
+    public ChubbyTimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tick and wheel size must be positive");
+        }
+
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.bucketList = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            this.bucketList.add(new ArrayDeque<>());
+        }
+        this.currentTick = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Schedules an item to expire after the specified delay.
+     *
+     * @param item        the item to be scheduled
+     * @param delayMillis the delay after which the item expires
+     * @param nowMillis   the current time
+     */
+    public synchronized void schedule(@NotNull T item, long delayMillis, long nowMillis) {
+        long deadlineTick = Math.max(this.currentTick + 1, this.tickOf(nowMillis + delayMillis));
+
+        this.bucketList.get(this.bucketOf(deadlineTick)).add(new TimerWheelEntry<>(item, deadlineTick));
+        this.size++;
+    }
+
+    /**
+     * Advances the wheel up to the current time, collecting the items whose deadline has been reached.
+     *
+     * @param nowMillis the current time
+     * @return the expired items
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.max(this.currentTick, nowMillis < this.startMillis ? 0 : (nowMillis - this.startMillis) / this.tickMillis);
+        List<T> expiredItemList = new ArrayList<>();
+
+        //past a whole turn, every bucket has to be visited once
+        long elapsedTicks = Math.min(targetTick - this.currentTick, this.bucketList.size());
+        for (long tick = targetTick - elapsedTicks + 1; tick <= targetTick; tick++) {
+            Iterator<TimerWheelEntry<T>> iterator = this.bucketList.get(this.bucketOf(tick)).iterator();
+            while (iterator.hasNext()) {
+                TimerWheelEntry<T> timerWheelEntry = iterator.next();
+                if (timerWheelEntry.getDeadlineTick() <= targetTick) {
+                    iterator.remove();
+                    expiredItemList.add(timerWheelEntry.getItem());
+                    this.size--;
+                }
+            }
+        }
+
+        this.currentTick = targetTick;
+        return expiredItemList;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public long getTickMillis() {
+        return this.tickMillis;
+    }
+
+    /**
+     * Returns the first tick at or after the specified time.
+     *
+     * @param timeMillis the time
+     * @return the tick
+     */
+    private long tickOf(long timeMillis) {
+        return (Math.max(0, timeMillis - this.startMillis) + this.tickMillis - 1) / this.tickMillis;
+    }
+
+    private int bucketOf(long tick) {
+        return (int) (tick % this.bucketList.size());
+    }
+
+    private static class TimerWheelEntry<T> {
+        private final T item;
+        private final long deadlineTick;
+
+        private TimerWheelEntry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getItem() {
+            return this.item;
+        }
+
+        public long getDeadlineTick() {
+            return this.deadlineTick;
+        }
+    }
+}
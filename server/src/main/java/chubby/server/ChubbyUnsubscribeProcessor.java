@@ -1,11 +1,9 @@
 package chubby.server;
 
-import io.etcd.jetcd.Watch;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
-
-import java.util.List;
+import org.jetbrains.annotations.Nullable;
 
 public class ChubbyUnsubscribeProcessor {
     private static final Logger logger = LogManager.getLogger();
@@ -13,13 +11,17 @@ public class ChubbyUnsubscribeProcessor {
     /**
      * Unsubscribe to all events from currently held node.
      *
-     * @param watcherList list of watchers to be unsubscribed
+     * @param chubbySubscriptionRegistry the registry of the cell where the subscription is registered
+     * @param chubbySubscription         the subscription to be removed, if null nothing is done
      */
-    public static void process(@NotNull List<Watch.Watcher> watcherList) {
+    public static void process(@NotNull ChubbySubscriptionRegistry chubbySubscriptionRegistry, @Nullable ChubbySubscription chubbySubscription) {
         logger.trace("requested unsubscribe to all events from currently held node");
 
-        watcherList.forEach(watcher -> logger.trace(watcher.toString()));
+        if (chubbySubscription == null) {
+            logger.trace("no active subscription, nothing to unsubscribe");
+            return;
+        }
 
-        watcherList.forEach(Watch.Watcher::close);
+        chubbySubscriptionRegistry.unregister(chubbySubscription);
     }
 }
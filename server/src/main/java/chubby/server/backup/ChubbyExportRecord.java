@@ -0,0 +1,122 @@
+package chubby.server.backup;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class ChubbyExportRecord {
+    private static final Charset charset = StandardCharsets.UTF_8;
+    public static final int VERSION = 1;
+    private static final String FIELD_SEPARATOR = " ";
+    private final ChubbyExportRecordType chubbyExportRecordType;
+    private final String key;
+    private final String value;
+    private final long number;
+
+    /**
+     * Create a new ChubbyExportRecord, a single line of a namespace export. Keys and values are encoded in base64, so
+     * that a line never contains the separator nor a line terminator whatever the content of the node:
+     * <ul>
+     *     <li>'H version cell' opens the export, cell being the absolute path of the exported cell</li>
+     *     <li>'N key value' is a node</li>
+     *     <li>'A key delta' corrects the child count of a node, for the children left out of the export</li>
+     *     <li>'E count' closes the export, count being the number of nodes</li>
+     * </ul>
+     *
+     * @param chubbyExportRecordType type of the record
+     * @param key                    key of the node, or the cell path of a header
+     * @param value                  value of a node
+     * @param number                 version of a header, delta of an adjustment or node count of the end
+     */
+    private ChubbyExportRecord(@NotNull ChubbyExportRecordType chubbyExportRecordType, @Nullable String key, @Nullable String value, long number) {
+        this.chubbyExportRecordType = chubbyExportRecordType;
+        this.key = key;
+        this.value = value;
+        this.number = number;
+    }
+
+    public static @NotNull String encodeHeader(@NotNull String cellAbsolutePath) {
+        return "H" + FIELD_SEPARATOR + VERSION + FIELD_SEPARATOR + encodeField(cellAbsolutePath);
+    }
+
+    public static @NotNull String encodeNode(@NotNull String key, @NotNull String value) {
+        return "N" + FIELD_SEPARATOR + encodeField(key) + FIELD_SEPARATOR + encodeField(value);
+    }
+
+    public static @NotNull String encodeAdjustment(@NotNull String key, long delta) {
+        return "A" + FIELD_SEPARATOR + encodeField(key) + FIELD_SEPARATOR + delta;
+    }
+
+    public static @NotNull String encodeEnd(long nodeCount) {
+        return "E" + FIELD_SEPARATOR + nodeCount;
+    }
+
+    /**
+     * Decodes a line of a namespace export.
+     *
+     * @param line the line, without its terminator
+     * @return the decoded record
+     * @throws IOException if the line is malformed
+     */
+    public static @NotNull ChubbyExportRecord decode(@NotNull String line) throws IOException {
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+
+        try {
+            return switch (fields[0]) {
+                case "H" -> {
+                    checkFieldCount(line, fields, 3);
+                    yield new ChubbyExportRecord(ChubbyExportRecordType.HEADER, decodeField(fields[2]), null, Long.parseLong(fields[1]));
+                }
+                case "N" -> {
+                    checkFieldCount(line, fields, 3);
+                    yield new ChubbyExportRecord(ChubbyExportRecordType.NODE, decodeField(fields[1]), decodeField(fields[2]), 0);
+                }
+                case "A" -> {
+                    checkFieldCount(line, fields, 3);
+                    yield new ChubbyExportRecord(ChubbyExportRecordType.ADJUSTMENT, decodeField(fields[1]), null, Long.parseLong(fields[2]));
+                }
+                case "E" -> {
+                    checkFieldCount(line, fields, 2);
+                    yield new ChubbyExportRecord(ChubbyExportRecordType.END, null, null, Long.parseLong(fields[1]));
+                }
+                default -> throw new IOException("unknown record type '" + fields[0] + "'");
+            };
+        } catch (IllegalArgumentException e) {
+            throw new IOException("malformed record '" + line + "'", e);
+        }
+    }
+
+    private static void checkFieldCount(@NotNull String line, String @NotNull [] fields, int fieldCount) throws IOException {
+        if (fields.length != fieldCount) {
+            throw new IOException("malformed record '" + line + "', expected " + fieldCount + " fields");
+        }
+    }
+
+    private static String encodeField(@NotNull String field) {
+        return Base64.getEncoder().encodeToString(field.getBytes(charset));
+    }
+
+    private static String decodeField(@NotNull String field) {
+        return new String(Base64.getDecoder().decode(field), charset);
+    }
+
+    public ChubbyExportRecordType getChubbyExportRecordType() {
+        return this.chubbyExportRecordType;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getValue() {
+        return this.value;
+    }
+
+    public long getNumber() {
+        return this.number;
+    }
+}
@@ -0,0 +1,8 @@
+package chubby.server.backup;
+
+public enum ChubbyExportRecordType {
+    HEADER,
+    NODE,
+    ADJUSTMENT,
+    END
+}
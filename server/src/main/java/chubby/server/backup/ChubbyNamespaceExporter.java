@@ -0,0 +1,176 @@
+package chubby.server.backup;
+
+import chubby.server.node.ChubbyNodeValue;
+import chubby.server.node.ChubbyNodeValueDeserializer;
+import chubby.server.node.ChubbyNodeValueSerializer;
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.options.GetOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+public class ChubbyNamespaceExporter {
+    private static final Logger logger = LogManager.getLogger();
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 1000;
+    private final KV kvClient;
+    private final Path cellAbsolutePath;
+    private final int pageSize;
+
+    /**
+     * Create a new ChubbyNamespaceExporter. The namespace of a cell is read page by page, all the pages at the same
+     * revision, and written as it is read, so that the memory used does not depend on the size of the namespace. The
+     * next page is requested before the current one is written, so reading and writing overlap.
+     *
+     * @param client           etcd client of the cell
+     * @param cellAbsolutePath absolute path of the cell, its ancestors are exported too
+     * @param pageSize         the number of nodes read with each request
+     */
+    public ChubbyNamespaceExporter(@NotNull Client client, @NotNull Path cellAbsolutePath, int pageSize) {
+        this.kvClient = client.getKVClient();
+        this.cellAbsolutePath = cellAbsolutePath;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Exports the nodes of the cell, its ACL files included. Ephemeral nodes belong to the sessions that created them,
+     * so they are left out and the child count of their parents is corrected at the end of the export. Locks belong
+     * to the sessions too, the lock map of every exported node is emptied.
+     *
+     * @param writer           where the export is written
+     * @param progressListener notified of the progress of the export
+     * @return the progress of the completed export
+     * @throws IOException          if the export cannot be written
+     * @throws ExecutionException   if the namespace cannot be read
+     * @throws InterruptedException if interrupted while reading the namespace
+     */
+    public ChubbyTransferProgress export(@NotNull Writer writer, @NotNull Consumer<ChubbyTransferProgress> progressListener) throws IOException, ExecutionException, InterruptedException {
+        ChubbyTransferProgress chubbyTransferProgress = new ChubbyTransferProgress(DEFAULT_REPORT_INTERVAL_MILLIS);
+        Map<String, Long> adjustmentMap = new HashMap<>();
+
+        //the ancestors of the cell come first, then the cell itself, so that every parent precedes its children
+        List<String> ancestorKeyList = new ArrayList<>();
+        for (ChubbyPath path = ChubbyPath.of(this.cellAbsolutePath); path != null; path = path.getParent()) {
+            ancestorKeyList.addFirst(path.toString());
+        }
+
+        GetResponse firstGetResponse = this.kvClient.get(toByteSequence(ancestorKeyList.getFirst())).get();
+        long revision = firstGetResponse.getHeader().getRevision();
+        logger.debug("exporting namespace of '{}' at revision {}", this.cellAbsolutePath, revision);
+
+        writer.write(ChubbyExportRecord.encodeHeader(this.cellAbsolutePath.toString()));
+        writer.write('\n');
+
+        for (String ancestorKey : ancestorKeyList) {
+            GetResponse getResponse = this.kvClient.get(toByteSequence(ancestorKey), GetOption.newBuilder().withRevision(revision).build()).get();
+            this.write(writer, getResponse.getKvs(), adjustmentMap, chubbyTransferProgress, progressListener);
+        }
+
+        ByteSequence prefixByteSequence = ChubbyPath.of(this.cellAbsolutePath).getChildKeyPrefix();
+        ByteSequence prefixEndByteSequence = prefixEndOf(prefixByteSequence);
+        CompletableFuture<GetResponse> pageFuture = this.getPage(prefixByteSequence, prefixEndByteSequence, revision);
+
+        while (true) {
+            GetResponse pageGetResponse = pageFuture.get();
+            List<KeyValue> keyValueList = pageGetResponse.getKvs();
+
+            //the next page is read while the current one is written
+            boolean more = pageGetResponse.isMore() && !keyValueList.isEmpty();
+            if (more) {
+                ByteSequence nextKeyByteSequence = keyValueList.getLast().getKey().concat(ByteSequence.from(new byte[]{0}));
+                pageFuture = this.getPage(nextKeyByteSequence, prefixEndByteSequence, revision);
+            }
+
+            this.write(writer, keyValueList, adjustmentMap, chubbyTransferProgress, progressListener);
+
+            if (!more) {
+                break;
+            }
+        }
+
+        for (Map.Entry<String, Long> adjustmentEntry : adjustmentMap.entrySet()) {
+            writer.write(ChubbyExportRecord.encodeAdjustment(adjustmentEntry.getKey(), adjustmentEntry.getValue()));
+            writer.write('\n');
+        }
+        writer.write(ChubbyExportRecord.encodeEnd(chubbyTransferProgress.getNodeCount()));
+        writer.write('\n');
+        writer.flush();
+
+        logger.debug("exported namespace of '{}': {}", this.cellAbsolutePath, chubbyTransferProgress);
+        progressListener.accept(chubbyTransferProgress);
+        return chubbyTransferProgress;
+    }
+
+    private CompletableFuture<GetResponse> getPage(@NotNull ByteSequence fromByteSequence, @NotNull ByteSequence toByteSequence, long revision) {
+        return this.kvClient.get(fromByteSequence, GetOption.newBuilder().withRange(toByteSequence).withLimit(this.pageSize).withRevision(revision).build());
+    }
+
+    private void write(@NotNull Writer writer, @NotNull List<KeyValue> keyValueList, @NotNull Map<String, Long> adjustmentMap, @NotNull ChubbyTransferProgress chubbyTransferProgress, @NotNull Consumer<ChubbyTransferProgress> progressListener) throws IOException {
+        long nodeCount = 0;
+        long byteCount = 0;
+
+        for (KeyValue keyValue : keyValueList) {
+            String key = keyValue.getKey().toString();
+
+            if (keyValue.getLease() != 0) {
+                logger.trace("leaving out ephemeral node '{}'", key);
+                adjustmentMap.merge(ChubbyPath.of(key).getParent().toString(), -1L, Long::sum);
+                continue;
+            }
+
+            ChubbyNodeValue chubbyNodeValue = ChubbyNodeValueDeserializer.deserialize(keyValue.getValue().toString());
+            chubbyNodeValue.getMetadata().clearClientLocks();
+
+            String line = ChubbyExportRecord.encodeNode(key, ChubbyNodeValueSerializer.serialize(chubbyNodeValue));
+            writer.write(line);
+            writer.write('\n');
+
+            nodeCount++;
+            byteCount += line.length() + 1;
+        }
+
+        if (chubbyTransferProgress.add(nodeCount, byteCount)) {
+            progressListener.accept(chubbyTransferProgress);
+        }
+    }
+
+    /**
+     * Returns the smallest key greater than every key starting with the given prefix.
+     *
+     * @param prefixByteSequence the prefix
+     * @return the end of the range of the prefix
+     */
+    private static ByteSequence prefixEndOf(@NotNull ByteSequence prefixByteSequence) {
+        byte[] prefixEndBytes = prefixByteSequence.getBytes();
+        for (int i = prefixEndBytes.length - 1; i >= 0; i--) {
+            if (prefixEndBytes[i] != (byte) 0xff) {
+                prefixEndBytes[i]++;
+                return ByteSequence.from(Arrays.copyOf(prefixEndBytes, i + 1));
+            }
+        }
+
+        //every byte is 0xff, the range extends to the end of the keyspace
+        return ByteSequence.from(new byte[]{0});
+    }
+
+    private static ByteSequence toByteSequence(@NotNull String str) {
+        return ByteSequence.from(str.getBytes());
+    }
+}
@@ -0,0 +1,209 @@
+package chubby.server.backup;
+
+import chubby.server.ChubbyNodeUpdater;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.PutOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class ChubbyNamespaceImporter {
+    private static final Logger logger = LogManager.getLogger();
+    //etcd accepts 128 operations per transaction by default
+    public static final int DEFAULT_NODES_PER_TXN = 128;
+    public static final int DEFAULT_MAX_IN_FLIGHT_TXN = 16;
+    public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 1000;
+    private final Client client;
+    private final String targetCellAbsolutePath;
+    private final int nodesPerTxn;
+    private final int maxInFlightTxn;
+    private final ChubbyNodeUpdater nodeUpdater;
+
+    /**
+     * Create a new ChubbyNamespaceImporter. The export is read line by line and its nodes are written with batched
+     * transactions, at most a fixed number of them in flight at the same time: once the limit is reached, reading
+     * waits for a transaction to complete, so that the memory used does not depend on the size of the export.
+     *
+     * @param client                 etcd client of the cell
+     * @param targetCellAbsolutePath absolute path of the cell the export is imported into, null to import it into the
+     *                               exported cell
+     * @param nodesPerTxn            the number of nodes written by each transaction
+     * @param maxInFlightTxn         the number of transactions in flight at the same time
+     */
+    public ChubbyNamespaceImporter(@NotNull Client client, @Nullable String targetCellAbsolutePath, int nodesPerTxn, int maxInFlightTxn) {
+        this.client = client;
+        this.targetCellAbsolutePath = targetCellAbsolutePath;
+        this.nodesPerTxn = nodesPerTxn;
+        this.maxInFlightTxn = maxInFlightTxn;
+        this.nodeUpdater = new ChubbyNodeUpdater();
+    }
+
+    /**
+     * Imports an export, overwriting the nodes already present. The child count corrections of the export are
+     * applied once every node is written.
+     *
+     * @param reader           where the export is read from
+     * @param progressListener notified of the progress of the import
+     * @return the progress of the completed import
+     * @throws IOException          if the export cannot be read, is malformed or truncated
+     * @throws ExecutionException   if a node cannot be written
+     * @throws InterruptedException if interrupted while writing the nodes
+     */
+    public ChubbyTransferProgress importFrom(@NotNull BufferedReader reader, @NotNull Consumer<ChubbyTransferProgress> progressListener) throws IOException, ExecutionException, InterruptedException {
+        ChubbyTransferProgress chubbyTransferProgress = new ChubbyTransferProgress(DEFAULT_REPORT_INTERVAL_MILLIS);
+        Semaphore inFlightSemaphore = new Semaphore(this.maxInFlightTxn);
+        AtomicReference<Throwable> failureReference = new AtomicReference<>();
+        List<ChubbyExportRecord> adjustmentList = new ArrayList<>();
+
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IOException("empty export");
+        }
+        ChubbyExportRecord headerRecord = ChubbyExportRecord.decode(headerLine);
+        if (headerRecord.getChubbyExportRecordType() != ChubbyExportRecordType.HEADER || headerRecord.getNumber() != ChubbyExportRecord.VERSION) {
+            throw new IOException("unsupported export, expected version " + ChubbyExportRecord.VERSION);
+        }
+        String sourceCellAbsolutePath = headerRecord.getKey();
+        logger.debug("importing namespace of '{}' into '{}'", sourceCellAbsolutePath, this.targetCellAbsolutePath == null ? sourceCellAbsolutePath : this.targetCellAbsolutePath);
+
+        List<Op> putOpList = new ArrayList<>();
+        long batchByteCount = 0;
+        long readNodeCount = 0;
+        ChubbyExportRecord endRecord = null;
+
+        String line;
+        while (endRecord == null && (line = reader.readLine()) != null) {
+            ChubbyExportRecord chubbyExportRecord = ChubbyExportRecord.decode(line);
+
+            switch (chubbyExportRecord.getChubbyExportRecordType()) {
+                case NODE -> {
+                    String key = this.rewrite(chubbyExportRecord.getKey(), sourceCellAbsolutePath);
+                    putOpList.add(Op.put(toByteSequence(key), toByteSequence(chubbyExportRecord.getValue()), PutOption.DEFAULT));
+                    batchByteCount += line.length() + 1;
+                    readNodeCount++;
+
+                    if (putOpList.size() >= this.nodesPerTxn) {
+                        this.commit(putOpList, batchByteCount, inFlightSemaphore, failureReference, chubbyTransferProgress, progressListener);
+                        putOpList = new ArrayList<>();
+                        batchByteCount = 0;
+                    }
+                }
+                case ADJUSTMENT -> adjustmentList.add(chubbyExportRecord);
+                case END -> endRecord = chubbyExportRecord;
+                default -> throw new IOException("unexpected record '" + line + "'");
+            }
+        }
+
+        if (!putOpList.isEmpty()) {
+            this.commit(putOpList, batchByteCount, inFlightSemaphore, failureReference, chubbyTransferProgress, progressListener);
+        }
+
+        //every transaction has completed once all the permits are back
+        inFlightSemaphore.acquire(this.maxInFlightTxn);
+        inFlightSemaphore.release(this.maxInFlightTxn);
+        if (failureReference.get() != null) {
+            throw new ExecutionException("import failed after " + chubbyTransferProgress.getNodeCount() + " node(s)", failureReference.get());
+        }
+
+        if (endRecord == null || endRecord.getNumber() != readNodeCount) {
+            throw new IOException("truncated export, " + readNodeCount + " node(s) read");
+        }
+
+        for (ChubbyExportRecord adjustmentRecord : adjustmentList) {
+            this.adjustChildNodeNumber(this.rewrite(adjustmentRecord.getKey(), sourceCellAbsolutePath), adjustmentRecord.getNumber()).get();
+        }
+
+        logger.debug("imported namespace of '{}': {}", sourceCellAbsolutePath, chubbyTransferProgress);
+        progressListener.accept(chubbyTransferProgress);
+        return chubbyTransferProgress;
+    }
+
+    /**
+     * Commits a batch of nodes, waiting first for a transaction to complete if too many are in flight.
+     *
+     * @param putOpList              the puts of the nodes of the batch
+     * @param batchByteCount         the size of the nodes of the batch in the export
+     * @param inFlightSemaphore      the permits of the transactions in flight
+     * @param failureReference       the first failure of a transaction, if any
+     * @param chubbyTransferProgress the progress of the import
+     * @param progressListener       notified of the progress of the import
+     * @throws InterruptedException if interrupted while waiting for a transaction to complete
+     * @throws ExecutionException   if a previous transaction failed
+     */
+    private void commit(@NotNull List<Op> putOpList, long batchByteCount, @NotNull Semaphore inFlightSemaphore, @NotNull AtomicReference<Throwable> failureReference, @NotNull ChubbyTransferProgress chubbyTransferProgress, @NotNull Consumer<ChubbyTransferProgress> progressListener) throws InterruptedException, ExecutionException {
+        inFlightSemaphore.acquire();
+
+        //a failed transaction stops the import, the batches still in flight are left to complete
+        if (failureReference.get() != null) {
+            inFlightSemaphore.release();
+            throw new ExecutionException("import failed after " + chubbyTransferProgress.getNodeCount() + " node(s)", failureReference.get());
+        }
+
+        KV kvClient = this.client.getKVClient();
+        kvClient.txn().Then(putOpList.toArray(new Op[0])).commit().whenComplete((txnResponse, throwable) -> {
+            inFlightSemaphore.release();
+
+            if (throwable != null) {
+                logger.error("failed to import a batch of {} node(s)", putOpList.size(), throwable);
+                failureReference.compareAndSet(null, throwable);
+                return;
+            }
+
+            if (chubbyTransferProgress.add(putOpList.size(), batchByteCount)) {
+                progressListener.accept(chubbyTransferProgress);
+            }
+        });
+    }
+
+    /**
+     * Adds a delta to the child count of a node.
+     *
+     * @param key   key of the node
+     * @param delta the delta
+     * @return a CompletableFuture completed once the child count is updated, or right away if the node was not imported
+     */
+    private CompletableFuture<Void> adjustChildNodeNumber(@NotNull String key, long delta) {
+        return this.nodeUpdater.updateNode(this.client.getKVClient(), toByteSequence(key), chubbyNodeValue -> {
+            chubbyNodeValue.getMetadata().setChildNodeNumber((int) Math.max(0, chubbyNodeValue.getMetadata().getChildNodeNumber() + delta));
+            logger.trace("setting child count of '{}' to {}", key, chubbyNodeValue.getMetadata().getChildNodeNumber());
+            return chubbyNodeValue;
+        }).thenAccept(updated -> {
+        });
+    }
+
+    /**
+     * Moves a key of the exported cell into the target cell, keys outside the exported cell are left as they are.
+     *
+     * @param key                    key of the exported node
+     * @param sourceCellAbsolutePath absolute path of the exported cell
+     * @return the key of the imported node
+     */
+    protected String rewrite(@NotNull String key, @NotNull String sourceCellAbsolutePath) {
+        if (this.targetCellAbsolutePath == null) {
+            return key;
+        }
+
+        if (key.equals(sourceCellAbsolutePath) || key.startsWith(sourceCellAbsolutePath + "/")) {
+            return this.targetCellAbsolutePath + key.substring(sourceCellAbsolutePath.length());
+        }
+        return key;
+    }
+
+    private static ByteSequence toByteSequence(@NotNull String str) {
+        return ByteSequence.from(str.getBytes());
+    }
+}
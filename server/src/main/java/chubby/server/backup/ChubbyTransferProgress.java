@@ -0,0 +1,61 @@
+package chubby.server.backup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChubbyTransferProgress {
+    private final long startNanos;
+    private final long reportIntervalNanos;
+    private final AtomicLong nodeCount;
+    private final AtomicLong byteCount;
+    private final AtomicLong nextReportNanos;
+
+    /**
+     * Create a new ChubbyTransferProgress, counting the nodes and the bytes transferred by an export or an import.
+     *
+     * @param reportIntervalMillis the time between two progress reports
+     */
+    public ChubbyTransferProgress(long reportIntervalMillis) {
+        this.startNanos = System.nanoTime();
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+        this.nodeCount = new AtomicLong(0);
+        this.byteCount = new AtomicLong(0);
+        this.nextReportNanos = new AtomicLong(this.startNanos + this.reportIntervalNanos);
+    }
+
+    /**
+     * Counts the transferred nodes.
+     *
+     * @param nodes the number of nodes
+     * @param bytes the size of the nodes
+     * @return true if a progress report is due, only one of the concurrent callers is told so
+     */
+    public boolean add(long nodes, long bytes) {
+        this.nodeCount.addAndGet(nodes);
+        this.byteCount.addAndGet(bytes);
+
+        long nowNanos = System.nanoTime();
+        long nextReportNanos = this.nextReportNanos.get();
+        return nowNanos >= nextReportNanos && this.nextReportNanos.compareAndSet(nextReportNanos, nowNanos + this.reportIntervalNanos);
+    }
+
+    public long getNodeCount() {
+        return this.nodeCount.get();
+    }
+
+    public long getByteCount() {
+        return this.byteCount.get();
+    }
+
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - this.startNanos) / 1e9;
+    }
+
+    @Override
+    public String toString() {
+        double elapsedSeconds = Math.max(this.getElapsedSeconds(), 1e-3);
+        return String.format(Locale.ROOT, "%d node(s), %.1f MiB in %.1f s (%.0f node(s)/s, %.1f MiB/s)",
+                this.getNodeCount(), this.getByteCount() / 1048576.0, elapsedSeconds, this.getNodeCount() / elapsedSeconds, this.getByteCount() / 1048576.0 / elapsedSeconds);
+    }
+}
@@ -0,0 +1,29 @@
+package chubby.server.command;
+
+import chubby.control.handle.ChubbyHandleType;
+import org.jetbrains.annotations.NotNull;
+
+public class ChubbyAddClientCommand extends ChubbyCommand {
+    private final ChubbyHandleType aclChubbyHandleType;
+    private final String[] usernames;
+
+    /**
+     * Create a new ChubbyAddClientCommand.
+     *
+     * @param aclChubbyHandleType the acl type the clients are added to
+     * @param usernames           the usernames of the clients
+     */
+    public ChubbyAddClientCommand(@NotNull ChubbyHandleType aclChubbyHandleType, String @NotNull [] usernames) {
+        super(ChubbyCommandType.WRITE_ADD_CLIENT);
+        this.aclChubbyHandleType = aclChubbyHandleType;
+        this.usernames = usernames;
+    }
+
+    public ChubbyHandleType getAclChubbyHandleType() {
+        return this.aclChubbyHandleType;
+    }
+
+    public String[] getUsernames() {
+        return this.usernames.clone();
+    }
+}
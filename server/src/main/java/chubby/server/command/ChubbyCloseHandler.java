@@ -0,0 +1,76 @@
+package chubby.server.command;
+
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import chubby.utils.exceptions.ChubbyCannotRemoveHeldNodeException;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyCloseHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyCloseHandler, executing the 'close' command, that replaces the handle of the session with the one on root node.
+     */
+    public ChubbyCloseHandler() {
+        super(ChubbyConcurrencyClass.SESSION);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+
+        logger.trace("detected 'close' cmd, processing it...");
+
+        CompletableFuture<Boolean> tryRemoveFuture;
+        try {
+            logger.trace("about to execute method 'tryRemoveIfEphemeral'");
+
+            //if the node is ephemeral, try to remove and unlock it
+            tryRemoveFuture = chubbyNamespace.tryRemoveIfEphemeral(chubbyRequest, client);
+
+        } catch (Exception e) {
+            logger.error("caught exception '{}', about to send chubby error message", e.getMessage());
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, e.getMessage()));
+        }
+
+        return tryRemoveFuture.exceptionally(throwable -> {
+            //if the node is ephemeral, but held by another client, the node is not deleted, but this client has to unlock it anyway
+            if (causeOf(throwable).getCause() instanceof ChubbyCannotRemoveHeldNodeException) {
+                logger.trace("node is ephemeral, but held by another client, unlocking node for this client");
+                return false;
+            }
+            throw propagate(throwable);
+        }).<ChubbyMessage>thenCompose(ephemeralNodeRemoved -> {
+            //unlock the node if it was not removed
+            CompletableFuture<ByteSequence> unlockFuture = CompletableFuture.completedFuture(null);
+            if (!ephemeralNodeRemoved) {
+                try {
+                    logger.trace("about to execute unlock method");
+                    unlockFuture = chubbyNamespace.unlock(chubbyRequest, client, false);
+
+                } catch (Exception e2) {
+                    logger.error("caught exception '{}', about to send chubby error message", e2.getMessage());
+                    return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, e2.getMessage()));
+                }
+            }
+
+            //lock (read mode) on root node has to always be guaranteed
+            return unlockFuture.<ChubbyMessage>thenCompose(unlockResponse -> chubbyCommandContext.acquireRootHandle("lock released, successfully acquired shared lock on root node"))
+                    .exceptionally(throwable -> {
+                        logger.error("caught exception '{}', about to send chubby error message", throwable.getMessage());
+                        return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+                    });
+        }).exceptionally(throwable -> {
+            logger.trace("about to send chubby error message about previously caught exception");
+            return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package chubby.server.command;
+
+import org.jetbrains.annotations.NotNull;
+
+public class ChubbyCommand {
+    private final ChubbyCommandType chubbyCommandType;
+
+    /**
+     * Create a new ChubbyCommand, a command parsed from a request, whose arguments are already validated. Commands
+     * taking no argument are plain ChubbyCommands, the others are subclasses holding their typed arguments.
+     *
+     * @param chubbyCommandType the type of the command
+     */
+    public ChubbyCommand(@NotNull ChubbyCommandType chubbyCommandType) {
+        this.chubbyCommandType = chubbyCommandType;
+    }
+
+    @Override
+    public String toString() {
+        return "ChubbyCommand{" +
+                "chubbyCommandType=" + this.chubbyCommandType +
+                '}';
+    }
+
+    public ChubbyCommandType getChubbyCommandType() {
+        return this.chubbyCommandType;
+    }
+}
@@ -0,0 +1,88 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.ChubbyError;
+import chubby.control.message.ChubbyMessage;
+import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyResponse;
+import chubby.server.ChubbyNamespace;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyCommandContext {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int LOCKDELAY_DEFAULT_VALUE = 60;
+    private final ChubbyNamespace chubbyNamespace;
+    private final ChubbyRequest chubbyRequest;
+    private final Client client;
+
+    /**
+     * Create a new ChubbyCommandContext, everything a handler needs to execute the command of a request.
+     *
+     * @param chubbyNamespace the namespace where the request is processed
+     * @param chubbyRequest   the request, bound to the handle of its session
+     * @param client          the client that made the request
+     */
+    public ChubbyCommandContext(@NotNull ChubbyNamespace chubbyNamespace, @NotNull ChubbyRequest chubbyRequest, Client client) {
+        this.chubbyNamespace = chubbyNamespace;
+        this.chubbyRequest = chubbyRequest;
+        this.client = client;
+    }
+
+    /**
+     * Acquires the shared lock on root node, that has to always be guaranteed once a handle is released
+     *
+     * @param message message of the response returned once the lock is acquired
+     * @return a CompletableFuture containing the response, or an error if the lock could not be acquired
+     */
+    public CompletableFuture<ChubbyMessage> acquireRootHandle(String message) {
+        Path requestHandleAbsolutePath = this.getHandleAbsolutePath();
+
+        CompletableFuture<ChubbyHandleResponse> createHandleFuture;
+        try {
+            logger.trace("about to create handle");
+            createHandleFuture = this.chubbyNamespace.createHandle(this.getUsername(), this.client, new ChubbyHandleRequest(this.chubbyNamespace.getRoot(), ChubbyHandleType.READ, new ChubbyLockDelay(LOCKDELAY_DEFAULT_VALUE), ChubbyEventType.NONE.toString()));
+        } catch (Exception e) {
+            logger.error("caught exception '{}', about to send chubby error message", e.getMessage());
+            return CompletableFuture.completedFuture(new ChubbyError(requestHandleAbsolutePath, this.chubbyNamespace.getRoot(), e.getMessage()));
+        }
+
+        return createHandleFuture.<ChubbyMessage>thenApply(chubbyHandleResponse -> {
+            logger.trace("successfully execute cmd, about to send chubby response message '{}'", message);
+            return new ChubbyResponse(this.getUsername(), message, chubbyHandleResponse);
+        }).exceptionally(throwable -> {
+            logger.error("caught exception '{}', about to send chubby error message", throwable.getMessage());
+            return new ChubbyError(requestHandleAbsolutePath, this.chubbyNamespace.getRoot(), ChubbyCommandHandler.failureMessageOf(throwable));
+        });
+    }
+
+    public ChubbyNamespace getChubbyNamespace() {
+        return this.chubbyNamespace;
+    }
+
+    public ChubbyRequest getChubbyRequest() {
+        return this.chubbyRequest;
+    }
+
+    public Client getClient() {
+        return this.client;
+    }
+
+    public String getUsername() {
+        return this.chubbyRequest.getUsername();
+    }
+
+    public Path getHandleAbsolutePath() {
+        return Paths.get(this.chubbyRequest.getHandleAbsolutePath());
+    }
+
+    public ChubbyHandleType getChubbyHandleType() {
+        return this.chubbyRequest.getChubbyCurrentHandleType();
+    }
+}
@@ -0,0 +1,116 @@
+package chubby.server.command;
+
+import chubby.control.message.ChubbyError;
+import chubby.control.message.ChubbyMessage;
+import chubby.utils.ChubbyPath;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ChubbyCommandDispatcher {
+    private static final Logger logger = LogManager.getLogger();
+    private final ChubbyCommandRegistry chubbyCommandRegistry;
+    private final Map<ChubbyPath, CompletableFuture<Void>> pathTailMap;
+
+    /**
+     * Create a new ChubbyCommandDispatcher. Commands changing no node start as soon as they are dispatched, the
+     * session already runs its session commands alone; commands changing one or more nodes start once the commands
+     * changing any of the same nodes, dispatched before them by any session, are completed, while commands on other
+     * nodes overlap.
+     *
+     * @param chubbyCommandRegistry the handlers of the commands
+     */
+    public ChubbyCommandDispatcher(@NotNull ChubbyCommandRegistry chubbyCommandRegistry) {
+        this.chubbyCommandRegistry = chubbyCommandRegistry;
+        this.pathTailMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Executes a command with its registered handler.
+     *
+     * @param chubbyCommandContext the request the command was parsed from, with the namespace it is executed on
+     * @param chubbyCommand        the command
+     * @return a CompletableFuture containing the response to the request
+     */
+    public CompletableFuture<ChubbyMessage> dispatch(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyCommandHandler chubbyCommandHandler = this.chubbyCommandRegistry.get(chubbyCommand.getChubbyCommandType());
+        if (chubbyCommandHandler == null) {
+            logger.error("no handler registered for command type '{}'", chubbyCommand.getChubbyCommandType());
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyCommandContext.getChubbyRequest(), "command '" + chubbyCommand.getChubbyCommandType().getKeyword() + "' is not supported"));
+        }
+
+        List<ChubbyPath> chubbyPathList;
+        try {
+            chubbyPathList = chubbyCommandHandler.getChangedPaths(chubbyCommandContext, chubbyCommand);
+        } catch (RuntimeException e) {
+            logger.error("cannot tell the nodes changed by '{}'", chubbyCommand.getChubbyCommandType(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (chubbyPathList.isEmpty()) {
+            return handle(chubbyCommandHandler, chubbyCommandContext, chubbyCommand);
+        }
+
+        CompletableFuture<ChubbyMessage> responseFuture = new CompletableFuture<>();
+        CompletableFuture<Void> queuedFuture = new CompletableFuture<>();
+        CompletableFuture<Void> tailFuture;
+
+        //the command is queued after the last one changing each of its nodes, whatever the outcome of those; the queues
+        //of all its nodes are joined at once, so that two commands never wait for each other
+        synchronized (this.pathTailMap) {
+            List<CompletableFuture<Void>> startFutureList = new ArrayList<>();
+            startFutureList.add(queuedFuture);
+            chubbyPathList.stream().map(this.pathTailMap::get).filter(Objects::nonNull).forEach(startFutureList::add);
+
+            tailFuture = CompletableFuture.allOf(startFutureList.toArray(new CompletableFuture[0])).thenCompose(previousResponse -> {
+                logger.trace("executing '{}' on node(s) '{}'", chubbyCommand.getChubbyCommandType(), chubbyPathList);
+                return handle(chubbyCommandHandler, chubbyCommandContext, chubbyCommand).whenComplete((chubbyMessage, throwable) -> {
+                    if (throwable != null) {
+                        responseFuture.completeExceptionally(throwable);
+                    } else {
+                        responseFuture.complete(chubbyMessage);
+                    }
+                });
+            }).handle((chubbyMessage, throwable) -> null);
+            chubbyPathList.forEach(chubbyPath -> this.pathTailMap.put(chubbyPath, tailFuture));
+        }
+
+        //the command is started out of the lock, once the queue of a node is empty it is dropped
+        queuedFuture.complete(null);
+        tailFuture.whenComplete((result, throwable) -> chubbyPathList.forEach(chubbyPath -> this.pathTailMap.remove(chubbyPath, tailFuture)));
+        return responseFuture;
+    }
+
+    /**
+     * Returns the number of nodes with commands changing them still being executed.
+     *
+     * @return the number of nodes
+     */
+    public int getBusyPathCount() {
+        return this.pathTailMap.size();
+    }
+
+    /**
+     * Executes a command, reporting a handler that throws instead of returning a future as a failed future.
+     *
+     * @param chubbyCommandHandler the handler
+     * @param chubbyCommandContext the request the command was parsed from, with the namespace it is executed on
+     * @param chubbyCommand        the command
+     * @return a CompletableFuture containing the response to the request
+     */
+    private static CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandHandler chubbyCommandHandler, @NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        try {
+            return chubbyCommandHandler.handle(chubbyCommandContext, chubbyCommand);
+        } catch (RuntimeException e) {
+            logger.error("handler of '{}' failed", chubbyCommand.getChubbyCommandType(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
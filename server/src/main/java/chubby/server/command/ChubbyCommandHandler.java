@@ -0,0 +1,89 @@
+package chubby.server.command;
+
+import chubby.control.message.ChubbyMessage;
+import chubby.utils.ChubbyPath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public abstract class ChubbyCommandHandler {
+    private final ChubbyConcurrencyClass chubbyConcurrencyClass;
+
+    /**
+     * Create a new ChubbyCommandHandler, executing the commands of one or more types.
+     *
+     * @param chubbyConcurrencyClass tells the dispatcher what the handled commands may run alongside
+     */
+    protected ChubbyCommandHandler(@NotNull ChubbyConcurrencyClass chubbyConcurrencyClass) {
+        this.chubbyConcurrencyClass = chubbyConcurrencyClass;
+    }
+
+    /**
+     * Executes a command. The returned future always completes with a chubby message: failures are reported as chubby
+     * errors.
+     *
+     * @param chubbyCommandContext the request the command was parsed from, with the namespace it is executed on
+     * @param chubbyCommand        the command
+     * @return a CompletableFuture containing the response to the request
+     */
+    public abstract CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand);
+
+    /**
+     * Returns the nodes a command changes, the dispatcher queues the command after the commands changing any of them.
+     * A path mutating command changes the node of the handle; handlers of commands changing other nodes too report
+     * them all.
+     *
+     * @param chubbyCommandContext the request the command was parsed from, with the namespace it is executed on
+     * @param chubbyCommand        the command
+     * @return the nodes changed by the command, none if it changes no node
+     */
+    public List<ChubbyPath> getChangedPaths(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        if (this.chubbyConcurrencyClass != ChubbyConcurrencyClass.PATH_MUTATING) {
+            return List.of();
+        }
+        return List.of(ChubbyPath.of(chubbyCommandContext.getChubbyRequest().getHandleAbsolutePath()));
+    }
+
+    public ChubbyConcurrencyClass getChubbyConcurrencyClass() {
+        return this.chubbyConcurrencyClass;
+    }
+
+    /**
+     * Returns the cause of a failed stage, unwrapping the CompletionException that wraps it
+     *
+     * @param throwable exception that made the stage fail
+     * @return the cause of the failure
+     */
+    protected static Throwable causeOf(@NotNull Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * Returns the message reported to the client when a stage fails, it is the same message an ExecutionException
+     * reports when the failed future is awaited
+     *
+     * @param throwable exception that made the stage fail
+     * @return the message of the failure
+     */
+    protected static String failureMessageOf(@NotNull Throwable throwable) {
+        return causeOf(throwable).toString();
+    }
+
+    /**
+     * Rethrows the exception that made a stage fail, so that the following stages fail with the same cause
+     *
+     * @param throwable exception that made the stage fail
+     * @return the exception to be thrown
+     */
+    protected static CompletionException propagate(@NotNull Throwable throwable) {
+        if (throwable instanceof CompletionException completionException) {
+            return completionException;
+        }
+        return new CompletionException(throwable);
+    }
+}
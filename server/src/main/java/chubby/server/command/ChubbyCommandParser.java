@@ -0,0 +1,261 @@
+package chubby.server.command;
+
+import chubby.control.handle.ChubbyHandleType;
+import chubby.control.handle.ChubbyLockDelay;
+import chubby.server.ChubbyMultiOperation;
+import chubby.server.node.ChubbyNodeAttribute;
+import chubby.utils.exceptions.ChubbyCommandException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChubbyCommandParser {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String LOCK_WAIT_PREFIX = "wait=";
+
+    private ChubbyCommandParser() {
+    }
+
+    //Keep in mind that commands are case-sensitive, but event types aren't (example: 'open' is ok, 'OPEN' won't be
+    //recognized. 'file_contents_modified' is ok, 'FILE_CONTENTS_MODIFIED' is ok too)
+
+    /**
+     * Parses the message of a request into a command, reading it once from start to end. Every argument is validated
+     * here, so that commands are executed without parsing anything again.
+     *
+     * @param message the message of the request
+     * @return the command
+     * @throws ChubbyCommandException if the command is not recognized or its arguments are not valid
+     */
+    public static @NotNull ChubbyCommand parse(@NotNull String message) throws ChubbyCommandException {
+        ChubbyCommandTokenizer tokenizer = new ChubbyCommandTokenizer(message);
+        String command = tokenizer.hasNext() ? tokenizer.next() : "";
+
+        logger.trace("parsing command '{}'", command);
+        return switch (command) {
+            case "echo" -> new ChubbyEchoCommand(tokenizer.remainder());
+            case "open" -> parseOpen(tokenizer);
+            case "close" -> new ChubbyCommand(ChubbyCommandType.CLOSE);
+            //remove [recursive] --> 'recursive' removes every node under the current one too
+            case "remove" -> {
+                String argument = tokenizer.next();
+                if (argument == null) {
+                    yield new ChubbyRemoveCommand(false);
+                }
+                if (!"recursive".equals(argument) || tokenizer.hasNext()) {
+                    throw new ChubbyCommandException("wrong argument, possible argument: 'recursive'");
+                }
+                yield new ChubbyRemoveCommand(true);
+            }
+            case "write" -> parseWrite(tokenizer);
+            case "multi" -> {
+                try {
+                    yield new ChubbyMultiCommand(ChubbyMultiOperation.parse(tokenizer.remainder()));
+                } catch (IllegalArgumentException e) {
+                    throw new ChubbyCommandException(e.getMessage());
+                }
+            }
+            case "read" -> {
+                String target = tokenizer.next();
+                if (target == null) {
+                    throw new ChubbyCommandException("expecting one argument after 'read' command, possible arguments: 'filecontent', 'acl'");
+                }
+                yield switch (target) {
+                    case "filecontent" -> new ChubbyCommand(ChubbyCommandType.READ_FILECONTENT);
+                    case "acl" -> new ChubbyCommand(ChubbyCommandType.READ_ACL);
+                    default -> throw new ChubbyCommandException("wrong argument, possible arguments: 'filecontent', 'acl'");
+                };
+            }
+            case "node" -> {
+                String target = tokenizer.next();
+                if (target == null) {
+                    throw new ChubbyCommandException("expecting one argument after 'node' command, possible arguments: 'data', 'metadata'");
+                }
+                yield switch (target) {
+                    case "data" -> new ChubbyCommand(ChubbyCommandType.NODE_DATA);
+                    case "metadata" -> new ChubbyCommand(ChubbyCommandType.NODE_METADATA);
+                    default -> throw new ChubbyCommandException("wrong argument, possible arguments: 'data', 'metadata'");
+                };
+            }
+            case "ls" -> parseLs(tokenizer);
+            case "curr_handle" -> new ChubbyCommand(ChubbyCommandType.CURR_HANDLE);
+            case "list" -> {
+                String target = tokenizer.next();
+                if (target == null) {
+                    throw new ChubbyCommandException("expected at least 1 argument to 'list' cmd, possible arguments are 'event', 'defnode', 'cmd'");
+                }
+                yield switch (target) {
+                    case "event" -> new ChubbyCommand(ChubbyCommandType.LIST_EVENT);
+                    case "defnode" -> new ChubbyCommand(ChubbyCommandType.LIST_DEFNODE);
+                    case "cmd" -> new ChubbyCommand(ChubbyCommandType.LIST_CMD);
+                    default -> throw new ChubbyCommandException("no matching argument found, possible arguments are 'event', 'defnode', 'cmd'");
+                };
+            }
+            case "help" -> new ChubbyCommand(ChubbyCommandType.HELP);
+            case "exit" -> new ChubbyCommand(ChubbyCommandType.EXIT);
+            default -> throw new ChubbyCommandException("no matching command found: '" + command + "', for a list of possible commands digit 'list cmd', for a detailed explanation digit 'help'");
+        };
+    }
+
+    /**
+     * Parses an 'open' command. For reference:
+     * open absolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...] [wait=seconds]
+     *
+     * @param tokenizer the tokenizer of the request, positioned after the command
+     * @return the command
+     * @throws ChubbyCommandException if the arguments are not valid
+     */
+    private static ChubbyOpenCommand parseOpen(@NotNull ChubbyCommandTokenizer tokenizer) throws ChubbyCommandException {
+        List<String> argumentList = new ArrayList<>();
+        while (tokenizer.hasNext()) {
+            argumentList.add(tokenizer.next());
+        }
+
+        if (argumentList.size() < 2) {
+            throw new ChubbyCommandException("expected at least 2 arguments after 'open' command");
+        }
+
+        Path absolutePath = Path.of(argumentList.get(0));
+
+        ChubbyHandleType chubbyHandleType;
+        try {
+            chubbyHandleType = ChubbyHandleType.valueOf(argumentList.get(1).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ChubbyCommandException("invalid argumentChubbyHandleType '" + argumentList.get(1) + "'");
+        }
+
+        //a handle may wait for the lock held by another client, it's always the last argument
+        int lockWaitSeconds = 0;
+        String lastArgument = argumentList.getLast();
+        if (argumentList.size() > 2 && lastArgument.toLowerCase().startsWith(LOCK_WAIT_PREFIX)) {
+            try {
+                lockWaitSeconds = Integer.parseInt(lastArgument.substring(LOCK_WAIT_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                throw new ChubbyCommandException("invalid lock wait '" + lastArgument + "', expected 'wait=seconds'");
+            }
+            argumentList.removeLast();
+        }
+
+        //node attribute and lock delay are optional, whatever follows them is an event subscription
+        int index = 2;
+        ChubbyNodeAttribute chubbyNodeAttribute = ChubbyNodeAttribute.PERMANENT;
+        if (index < argumentList.size()) {
+            try {
+                chubbyNodeAttribute = ChubbyNodeAttribute.valueOf(argumentList.get(index).toUpperCase());
+                index++;
+            } catch (IllegalArgumentException e) {
+                logger.trace("'{}' is not a node attribute", argumentList.get(index));
+            }
+        }
+
+        ChubbyLockDelay chubbyLockDelay = new ChubbyLockDelay();
+        if (index < argumentList.size()) {
+            try {
+                chubbyLockDelay = new ChubbyLockDelay(argumentList.get(index));
+                index++;
+            } catch (NumberFormatException e) {
+                logger.trace("'{}' is not a lock delay", argumentList.get(index));
+            }
+        }
+
+        String[] eventTypes = null;
+        if (index < argumentList.size()) {
+            eventTypes = argumentList.subList(index, argumentList.size()).toArray(new String[0]);
+        }
+
+        return new ChubbyOpenCommand(absolutePath, chubbyHandleType, chubbyNodeAttribute, chubbyLockDelay, eventTypes, lockWaitSeconds);
+    }
+
+    /**
+     * Parses a 'write' command. For reference:
+     * <ul>
+     *     <li>write filecontent [file content]</li>
+     *     <li>write acl aclType customName --> where aclType can be READ, WRITE, CHANGE_ACL and customName the new name</li>
+     *     <li>write add_client aclType clientName1 clientName2 ...</li>
+     * </ul>
+     *
+     * @param tokenizer the tokenizer of the request, positioned after the command
+     * @return the command
+     * @throws ChubbyCommandException if the arguments are not valid
+     */
+    private static ChubbyCommand parseWrite(@NotNull ChubbyCommandTokenizer tokenizer) throws ChubbyCommandException {
+        String target = tokenizer.next();
+        if (target == null) {
+            throw new ChubbyCommandException("missing argument, expected 'filecontent' or 'acl'");
+        }
+
+        switch (target) {
+            case "filecontent" -> {
+                //the content is taken as it was written, in a single copy, however large it is
+                return new ChubbyWriteFileContentCommand(tokenizer.remainder());
+            }
+            case "acl" -> {
+                String aclType = tokenizer.next();
+                String aclName = tokenizer.next();
+                if (aclName == null || tokenizer.hasNext()) {
+                    throw new ChubbyCommandException("expected exactly 3 arguments for 'write acl' command, syntax is: 'write acl *aclType* *newCustomName*");
+                }
+                return new ChubbyWriteACLCommand(aclTypeOf(aclType), aclName);
+            }
+            case "add_client" -> {
+                String aclType = tokenizer.next();
+                if (aclType == null || !tokenizer.hasNext()) {
+                    throw new ChubbyCommandException("expected >= 3 arguments for 'write acl' command, syntax is: 'write add_client *aclType* *clientName1 clientName2 ...*");
+                }
+                ChubbyHandleType aclChubbyHandleType = aclTypeOf(aclType);
+
+                List<String> usernameList = new ArrayList<>();
+                while (tokenizer.hasNext()) {
+                    usernameList.add(tokenizer.next());
+                }
+                return new ChubbyAddClientCommand(aclChubbyHandleType, usernameList.toArray(new String[0]));
+            }
+            default -> throw new ChubbyCommandException("wrong argument, expected 'filecontent' or 'acl'");
+        }
+    }
+
+    /**
+     * Parses an 'ls' command. For reference: ls [depth]
+     *
+     * @param tokenizer the tokenizer of the request, positioned after the command
+     * @return the command
+     * @throws ChubbyCommandException if the depth is not a number
+     */
+    private static ChubbyLsCommand parseLs(@NotNull ChubbyCommandTokenizer tokenizer) throws ChubbyCommandException {
+        String depthArgument = tokenizer.next();
+        if (depthArgument == null) {
+            return new ChubbyLsCommand(1);
+        }
+
+        int depth;
+        try {
+            depth = Integer.parseInt(depthArgument);
+        } catch (NumberFormatException e) {
+            throw new ChubbyCommandException("invalid depth '" + depthArgument + "'");
+        }
+
+        //if user puts depth < 1, set it to default 1 value
+        return new ChubbyLsCommand(Math.max(depth, 1));
+    }
+
+    /**
+     * Returns the acl type matching the given argument (case-insensitive)
+     *
+     * @param argument argument of the request
+     * @return the acl type
+     * @throws ChubbyCommandException if the argument is not a valid acl type
+     */
+    private static ChubbyHandleType aclTypeOf(@Nullable String argument) throws ChubbyCommandException {
+        for (ChubbyHandleType chubbyHandleType : new ChubbyHandleType[]{ChubbyHandleType.READ, ChubbyHandleType.WRITE, ChubbyHandleType.CHANGE_ACL}) {
+            if (chubbyHandleType.toString().equalsIgnoreCase(argument)) {
+                return chubbyHandleType;
+            }
+        }
+        throw new ChubbyCommandException("acl type '" + argument + "' not recognized, possible types are 'read','write','change_acl'");
+    }
+}
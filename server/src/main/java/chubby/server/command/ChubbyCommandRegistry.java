@@ -0,0 +1,86 @@
+package chubby.server.command;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class ChubbyCommandRegistry {
+    private static final Logger logger = LogManager.getLogger();
+    private final Map<ChubbyCommandType, ChubbyCommandHandler> handlerMap;
+
+    /**
+     * Create a new ChubbyCommandRegistry, with no handler registered.
+     */
+    public ChubbyCommandRegistry() {
+        this.handlerMap = new EnumMap<>(ChubbyCommandType.class);
+    }
+
+    /**
+     * Creates a registry with a handler for every command of the client library.
+     *
+     * @return the registry
+     */
+    public static ChubbyCommandRegistry newDefaultRegistry() {
+        ChubbyCommandRegistry chubbyCommandRegistry = new ChubbyCommandRegistry();
+        chubbyCommandRegistry.register(new ChubbyEchoHandler(), ChubbyCommandType.ECHO);
+        chubbyCommandRegistry.register(new ChubbyOpenHandler(), ChubbyCommandType.OPEN);
+        chubbyCommandRegistry.register(new ChubbyCloseHandler(), ChubbyCommandType.CLOSE);
+        chubbyCommandRegistry.register(new ChubbyRemoveHandler(), ChubbyCommandType.REMOVE);
+        chubbyCommandRegistry.register(new ChubbyWriteHandler(), ChubbyCommandType.WRITE_FILECONTENT, ChubbyCommandType.WRITE_ACL, ChubbyCommandType.WRITE_ADD_CLIENT);
+        chubbyCommandRegistry.register(new ChubbyMultiHandler(), ChubbyCommandType.MULTI);
+        chubbyCommandRegistry.register(new ChubbyReadHandler(), ChubbyCommandType.READ_FILECONTENT, ChubbyCommandType.READ_ACL);
+        chubbyCommandRegistry.register(new ChubbyNodeHandler(), ChubbyCommandType.NODE_DATA, ChubbyCommandType.NODE_METADATA);
+        chubbyCommandRegistry.register(new ChubbyLsHandler(), ChubbyCommandType.LS);
+        chubbyCommandRegistry.register(new ChubbyCurrHandleHandler(), ChubbyCommandType.CURR_HANDLE);
+        chubbyCommandRegistry.register(new ChubbyListHandler(), ChubbyCommandType.LIST_EVENT, ChubbyCommandType.LIST_DEFNODE, ChubbyCommandType.LIST_CMD);
+        chubbyCommandRegistry.register(new ChubbyHelpHandler(), ChubbyCommandType.HELP);
+        chubbyCommandRegistry.register(new ChubbyExitHandler(), ChubbyCommandType.EXIT);
+        return chubbyCommandRegistry;
+    }
+
+    /**
+     * Registers the handler of one or more command types, replacing the handler previously registered for them.
+     *
+     * @param chubbyCommandHandler the handler
+     * @param chubbyCommandTypes   the command types it executes
+     */
+    public void register(@NotNull ChubbyCommandHandler chubbyCommandHandler, ChubbyCommandType @NotNull ... chubbyCommandTypes) {
+        for (ChubbyCommandType chubbyCommandType : chubbyCommandTypes) {
+            logger.trace("registering '{}' for command type '{}'", chubbyCommandHandler.getClass().getSimpleName(), chubbyCommandType);
+            this.handlerMap.put(chubbyCommandType, chubbyCommandHandler);
+        }
+    }
+
+    /**
+     * Returns the handler of a command type.
+     *
+     * @param chubbyCommandType the command type
+     * @return the handler, null if none is registered
+     */
+    public @Nullable ChubbyCommandHandler get(@NotNull ChubbyCommandType chubbyCommandType) {
+        return this.handlerMap.get(chubbyCommandType);
+    }
+
+    /**
+     * Returns the concurrency class of the commands starting with a keyword, without parsing their arguments. When
+     * command types sharing the keyword belong to different classes, the most restrictive one is returned; unknown
+     * keywords are rejected without touching anything, so they are read-only.
+     *
+     * @param keyword the first word of a request
+     * @return the concurrency class
+     */
+    public ChubbyConcurrencyClass concurrencyClassOf(@Nullable String keyword) {
+        ChubbyConcurrencyClass chubbyConcurrencyClass = ChubbyConcurrencyClass.READ_ONLY;
+        for (Map.Entry<ChubbyCommandType, ChubbyCommandHandler> entry : this.handlerMap.entrySet()) {
+            ChubbyConcurrencyClass handlerChubbyConcurrencyClass = entry.getValue().getChubbyConcurrencyClass();
+            if (entry.getKey().getKeyword().equals(keyword) && handlerChubbyConcurrencyClass.compareTo(chubbyConcurrencyClass) > 0) {
+                chubbyConcurrencyClass = handlerChubbyConcurrencyClass;
+            }
+        }
+        return chubbyConcurrencyClass;
+    }
+}
@@ -0,0 +1,113 @@
+package chubby.server.command;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class ChubbyCommandTokenizer {
+    private static final char QUOTE = '"';
+    private final String input;
+    private final int end;
+    private int position;
+
+    /**
+     * Create a new ChubbyCommandTokenizer, reading the words of a command in a single pass. Words are separated by
+     * blank spaces outside of " pairs, a quoted word keeps its quotes.
+     *
+     * @param input the command
+     */
+    public ChubbyCommandTokenizer(@NotNull String input) {
+        this(input, 0, input.length());
+    }
+
+    /**
+     * Create a new ChubbyCommandTokenizer, reading the words of a part of a command.
+     *
+     * @param input the command
+     * @param start the index of the first character to be read
+     * @param end   the index following the last character to be read
+     */
+    public ChubbyCommandTokenizer(@NotNull String input, int start, int end) {
+        this.input = input;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the index of the first occurrence of a character outside of " pairs.
+     *
+     * @param input     the command
+     * @param character the character
+     * @param start     the index the search starts from
+     * @param end       the index the search stops at
+     * @return the index of the character, -1 if there is none
+     */
+    public static int indexOfUnquoted(@NotNull String input, char character, int start, int end) {
+        boolean quoted = false;
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == QUOTE) {
+                quoted = !quoted;
+            } else if (c == character && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if any word is left, skipping the blank spaces preceding it.
+     *
+     * @return true if there is another word
+     */
+    public boolean hasNext() {
+        while (this.position < this.end && Character.isWhitespace(this.input.charAt(this.position))) {
+            this.position++;
+        }
+        return this.position < this.end;
+    }
+
+    /**
+     * Returns the next word.
+     *
+     * @return the word, null if no word is left
+     */
+    public @Nullable String next() {
+        if (!this.hasNext()) {
+            return null;
+        }
+
+        int start = this.position;
+        boolean quoted = false;
+        while (this.position < this.end) {
+            char c = this.input.charAt(this.position);
+            if (c == QUOTE) {
+                quoted = !quoted;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                break;
+            }
+            this.position++;
+        }
+        return this.input.substring(start, this.position);
+    }
+
+    /**
+     * Returns whatever is left of the command as it was written, without the blank spaces surrounding it, and consumes
+     * it. Used for free text arguments, like the content of a file, that are copied once instead of being split.
+     *
+     * @return the rest of the command, empty if nothing is left
+     */
+    public @NotNull String remainder() {
+        if (!this.hasNext()) {
+            return "";
+        }
+
+        int remainderEnd = this.end;
+        while (Character.isWhitespace(this.input.charAt(remainderEnd - 1))) {
+            remainderEnd--;
+        }
+
+        String remainder = this.input.substring(this.position, remainderEnd);
+        this.position = this.end;
+        return remainder;
+    }
+}
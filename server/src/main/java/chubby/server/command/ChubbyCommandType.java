@@ -0,0 +1,36 @@
+package chubby.server.command;
+
+public enum ChubbyCommandType {
+    ECHO("echo"),
+    OPEN("open"),
+    CLOSE("close"),
+    REMOVE("remove"),
+    WRITE_FILECONTENT("write"),
+    WRITE_ACL("write"),
+    WRITE_ADD_CLIENT("write"),
+    MULTI("multi"),
+    READ_FILECONTENT("read"),
+    READ_ACL("read"),
+    NODE_DATA("node"),
+    NODE_METADATA("node"),
+    LS("ls"),
+    CURR_HANDLE("curr_handle"),
+    LIST_EVENT("list"),
+    LIST_DEFNODE("list"),
+    LIST_CMD("list"),
+    HELP("help"),
+    EXIT("exit");
+
+    private final String keyword;
+
+    /**
+     * @param keyword the first word of the requests of this type
+     */
+    ChubbyCommandType(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public String getKeyword() {
+        return this.keyword;
+    }
+}
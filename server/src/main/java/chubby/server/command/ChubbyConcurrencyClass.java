@@ -0,0 +1,7 @@
+package chubby.server.command;
+
+public enum ChubbyConcurrencyClass {
+    READ_ONLY,      //reads the node of the handle, runs alongside any other command
+    PATH_MUTATING,  //changes the node of the handle, runs after the commands changing the same node
+    SESSION         //changes the handle of the session, runs alone in its session
+}
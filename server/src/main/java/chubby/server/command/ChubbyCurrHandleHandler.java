@@ -0,0 +1,28 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyCurrHandleHandler extends ChubbyCommandHandler {
+    /**
+     * Create a new ChubbyCurrHandleHandler, executing the 'curr_handle' command.
+     */
+    public ChubbyCurrHandleHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        String requestUsername = chubbyCommandContext.getUsername();
+        Path requestHandleAbsolutePath = chubbyCommandContext.getHandleAbsolutePath();
+        ChubbyHandleType requestChubbyHandleType = chubbyCommandContext.getChubbyHandleType();
+
+        String message = "lock type: '" + requestChubbyHandleType + "' on path: '" + requestHandleAbsolutePath + "'";
+        return CompletableFuture.completedFuture(new ChubbyResponse(requestUsername, message, new ChubbyHandleResponse(chubbyRequest)));
+    }
+}
@@ -0,0 +1,21 @@
+package chubby.server.command;
+
+import org.jetbrains.annotations.NotNull;
+
+public class ChubbyEchoCommand extends ChubbyCommand {
+    private final String message;
+
+    /**
+     * Create a new ChubbyEchoCommand.
+     *
+     * @param message the message echoed back to the client
+     */
+    public ChubbyEchoCommand(@NotNull String message) {
+        super(ChubbyCommandType.ECHO);
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -0,0 +1,31 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyEchoHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyEchoHandler, executing the 'echo' command.
+     */
+    public ChubbyEchoHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+
+        //arguments are responses to echo command
+        String message = ((ChubbyEchoCommand) chubbyCommand).getMessage();
+
+        logger.trace("detected 'echo' cmd, returning message response: '{}'", message);
+        return CompletableFuture.completedFuture(new ChubbyResponse(chubbyRequest.getUsername(), message, new ChubbyHandleResponse(chubbyRequest)));
+    }
+}
@@ -0,0 +1,39 @@
+package chubby.server.command;
+
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyExitHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyExitHandler, executing the 'exit' command, that closes the session.
+     */
+    public ChubbyExitHandler() {
+        super(ChubbyConcurrencyClass.SESSION);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+
+        logger.trace("detected 'exit' cmd, processing it...");
+
+        //every handle, lock and subscription of the session is released in one pass, together with its lease
+        return chubbyNamespace.closeSession(requestUsername, client)
+                .<ChubbyMessage>thenApply(closeResponse -> new ChubbyNotification(null, null, "goodbye!"))
+                .exceptionally(throwable -> {
+                    logger.error("caught exception '{}', about to send chubby error message", throwable.getMessage());
+                    return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+                });
+    }
+}
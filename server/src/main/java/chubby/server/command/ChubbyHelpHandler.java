@@ -0,0 +1,45 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyHelpHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyHelpHandler, executing the 'help' command.
+     */
+    public ChubbyHelpHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        String requestUsername = chubbyCommandContext.getUsername();
+
+        logger.trace("detected 'help' cmd");
+
+        String message = """
+                list of all commands available:
+                - echo [msg], returns the same arguments passed as input
+                - open absolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...] [wait=seconds], opens a handle on 'absolute_argumentPath' creating the node if not already present, user has to define how the handle will be used (write, read, change_acl), an optional 'node_attribute' (permanent, ephemeral) can be defined to make the node permanent or temporary (if not specified a default 'permanent' value will be set), a 'lock_delay' between 0 and 60 seconds can be defined to prevent master from releasing the lock if no keep_alive from client is received for more than the amount of time defined here, values < 0 will be set at '0', values > 60 will be set at '60' (if not specified a default value of 30s will be assigned to it automatically), optionally event subscriptions may be included to receive notifications about the chubbyNodeValue (FILE_CONTENTS_MODIFIED, CHILD_NODE_ADDED, CHILD_NODE_REMOVED, CHILD_NODE_MODIFIED, HANDLE_INVALID, CONFLICTING_LOCK_REQUEST), a final 'wait=seconds' makes the handle wait up to 300 seconds for the lock held by another client instead of failing immediately, waiting writers get the lock in the order they asked for it once the readers leave, and by default readers cannot join while a writer holds or waits for the lock
+                - close, closes an open handle, releases the lock and tries to remove the node if ephemeral
+                - remove [recursive], removes the node of the current handle, that must have no child nodes unless 'recursive' is given, in which case every node under it is removed too; an open handle with 'WRITE' lock is needed and no other client may hold a lock on the removed nodes
+                - write file_content [content], overwrites the file content, that follows the command, into this node; an open handle with 'WRITE' lock is needed in order to use this command
+                - write acl *permissionType* *newPermissionName*, changes the acl name of this node's specified acl type; an open handle with 'CHANGE_ACL' lock is needed in order to use this command
+                - multi operation1 ; operation2 ; ..., applies all the operations atomically or none of them, each operation is one of 'create absolutePath', 'write absolutePath [content]', 'remove absolutePath', 'acl absolutePath aclType newAclName', 'check absolutePath content|lock|acl|instance generationNumber'; operations on nodes locked by other clients, or not permitted by their acl, fail
+                - node data, returns the node's file content and metadata
+                - node metadata, returns the node's metadata
+                - ls [depth], prints each child node of current path, optional depth can be set (if not set, depth 1 is automatically applied)
+                - list event, prints the full list of possible event subscriptions that can activated through 'open' command
+                - list defnode, prints the full list of default nodes
+                - list cmd, prints the full list of possible commands and arguments""";
+        return CompletableFuture.completedFuture(new ChubbyResponse(requestUsername, message, new ChubbyHandleResponse(chubbyRequest)));
+    }
+}
@@ -0,0 +1,130 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyListHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyListHandler, executing the 'list' commands.
+     */
+    public ChubbyListHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        String requestUsername = chubbyCommandContext.getUsername();
+        ChubbyHandleType requestChubbyHandleType = chubbyCommandContext.getChubbyHandleType();
+
+        switch (chubbyCommand.getChubbyCommandType()) {
+            case LIST_EVENT -> {
+                StringBuilder message = new StringBuilder("\n");
+                for (ChubbyEventType eventType : ChubbyEventType.values()) {
+                    message.append("- ").append(eventType.name()).append("\n");
+                }
+                return CompletableFuture.completedFuture(new ChubbyResponse(requestUsername, message.toString(), new ChubbyHandleResponse(chubbyRequest)));
+            }
+            case LIST_DEFNODE -> {
+                StringBuilder message = new StringBuilder("\n");
+                for (Path defNodePath : chubbyNamespace.getDefaultNodeList()) {
+                    message.append("- ").append(defNodePath).append("\n");
+                }
+                return CompletableFuture.completedFuture(new ChubbyResponse(requestUsername, message.toString(), new ChubbyHandleResponse(chubbyRequest)));
+            }
+            default -> {
+                String message;
+                if (requestChubbyHandleType.equals(ChubbyHandleType.WRITE)) {
+                    logger.trace("detected 'list cmd' cmd from a 'WRITE' handle type");
+
+                    message = """
+                            commands that can be used from this handle:
+                            - echo [msg]
+                            - close
+                            - write filecontent [content]
+                            - read filecontent
+                            - read acl
+                            - node data
+                            - node metadata
+                            - ls [depth]
+                            - list event
+                            - list defnode
+                            - list cmd
+                            - help""";
+
+                } else if (requestChubbyHandleType.equals(ChubbyHandleType.READ)) {
+                    logger.trace("detected 'list cmd' cmd from a 'READ' handle type");
+
+                    message = """
+                            commands that can be used from this handle:
+                            - echo [msg]
+                            - *close
+                            - **open absolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...] [wait=seconds]
+                            - read filecontent
+                            - read acl
+                            - node data
+                            - node metadata
+                            - ls [depth]
+                            - list event
+                            - list defnode
+                            - list cmd
+                            - help
+                            *only while having a handle not on root node
+                            **only while having a handle on root node""";
+
+                } else if (requestChubbyHandleType.equals(ChubbyHandleType.CHANGE_ACL)) {
+                    logger.trace("detected 'list cmd' cmd from a 'CHANGE_ACL' handle type");
+
+                    message = """
+                            commands that can be used from this handle:
+                            - echo [msg]
+                            - close
+                            - write acl *aclType* *newAclName*
+                            - write add_client *aclType* *client1Name client2Name ...*
+                            - read filecontent
+                            - read acl
+                            - node data
+                            - node metadata
+                            - ls [depth]
+                            - list event
+                            - list defnode
+                            - list cmd
+                            - help""";
+
+                } else {
+                    logger.trace("detected 'list cmd' cmd from 'NONE' handle type");
+
+                    message = """
+                            list of all commands available:
+                            - echo [msg]
+                            - open absolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...] [wait=seconds]
+                            - close
+                            - write file_content [content]
+                            - write acl *aclType* *newAclName*
+                            - write add_client *aclType* *client1Name client2Name ...*
+                            - multi operation1 ; operation2 ; ...
+                            - read filecontent
+                            - read acl
+                            - node data
+                            - node metadata
+                            - ls [depth]
+                            - list event
+                            - list defnode
+                            - list cmd
+                            - help""";
+                }
+                return CompletableFuture.completedFuture(new ChubbyResponse(requestUsername, message, new ChubbyHandleResponse(chubbyRequest)));
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package chubby.server.command;
+
+public class ChubbyLsCommand extends ChubbyCommand {
+    private final int depth;
+
+    /**
+     * Create a new ChubbyLsCommand.
+     *
+     * @param depth depth of the search, at least 1
+     */
+    public ChubbyLsCommand(int depth) {
+        super(ChubbyCommandType.LS);
+        this.depth = depth;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+}
@@ -0,0 +1,42 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyLsHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyLsHandler, executing the 'ls' command.
+     */
+    public ChubbyLsHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+        Path requestHandleAbsolutePath = chubbyCommandContext.getHandleAbsolutePath();
+
+        int depth = ((ChubbyLsCommand) chubbyCommand).getDepth();
+        logger.trace("detected 'ls' cmd with depth '{}'", depth);
+
+        return chubbyNamespace.getLs(client, requestHandleAbsolutePath, depth)
+                .<ChubbyMessage>thenApply(lsList -> new ChubbyResponse(requestUsername, "\n" + String.join("\n", lsList), new ChubbyHandleResponse(chubbyRequest)))
+                .exceptionally(throwable -> {
+                    logger.error("something went wrong", throwable);
+                    return new ChubbyError(chubbyRequest, "something went wrong while executing 'ls' command");
+                });
+    }
+}
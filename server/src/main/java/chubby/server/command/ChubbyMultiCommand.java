@@ -0,0 +1,24 @@
+package chubby.server.command;
+
+import chubby.server.ChubbyMultiOperation;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public class ChubbyMultiCommand extends ChubbyCommand {
+    private final List<ChubbyMultiOperation> chubbyMultiOperationList;
+
+    /**
+     * Create a new ChubbyMultiCommand.
+     *
+     * @param chubbyMultiOperationList the operations applied atomically, in the same order they were written
+     */
+    public ChubbyMultiCommand(@NotNull List<ChubbyMultiOperation> chubbyMultiOperationList) {
+        super(ChubbyCommandType.MULTI);
+        this.chubbyMultiOperationList = List.copyOf(chubbyMultiOperationList);
+    }
+
+    public List<ChubbyMultiOperation> getChubbyMultiOperationList() {
+        return this.chubbyMultiOperationList;
+    }
+}
@@ -0,0 +1,63 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyMultiOperation;
+import chubby.server.ChubbyMultiProcessor;
+import chubby.server.ChubbyMultiTransaction;
+import chubby.server.ChubbyNamespace;
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyMultiHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyMultiHandler, executing the 'multi' command, whose operations may change any node.
+     */
+    public ChubbyMultiHandler() {
+        super(ChubbyConcurrencyClass.SESSION);
+    }
+
+    /**
+     * Returns the nodes the operations change, together with the parents whose child count they rewrite. The acl name
+     * files the operations rewrite are not queued, they are guarded by the revisions read by the transaction.
+     */
+    @Override
+    public List<ChubbyPath> getChangedPaths(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        return ChubbyMultiTransaction.getNodeKeys(((ChubbyMultiCommand) chubbyCommand).getChubbyMultiOperationList()).stream()
+                .map(ChubbyPath::of)
+                .toList();
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+
+        //for reference: multi operation1 ; operation2 ; ... where each operation is one of
+        //create absolutePath, write absolutePath [content], remove absolutePath, acl absolutePath aclType aclName,
+        //check absolutePath content|lock|acl|instance generationNumber
+        logger.trace("detected 'multi' cmd, processing it...");
+
+        List<ChubbyMultiOperation> chubbyMultiOperationList = ((ChubbyMultiCommand) chubbyCommand).getChubbyMultiOperationList();
+        return ChubbyMultiProcessor.process(chubbyNamespace, client, requestUsername, chubbyMultiOperationList).<ChubbyMessage>thenApply(chubbyMultiResponse -> {
+            String message = (chubbyMultiResponse.isCommitted() ? "all operations applied:\n" : "no operation applied:\n") + String.join("\n", chubbyMultiResponse.getResultList());
+            if (chubbyMultiResponse.isCommitted()) {
+                return new ChubbyResponse(requestUsername, message, new ChubbyHandleResponse(chubbyRequest));
+            }
+            return new ChubbyError(chubbyRequest, message);
+        }).exceptionally(throwable -> {
+            logger.error("caught exception '{}', about to send chubby error message", throwable.getMessage());
+            return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+        });
+    }
+}
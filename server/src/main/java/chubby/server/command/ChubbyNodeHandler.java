@@ -0,0 +1,42 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyNodeHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyNodeHandler, executing the 'node' commands.
+     */
+    public ChubbyNodeHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+        Path requestHandleAbsolutePath = chubbyCommandContext.getHandleAbsolutePath();
+
+        return chubbyNamespace.getNode(client, requestHandleAbsolutePath).<ChubbyMessage>thenApply(responseChubbyNode -> {
+            if (chubbyCommand.getChubbyCommandType() == ChubbyCommandType.NODE_DATA) {
+                return new ChubbyResponse(requestUsername, responseChubbyNode.getAbsolutePath().toString() + ":" + responseChubbyNode.getNodeValue().toString(), new ChubbyHandleResponse(chubbyRequest));
+            }
+            return new ChubbyResponse(requestUsername, responseChubbyNode.getAbsolutePath().toString() + ":" + responseChubbyNode.getNodeValue().getMetadata().toString(), new ChubbyHandleResponse(chubbyRequest));
+        }).exceptionally(throwable -> {
+            logger.error(throwable);
+            return new ChubbyError(chubbyRequest, "something went wrong while executing 'node' command'");
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package chubby.server.command;
+
+import chubby.control.handle.ChubbyHandleRequest;
+import chubby.control.handle.ChubbyHandleType;
+import chubby.control.handle.ChubbyLockDelay;
+import chubby.server.node.ChubbyNodeAttribute;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+public class ChubbyOpenCommand extends ChubbyCommand {
+    private final Path absolutePath;
+    private final ChubbyHandleType chubbyHandleType;
+    private final ChubbyNodeAttribute chubbyNodeAttribute;
+    private final ChubbyLockDelay chubbyLockDelay;
+    private final String[] eventTypes;
+    private final int lockWaitSeconds;
+
+    /**
+     * Create a new ChubbyOpenCommand.
+     *
+     * @param absolutePath        absolute path of the node to open
+     * @param chubbyHandleType    type of the requested handle
+     * @param chubbyNodeAttribute attribute of the node, if it is created
+     * @param chubbyLockDelay     lock delay of the handle
+     * @param eventTypes          requested event subscriptions, null if none
+     * @param lockWaitSeconds     how long to wait for a lock held by another client
+     */
+    public ChubbyOpenCommand(@NotNull Path absolutePath, @NotNull ChubbyHandleType chubbyHandleType, @NotNull ChubbyNodeAttribute chubbyNodeAttribute, @NotNull ChubbyLockDelay chubbyLockDelay, String @Nullable [] eventTypes, int lockWaitSeconds) {
+        super(ChubbyCommandType.OPEN);
+        this.absolutePath = absolutePath;
+        this.chubbyHandleType = chubbyHandleType;
+        this.chubbyNodeAttribute = chubbyNodeAttribute;
+        this.chubbyLockDelay = chubbyLockDelay;
+        this.eventTypes = eventTypes;
+        this.lockWaitSeconds = lockWaitSeconds;
+    }
+
+    /**
+     * Returns a new handle request for the node, every request is handed its own one.
+     *
+     * @return the handle request
+     */
+    public ChubbyHandleRequest newChubbyHandleRequest() {
+        ChubbyHandleRequest chubbyHandleRequest = new ChubbyHandleRequest(this.absolutePath, this.chubbyHandleType, this.chubbyLockDelay, this.eventTypes);
+        chubbyHandleRequest.setLockWaitSeconds(this.lockWaitSeconds);
+        return chubbyHandleRequest;
+    }
+
+    public Path getAbsolutePath() {
+        return this.absolutePath;
+    }
+
+    public ChubbyHandleType getChubbyHandleType() {
+        return this.chubbyHandleType;
+    }
+
+    public ChubbyNodeAttribute getChubbyNodeAttribute() {
+        return this.chubbyNodeAttribute;
+    }
+
+    public ChubbyLockDelay getChubbyLockDelay() {
+        return this.chubbyLockDelay;
+    }
+
+    public int getLockWaitSeconds() {
+        return this.lockWaitSeconds;
+    }
+}
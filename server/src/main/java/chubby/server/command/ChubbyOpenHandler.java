@@ -0,0 +1,122 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import chubby.server.node.ChubbyNodeAttribute;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ChubbyOpenHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyOpenHandler, executing the 'open' command, that replaces the handle of the session.
+     */
+    public ChubbyOpenHandler() {
+        super(ChubbyConcurrencyClass.SESSION);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+        Path requestHandleAbsolutePath = chubbyCommandContext.getHandleAbsolutePath();
+        ChubbyHandleType requestChubbyHandleType = chubbyCommandContext.getChubbyHandleType();
+
+        //for reference: open absolute_argumentAbsolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...] [wait=seconds]
+        ChubbyOpenCommand chubbyOpenCommand = (ChubbyOpenCommand) chubbyCommand;
+        Path argumentAbsolutePath = chubbyOpenCommand.getAbsolutePath();
+        logger.trace("extracted argument 'argumentAbsolutePath:{}'", argumentAbsolutePath);
+
+        if (requestChubbyHandleType.equals(ChubbyHandleType.WRITE)) {
+            logger.error("detected 'open' cmd while having an exclusive lock on another node, skipping operation...");
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, "cannot execute 'open' cmd while having an exclusive lock on another node"));
+        } else if (requestChubbyHandleType.equals(ChubbyHandleType.READ) && !requestHandleAbsolutePath.equals(chubbyNamespace.getRoot())) {
+            logger.error("detected 'open' cmd while having a shared lock on another node that is not root, skipping operation...");
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, "cannot execute 'open' cmd while having a shared lock on another node that is not root"));
+        }
+
+        ChubbyNodeAttribute argumentChubbyNodeAttribute = chubbyOpenCommand.getChubbyNodeAttribute();
+        ChubbyHandleRequest chubbyHandleRequest = chubbyOpenCommand.newChubbyHandleRequest();
+        AtomicReference<ChubbyError> chubbyError = new AtomicReference<>();
+
+        CompletableFuture<ChubbyCreateNodeResponse> createNodeFuture;
+        try {
+            createNodeFuture = chubbyNamespace.createNode(requestUsername, client, argumentAbsolutePath, argumentChubbyNodeAttribute, false);
+        } catch (Exception e) {
+            logger.error(e);
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, e.getMessage()));
+        }
+
+        return createNodeFuture.thenCompose(createNodeResponse -> {
+            if (createNodeResponse.wasCreated()) {
+                try {
+                    return chubbyNamespace.inheritACLNames(argumentAbsolutePath, client).thenCompose(inheritResponse -> {
+                        try {
+                            return chubbyNamespace.createHandle(requestUsername, client, chubbyHandleRequest);
+                        } catch (Exception e) {
+                            chubbyError.set(new ChubbyError(chubbyRequest, e.getMessage()));
+                            return CompletableFuture.completedFuture(null);
+                        }
+                    });
+                } catch (Exception e) {
+                    chubbyError.set(new ChubbyError(chubbyRequest, e.getMessage()));
+                    return CompletableFuture.completedFuture(null);
+                }
+            } else {
+                try {
+                    return chubbyNamespace.isClientPermittedAccess(requestUsername, client, chubbyHandleRequest.getChubbyHandleType(), argumentAbsolutePath).thenCompose(permitted -> {
+                        if (!permitted) {
+                            chubbyError.set(new ChubbyError(chubbyRequest, "user '" + requestUsername + "' not permitted to '" + chubbyHandleRequest.getChubbyHandleType().toString().toLowerCase() + "' on node '" + argumentAbsolutePath + "'"));
+                            return CompletableFuture.completedFuture(null);
+                        } else {
+                            try {
+                                return chubbyNamespace.createHandle(requestUsername, client, chubbyHandleRequest);
+                            } catch (Exception e) {
+                                chubbyError.set(new ChubbyError(chubbyRequest, e.getMessage()));
+                                return CompletableFuture.completedFuture(null);
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    chubbyError.set(new ChubbyError(chubbyRequest, e.getMessage()));
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+        }).<ChubbyMessage>thenCompose(chubbyHandleResponse -> {
+            //if permission was not granted, return error message
+            if (chubbyError.get() != null) {
+                return CompletableFuture.completedFuture(chubbyError.get());
+            }
+
+            //if null, the node is already exclusively locked by another client
+            if (chubbyHandleResponse == null) {
+                return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, "specified node is already exclusively locked by another client"));
+            }
+
+            //unlock the old lock
+            CompletableFuture<ByteSequence> unlockFuture;
+            try {
+                unlockFuture = chubbyNamespace.unlock(chubbyRequest, client, true);
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, e.getMessage()));
+            }
+
+            return unlockFuture.<ChubbyMessage>thenApply(unlockResponse -> new ChubbyResponse(requestUsername, "successfully opened node", chubbyHandleResponse))
+                    .exceptionally(throwable -> new ChubbyError(chubbyRequest, failureMessageOf(throwable)));
+        }).exceptionally(throwable -> {
+            logger.error(throwable);
+            return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import chubby.utils.ChubbyUtils;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyReadHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyReadHandler, executing the 'read' commands.
+     */
+    public ChubbyReadHandler() {
+        super(ChubbyConcurrencyClass.READ_ONLY);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+        Path requestHandleAbsolutePath = chubbyCommandContext.getHandleAbsolutePath();
+
+        if (chubbyCommand.getChubbyCommandType() == ChubbyCommandType.READ_FILECONTENT) {
+            if (ChubbyUtils.isFile(Path.of(chubbyRequest.getHandleAbsolutePath()))) {
+                return CompletableFuture.completedFuture(new ChubbyResponse(requestUsername, chubbyRequest.getFileContent(), new ChubbyHandleResponse(chubbyRequest)));
+            } else {
+                return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, "cannot retrieve 'filecontent' from directory node"));
+            }
+        }
+
+        return chubbyNamespace.getNode(client, requestHandleAbsolutePath)
+                .<ChubbyMessage>thenApply(responseChubbyNode -> new ChubbyResponse(requestUsername, responseChubbyNode.getNodeValue().getMetadata().getAclNamesMap().toString(), new ChubbyHandleResponse(chubbyRequest)))
+                .exceptionally(throwable -> {
+                    logger.error(throwable);
+                    return new ChubbyError(chubbyRequest, "something went wrong while executing 'read acl' command'");
+                });
+    }
+}
@@ -0,0 +1,19 @@
+package chubby.server.command;
+
+public class ChubbyRemoveCommand extends ChubbyCommand {
+    private final boolean recursive;
+
+    /**
+     * Create a new ChubbyRemoveCommand.
+     *
+     * @param recursive whether every node under the removed one is removed too
+     */
+    public ChubbyRemoveCommand(boolean recursive) {
+        super(ChubbyCommandType.REMOVE);
+        this.recursive = recursive;
+    }
+
+    public boolean isRecursive() {
+        return this.recursive;
+    }
+}
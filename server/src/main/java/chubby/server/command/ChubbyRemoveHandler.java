@@ -0,0 +1,66 @@
+package chubby.server.command;
+
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import chubby.utils.ChubbyPath;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyRemoveHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyRemoveHandler, executing the 'remove' command on the node of the handle.
+     */
+    public ChubbyRemoveHandler() {
+        super(ChubbyConcurrencyClass.PATH_MUTATING);
+    }
+
+    /**
+     * Returns the removed node and its parent, whose child count is rewritten. The nodes below a node removed
+     * recursively are not queued, their removal is guarded by the revisions read by the subtree removal.
+     */
+    @Override
+    public List<ChubbyPath> getChangedPaths(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyPath chubbyPath = ChubbyPath.of(chubbyCommandContext.getChubbyRequest().getHandleAbsolutePath());
+        return chubbyPath.getParent() == null ? List.of(chubbyPath) : List.of(chubbyPath, chubbyPath.getParent());
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+
+        logger.trace("detected 'remove' cmd, processing it...");
+
+        //for reference:
+        //remove [recursive] --> 'recursive' removes every node under the current one too
+
+        CompletableFuture<Void> removeFuture;
+        try {
+            if (((ChubbyRemoveCommand) chubbyCommand).isRecursive()) {
+                logger.trace("about to call method 'removeSubtree'");
+                removeFuture = chubbyNamespace.removeSubtree(chubbyRequest, client);
+            } else {
+                logger.trace("about to call method 'removeNode'");
+                removeFuture = chubbyNamespace.removeNode(chubbyRequest, client);
+            }
+
+        } catch (Exception e) {
+            logger.error("caught exception '{}' about to send chubby error message", e.getMessage());
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, e.getMessage()));
+        }
+
+        return removeFuture.<ChubbyMessage>thenCompose(removeResponse -> chubbyCommandContext.acquireRootHandle("node removed, successfully acquired shared lock on root node"))
+                .exceptionally(throwable -> {
+                    logger.error("caught exception '{}' about to send chubby error message", throwable.getMessage());
+                    return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+                });
+    }
+}
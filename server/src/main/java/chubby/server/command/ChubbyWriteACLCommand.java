@@ -0,0 +1,29 @@
+package chubby.server.command;
+
+import chubby.control.handle.ChubbyHandleType;
+import org.jetbrains.annotations.NotNull;
+
+public class ChubbyWriteACLCommand extends ChubbyCommand {
+    private final ChubbyHandleType aclChubbyHandleType;
+    private final String aclName;
+
+    /**
+     * Create a new ChubbyWriteACLCommand.
+     *
+     * @param aclChubbyHandleType the acl type whose name is changed
+     * @param aclName             the new acl name
+     */
+    public ChubbyWriteACLCommand(@NotNull ChubbyHandleType aclChubbyHandleType, @NotNull String aclName) {
+        super(ChubbyCommandType.WRITE_ACL);
+        this.aclChubbyHandleType = aclChubbyHandleType;
+        this.aclName = aclName;
+    }
+
+    public ChubbyHandleType getAclChubbyHandleType() {
+        return this.aclChubbyHandleType;
+    }
+
+    public String getAclName() {
+        return this.aclName;
+    }
+}
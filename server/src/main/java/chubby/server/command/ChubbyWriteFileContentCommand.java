@@ -0,0 +1,21 @@
+package chubby.server.command;
+
+import org.jetbrains.annotations.NotNull;
+
+public class ChubbyWriteFileContentCommand extends ChubbyCommand {
+    private final String fileContent;
+
+    /**
+     * Create a new ChubbyWriteFileContentCommand.
+     *
+     * @param fileContent the content written into the file
+     */
+    public ChubbyWriteFileContentCommand(@NotNull String fileContent) {
+        super(ChubbyCommandType.WRITE_FILECONTENT);
+        this.fileContent = fileContent;
+    }
+
+    public String getFileContent() {
+        return this.fileContent;
+    }
+}
@@ -0,0 +1,71 @@
+package chubby.server.command;
+
+import chubby.control.handle.*;
+import chubby.control.message.*;
+import chubby.server.ChubbyNamespace;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+public class ChubbyWriteHandler extends ChubbyCommandHandler {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Create a new ChubbyWriteHandler, executing the 'write' commands on the node of the handle.
+     */
+    public ChubbyWriteHandler() {
+        super(ChubbyConcurrencyClass.PATH_MUTATING);
+    }
+
+    @Override
+    public CompletableFuture<ChubbyMessage> handle(@NotNull ChubbyCommandContext chubbyCommandContext, @NotNull ChubbyCommand chubbyCommand) {
+        ChubbyNamespace chubbyNamespace = chubbyCommandContext.getChubbyNamespace();
+        ChubbyRequest chubbyRequest = chubbyCommandContext.getChubbyRequest();
+        Client client = chubbyCommandContext.getClient();
+        String requestUsername = chubbyCommandContext.getUsername();
+        Path requestHandleAbsolutePath = chubbyCommandContext.getHandleAbsolutePath();
+        ChubbyHandleType requestChubbyHandleType = chubbyCommandContext.getChubbyHandleType();
+
+        logger.debug("detected 'write' cmd, processing it...");
+
+        //for reference:
+        //write filecontent [file content]
+        //write acl aclType customName --> where aclType can be READ, WRITE, CHANGE_ACL and customName the new name
+
+        CompletableFuture<ByteSequence> resultMessageFuture;
+        try {
+            if (chubbyCommand instanceof ChubbyWriteFileContentCommand chubbyWriteFileContentCommand) {
+                String message = chubbyWriteFileContentCommand.getFileContent();
+
+                logger.debug("about to execute 'write' method");
+                resultMessageFuture = chubbyNamespace.write(chubbyRequest, client, message).thenApply(resultMessage -> {
+                    chubbyRequest.setFileContent(message);
+                    return resultMessage;
+                });
+            } else if (chubbyCommand instanceof ChubbyWriteACLCommand chubbyWriteACLCommand) {
+                logger.debug("detected 'write acl' cmd, processing it...");
+                resultMessageFuture = chubbyNamespace.changeACLNames(requestHandleAbsolutePath, client, requestUsername, requestChubbyHandleType, chubbyWriteACLCommand.getAclChubbyHandleType(), chubbyWriteACLCommand.getAclName());
+            } else {
+                ChubbyAddClientCommand chubbyAddClientCommand = (ChubbyAddClientCommand) chubbyCommand;
+                resultMessageFuture = chubbyNamespace.addACLClient(requestHandleAbsolutePath, client, chubbyAddClientCommand.getAclChubbyHandleType(), requestChubbyHandleType, chubbyAddClientCommand.getUsernames());
+            }
+        } catch (Exception e) {
+            logger.error("caught exception '{}', about to send chubby error message", e.getMessage());
+            return CompletableFuture.completedFuture(new ChubbyError(chubbyRequest, e.getMessage()));
+        }
+
+        return resultMessageFuture.<ChubbyMessage>thenApply(resultMessage -> {
+            logger.debug("successfully executed cmd, about to send chubby response message '{}'", resultMessage);
+            return new ChubbyResponse(requestUsername, Objects.requireNonNullElse(resultMessage, "").toString(), new ChubbyHandleResponse(chubbyRequest));
+        }).exceptionally(throwable -> {
+            logger.error("caught exception '{}', about to send chubby error message", throwable.getMessage());
+            return new ChubbyError(chubbyRequest, failureMessageOf(throwable));
+        });
+    }
+}
@@ -1,6 +1,6 @@
 package chubby.server.node;
 
-import chubby.utils.ChubbyUtils;
+import chubby.utils.ChubbyPath;
 import chubby.control.handle.ChubbyHandleType;
 import com.google.gson.annotations.SerializedName;
 import org.apache.logging.log4j.LogManager;
@@ -9,7 +9,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 
 public class ChubbyNodeMetadata {
@@ -69,7 +68,7 @@ public class ChubbyNodeMetadata {
 
         this.aclNamesMap = new HashMap<>();
 
-        if (ChubbyUtils.isFile(absolutePath))  {
+        if (ChubbyPath.of(absolutePath).isFile())  {
             this.chubbyNodeType = ChubbyNodeType.FILE;
         } else {
             this.chubbyNodeType = ChubbyNodeType.DIRECTORY;
@@ -141,16 +140,8 @@ public class ChubbyNodeMetadata {
         logger.trace("requested instance number update, processing it...");
 
         //counts the occurrences of same-name directories to determine the value of 'instanceNumber'
-        String farthestFromRoot;
-        if (absolutePath.equals(Paths.get("\\"))) {
-            farthestFromRoot = "\\";
-        } else {
-            farthestFromRoot = absolutePath.getFileName().toString();
-        }
-
-        long sameNameDirOccurrences = Arrays.stream(absolutePath.toString().split("\\\\"))
-                .filter(s -> s.equals(farthestFromRoot))
-                .count() - 1;
+        ChubbyPath chubbyPath = ChubbyPath.of(absolutePath);
+        long sameNameDirOccurrences = chubbyPath.isRoot() ? 0 : chubbyPath.countComponent(chubbyPath.getFileName()) - 1;
 
         if (sameNameDirOccurrences > 0) {
             this.instanceNumber = Long.MIN_VALUE + sameNameDirOccurrences;
@@ -200,6 +191,10 @@ public class ChubbyNodeMetadata {
         return this.lockClientMap.remove(username, chubbyHandleType);
     }
 
+    public void clearClientLocks() {
+        this.lockClientMap.clear();
+    }
+
     public int getLockClientMapSize() {
         return this.lockClientMap.size();
     }
@@ -208,6 +203,10 @@ public class ChubbyNodeMetadata {
         return this.lockClientMap.isEmpty();
     }
 
+    public boolean isLockedByOtherClient(String username) {
+        return this.lockClientMap.keySet().stream().anyMatch(lockUsername -> !lockUsername.equals(username));
+    }
+
     public long getChecksum() {
         return this.checksum;
     }
@@ -0,0 +1,75 @@
+package chubby.server.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChubbyFrameCodec {
+    private static final Charset charset = StandardCharsets.UTF_8;
+    private static final int LENGTH_FIELD_SIZE = Integer.BYTES;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private ByteBuffer pendingBuffer;
+
+    /**
+     * Create a new ChubbyFrameCodec, that keeps the bytes of incomplete frames between subsequent reads of the same
+     * channel.
+     */
+    public ChubbyFrameCodec() {
+        this.pendingBuffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Encodes a payload into a frame: the length of the payload followed by the payload itself.
+     *
+     * @param payload payload to be encoded
+     * @return a buffer containing the frame, ready to be written into a channel
+     */
+    public static @NotNull ByteBuffer encode(@NotNull String payload) {
+        byte[] payloadBytes = payload.getBytes(charset);
+        ByteBuffer frameBuffer = ByteBuffer.allocate(LENGTH_FIELD_SIZE + payloadBytes.length);
+        frameBuffer.putInt(payloadBytes.length);
+        frameBuffer.put(payloadBytes);
+        return frameBuffer.flip();
+    }
+
+    /**
+     * Decodes the frames completed by the given bytes, the bytes of an incomplete frame are kept until the next call.
+     *
+     * @param readBuffer buffer containing the bytes read from the channel, ready to be read
+     * @return the payloads of the completed frames, in the order they were received
+     * @throws IOException if a frame declares an invalid length
+     */
+    public @NotNull List<String> decode(@NotNull ByteBuffer readBuffer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(this.pendingBuffer.remaining() + readBuffer.remaining());
+        buffer.put(this.pendingBuffer).put(readBuffer).flip();
+
+        List<String> payloadList = new ArrayList<>();
+        while (buffer.remaining() >= LENGTH_FIELD_SIZE) {
+            int payloadLength = buffer.getInt(buffer.position());
+            if (payloadLength < 0 || payloadLength > MAX_FRAME_SIZE) {
+                throw new IOException("invalid frame length '" + payloadLength + "'");
+            }
+
+            if (buffer.remaining() < LENGTH_FIELD_SIZE + payloadLength) {
+                break;
+            }
+
+            buffer.position(buffer.position() + LENGTH_FIELD_SIZE);
+            byte[] payloadBytes = new byte[payloadLength];
+            buffer.get(payloadBytes);
+            payloadList.add(new String(payloadBytes, charset));
+        }
+
+        this.pendingBuffer = buffer.slice();
+        return payloadList;
+    }
+
+    public int getPendingByteCount() {
+        return this.pendingBuffer.remaining();
+    }
+}
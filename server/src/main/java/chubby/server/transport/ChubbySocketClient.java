@@ -0,0 +1,128 @@
+package chubby.server.transport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class ChubbySocketClient implements Runnable {
+    private static final Logger logger = LogManager.getLogger();
+    private final Selector selector;
+    private final ChubbySocketConnection chubbySocketConnection;
+    private final Map<Long, CompletableFuture<String>> pendingResponseMap;
+    private final Consumer<String> notificationConsumer;
+    private volatile boolean running;
+
+    /**
+     * Create a new ChubbySocketClient connected to a cell server. Responses are matched to their requests by sequence
+     * number, messages that do not respond to any request (notifications) are handed to the given consumer.
+     *
+     * @param host                 host of the cell server
+     * @param port                 port of the cell server
+     * @param notificationConsumer consumes the notifications sent by the cell server
+     * @throws IOException if the connection cannot be established
+     */
+    public ChubbySocketClient(@NotNull String host, int port, @NotNull Consumer<String> notificationConsumer) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(host, port));
+        socketChannel.configureBlocking(false);
+        socketChannel.socket().setTcpNoDelay(true);
+
+        this.selector = Selector.open();
+        SelectionKey selectionKey = socketChannel.register(this.selector, SelectionKey.OP_READ);
+        this.chubbySocketConnection = new ChubbySocketConnection(socketChannel, selectionKey);
+        this.pendingResponseMap = new ConcurrentHashMap<>();
+        this.notificationConsumer = notificationConsumer;
+        this.running = true;
+    }
+
+    /**
+     * Starts the selector loop into a new thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "chubby_socket_client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sends a request without waiting for the previous ones to be answered.
+     *
+     * @param sequenceNumber sequence number of the request
+     * @param payload        serialized request
+     * @return a CompletableFuture containing the formatted response
+     */
+    public CompletableFuture<String> send(long sequenceNumber, @NotNull String payload) {
+        CompletableFuture<String> responseFuture = new CompletableFuture<>();
+        this.pendingResponseMap.put(sequenceNumber, responseFuture);
+        this.chubbySocketConnection.send(payload);
+        return responseFuture;
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                this.selector.select();
+
+                Iterator<SelectionKey> selectedKeyIterator = this.selector.selectedKeys().iterator();
+                while (selectedKeyIterator.hasNext()) {
+                    SelectionKey selectionKey = selectedKeyIterator.next();
+                    selectedKeyIterator.remove();
+
+                    if (selectionKey.isValid() && selectionKey.isReadable()) {
+                        this.chubbySocketConnection.read().forEach(this::receive);
+                    }
+                    if (selectionKey.isValid() && selectionKey.isWritable()) {
+                        this.chubbySocketConnection.flush();
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("connection to cell server lost: {}", e.getMessage());
+                this.running = false;
+            }
+        }
+
+        this.chubbySocketConnection.close();
+        this.pendingResponseMap.values().forEach(responseFuture -> responseFuture.completeExceptionally(new IOException("connection to cell server closed")));
+        this.pendingResponseMap.clear();
+    }
+
+    /**
+     * Completes the request matching the sequence number of the received message, or hands it to the notification
+     * consumer.
+     *
+     * @param payload received frame
+     */
+    private void receive(@NotNull String payload) {
+        ChubbyTransportResponse chubbyTransportResponse = ChubbyTransportResponse.deserialize(payload);
+
+        CompletableFuture<String> responseFuture = this.pendingResponseMap.remove(chubbyTransportResponse.getSequenceNumber());
+        if (responseFuture != null) {
+            responseFuture.complete(chubbyTransportResponse.getMessage());
+        } else {
+            this.notificationConsumer.accept(chubbyTransportResponse.getMessage());
+        }
+    }
+
+    /**
+     * Closes the connection, failing the requests still waiting for a response.
+     */
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    public int getPendingResponseCount() {
+        return this.pendingResponseMap.size();
+    }
+}
@@ -0,0 +1,121 @@
+package chubby.server.transport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class ChubbySocketConnection {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private final SocketChannel socketChannel;
+    private final SelectionKey selectionKey;
+    private final ChubbyFrameCodec chubbyFrameCodec;
+    private final ByteBuffer readBuffer;
+    private final Queue<ByteBuffer> writeQueue;
+
+    /**
+     * Create a new ChubbySocketConnection over a non-blocking channel registered into a selector.
+     *
+     * @param socketChannel the channel of the connection
+     * @param selectionKey  the key of the channel into the selector of its loop
+     */
+    public ChubbySocketConnection(@NotNull SocketChannel socketChannel, @NotNull SelectionKey selectionKey) {
+        this.socketChannel = socketChannel;
+        this.selectionKey = selectionKey;
+        this.chubbyFrameCodec = new ChubbyFrameCodec();
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.writeQueue = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Queues a frame to be written into the channel, it can be called from any thread. The selector loop is woken up
+     * to write it as soon as the channel is writable.
+     *
+     * @param payload payload of the frame
+     */
+    public void send(@NotNull String payload) {
+        this.writeQueue.add(ChubbyFrameCodec.encode(payload));
+
+        try {
+            this.selectionKey.interestOpsOr(SelectionKey.OP_WRITE);
+            this.selectionKey.selector().wakeup();
+        } catch (CancelledKeyException e) {
+            logger.warn("connection '{}' is closed, dropping frame", this);
+            this.writeQueue.clear();
+        }
+    }
+
+    /**
+     * Reads the available bytes from the channel, called by the selector loop when the channel is readable.
+     *
+     * @return the payloads of the frames completed by this read
+     * @throws IOException if the channel cannot be read, was closed by the peer or carries an invalid frame
+     */
+    public @NotNull List<String> read() throws IOException {
+        this.readBuffer.clear();
+        int read = this.socketChannel.read(this.readBuffer);
+        if (read < 0) {
+            throw new IOException("connection closed by peer");
+        }
+
+        return this.chubbyFrameCodec.decode(this.readBuffer.flip());
+    }
+
+    /**
+     * Writes the queued frames into the channel, called by the selector loop when the channel is writable. Stops
+     * listening for writability once the queue is empty.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    public void flush() throws IOException {
+        ByteBuffer frameBuffer;
+        while ((frameBuffer = this.writeQueue.peek()) != null) {
+            this.socketChannel.write(frameBuffer);
+            if (frameBuffer.hasRemaining()) {
+                return;
+            }
+            this.writeQueue.poll();
+        }
+
+        this.selectionKey.interestOpsAnd(~SelectionKey.OP_WRITE);
+
+        //a frame queued while clearing the interest would otherwise wait for the next one
+        if (!this.writeQueue.isEmpty()) {
+            this.selectionKey.interestOpsOr(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close() {
+        this.selectionKey.cancel();
+        try {
+            this.socketChannel.close();
+        } catch (IOException e) {
+            logger.error("failed to close connection '{}'", this, e);
+        }
+    }
+
+    public boolean isOpen() {
+        return this.socketChannel.isOpen();
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return "ChubbySocketConnection{" + this.socketChannel.getRemoteAddress() + "}";
+        } catch (IOException e) {
+            return "ChubbySocketConnection{closed}";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package chubby.server.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ChubbySocketOutputStream extends OutputStream {
+    private final ChubbySocketConnection chubbySocketConnection;
+
+    /**
+     * Create a new ChubbySocketOutputStream, each write is sent to the client as a notification frame.
+     *
+     * @param chubbySocketConnection connection of the client
+     */
+    public ChubbySocketOutputStream(@NotNull ChubbySocketConnection chubbySocketConnection) {
+        this.chubbySocketConnection = chubbySocketConnection;
+    }
+
+    @Override
+    public void write(int b) {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) {
+        this.writeResponse(0, new String(Arrays.copyOfRange(b, off, off + len), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a response to the client, correlated to its request by sequence number.
+     *
+     * @param sequenceNumber sequence number of the request
+     * @param message        formatted message of the response
+     */
+    public void writeResponse(long sequenceNumber, @NotNull String message) {
+        this.chubbySocketConnection.send(ChubbyTransportResponse.serialize(new ChubbyTransportResponse(sequenceNumber, message)));
+    }
+
+    public ChubbySocketConnection getChubbySocketConnection() {
+        return this.chubbySocketConnection;
+    }
+}
@@ -0,0 +1,151 @@
+package chubby.server.transport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class ChubbySocketServer implements Runnable {
+    private static final Logger logger = LogManager.getLogger();
+    private final int port;
+    private final BiConsumer<ChubbySocketConnection, String> frameConsumer;
+    private final Consumer<ChubbySocketConnection> closeConsumer;
+    private final Selector selector;
+    private final ServerSocketChannel serverSocketChannel;
+    private volatile boolean running;
+
+    /**
+     * Create a new ChubbySocketServer, that accepts client connections on the given port and serves them with a single
+     * non-blocking selector loop.
+     *
+     * @param port          port to listen on
+     * @param frameConsumer consumes each frame received, together with the connection it was received from
+     * @param closeConsumer notified once a connection is closed
+     * @throws IOException if the port cannot be bound
+     */
+    public ChubbySocketServer(int port, @NotNull BiConsumer<ChubbySocketConnection, String> frameConsumer, @NotNull Consumer<ChubbySocketConnection> closeConsumer) throws IOException {
+        this.port = port;
+        this.frameConsumer = frameConsumer;
+        this.closeConsumer = closeConsumer;
+        this.selector = Selector.open();
+        this.serverSocketChannel = ServerSocketChannel.open();
+        this.serverSocketChannel.bind(new InetSocketAddress(port));
+        this.serverSocketChannel.configureBlocking(false);
+        this.serverSocketChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.running = true;
+    }
+
+    /**
+     * Starts the selector loop into a new thread.
+     */
+    public void start() {
+        new Thread(this, "chubby_socket_server-" + this.port).start();
+        logger.info("listening for client connections on port '{}'", this.port);
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                this.selector.select();
+            } catch (IOException e) {
+                logger.error("selector of port '{}' failed", this.port, e);
+                break;
+            }
+
+            Iterator<SelectionKey> selectedKeyIterator = this.selector.selectedKeys().iterator();
+            while (selectedKeyIterator.hasNext()) {
+                SelectionKey selectionKey = selectedKeyIterator.next();
+                selectedKeyIterator.remove();
+
+                if (selectionKey.isValid() && selectionKey.isAcceptable()) {
+                    this.accept();
+                } else if (selectionKey.attachment() instanceof ChubbySocketConnection chubbySocketConnection) {
+                    this.serve(selectionKey, chubbySocketConnection);
+                }
+            }
+        }
+
+        this.closeChannels();
+    }
+
+    /**
+     * Accepts a new client connection and registers it into the selector.
+     */
+    private void accept() {
+        try {
+            SocketChannel socketChannel = this.serverSocketChannel.accept();
+            if (socketChannel == null) {
+                return;
+            }
+
+            socketChannel.configureBlocking(false);
+            socketChannel.socket().setTcpNoDelay(true);
+
+            SelectionKey selectionKey = socketChannel.register(this.selector, SelectionKey.OP_READ);
+            ChubbySocketConnection chubbySocketConnection = new ChubbySocketConnection(socketChannel, selectionKey);
+            selectionKey.attach(chubbySocketConnection);
+            logger.debug("accepted connection '{}'", chubbySocketConnection);
+        } catch (IOException e) {
+            logger.error("failed to accept connection", e);
+        }
+    }
+
+    /**
+     * Reads and writes the frames of a ready connection, closing it if the channel fails.
+     *
+     * @param selectionKey           key of the connection
+     * @param chubbySocketConnection connection ready for reading or writing
+     */
+    private void serve(@NotNull SelectionKey selectionKey, @NotNull ChubbySocketConnection chubbySocketConnection) {
+        try {
+            if (selectionKey.isValid() && selectionKey.isReadable()) {
+                //frames are handed over in the order they were received, their processing must not block this loop
+                chubbySocketConnection.read().forEach(payload -> this.frameConsumer.accept(chubbySocketConnection, payload));
+            }
+            if (selectionKey.isValid() && selectionKey.isWritable()) {
+                chubbySocketConnection.flush();
+            }
+        } catch (IOException e) {
+            logger.debug("closing connection '{}': {}", chubbySocketConnection, e.getMessage());
+            chubbySocketConnection.close();
+            this.closeConsumer.accept(chubbySocketConnection);
+        }
+    }
+
+    /**
+     * Closes the server and every connection.
+     */
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    private void closeChannels() {
+        this.selector.keys().forEach(selectionKey -> {
+            if (selectionKey.attachment() instanceof ChubbySocketConnection chubbySocketConnection) {
+                chubbySocketConnection.close();
+            }
+        });
+
+        try {
+            this.serverSocketChannel.close();
+            this.selector.close();
+        } catch (IOException e) {
+            logger.error("failed to close server on port '{}'", this.port, e);
+        }
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+}
@@ -0,0 +1,38 @@
+package chubby.server.transport;
+
+import chubby.utils.ChubbyUtils;
+import com.google.gson.annotations.SerializedName;
+
+public class ChubbyTransportResponse {
+    @SerializedName("sequence_number")
+    private final long sequenceNumber;
+    @SerializedName("message")
+    private final String message;
+
+    /**
+     * Create a new ChubbyTransportResponse.
+     *
+     * @param sequenceNumber the sequence number of the request it responds to, 0 for notifications
+     * @param message        the formatted message to be shown to the client
+     */
+    public ChubbyTransportResponse(long sequenceNumber, String message) {
+        this.sequenceNumber = sequenceNumber;
+        this.message = message;
+    }
+
+    public static String serialize(ChubbyTransportResponse chubbyTransportResponse) {
+        return ChubbyUtils.gsonBuild().toJson(chubbyTransportResponse, ChubbyTransportResponse.class);
+    }
+
+    public static ChubbyTransportResponse deserialize(String jsonResponse) {
+        return ChubbyUtils.gsonBuild().fromJson(jsonResponse, ChubbyTransportResponse.class);
+    }
+
+    public long getSequenceNumber() {
+        return this.sequenceNumber;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -0,0 +1,49 @@
+package chubby.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyLockDelayTableTest {
+    private ChubbyLockDelayTable chubbyLockDelayTable;
+
+    @BeforeEach
+    void setUp() {
+        this.chubbyLockDelayTable = new ChubbyLockDelayTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_unrecorded_node_available() {
+        assertEquals(0, this.chubbyLockDelayTable.getRemainingMillis("/ls/local/node", 0));
+    }
+
+    @Test
+    void check_window_remaining_then_removed() {
+        this.chubbyLockDelayTable.record("/ls/local/node", 10, 1000);
+
+        assertEquals(4000, this.chubbyLockDelayTable.getRemainingMillis("/ls/local/node", 7000));
+        assertEquals(0, this.chubbyLockDelayTable.getRemainingMillis("/ls/local/node", 11000));
+        assertEquals(0, this.chubbyLockDelayTable.size());
+    }
+
+    @Test
+    void check_zero_delay_not_recorded() {
+        this.chubbyLockDelayTable.record("/ls/local/node", 0, 1000);
+
+        assertEquals(0, this.chubbyLockDelayTable.size());
+    }
+
+    @Test
+    void check_window_only_extended() {
+        this.chubbyLockDelayTable.record("/ls/local/node", 30, 0);
+        this.chubbyLockDelayTable.record("/ls/local/node", 5, 1000);
+
+        assertEquals(30000, this.chubbyLockDelayTable.getRemainingMillis("/ls/local/node", 0));
+    }
+}
@@ -0,0 +1,121 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleType;
+import chubby.server.node.ChubbyNode;
+import chubby.server.node.ChubbyNodeAttribute;
+import chubby.server.node.ChubbyNodeValueSerializer;
+import chubby.utils.exceptions.ChubbyLockException;
+import chubby.utils.exceptions.ChubbyNodeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyMultiTransactionTest {
+    private ChubbyNamespace chubbyNamespace;
+    private ChubbyMultiTransaction chubbyMultiTransaction;
+    private Path cellPath;
+    private Path filePath;
+
+    @BeforeEach
+    void setUp() {
+        this.chubbyNamespace = new ChubbyNamespace("local");
+        this.chubbyMultiTransaction = new ChubbyMultiTransaction(this.chubbyNamespace, "user");
+        this.cellPath = this.chubbyNamespace.getRoot().resolve("ls/local");
+        this.filePath = this.cellPath.resolve("file.txt");
+
+        ChubbyNode cellChubbyNode = new ChubbyNode(this.cellPath, null, ChubbyNodeAttribute.PERMANENT);
+        Map<ChubbyHandleType, String> aclNamesMap = new HashMap<>();
+        aclNamesMap.put(ChubbyHandleType.READ, "read");
+        aclNamesMap.put(ChubbyHandleType.WRITE, "write");
+        aclNamesMap.put(ChubbyHandleType.CHANGE_ACL, "change_acl");
+        cellChubbyNode.getNodeValue().getMetadata().setAclNamesMap(aclNamesMap);
+
+        this.chubbyMultiTransaction.loadNode(this.cellPath.toString(), ChubbyNodeValueSerializer.serialize(cellChubbyNode.getNodeValue()), 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_parse_operations() {
+        List<ChubbyMultiOperation> chubbyMultiOperationList = ChubbyMultiOperation.parse(new String[]{"create", this.filePath.toString(), ";", "write", this.filePath.toString(), "hello", "world;", "check", this.filePath.toString(), "content", "3"});
+
+        assertEquals(3, chubbyMultiOperationList.size());
+        assertEquals(ChubbyMultiOperationType.CREATE, chubbyMultiOperationList.get(0).getChubbyMultiOperationType());
+        assertEquals("hello world", chubbyMultiOperationList.get(1).getFileContent());
+        assertEquals(3, chubbyMultiOperationList.get(2).getExpectedGenerationNumber());
+    }
+
+    @Test
+    void check_parse_invalid_operation() {
+        assertThrows(IllegalArgumentException.class, () -> ChubbyMultiOperation.parse(new String[]{"rename", this.filePath.toString()}));
+        assertThrows(IllegalArgumentException.class, () -> ChubbyMultiOperation.parse(new String[]{"check", this.filePath.toString(), "content", "x"}));
+        assertThrows(IllegalArgumentException.class, () -> ChubbyMultiOperation.parse(new String[]{";"}));
+    }
+
+    @Test
+    void check_create_and_write() throws Exception {
+        this.chubbyMultiTransaction.loadNode(this.filePath.toString(), null, 0);
+
+        this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.CREATE, this.filePath));
+        String actual = this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.WRITE, this.filePath, "hello"));
+        String expected = "content generation number " + (Long.MIN_VALUE + 1);
+
+        assertEquals(expected, actual);
+        assertEquals(2, this.chubbyMultiTransaction.getOperations().size());
+        assertEquals(2, this.chubbyMultiTransaction.getCompares().size());
+    }
+
+    @Test
+    void check_failed_generation_check() {
+        this.chubbyMultiTransaction.loadNode(this.filePath.toString(), null, 0);
+
+        assertThrows(ChubbyNodeException.class, () -> {
+            this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.CREATE, this.filePath));
+            this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.CHECK, this.filePath, "content", "0"));
+        });
+    }
+
+    @Test
+    void check_write_on_node_locked_by_other_client() {
+        ChubbyNode fileChubbyNode = new ChubbyNode(this.filePath, "content", ChubbyNodeAttribute.PERMANENT);
+        fileChubbyNode.getNodeValue().getMetadata().setAclNamesMap(new HashMap<>(Map.of(ChubbyHandleType.WRITE, "write")));
+        fileChubbyNode.getNodeValue().getMetadata().addClientLock("other_user", ChubbyHandleType.WRITE);
+        this.chubbyMultiTransaction.loadNode(this.filePath.toString(), ChubbyNodeValueSerializer.serialize(fileChubbyNode.getNodeValue()), 7);
+
+        assertThrows(ChubbyLockException.class, () -> this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.WRITE, this.filePath, "hello")));
+        assertEquals(0, this.chubbyMultiTransaction.getChangedKeyCount());
+    }
+
+    @Test
+    void check_write_on_node_read_by_other_client() {
+        ChubbyNode fileChubbyNode = new ChubbyNode(this.filePath, "content", ChubbyNodeAttribute.PERMANENT);
+        fileChubbyNode.getNodeValue().getMetadata().setAclNamesMap(new HashMap<>(Map.of(ChubbyHandleType.WRITE, "write")));
+        this.chubbyMultiTransaction.loadNode(this.filePath.toString(), ChubbyNodeValueSerializer.serialize(fileChubbyNode.getNodeValue()), 7);
+        this.chubbyMultiTransaction.loadLockState(this.filePath.toString(), null, 0, 1, 5);
+
+        assertThrows(ChubbyLockException.class, () -> this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.WRITE, this.filePath, "hello")));
+        assertEquals(0, this.chubbyMultiTransaction.getChangedKeyCount());
+    }
+
+    @Test
+    void check_write_guards_holder_key() throws Exception {
+        ChubbyNode fileChubbyNode = new ChubbyNode(this.filePath, "content", ChubbyNodeAttribute.PERMANENT);
+        fileChubbyNode.getNodeValue().getMetadata().setAclNamesMap(new HashMap<>(Map.of(ChubbyHandleType.WRITE, "write")));
+        this.chubbyMultiTransaction.loadNode(this.filePath.toString(), ChubbyNodeValueSerializer.serialize(fileChubbyNode.getNodeValue()), 7);
+        this.chubbyMultiTransaction.loadLockState(this.filePath.toString(), "user", 9, 0, 5);
+
+        this.chubbyMultiTransaction.apply(new ChubbyMultiOperation(ChubbyMultiOperationType.WRITE, this.filePath, "hello"));
+
+        //the cell node, the file node, the holder key and the reader generation key of the file node
+        assertEquals(4, this.chubbyMultiTransaction.getCompares().size());
+    }
+}
@@ -15,7 +15,7 @@ public class ChubbyNamespaceLsCommandTest extends ChubbyNamespaceTestInitializer
         Client client = Client.builder().endpoints(this.servers).build();
         Path startingPath = Path.of("/ls/local/prova/getLs");
 
-        assertEquals(List.of("\\testDepthA1", "\\testDepthB1", "\\testDepthC1"), this.chubbyNamespace.getLs(client, startingPath, 1).get());
+        assertEquals(List.of("/testDepthA1", "/testDepthB1", "/testDepthC1"), this.chubbyNamespace.getLs(client, startingPath, 1).get());
     }
 
     @Test
@@ -23,7 +23,7 @@ public class ChubbyNamespaceLsCommandTest extends ChubbyNamespaceTestInitializer
         Client client = Client.builder().endpoints(this.servers).build();
         Path startingPath = Path.of("/ls/local/prova/getLs");
 
-        assertEquals(List.of("\\testDepthA1", "\\testDepthB1", "\\testDepthB1\\testDepthA2", "\\testDepthC1", "\\testDepthC1\\testDepthB2", "\\testDepthC1\\testDepthC2", "\\testDepthC1\\testDepthD2"), this.chubbyNamespace.getLs(client, startingPath, 2).get());
+        assertEquals(List.of("/testDepthA1", "/testDepthB1", "/testDepthB1/testDepthA2", "/testDepthC1", "/testDepthC1/testDepthB2", "/testDepthC1/testDepthC2", "/testDepthC1/testDepthD2"), this.chubbyNamespace.getLs(client, startingPath, 2).get());
     }
 
     @Test
@@ -31,7 +31,7 @@ public class ChubbyNamespaceLsCommandTest extends ChubbyNamespaceTestInitializer
         Client client = Client.builder().endpoints(this.servers).build();
         Path startingPath = Path.of("/ls/local/prova/getLs");
 
-        assertEquals(List.of("\\testDepthA1", "\\testDepthB1", "\\testDepthB1\\testDepthA2", "\\testDepthC1", "\\testDepthC1\\testDepthB2", "\\testDepthC1\\testDepthB2\\testDepthA3", "\\testDepthC1\\testDepthC2", "\\testDepthC1\\testDepthC2\\testDepthB3", "\\testDepthC1\\testDepthD2", "\\testDepthC1\\testDepthD2\\testDepthC3"), this.chubbyNamespace.getLs(client, startingPath, 3).get());
+        assertEquals(List.of("/testDepthA1", "/testDepthB1", "/testDepthB1/testDepthA2", "/testDepthC1", "/testDepthC1/testDepthB2", "/testDepthC1/testDepthB2/testDepthA3", "/testDepthC1/testDepthC2", "/testDepthC1/testDepthC2/testDepthB3", "/testDepthC1/testDepthD2", "/testDepthC1/testDepthD2/testDepthC3"), this.chubbyNamespace.getLs(client, startingPath, 3).get());
     }
 
     @Test
@@ -39,7 +39,7 @@ public class ChubbyNamespaceLsCommandTest extends ChubbyNamespaceTestInitializer
         Client client = Client.builder().endpoints(this.servers).build();
         Path startingPath = Path.of("/ls/local/prova/getLs/testDepthC1");
 
-        assertEquals(List.of("\\testDepthB2", "\\testDepthC2", "\\testDepthD2"), this.chubbyNamespace.getLs(client, startingPath, 1).get());
+        assertEquals(List.of("/testDepthB2", "/testDepthC2", "/testDepthD2"), this.chubbyNamespace.getLs(client, startingPath, 1).get());
     }
 
 }
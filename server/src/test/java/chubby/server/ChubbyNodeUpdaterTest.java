@@ -0,0 +1,48 @@
+package chubby.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyNodeUpdaterTest {
+
+    @BeforeEach
+    void setUp() {
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_backoff_grows_within_upper_half() {
+        for (int i = 0; i < 100; i++) {
+            long firstBackoffMillis = ChubbyNodeUpdater.backoffMillis(1);
+            long thirdBackoffMillis = ChubbyNodeUpdater.backoffMillis(3);
+
+            assertTrue(firstBackoffMillis >= 2 && firstBackoffMillis <= 5);
+            assertTrue(thirdBackoffMillis >= 10 && thirdBackoffMillis <= 20);
+        }
+    }
+
+    @Test
+    void check_backoff_capped() {
+        for (int i = 0; i < 100; i++) {
+            long backoffMillis = ChubbyNodeUpdater.backoffMillis(ChubbyNodeUpdater.MAX_ATTEMPTS * 10);
+
+            assertTrue(backoffMillis >= 100 && backoffMillis <= 200);
+        }
+    }
+
+    @Test
+    void check_new_updater_counts_nothing() {
+        ChubbyNodeUpdater chubbyNodeUpdater = new ChubbyNodeUpdater();
+
+        assertEquals(0, chubbyNodeUpdater.getUpdateCount());
+        assertEquals(0, chubbyNodeUpdater.getConflictCount());
+        assertEquals(0, chubbyNodeUpdater.getExhaustedCount());
+        assertEquals(0, chubbyNodeUpdater.getMaxAttempt());
+    }
+}
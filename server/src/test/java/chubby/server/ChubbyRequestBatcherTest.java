@@ -0,0 +1,58 @@
+package chubby.server;
+
+import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyRequestBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyRequestBatcherTest {
+    private List<ChubbyRequestBatch> chubbyRequestBatchList;
+    private ChubbyRequestBatcher chubbyRequestBatcher;
+
+    @BeforeEach
+    void setUp() {
+        this.chubbyRequestBatchList = new ArrayList<>();
+        this.chubbyRequestBatcher = new ChubbyRequestBatcher("user", 60_000, 3, this.chubbyRequestBatchList::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.chubbyRequestBatcher.close();
+    }
+
+    @Test
+    void check_split_commands() {
+        List<String> actual = ChubbyRequestBatcher.splitCommands("open dir1 WRITE\nwrite hello\n\nclose\n");
+        List<String> expected = List.of("open dir1 WRITE\n", "write hello\n", "close\n");
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void check_batch_sent_when_full() {
+        for (long sequenceNumber = 1; sequenceNumber <= 4; sequenceNumber++) {
+            this.chubbyRequestBatcher.add(new ChubbyRequest("user", "ls\n", sequenceNumber));
+        }
+
+        assertEquals(1, this.chubbyRequestBatchList.size());
+        assertEquals(3, this.chubbyRequestBatchList.getFirst().size());
+        assertEquals(3, this.chubbyRequestBatchList.getFirst().getLastSequenceNumber());
+        assertEquals(1, this.chubbyRequestBatcher.getPendingRequestCount());
+    }
+
+    @Test
+    void check_batch_sent_when_flushed() {
+        this.chubbyRequestBatcher.add(new ChubbyRequest("user", "ls\n", 1));
+        this.chubbyRequestBatcher.flush();
+        this.chubbyRequestBatcher.flush();
+
+        assertEquals(1, this.chubbyRequestBatchList.size());
+        assertEquals(0, this.chubbyRequestBatcher.getPendingRequestCount());
+    }
+}
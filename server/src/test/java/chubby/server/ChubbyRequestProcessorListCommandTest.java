@@ -16,7 +16,7 @@ public class ChubbyRequestProcessorListCommandTest extends ChubbyRequestProcesso
                 commands that can be used from this handle:
                 - echo [msg]
                 - *close
-                - **open absolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...]
+                - **open absolutePath handle_type [node_attribute] [lock_delay] [event_sub1 event_sub2 ...] [wait=seconds]
                 - read filecontent
                 - read acl
                 - node data
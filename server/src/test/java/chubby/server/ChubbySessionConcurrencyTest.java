@@ -0,0 +1,76 @@
+package chubby.server;
+
+import chubby.control.handle.ChubbyHandleResponse;
+import chubby.control.handle.ChubbyHandleType;
+import chubby.control.message.ChubbyMessage;
+import chubby.control.message.ChubbyRequest;
+import chubby.control.message.ChubbyResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbySessionConcurrencyTest {
+    private ChubbySession chubbySession;
+    private Map<String, CompletableFuture<ChubbyMessage>> processFutureMap;
+    private Function<ChubbyRequest, CompletableFuture<ChubbyMessage>> chubbyRequestProcessor;
+
+    @BeforeEach
+    void setUp() {
+        this.chubbySession = new ChubbySession("user", new ChubbyHandleResponse(Path.of("/ls/local"), ChubbyHandleType.READ, null, null), new ByteArrayOutputStream());
+        this.processFutureMap = new ConcurrentHashMap<>();
+        this.chubbyRequestProcessor = chubbyRequest -> this.processFutureMap.computeIfAbsent(chubbyRequest.getMessage(), message -> new CompletableFuture<>());
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_concurrent_requests_overlap_and_are_delivered_in_order() {
+        List<String> deliveredList = new ArrayList<>();
+        this.chubbySession.submit(this.chubbySession.newRequest("ls"), this.chubbyRequestProcessor, chubbyMessage -> deliveredList.add(chubbyMessage.getMessage()), true);
+        this.chubbySession.submit(this.chubbySession.newRequest("read acl"), this.chubbyRequestProcessor, chubbyMessage -> deliveredList.add(chubbyMessage.getMessage()), true);
+
+        assertEquals(2, this.processFutureMap.size());
+
+        this.processFutureMap.get("read acl").complete(this.newResponse("acl"));
+        assertEquals(List.of(), deliveredList);
+
+        this.processFutureMap.get("ls").complete(this.newResponse("ls"));
+        assertEquals(List.of("ls", "acl"), deliveredList);
+    }
+
+    @Test
+    void check_exclusive_request_runs_alone() {
+        this.chubbySession.submit(this.chubbySession.newRequest("ls"), this.chubbyRequestProcessor, chubbyMessage -> {
+        }, true);
+        this.chubbySession.submit(this.chubbySession.newRequest("close"), this.chubbyRequestProcessor, chubbyMessage -> {
+        }, false);
+        this.chubbySession.submit(this.chubbySession.newRequest("node data"), this.chubbyRequestProcessor, chubbyMessage -> {
+        }, true);
+
+        assertEquals(1, this.processFutureMap.size());
+
+        this.processFutureMap.get("ls").complete(this.newResponse("ls"));
+        assertEquals(2, this.processFutureMap.size());
+
+        this.processFutureMap.get("close").complete(this.newResponse("closed"));
+        assertEquals(3, this.processFutureMap.size());
+        assertEquals("closed", this.chubbySession.getLatestChubbyResponse().getMessage());
+    }
+
+    private ChubbyResponse newResponse(String message) {
+        return new ChubbyResponse("user", message, new ChubbyHandleResponse(Path.of("/ls/local"), ChubbyHandleType.READ, null, null));
+    }
+}
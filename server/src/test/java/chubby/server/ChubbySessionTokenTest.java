@@ -0,0 +1,56 @@
+package chubby.server;
+
+import chubby.utils.exceptions.ChubbyAuthenticationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbySessionTokenTest {
+    private final byte[] signingKey = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setUp() {
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_issued_token_verified() throws ChubbyAuthenticationException {
+        String token = ChubbySessionToken.issue(this.signingKey, "client0", 2000);
+        ChubbySessionToken chubbySessionToken = ChubbySessionToken.verify(this.signingKey, token, 1000);
+
+        assertEquals("client0", chubbySessionToken.getUsername());
+        assertEquals(2000, chubbySessionToken.getExpiryMillis());
+    }
+
+    @Test
+    void check_expired_token_refused() {
+        String token = ChubbySessionToken.issue(this.signingKey, "client0", 2000);
+
+        ChubbyAuthenticationException exception = assertThrows(ChubbyAuthenticationException.class, () -> ChubbySessionToken.verify(this.signingKey, token, 2000));
+        assertEquals("session token expired, log in again", exception.getMessage());
+    }
+
+    @Test
+    void check_forged_token_refused() {
+        String token = ChubbySessionToken.issue(this.signingKey, "client0", 2000);
+        String otherKeyToken = ChubbySessionToken.issue("another signing key".getBytes(StandardCharsets.UTF_8), "client0", 2000);
+        String extendedToken = token.replace(".2000.", ".9000.");
+
+        assertThrows(ChubbyAuthenticationException.class, () -> ChubbySessionToken.verify(this.signingKey, otherKeyToken, 1000));
+        assertThrows(ChubbyAuthenticationException.class, () -> ChubbySessionToken.verify(this.signingKey, extendedToken, 1000));
+    }
+
+    @Test
+    void check_malformed_token_refused() {
+        assertThrows(ChubbyAuthenticationException.class, () -> ChubbySessionToken.verify(this.signingKey, "", 1000));
+        assertThrows(ChubbyAuthenticationException.class, () -> ChubbySessionToken.verify(this.signingKey, "abc.def", 1000));
+        assertThrows(ChubbyAuthenticationException.class, () -> ChubbySessionToken.verify(this.signingKey, "abc.ten.def", 1000));
+    }
+}
@@ -0,0 +1,56 @@
+package chubby.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbySubtreeRemovalTest {
+    private List<String> descendantPathList;
+
+    @BeforeEach
+    void setUp() {
+        this.descendantPathList = List.of("/ls/local/dir/a", "/ls/local/dir/a/a1", "/ls/local/dir/a/a2", "/ls/local/dir/b", "/ls/local/dir/b/b1");
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_small_subtree_single_batch() {
+        List<ChubbySubtreeRemoval.Batch> batchList = new ChubbySubtreeRemoval("/ls/local/dir", this.descendantPathList, 64, 32).getBatchList();
+
+        assertEquals(1, batchList.size());
+        assertEquals("[/ls/local/dir/**]", batchList.getFirst().getEntryList().toString());
+        assertEquals(6, batchList.getFirst().getGuardedPathList().size());
+    }
+
+    @Test
+    void check_large_subtree_split_children_first() {
+        List<ChubbySubtreeRemoval.Batch> batchList = new ChubbySubtreeRemoval("/ls/local/dir", this.descendantPathList, 3, 32).getBatchList();
+
+        assertEquals(2, batchList.size());
+        assertEquals("[/ls/local/dir/a/**]", batchList.get(0).getEntryList().toString());
+        assertEquals("[/ls/local/dir/b/**, /ls/local/dir]", batchList.get(1).getEntryList().toString());
+    }
+
+    @Test
+    void check_entries_per_batch_bounded() {
+        List<ChubbySubtreeRemoval.Batch> batchList = new ChubbySubtreeRemoval("/ls/local/dir", List.of("/ls/local/dir/a", "/ls/local/dir/b", "/ls/local/dir/c"), 3, 2).getBatchList();
+
+        assertEquals(2, batchList.size());
+        assertEquals("[/ls/local/dir/a/**, /ls/local/dir/b/**]", batchList.get(0).getEntryList().toString());
+        assertEquals("[/ls/local/dir/c/**, /ls/local/dir]", batchList.get(1).getEntryList().toString());
+    }
+
+    @Test
+    void check_missing_parent_attached_to_ancestor() {
+        List<ChubbySubtreeRemoval.Batch> batchList = new ChubbySubtreeRemoval("/ls/local/dir", List.of("/ls/local/dir/a/a1"), 64, 32).getBatchList();
+
+        assertEquals(List.of("/ls/local/dir", "/ls/local/dir/a/a1"), batchList.getFirst().getGuardedPathList());
+    }
+}
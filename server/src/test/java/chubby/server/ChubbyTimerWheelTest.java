@@ -0,0 +1,63 @@
+package chubby.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyTimerWheelTest {
+    private ChubbyTimerWheel<String> chubbyTimerWheel;
+
+    @BeforeEach
+    void setUp() {
+        this.chubbyTimerWheel = new ChubbyTimerWheel<>(10, 8, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_items_expire_on_deadline() {
+        this.chubbyTimerWheel.schedule("first", 15, 0);
+        this.chubbyTimerWheel.schedule("second", 40, 0);
+
+        assertEquals(List.of(), this.chubbyTimerWheel.advance(10));
+        assertEquals(List.of("first"), this.chubbyTimerWheel.advance(20));
+        assertEquals(List.of("second"), this.chubbyTimerWheel.advance(45));
+        assertEquals(0, this.chubbyTimerWheel.size());
+    }
+
+    @Test
+    void check_item_beyond_one_turn() {
+        this.chubbyTimerWheel.schedule("far", 100, 0);
+
+        assertEquals(List.of(), this.chubbyTimerWheel.advance(80));
+        assertEquals(1, this.chubbyTimerWheel.size());
+        assertEquals(List.of("far"), this.chubbyTimerWheel.advance(100));
+    }
+
+    @Test
+    void check_items_expired_after_long_pause() {
+        this.chubbyTimerWheel.schedule("first", 10, 0);
+        this.chubbyTimerWheel.schedule("second", 70, 0);
+        this.chubbyTimerWheel.schedule("third", 500, 0);
+
+        List<String> actual = this.chubbyTimerWheel.advance(300);
+
+        assertEquals(2, actual.size());
+        assertTrue(actual.containsAll(List.of("first", "second")));
+        assertEquals(1, this.chubbyTimerWheel.size());
+    }
+
+    @Test
+    void check_past_deadline_expires_on_next_tick() {
+        this.chubbyTimerWheel.advance(50);
+        this.chubbyTimerWheel.schedule("late", -20, 50);
+
+        assertEquals(List.of("late"), this.chubbyTimerWheel.advance(60));
+    }
+}
@@ -0,0 +1,57 @@
+package chubby.server.backup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyExportRecordTest {
+
+    @BeforeEach
+    void setUp() {
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_node_round_trip() throws IOException {
+        String line = ChubbyExportRecord.encodeNode("/ls/local/dir 1", "{\"filecontent\":\"a b\\nc\"}\n");
+        ChubbyExportRecord chubbyExportRecord = ChubbyExportRecord.decode(line);
+
+        assertFalse(line.contains("\n"));
+        assertEquals(ChubbyExportRecordType.NODE, chubbyExportRecord.getChubbyExportRecordType());
+        assertEquals("/ls/local/dir 1", chubbyExportRecord.getKey());
+        assertEquals("{\"filecontent\":\"a b\\nc\"}\n", chubbyExportRecord.getValue());
+    }
+
+    @Test
+    void check_header_round_trip() throws IOException {
+        ChubbyExportRecord chubbyExportRecord = ChubbyExportRecord.decode(ChubbyExportRecord.encodeHeader("/ls/local"));
+
+        assertEquals(ChubbyExportRecordType.HEADER, chubbyExportRecord.getChubbyExportRecordType());
+        assertEquals(ChubbyExportRecord.VERSION, chubbyExportRecord.getNumber());
+        assertEquals("/ls/local", chubbyExportRecord.getKey());
+    }
+
+    @Test
+    void check_adjustment_and_end_round_trip() throws IOException {
+        ChubbyExportRecord adjustmentRecord = ChubbyExportRecord.decode(ChubbyExportRecord.encodeAdjustment("/ls/local/dir", -2));
+        ChubbyExportRecord endRecord = ChubbyExportRecord.decode(ChubbyExportRecord.encodeEnd(1000));
+
+        assertEquals(-2, adjustmentRecord.getNumber());
+        assertEquals(ChubbyExportRecordType.END, endRecord.getChubbyExportRecordType());
+        assertEquals(1000, endRecord.getNumber());
+    }
+
+    @Test
+    void check_malformed_record_rejected() {
+        assertThrows(IOException.class, () -> ChubbyExportRecord.decode("N not_base64!"));
+        assertThrows(IOException.class, () -> ChubbyExportRecord.decode("X 1"));
+        assertThrows(IOException.class, () -> ChubbyExportRecord.decode("E ten"));
+    }
+}
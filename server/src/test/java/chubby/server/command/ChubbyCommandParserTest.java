@@ -0,0 +1,83 @@
+package chubby.server.command;
+
+import chubby.control.handle.ChubbyHandleType;
+import chubby.server.node.ChubbyNodeAttribute;
+import chubby.utils.exceptions.ChubbyCommandException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyCommandParserTest {
+
+    @BeforeEach
+    void setUp() {
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_tokenizer_keeps_quoted_words() {
+        ChubbyCommandTokenizer tokenizer = new ChubbyCommandTokenizer("  open \"/ls/local/a b\"   read ");
+        List<String> wordList = new ArrayList<>();
+        while (tokenizer.hasNext()) {
+            wordList.add(tokenizer.next());
+        }
+
+        assertEquals(List.of("open", "\"/ls/local/a b\"", "read"), wordList);
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    void check_write_filecontent_kept_as_written() throws ChubbyCommandException {
+        ChubbyCommand chubbyCommand = ChubbyCommandParser.parse("write filecontent  hello   \"big\"  world! ");
+
+        assertEquals(ChubbyCommandType.WRITE_FILECONTENT, chubbyCommand.getChubbyCommandType());
+        assertEquals("hello   \"big\"  world!", ((ChubbyWriteFileContentCommand) chubbyCommand).getFileContent());
+        assertEquals("", ((ChubbyWriteFileContentCommand) ChubbyCommandParser.parse("write filecontent ")).getFileContent());
+    }
+
+    @Test
+    void check_open_arguments() throws ChubbyCommandException {
+        ChubbyOpenCommand chubbyOpenCommand = (ChubbyOpenCommand) ChubbyCommandParser.parse("open /ls/local/file.txt write ephemeral 10 file_contents_modified wait=5");
+
+        assertEquals(Path.of("/ls/local/file.txt"), chubbyOpenCommand.getAbsolutePath());
+        assertEquals(ChubbyHandleType.WRITE, chubbyOpenCommand.getChubbyHandleType());
+        assertEquals(ChubbyNodeAttribute.EPHEMERAL, chubbyOpenCommand.getChubbyNodeAttribute());
+        assertEquals(10, chubbyOpenCommand.getChubbyLockDelay().getValue());
+        assertEquals(5, chubbyOpenCommand.getLockWaitSeconds());
+        assertEquals(1, chubbyOpenCommand.newChubbyHandleRequest().getChubbyEventTypeList().size());
+
+        ChubbyOpenCommand defaultChubbyOpenCommand = (ChubbyOpenCommand) ChubbyCommandParser.parse("open /ls/local/dir read");
+        assertEquals(ChubbyNodeAttribute.PERMANENT, defaultChubbyOpenCommand.getChubbyNodeAttribute());
+        assertEquals(0, defaultChubbyOpenCommand.getLockWaitSeconds());
+    }
+
+    @Test
+    void check_ls_depth() throws ChubbyCommandException {
+        assertEquals(1, ((ChubbyLsCommand) ChubbyCommandParser.parse("ls")).getDepth());
+        assertEquals(3, ((ChubbyLsCommand) ChubbyCommandParser.parse("ls 3")).getDepth());
+        assertEquals(1, ((ChubbyLsCommand) ChubbyCommandParser.parse("ls -2")).getDepth());
+    }
+
+    @Test
+    void check_invalid_commands_rejected() {
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("OPEN /ls/local/dir read"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("open /ls/local/dir"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("open /ls/local/dir lock"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("ls deep"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("write acl read"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("write add_client owner user"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("multi ;"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("remove -rf"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse("remove recursive now"));
+        assertThrows(ChubbyCommandException.class, () -> ChubbyCommandParser.parse(""));
+    }
+}
@@ -0,0 +1,76 @@
+package chubby.server.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyFrameCodecTest {
+    private ChubbyFrameCodec chubbyFrameCodec;
+
+    @BeforeEach
+    void setUp() {
+        this.chubbyFrameCodec = new ChubbyFrameCodec();
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_single_frame() throws IOException {
+        List<String> actual = this.chubbyFrameCodec.decode(ChubbyFrameCodec.encode("ls 2"));
+        List<String> expected = List.of("ls 2");
+
+        assertEquals(expected, actual);
+        assertEquals(0, this.chubbyFrameCodec.getPendingByteCount());
+    }
+
+    @Test
+    void check_multiple_frames_in_one_read() throws IOException {
+        ByteBuffer firstFrame = ChubbyFrameCodec.encode("echo hello");
+        ByteBuffer secondFrame = ChubbyFrameCodec.encode("curr_handle");
+        ByteBuffer readBuffer = ByteBuffer.allocate(firstFrame.remaining() + secondFrame.remaining()).put(firstFrame).put(secondFrame).flip();
+
+        List<String> actual = this.chubbyFrameCodec.decode(readBuffer);
+        List<String> expected = List.of("echo hello", "curr_handle");
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void check_frame_split_across_reads() throws IOException {
+        ByteBuffer frame = ChubbyFrameCodec.encode("write filecontent èàò");
+        ByteBuffer firstRead = frame.duplicate().limit(3);
+        ByteBuffer secondRead = frame.duplicate().position(3);
+
+        assertTrue(this.chubbyFrameCodec.decode(firstRead).isEmpty());
+        assertEquals(3, this.chubbyFrameCodec.getPendingByteCount());
+
+        List<String> actual = this.chubbyFrameCodec.decode(secondRead);
+        List<String> expected = List.of("write filecontent èàò");
+
+        assertEquals(expected, actual);
+        assertEquals(0, this.chubbyFrameCodec.getPendingByteCount());
+    }
+
+    @Test
+    void check_empty_frame() throws IOException {
+        List<String> actual = this.chubbyFrameCodec.decode(ChubbyFrameCodec.encode(""));
+        List<String> expected = List.of("");
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void check_invalid_frame_length() {
+        ByteBuffer readBuffer = ByteBuffer.allocate(Integer.BYTES).putInt(-1).flip();
+
+        assertThrows(IOException.class, () -> this.chubbyFrameCodec.decode(readBuffer));
+    }
+}
@@ -0,0 +1,67 @@
+package chubby.setup;
+
+import chubby.server.backup.ChubbyNamespaceExporter;
+import chubby.server.backup.ChubbyNamespaceImporter;
+import chubby.server.backup.ChubbyTransferProgress;
+import io.etcd.jetcd.Client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class EtcdBackup {
+
+    /**
+     * Exports the namespace of a cell into a file, or imports a file into a cell:
+     * <ul>
+     *     <li>export cellName file</li>
+     *     <li>import cellName file, the nodes exported from another cell are moved into 'cellName'</li>
+     * </ul>
+     *
+     * @param args the arguments
+     * @throws Exception if the export or the import fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("usage: export cellName file | import cellName file");
+            System.exit(1);
+        }
+
+        String command = args[0];
+        String cellName = args[1];
+        Path filePath = Path.of(args[2]);
+        String[] servers = EtcdSetup.getCellServers(cellName);
+
+        if (servers == null) {
+            System.out.println("Invalid server name");
+            System.exit(1);
+        }
+
+        Client client = Client.builder().endpoints(servers).build();
+
+        switch (command) {
+            case "export" -> {
+                try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8)) {
+                    ChubbyNamespaceExporter chubbyNamespaceExporter = new ChubbyNamespaceExporter(client, Path.of("/ls/" + cellName), ChubbyNamespaceExporter.DEFAULT_PAGE_SIZE);
+                    ChubbyTransferProgress chubbyTransferProgress = chubbyNamespaceExporter.export(writer, progress -> System.out.println("exported " + progress));
+                    System.out.println("export of cell '" + cellName + "' completed: " + chubbyTransferProgress);
+                }
+            }
+            case "import" -> {
+                try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
+                    ChubbyNamespaceImporter chubbyNamespaceImporter = new ChubbyNamespaceImporter(client, "/ls/" + cellName, ChubbyNamespaceImporter.DEFAULT_NODES_PER_TXN, ChubbyNamespaceImporter.DEFAULT_MAX_IN_FLIGHT_TXN);
+                    ChubbyTransferProgress chubbyTransferProgress = chubbyNamespaceImporter.importFrom(reader, progress -> System.out.println("imported " + progress));
+                    System.out.println("import into cell '" + cellName + "' completed: " + chubbyTransferProgress);
+                }
+            }
+            default -> {
+                System.out.println("unknown command '" + command + "', expected 'export' or 'import'");
+                System.exit(1);
+            }
+        }
+
+        client.close();
+    }
+}
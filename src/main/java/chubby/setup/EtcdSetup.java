@@ -4,8 +4,14 @@ import chubby.server.ChubbyNamespace;
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
 import io.etcd.jetcd.KV;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.PutOption;
+import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class EtcdSetup {
     private static final String[] localCellServers = {
@@ -30,40 +36,100 @@ public class EtcdSetup {
             "http://localhost:12004"
     };
 
+    //etcd accepts 128 operations per transaction by default
+    private static final int MAX_USERS_PER_TXN = 128;
+
+    /**
+     * Provisions the cells of a description, the default cells and users when no description file is given.
+     *
+     * @param args the description file, optional
+     * @throws Exception if a cell cannot be provisioned
+     */
     public static void main(String[] args) throws Exception {
-        // create client
-        Client clientLocal = Client.builder().endpoints(localCellServers).build();
-        Client clientCell1 = Client.builder().endpoints(cell1Servers).build();
-        Client clientCell2 = Client.builder().endpoints(cell2Servers).build();
-        KV kvClientLocal = clientLocal.getKVClient();
-        KV kvClientCell1 = clientCell1.getKVClient();
-        KV kvClientCell2 = clientCell2.getKVClient();
-
-        // put the kv pair
-        List<String> usernames = List.of("client0","client1","client2","client3");
-        for (String currentUser : usernames) {
-            ByteSequence key = ByteSequence.from(currentUser.getBytes());
-            ByteSequence value = ByteSequence.from(String.valueOf("password".hashCode()).getBytes());
-            kvClientLocal.put(key, value).get();
-            kvClientCell1.put(key, value).get();
-            kvClientCell2.put(key, value).get();
+        EtcdSetupDescription etcdSetupDescription = args.length > 0 ? EtcdSetupDescription.read(Path.of(args[0])) : defaultDescription();
+
+        provision(etcdSetupDescription).get();
+
+        System.out.println("cells setup completed successfully");
+    }
+
+    /**
+     * Returns the description of the default cells and users
+     *
+     * @return the default description
+     */
+    static EtcdSetupDescription defaultDescription() {
+        EtcdSetupDescription etcdSetupDescription = new EtcdSetupDescription()
+                .addCell("local", localCellServers)
+                .addCell("cell1", cell1Servers)
+                .addCell("cell2", cell2Servers);
+
+        for (String username : List.of("client0", "client1", "client2", "client3")) {
+            etcdSetupDescription.addUser(username, "password");
+        }
+
+        return etcdSetupDescription;
+    }
+
+    /**
+     * Provisions every cell of a description at the same time. Each cell has its own pipeline: its users are written
+     * with batched transactions, all of them in flight together with the creation of the default nodes.
+     *
+     * @param etcdSetupDescription the description
+     * @return a CompletableFuture completed once every cell is provisioned
+     */
+    public static CompletableFuture<Void> provision(@NotNull EtcdSetupDescription etcdSetupDescription) {
+        List<CompletableFuture<Void>> cellFutureList = new ArrayList<>();
+
+        for (EtcdSetupDescription.Cell cell : etcdSetupDescription.getCellList()) {
+            cellFutureList.add(provisionCell(cell, etcdSetupDescription.getUserList()));
         }
 
-        ChubbyNamespace chubbyNamespaceLocal = new ChubbyNamespace("local");
-        chubbyNamespaceLocal.createDefaultNodes(clientLocal).get();
+        return CompletableFuture.allOf(cellFutureList.toArray(new CompletableFuture[0]));
+    }
 
-        ChubbyNamespace chubbyNamespaceCell1 = new ChubbyNamespace("cell1");
-        chubbyNamespaceCell1.createDefaultNodes(clientCell1).get();
+    /**
+     * Provisions a single cell, closing its client once done.
+     *
+     * @param cell     the cell
+     * @param userList the users registered into the cell
+     * @return a CompletableFuture completed once the cell is provisioned
+     */
+    private static CompletableFuture<Void> provisionCell(@NotNull EtcdSetupDescription.Cell cell, @NotNull List<EtcdSetupDescription.User> userList) {
+        Client client = Client.builder().endpoints(cell.getServers()).build();
+        KV kvClient = client.getKVClient();
+        List<CompletableFuture<?>> futureList = new ArrayList<>();
 
-        ChubbyNamespace chubbyNamespaceCell2 = new ChubbyNamespace("cell2");
-        chubbyNamespaceCell2.createDefaultNodes(clientCell2).get();
+        for (int from = 0; from < userList.size(); from += MAX_USERS_PER_TXN) {
+            List<Op> putOpList = new ArrayList<>();
 
-        System.out.println("cells setup completed successfully");
+            for (EtcdSetupDescription.User user : userList.subList(from, Math.min(from + MAX_USERS_PER_TXN, userList.size()))) {
+                ByteSequence key = ByteSequence.from(user.getUsername().getBytes());
+                ByteSequence value = ByteSequence.from(String.valueOf(user.getPassword().hashCode()).getBytes());
+                putOpList.add(Op.put(key, value, PutOption.DEFAULT));
+            }
+            futureList.add(kvClient.txn().Then(putOpList.toArray(new Op[0])).commit());
+        }
+
+        futureList.add(new ChubbyNamespace(cell.getName()).provisionDefaultNodes(client));
 
-        // close the client
-        clientLocal.close();
-        clientCell1.close();
-        clientCell2.close();
+        return CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0])).whenComplete((v, throwable) -> {
+            client.close();
+
+            if (throwable == null) {
+                System.out.println("cell '" + cell.getName() + "' setup completed, " + userList.size() + " user(s) registered");
+            }
+        });
     }
 
+    /**
+     * Returns the servers of the specified cell
+     *
+     * @param cellName name of the cell
+     * @return the servers of the cell, null if no cell has such name
+     */
+    static String[] getCellServers(String cellName) {
+        EtcdSetupDescription.Cell cell = defaultDescription().getCell(cellName);
+        return cell == null ? null : cell.getServers();
+    }
 }
@@ -0,0 +1,169 @@
+package chubby.setup;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EtcdSetupDescription {
+    private static final String FIELD_SEPARATOR = "\\s+";
+    private static final String COMMENT_PREFIX = "#";
+    private final Map<String, Cell> cellMap;
+    private final Map<String, User> userMap;
+
+    /**
+     * Create a new, empty, EtcdSetupDescription: the cells to provision and the users registered into every one of them.
+     */
+    public EtcdSetupDescription() {
+        this.cellMap = new LinkedHashMap<>();
+        this.userMap = new LinkedHashMap<>();
+    }
+
+    /**
+     * Reads a description, one entry per line, blank lines and lines starting with '#' are ignored:
+     * <ul>
+     *     <li>'cell name server...' is a cell and the endpoints of its etcd servers</li>
+     *     <li>'user username password' is a user</li>
+     * </ul>
+     *
+     * @param filePath the file of the description
+     * @return the description
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static @NotNull EtcdSetupDescription read(@NotNull Path filePath) throws IOException {
+        EtcdSetupDescription etcdSetupDescription = new EtcdSetupDescription();
+
+        try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+
+                String[] fields = line.split(FIELD_SEPARATOR);
+                switch (fields[0]) {
+                    case "cell" -> {
+                        if (fields.length < 3) {
+                            throw new IOException("line " + lineNumber + ": expected 'cell name server...'");
+                        }
+                        etcdSetupDescription.addCell(fields[1], Arrays.copyOfRange(fields, 2, fields.length));
+                    }
+                    case "user" -> {
+                        if (fields.length != 3) {
+                            throw new IOException("line " + lineNumber + ": expected 'user username password'");
+                        }
+                        etcdSetupDescription.addUser(fields[1], fields[2]);
+                    }
+                    default -> throw new IOException("line " + lineNumber + ": unknown entry '" + fields[0] + "'");
+                }
+            }
+        }
+
+        return etcdSetupDescription;
+    }
+
+    /**
+     * Adds a cell, replacing the cell with the same name if any.
+     *
+     * @param cellName name of the cell
+     * @param servers  endpoints of the etcd servers of the cell
+     * @return this description
+     */
+    public EtcdSetupDescription addCell(@NotNull String cellName, String @NotNull ... servers) {
+        this.cellMap.put(cellName, new Cell(cellName, servers));
+        return this;
+    }
+
+    /**
+     * Adds a user, replacing the user with the same username if any.
+     *
+     * @param username username of the user
+     * @param password password of the user
+     * @return this description
+     */
+    public EtcdSetupDescription addUser(@NotNull String username, @NotNull String password) {
+        this.userMap.put(username, new User(username, password));
+        return this;
+    }
+
+    public List<Cell> getCellList() {
+        return new ArrayList<>(this.cellMap.values());
+    }
+
+    public List<User> getUserList() {
+        return new ArrayList<>(this.userMap.values());
+    }
+
+    /**
+     * Returns the cell with the specified name
+     *
+     * @param cellName name of the cell
+     * @return the cell, null if no cell has such name
+     */
+    public Cell getCell(@NotNull String cellName) {
+        return this.cellMap.get(cellName);
+    }
+
+    public static class Cell {
+        private final String name;
+        private final String[] servers;
+
+        public Cell(@NotNull String name, String @NotNull [] servers) {
+            this.name = name;
+            this.servers = servers;
+        }
+
+        @Override
+        public String toString() {
+            return "Cell{" +
+                    "name='" + this.name + '\'' +
+                    ", servers=" + Arrays.toString(this.servers) +
+                    '}';
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String[] getServers() {
+            return this.servers;
+        }
+    }
+
+    public static class User {
+        private final String username;
+        private final String password;
+
+        public User(@NotNull String username, @NotNull String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public String toString() {
+            return "User{" +
+                    "username='" + this.username + '\'' +
+                    '}';
+        }
+
+        public String getUsername() {
+            return this.username;
+        }
+
+        public String getPassword() {
+            return this.password;
+        }
+    }
+}
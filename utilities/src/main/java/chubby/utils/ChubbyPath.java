@@ -0,0 +1,276 @@
+package chubby.utils;
+
+import io.etcd.jetcd.ByteSequence;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ChubbyPath implements Comparable<ChubbyPath> {
+    public static final char SEPARATOR = '/';
+    private static final char WINDOWS_SEPARATOR = '\\';
+    private static final int MAX_INTERNED_PATHS = 1 << 16;
+    private static final ConcurrentHashMap<String, ChubbyPath> internedPathMap = new ConcurrentHashMap<>();
+    public static final ChubbyPath ROOT = new ChubbyPath(String.valueOf(SEPARATOR), new String[0]);
+    private final String path;
+    private final String[] components;
+    private final boolean file;
+    private final int hash;
+    private final ByteSequence key;
+    private final ByteSequence childKeyPrefix;
+    private ChubbyPath parent;
+
+    /**
+     * Create a new ChubbyPath, an absolute path of the namespace. Its components, its depth, whether it is a file, its
+     * hash and its key in the kv store are computed once, when the path is parsed.
+     *
+     * @param path       the normalized path, components separated by '/'
+     * @param components the components of the path, none for root
+     */
+    private ChubbyPath(@NotNull String path, String @NotNull [] components) {
+        this.path = path;
+        this.components = components;
+        this.file = components.length > 0 && isFileName(components[components.length - 1]);
+        this.hash = path.hashCode();
+        this.key = ByteSequence.from(path, StandardCharsets.UTF_8);
+        this.childKeyPrefix = components.length == 0 ? this.key : ByteSequence.from(path + SEPARATOR, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the path with the specified string form. Both '/' and '\' are accepted as separators, so that paths
+     * written on any platform denote the same node, and the path is always absolute. Parsed paths are interned, so
+     * that the same string is usually parsed only once: lookups take no lock, and once the interned paths are too many
+     * they are all dropped, hot paths are interned again by their next lookup.
+     *
+     * @param pathString the path
+     * @return the path
+     */
+    public static @NotNull ChubbyPath of(@NotNull String pathString) {
+        ChubbyPath chubbyPath = internedPathMap.get(pathString);
+        if (chubbyPath != null) {
+            return chubbyPath;
+        }
+
+        //paths are only compared with equals, so a path parsed twice, or again after the table is cleared, is harmless
+        chubbyPath = parse(pathString);
+        if (internedPathMap.size() >= MAX_INTERNED_PATHS) {
+            internedPathMap.clear();
+        }
+        ChubbyPath previousChubbyPath = internedPathMap.putIfAbsent(pathString, chubbyPath);
+        return previousChubbyPath != null ? previousChubbyPath : chubbyPath;
+    }
+
+    public static int getInternedPathCount() {
+        return internedPathMap.size();
+    }
+
+    public static @NotNull ChubbyPath of(@NotNull Path path) {
+        return of(path.toString());
+    }
+
+    public static @NotNull ChubbyPath of(@NotNull ByteSequence key) {
+        return of(key.toString(StandardCharsets.UTF_8));
+    }
+
+    private static @NotNull ChubbyPath parse(@NotNull String pathString) {
+        List<String> componentList = new ArrayList<>();
+        int start = 0;
+
+        for (int i = 0; i <= pathString.length(); i++) {
+            if (i < pathString.length() && pathString.charAt(i) != SEPARATOR && pathString.charAt(i) != WINDOWS_SEPARATOR) {
+                continue;
+            }
+
+            String component = pathString.substring(start, i);
+            start = i + 1;
+
+            if (component.isEmpty() || component.equals(".")) {
+                continue;
+            }
+            if (component.equals("..")) {
+                if (!componentList.isEmpty()) {
+                    componentList.removeLast();
+                }
+                continue;
+            }
+            componentList.add(component);
+        }
+
+        if (componentList.isEmpty()) {
+            return ROOT;
+        }
+        return new ChubbyPath(SEPARATOR + String.join(String.valueOf(SEPARATOR), componentList), componentList.toArray(new String[0]));
+    }
+
+    /**
+     * Checks if a node name is the name of a file: it contains a single period with at least one character before and
+     * after it (example.txt), anything else is a directory.
+     *
+     * @param name the node name
+     * @return true if the name is the name of a file, false otherwise
+     */
+    private static boolean isFileName(@NotNull String name) {
+        int periodIndex = name.indexOf('.');
+        return periodIndex > 0 && periodIndex < name.length() - 1 && name.indexOf('.', periodIndex + 1) < 0;
+    }
+
+    /**
+     * Returns the number of components of a key written by a ChubbyPath, without parsing it.
+     *
+     * @param key the key, a normalized path
+     * @return the depth of the key, 0 for root
+     */
+    public static int depthOf(@NotNull String key) {
+        int depth = 0;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == SEPARATOR && i < key.length() - 1) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    public boolean isRoot() {
+        return this.components.length == 0;
+    }
+
+    public boolean isFile() {
+        return this.file;
+    }
+
+    public boolean isDirectory() {
+        return !this.file;
+    }
+
+    public int getDepth() {
+        return this.components.length;
+    }
+
+    public @NotNull String getComponent(int index) {
+        return this.components[index];
+    }
+
+    /**
+     * Returns the name of the node.
+     *
+     * @return the last component of the path, null for root
+     */
+    public @Nullable String getFileName() {
+        return this.isRoot() ? null : this.components[this.components.length - 1];
+    }
+
+    /**
+     * Returns how many components of the path are equal to the specified name.
+     *
+     * @param name the name
+     * @return the occurrences of the name
+     */
+    public int countComponent(@NotNull String name) {
+        int count = 0;
+        for (String component : this.components) {
+            if (component.equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the parent of the path.
+     *
+     * @return the parent, null for root
+     */
+    public @Nullable ChubbyPath getParent() {
+        if (this.isRoot()) {
+            return null;
+        }
+
+        //computed at most a few times if raced, the result is always the same
+        if (this.parent == null) {
+            this.parent = this.components.length == 1 ? ROOT : of(this.path.substring(0, this.path.lastIndexOf(SEPARATOR)));
+        }
+        return this.parent;
+    }
+
+    public @NotNull ChubbyPath resolve(@NotNull String child) {
+        return of(this.path + SEPARATOR + child);
+    }
+
+    /**
+     * Checks if this path is the specified one or one of its descendants, without allocating.
+     *
+     * @param other the possible ancestor
+     * @return true if this path starts with the other one
+     */
+    public boolean startsWith(@NotNull ChubbyPath other) {
+        if (other.isRoot()) {
+            return true;
+        }
+        if (other.components.length > this.components.length || !this.path.startsWith(other.path)) {
+            return false;
+        }
+        return this.path.length() == other.path.length() || this.path.charAt(other.path.length()) == SEPARATOR;
+    }
+
+    /**
+     * Checks if this path is a strict ancestor of the specified one, without allocating.
+     *
+     * @param other the possible descendant
+     * @return true if the other path is below this one
+     */
+    public boolean isAncestorOf(@NotNull ChubbyPath other) {
+        return other.components.length > this.components.length && other.startsWith(this);
+    }
+
+    /**
+     * Returns the key of the node in the kv store.
+     *
+     * @return the key
+     */
+    public @NotNull ByteSequence toByteSequence() {
+        return this.key;
+    }
+
+    /**
+     * Returns the prefix shared by the keys of every descendant of the node, and only by them.
+     *
+     * @return the prefix of the keys of the descendants
+     */
+    public @NotNull ByteSequence getChildKeyPrefix() {
+        return this.childKeyPrefix;
+    }
+
+    public @NotNull Path toPath() {
+        return Path.of(this.path);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ChubbyPath other)) {
+            return false;
+        }
+        return this.hash == other.hash && this.path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public int compareTo(@NotNull ChubbyPath other) {
+        return this.path.compareTo(other.path);
+    }
+
+    @Override
+    public String toString() {
+        return this.path;
+    }
+}
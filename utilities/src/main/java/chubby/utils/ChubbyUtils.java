@@ -11,11 +11,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ChubbyUtils {
 
@@ -27,19 +24,7 @@ public class ChubbyUtils {
      * @return true if the path is a file, false otherwise
      */
     public static boolean isFile(@NotNull Path path) {
-        String nodeName;
-        if (path.equals(Paths.get("\\"))) {
-            nodeName = "\\";
-        } else {
-            nodeName = path.getFileName().toString();
-        }
-
-        //if path contains a period with at least one character before and after it, it's a file (example.txt), else is a directory
-        String regex = "^[^.]+\\.[^.]+$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(nodeName);
-
-        return matcher.matches();
+        return ChubbyPath.of(path).isFile();
     }
 
     /**
@@ -49,7 +34,7 @@ public class ChubbyUtils {
      * @return true if the path is a file, false otherwise
      */
     public static boolean isFile(@NotNull ByteSequence pathBytesequence) {
-        return isFile(Paths.get(pathBytesequence.toString()));
+        return ChubbyPath.of(pathBytesequence).isFile();
     }
 
     public static class LocalDateAdapter extends TypeAdapter<LocalDate> {
@@ -0,0 +1,7 @@
+package chubby.utils.exceptions;
+
+public class ChubbyAuthenticationException extends Exception {
+    public ChubbyAuthenticationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package chubby.utils.exceptions;
+
+public class ChubbyCommandException extends Exception {
+    public ChubbyCommandException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,85 @@
+package chubby.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChubbyPathTest {
+
+    @BeforeEach
+    void setUp() {
+    }
+
+    @AfterEach
+    void tearDown() {
+    }
+
+    @Test
+    void check_separators_normalized() {
+        assertEquals("/ls/local/dir", ChubbyPath.of("\\ls\\local\\dir").toString());
+        assertEquals("/ls/local/dir", ChubbyPath.of("/ls//local/./dir/").toString());
+        assertEquals("/ls/dir", ChubbyPath.of("/ls/local/../dir").toString());
+        assertEquals(ChubbyPath.ROOT, ChubbyPath.of("\\"));
+        assertSame(ChubbyPath.of("/ls/local/dir"), ChubbyPath.of("\\ls\\local\\dir").getParent().resolve("dir"));
+    }
+
+    @Test
+    void check_depth_and_components() {
+        ChubbyPath chubbyPath = ChubbyPath.of("/ls/local/dir/file.txt");
+
+        assertEquals(4, chubbyPath.getDepth());
+        assertEquals("local", chubbyPath.getComponent(1));
+        assertEquals("file.txt", chubbyPath.getFileName());
+        assertEquals(0, ChubbyPath.ROOT.getDepth());
+        assertNull(ChubbyPath.ROOT.getFileName());
+        assertNull(ChubbyPath.ROOT.getParent());
+        assertEquals(4, ChubbyPath.depthOf(chubbyPath.toString()));
+        assertEquals(1, ChubbyPath.depthOf("/dir/"));
+        assertEquals(2, ChubbyPath.of("/dir/a/dir").countComponent("dir"));
+    }
+
+    @Test
+    void check_file_and_directory() {
+        assertTrue(ChubbyPath.of("/ls/local/file.txt").isFile());
+        assertTrue(ChubbyPath.of("/ls/local/dir").isDirectory());
+        assertTrue(ChubbyPath.of("/ls/local/.hidden").isDirectory());
+        assertTrue(ChubbyPath.of("/ls/local/file.").isDirectory());
+        assertTrue(ChubbyPath.of("/ls/local/file.tar.gz").isDirectory());
+        assertTrue(ChubbyPath.ROOT.isDirectory());
+    }
+
+    @Test
+    void check_starts_with_on_component_boundary() {
+        ChubbyPath cellPath = ChubbyPath.of("/ls/local");
+
+        assertTrue(ChubbyPath.of("/ls/local/dir").startsWith(cellPath));
+        assertTrue(cellPath.startsWith(cellPath));
+        assertFalse(ChubbyPath.of("/ls/localhost").startsWith(cellPath));
+        assertFalse(ChubbyPath.of("/ls/loc").startsWith(cellPath));
+        assertTrue(cellPath.startsWith(ChubbyPath.ROOT));
+        assertTrue(cellPath.isAncestorOf(ChubbyPath.of("/ls/local/dir")));
+        assertFalse(cellPath.isAncestorOf(cellPath));
+    }
+
+    @Test
+    void check_child_key_prefix() {
+        assertEquals("/ls/local/", ChubbyPath.of("/ls/local").getChildKeyPrefix().toString());
+        assertEquals("/", ChubbyPath.ROOT.getChildKeyPrefix().toString());
+        assertEquals("/ls/local", ChubbyPath.of("/ls/local").toByteSequence().toString());
+    }
+
+    @Test
+    void check_interned_paths_bounded() {
+        ChubbyPath hotChubbyPath = ChubbyPath.of("/ls/local/hot");
+
+        for (int i = 0; i < (1 << 17); i++) {
+            ChubbyPath.of("/ls/local/node" + i);
+        }
+
+        assertTrue(ChubbyPath.getInternedPathCount() <= 1 << 16);
+        assertEquals(hotChubbyPath, ChubbyPath.of("/ls/local/hot"));
+        assertSame(ChubbyPath.of("/ls/local/hot"), ChubbyPath.of("/ls/local/hot"));
+    }
+}